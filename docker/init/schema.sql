@@ -1,7 +1,8 @@
 CREATE TABLE IF NOT EXISTS users (
     id BIGSERIAL PRIMARY KEY,
     name VARCHAR(255) UNIQUE NOT NULL CHECK ( trim(name) <> '' ),
-    email VARCHAR(255) NOT NULL CHECK ( trim(name) <> '' )
+    email VARCHAR(255) NOT NULL CHECK ( trim(name) <> '' ),
+    version BIGINT NOT NULL DEFAULT 1
 );
 
 CREATE INDEX idx_users_email ON users(email);
@@ -9,12 +10,14 @@ CREATE INDEX idx_users_email ON users(email);
 CREATE TABLE IF NOT EXISTS products (
     id BIGSERIAL PRIMARY KEY,
     name VARCHAR(255) NOT NULL CHECK ( trim(name) <> '' ),
-    price DECIMAL(10, 2) NOT NULL CHECK ( price >= 0 )
+    price DECIMAL(10, 2) NOT NULL CHECK ( price >= 0 ),
+    version BIGINT NOT NULL DEFAULT 1
 );
 
 CREATE TABLE IF NOT EXISTS orders (
     id BIGSERIAL PRIMARY KEY,
     user_id BIGINT NOT NULL,
+    version BIGINT NOT NULL DEFAULT 1,
     CONSTRAINT fk_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
@@ -29,4 +32,220 @@ CREATE TABLE IF NOT EXISTS orders_products (
 );
 
 CREATE INDEX idx_orders_products_order_id ON orders_products(order_id);
-CREATE INDEX idx_orders_products_product_id ON orders_products(product_id);
\ No newline at end of file
+CREATE INDEX idx_orders_products_product_id ON orders_products(product_id);
+
+CREATE OR REPLACE FUNCTION entity_change_payload(table_name TEXT, changed JSONB, key_columns TEXT[]) RETURNS TEXT AS $$
+    SELECT table_name || ':' || string_agg(changed ->> key_column, ':' ORDER BY position)
+    FROM unnest(key_columns) WITH ORDINALITY AS keys(key_column, position)
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE OR REPLACE FUNCTION notify_entity_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM pg_notify('productstore_changes', entity_change_payload(TG_TABLE_NAME, to_jsonb(OLD), TG_ARGV));
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM pg_notify('productstore_changes', entity_change_payload(TG_TABLE_NAME, to_jsonb(NEW), TG_ARGV));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION notify_entity_truncate() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('productstore_changes', TG_TABLE_NAME || ':*');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER users_notify_change AFTER INSERT OR UPDATE OR DELETE ON users
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change('id');
+CREATE TRIGGER users_notify_truncate AFTER TRUNCATE ON users
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_truncate();
+
+CREATE TRIGGER products_notify_change AFTER INSERT OR UPDATE OR DELETE ON products
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change('id');
+CREATE TRIGGER products_notify_truncate AFTER TRUNCATE ON products
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_truncate();
+
+CREATE TRIGGER orders_notify_change AFTER INSERT OR UPDATE OR DELETE ON orders
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change('id', 'user_id');
+CREATE TRIGGER orders_notify_truncate AFTER TRUNCATE ON orders
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_truncate();
+
+CREATE TRIGGER orders_products_notify_change AFTER INSERT OR UPDATE OR DELETE ON orders_products
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change('order_id', 'product_id');
+CREATE TRIGGER orders_products_notify_truncate AFTER TRUNCATE ON orders_products
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_truncate();
+
+
+CREATE OR REPLACE FUNCTION bump_version() RETURNS trigger AS $$
+BEGIN
+    NEW.version := OLD.version + 1;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER users_bump_version BEFORE UPDATE ON users
+    FOR EACH ROW EXECUTE FUNCTION bump_version();
+CREATE TRIGGER products_bump_version BEFORE UPDATE ON products
+    FOR EACH ROW EXECUTE FUNCTION bump_version();
+CREATE TRIGGER orders_bump_version BEFORE UPDATE ON orders
+    FOR EACH ROW EXECUTE FUNCTION bump_version();
+
+CREATE OR REPLACE FUNCTION bump_linked_versions() RETURNS trigger AS $$
+BEGIN
+    UPDATE orders SET version = version + 1 WHERE id IN (SELECT order_id FROM changed_links);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER orders_products_insert_bump_versions AFTER INSERT ON orders_products
+    REFERENCING NEW TABLE AS changed_links
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_linked_versions();
+CREATE TRIGGER orders_products_delete_bump_versions AFTER DELETE ON orders_products
+    REFERENCING OLD TABLE AS changed_links
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_linked_versions();
+
+CREATE OR REPLACE FUNCTION bump_order_user_versions() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        UPDATE users SET version = version + 1 WHERE id = OLD.user_id;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        UPDATE users SET version = version + 1 WHERE id = NEW.user_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER orders_bump_user_versions AFTER INSERT OR DELETE ON orders
+    FOR EACH ROW EXECUTE FUNCTION bump_order_user_versions();
+CREATE TRIGGER orders_user_change_bump_user_versions AFTER UPDATE OF user_id ON orders
+    FOR EACH ROW WHEN (OLD.user_id IS DISTINCT FROM NEW.user_id) EXECUTE FUNCTION bump_order_user_versions();
+
+CREATE OR REPLACE FUNCTION bump_product_order_versions() RETURNS trigger AS $$
+BEGIN
+    UPDATE orders SET version = version + 1
+    WHERE id IN (SELECT order_id FROM orders_products WHERE product_id = NEW.id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER products_change_bump_order_versions AFTER UPDATE OF name, price ON products
+    FOR EACH ROW WHEN (OLD.name IS DISTINCT FROM NEW.name OR OLD.price IS DISTINCT FROM NEW.price)
+    EXECUTE FUNCTION bump_product_order_versions();
+
+CREATE OR REPLACE FUNCTION bump_user_order_versions() RETURNS trigger AS $$
+BEGIN
+    UPDATE orders SET version = version + 1 WHERE user_id = NEW.id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER users_change_bump_order_versions AFTER UPDATE OF name, email ON users
+    FOR EACH ROW WHEN (OLD.name IS DISTINCT FROM NEW.name OR OLD.email IS DISTINCT FROM NEW.email)
+    EXECUTE FUNCTION bump_user_order_versions();
+
+CREATE TABLE IF NOT EXISTS order_summary (
+    order_id BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    user_name VARCHAR(255) NOT NULL,
+    user_email VARCHAR(255) NOT NULL,
+    line_count INTEGER NOT NULL,
+    total_price DECIMAL(12, 2) NOT NULL,
+    product_ids BIGINT[] NOT NULL,
+    CONSTRAINT fk_summary_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE
+);
+
+CREATE OR REPLACE FUNCTION refresh_order_summary(order_ids BIGINT[]) RETURNS void AS $$
+BEGIN
+    PERFORM 1 FROM orders WHERE id = ANY(order_ids) ORDER BY id FOR UPDATE;
+
+    INSERT INTO order_summary (order_id, user_id, user_name, user_email, line_count, total_price, product_ids)
+    SELECT o.id, u.id, u.name, u.email,
+           count(p.id),
+           coalesce(sum(p.price), 0),
+           coalesce(array_agg(p.id ORDER BY p.id) FILTER (WHERE p.id IS NOT NULL), '{}')
+    FROM orders o
+    JOIN users u ON o.user_id = u.id
+    LEFT JOIN orders_products op ON o.id = op.order_id
+    LEFT JOIN products p ON op.product_id = p.id
+    WHERE o.id = ANY(order_ids)
+    GROUP BY o.id, u.id
+    ON CONFLICT (order_id) DO UPDATE SET
+        user_id = EXCLUDED.user_id,
+        user_name = EXCLUDED.user_name,
+        user_email = EXCLUDED.user_email,
+        line_count = EXCLUDED.line_count,
+        total_price = EXCLUDED.total_price,
+        product_ids = EXCLUDED.product_ids;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION refresh_summaries_for_new_orders() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT id FROM changed_orders));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER orders_insert_refresh_summary AFTER INSERT ON orders
+    REFERENCING NEW TABLE AS changed_orders
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_summaries_for_new_orders();
+
+CREATE OR REPLACE FUNCTION refresh_summary_for_order() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY[NEW.id]);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER orders_user_change_refresh_summary AFTER UPDATE OF user_id ON orders
+    FOR EACH ROW WHEN (OLD.user_id IS DISTINCT FROM NEW.user_id) EXECUTE FUNCTION refresh_summary_for_order();
+
+CREATE OR REPLACE FUNCTION refresh_summaries_for_links() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT DISTINCT order_id FROM changed_links));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER orders_products_insert_refresh_summary AFTER INSERT ON orders_products
+    REFERENCING NEW TABLE AS changed_links
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_summaries_for_links();
+CREATE TRIGGER orders_products_delete_refresh_summary AFTER DELETE ON orders_products
+    REFERENCING OLD TABLE AS changed_links
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_summaries_for_links();
+
+CREATE OR REPLACE FUNCTION refresh_all_order_summaries() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT id FROM orders));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER orders_products_truncate_refresh_summary AFTER TRUNCATE ON orders_products
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_all_order_summaries();
+
+CREATE OR REPLACE FUNCTION refresh_summaries_for_product() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT order_id FROM orders_products WHERE product_id = NEW.id));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER products_change_refresh_summary AFTER UPDATE OF price ON products
+    FOR EACH ROW WHEN (OLD.price IS DISTINCT FROM NEW.price)
+    EXECUTE FUNCTION refresh_summaries_for_product();
+
+CREATE OR REPLACE FUNCTION refresh_summaries_for_user() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT id FROM orders WHERE user_id = NEW.id));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER users_change_refresh_summary AFTER UPDATE OF name, email ON users
+    FOR EACH ROW WHEN (OLD.name IS DISTINCT FROM NEW.name OR OLD.email IS DISTINCT FROM NEW.email)
+    EXECUTE FUNCTION refresh_summaries_for_user();
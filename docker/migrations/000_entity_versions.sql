@@ -0,0 +1,138 @@
+BEGIN;
+
+LOCK TABLE users, products, orders, orders_products IN SHARE ROW EXCLUSIVE MODE;
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE products ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
+
+CREATE OR REPLACE FUNCTION entity_change_payload(table_name TEXT, changed JSONB, key_columns TEXT[]) RETURNS TEXT AS $$
+    SELECT table_name || ':' || string_agg(changed ->> key_column, ':' ORDER BY position)
+    FROM unnest(key_columns) WITH ORDINALITY AS keys(key_column, position)
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE OR REPLACE FUNCTION notify_entity_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM pg_notify('productstore_changes', entity_change_payload(TG_TABLE_NAME, to_jsonb(OLD), TG_ARGV));
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM pg_notify('productstore_changes', entity_change_payload(TG_TABLE_NAME, to_jsonb(NEW), TG_ARGV));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION notify_entity_truncate() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('productstore_changes', TG_TABLE_NAME || ':*');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS users_notify_change ON users;
+CREATE TRIGGER users_notify_change AFTER INSERT OR UPDATE OR DELETE ON users
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change('id');
+DROP TRIGGER IF EXISTS users_notify_truncate ON users;
+CREATE TRIGGER users_notify_truncate AFTER TRUNCATE ON users
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_truncate();
+
+DROP TRIGGER IF EXISTS products_notify_change ON products;
+CREATE TRIGGER products_notify_change AFTER INSERT OR UPDATE OR DELETE ON products
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change('id');
+DROP TRIGGER IF EXISTS products_notify_truncate ON products;
+CREATE TRIGGER products_notify_truncate AFTER TRUNCATE ON products
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_truncate();
+
+DROP TRIGGER IF EXISTS orders_notify_change ON orders;
+CREATE TRIGGER orders_notify_change AFTER INSERT OR UPDATE OR DELETE ON orders
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change('id', 'user_id');
+DROP TRIGGER IF EXISTS orders_notify_truncate ON orders;
+CREATE TRIGGER orders_notify_truncate AFTER TRUNCATE ON orders
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_truncate();
+
+DROP TRIGGER IF EXISTS orders_products_notify_change ON orders_products;
+CREATE TRIGGER orders_products_notify_change AFTER INSERT OR UPDATE OR DELETE ON orders_products
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change('order_id', 'product_id');
+DROP TRIGGER IF EXISTS orders_products_notify_truncate ON orders_products;
+CREATE TRIGGER orders_products_notify_truncate AFTER TRUNCATE ON orders_products
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_truncate();
+
+CREATE OR REPLACE FUNCTION bump_version() RETURNS trigger AS $$
+BEGIN
+    NEW.version := OLD.version + 1;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS users_bump_version ON users;
+CREATE TRIGGER users_bump_version BEFORE UPDATE ON users
+    FOR EACH ROW EXECUTE FUNCTION bump_version();
+DROP TRIGGER IF EXISTS products_bump_version ON products;
+CREATE TRIGGER products_bump_version BEFORE UPDATE ON products
+    FOR EACH ROW EXECUTE FUNCTION bump_version();
+DROP TRIGGER IF EXISTS orders_bump_version ON orders;
+CREATE TRIGGER orders_bump_version BEFORE UPDATE ON orders
+    FOR EACH ROW EXECUTE FUNCTION bump_version();
+
+CREATE OR REPLACE FUNCTION bump_linked_versions() RETURNS trigger AS $$
+BEGIN
+    UPDATE orders SET version = version + 1 WHERE id IN (SELECT order_id FROM changed_links);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS orders_products_insert_bump_versions ON orders_products;
+CREATE TRIGGER orders_products_insert_bump_versions AFTER INSERT ON orders_products
+    REFERENCING NEW TABLE AS changed_links
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_linked_versions();
+DROP TRIGGER IF EXISTS orders_products_delete_bump_versions ON orders_products;
+CREATE TRIGGER orders_products_delete_bump_versions AFTER DELETE ON orders_products
+    REFERENCING OLD TABLE AS changed_links
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_linked_versions();
+
+CREATE OR REPLACE FUNCTION bump_order_user_versions() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        UPDATE users SET version = version + 1 WHERE id = OLD.user_id;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        UPDATE users SET version = version + 1 WHERE id = NEW.user_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS orders_bump_user_versions ON orders;
+CREATE TRIGGER orders_bump_user_versions AFTER INSERT OR DELETE ON orders
+    FOR EACH ROW EXECUTE FUNCTION bump_order_user_versions();
+DROP TRIGGER IF EXISTS orders_user_change_bump_user_versions ON orders;
+CREATE TRIGGER orders_user_change_bump_user_versions AFTER UPDATE OF user_id ON orders
+    FOR EACH ROW WHEN (OLD.user_id IS DISTINCT FROM NEW.user_id) EXECUTE FUNCTION bump_order_user_versions();
+
+CREATE OR REPLACE FUNCTION bump_product_order_versions() RETURNS trigger AS $$
+BEGIN
+    UPDATE orders SET version = version + 1
+    WHERE id IN (SELECT order_id FROM orders_products WHERE product_id = NEW.id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS products_change_bump_order_versions ON products;
+CREATE TRIGGER products_change_bump_order_versions AFTER UPDATE OF name, price ON products
+    FOR EACH ROW WHEN (OLD.name IS DISTINCT FROM NEW.name OR OLD.price IS DISTINCT FROM NEW.price)
+    EXECUTE FUNCTION bump_product_order_versions();
+
+CREATE OR REPLACE FUNCTION bump_user_order_versions() RETURNS trigger AS $$
+BEGIN
+    UPDATE orders SET version = version + 1 WHERE user_id = NEW.id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS users_change_bump_order_versions ON users;
+CREATE TRIGGER users_change_bump_order_versions AFTER UPDATE OF name, email ON users
+    FOR EACH ROW WHEN (OLD.name IS DISTINCT FROM NEW.name OR OLD.email IS DISTINCT FROM NEW.email)
+    EXECUTE FUNCTION bump_user_order_versions();
+
+COMMIT;
@@ -0,0 +1,6 @@
+CREATE OR REPLACE FUNCTION bump_linked_versions() RETURNS trigger AS $$
+BEGIN
+    UPDATE orders SET version = version + 1 WHERE id IN (SELECT order_id FROM changed_links);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,133 @@
+BEGIN;
+
+LOCK TABLE users, products, orders, orders_products IN SHARE ROW EXCLUSIVE MODE;
+
+CREATE TABLE IF NOT EXISTS order_summary (
+    order_id BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    user_name VARCHAR(255) NOT NULL,
+    user_email VARCHAR(255) NOT NULL,
+    line_count INTEGER NOT NULL,
+    total_price DECIMAL(12, 2) NOT NULL,
+    product_ids BIGINT[] NOT NULL,
+    CONSTRAINT fk_summary_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE
+);
+
+CREATE OR REPLACE FUNCTION refresh_order_summary(order_ids BIGINT[]) RETURNS void AS $$
+BEGIN
+    PERFORM 1 FROM orders WHERE id = ANY(order_ids) ORDER BY id FOR UPDATE;
+
+    INSERT INTO order_summary (order_id, user_id, user_name, user_email, line_count, total_price, product_ids)
+    SELECT o.id, u.id, u.name, u.email,
+           count(p.id),
+           coalesce(sum(p.price), 0),
+           coalesce(array_agg(p.id ORDER BY p.id) FILTER (WHERE p.id IS NOT NULL), '{}')
+    FROM orders o
+    JOIN users u ON o.user_id = u.id
+    LEFT JOIN orders_products op ON o.id = op.order_id
+    LEFT JOIN products p ON op.product_id = p.id
+    WHERE o.id = ANY(order_ids)
+    GROUP BY o.id, u.id
+    ON CONFLICT (order_id) DO UPDATE SET
+        user_id = EXCLUDED.user_id,
+        user_name = EXCLUDED.user_name,
+        user_email = EXCLUDED.user_email,
+        line_count = EXCLUDED.line_count,
+        total_price = EXCLUDED.total_price,
+        product_ids = EXCLUDED.product_ids;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION refresh_summaries_for_new_orders() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT id FROM changed_orders));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS orders_insert_refresh_summary ON orders;
+CREATE TRIGGER orders_insert_refresh_summary AFTER INSERT ON orders
+    REFERENCING NEW TABLE AS changed_orders
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_summaries_for_new_orders();
+
+CREATE OR REPLACE FUNCTION refresh_summary_for_order() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY[NEW.id]);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS orders_user_change_refresh_summary ON orders;
+CREATE TRIGGER orders_user_change_refresh_summary AFTER UPDATE OF user_id ON orders
+    FOR EACH ROW WHEN (OLD.user_id IS DISTINCT FROM NEW.user_id) EXECUTE FUNCTION refresh_summary_for_order();
+
+CREATE OR REPLACE FUNCTION refresh_summaries_for_links() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT DISTINCT order_id FROM changed_links));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS orders_products_insert_refresh_summary ON orders_products;
+CREATE TRIGGER orders_products_insert_refresh_summary AFTER INSERT ON orders_products
+    REFERENCING NEW TABLE AS changed_links
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_summaries_for_links();
+DROP TRIGGER IF EXISTS orders_products_delete_refresh_summary ON orders_products;
+CREATE TRIGGER orders_products_delete_refresh_summary AFTER DELETE ON orders_products
+    REFERENCING OLD TABLE AS changed_links
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_summaries_for_links();
+
+CREATE OR REPLACE FUNCTION refresh_all_order_summaries() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT id FROM orders));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS orders_products_truncate_refresh_summary ON orders_products;
+CREATE TRIGGER orders_products_truncate_refresh_summary AFTER TRUNCATE ON orders_products
+    FOR EACH STATEMENT EXECUTE FUNCTION refresh_all_order_summaries();
+
+CREATE OR REPLACE FUNCTION refresh_summaries_for_product() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT order_id FROM orders_products WHERE product_id = NEW.id));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS products_change_refresh_summary ON products;
+CREATE TRIGGER products_change_refresh_summary AFTER UPDATE OF price ON products
+    FOR EACH ROW WHEN (OLD.price IS DISTINCT FROM NEW.price)
+    EXECUTE FUNCTION refresh_summaries_for_product();
+
+CREATE OR REPLACE FUNCTION refresh_summaries_for_user() RETURNS trigger AS $$
+BEGIN
+    PERFORM refresh_order_summary(ARRAY(SELECT id FROM orders WHERE user_id = NEW.id));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS users_change_refresh_summary ON users;
+CREATE TRIGGER users_change_refresh_summary AFTER UPDATE OF name, email ON users
+    FOR EACH ROW WHEN (OLD.name IS DISTINCT FROM NEW.name OR OLD.email IS DISTINCT FROM NEW.email)
+    EXECUTE FUNCTION refresh_summaries_for_user();
+
+INSERT INTO order_summary (order_id, user_id, user_name, user_email, line_count, total_price, product_ids)
+SELECT o.id, u.id, u.name, u.email,
+       count(p.id),
+       coalesce(sum(p.price), 0),
+       coalesce(array_agg(p.id ORDER BY p.id) FILTER (WHERE p.id IS NOT NULL), '{}')
+FROM orders o
+JOIN users u ON o.user_id = u.id
+LEFT JOIN orders_products op ON o.id = op.order_id
+LEFT JOIN products p ON op.product_id = p.id
+GROUP BY o.id, u.id
+ON CONFLICT (order_id) DO UPDATE SET
+    user_id = EXCLUDED.user_id,
+    user_name = EXCLUDED.user_name,
+    user_email = EXCLUDED.user_email,
+    line_count = EXCLUDED.line_count,
+    total_price = EXCLUDED.total_price,
+    product_ids = EXCLUDED.product_ids;
+
+COMMIT;
@@ -0,0 +1,198 @@
+package productstore.cache;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import productstore.db.DataBaseUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CacheInvalidationListener implements AutoCloseable {
+
+    public static final String CHANNEL = "productstore_changes";
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationListener.class);
+    private static final String FLUSH_MARKER = "*";
+
+    private final EntityCaches caches;
+    private final ExistenceFilters filters;
+    private final ProductCatalog catalog;
+    private final Duration pollTimeout;
+    private final Duration reconnectDelay;
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final CompletableFuture<Void> firstConnect = new CompletableFuture<>();
+
+    private volatile boolean running;
+    private volatile boolean listening;
+    private volatile int backendPid;
+    private Thread thread;
+
+    public CacheInvalidationListener(EntityCaches caches, Duration pollTimeout, Duration reconnectDelay) {
+        this(caches, ExistenceFilters.disabled(), ProductCatalog.disabled(), pollTimeout, reconnectDelay);
+    }
+
+    public CacheInvalidationListener(EntityCaches caches, ExistenceFilters filters, ProductCatalog catalog,
+                                     Duration pollTimeout, Duration reconnectDelay) {
+        this.caches = caches;
+        this.filters = filters;
+        this.catalog = catalog;
+        this.pollTimeout = pollTimeout;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = Thread.ofPlatform().name("cache-invalidation-listener").daemon().start(this::run);
+    }
+
+    public void whenListening(Runnable action) {
+        firstConnect.thenRun(action);
+    }
+
+    public boolean isListening() {
+        return listening;
+    }
+
+    int getBackendPid() {
+        return backendPid;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("listening", listening);
+        snapshot.put("notifications", notifications.sum());
+        snapshot.put("flushes", flushes.sum());
+        snapshot.put("reconnects", reconnects.sum());
+        return snapshot;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(pollTimeout.multipliedBy(2).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection connection = DataBaseUtil.openDedicatedConnection()) {
+                listen(connection);
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    logger.warn("Cache invalidation channel lost, reconnecting in {} ms", reconnectDelay.toMillis(), e);
+                }
+            } finally {
+                listening = false;
+                filters.listenerDisconnected();
+                catalog.listenerDisconnected();
+            }
+            if (running) {
+                reconnects.increment();
+                pause();
+            }
+        }
+    }
+
+    private void listen(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("LISTEN " + CHANNEL);
+        }
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        backendPid = pgConnection.getBackendPID();
+        filters.listenerConnected();
+        flush();
+        catalog.listenerConnected();
+        listening = true;
+        firstConnect.complete(null);
+
+        int timeoutMillis = (int) pollTimeout.toMillis();
+        int validationSeconds = Math.max(1, timeoutMillis / 1000);
+        while (running) {
+            PGNotification[] received = pgConnection.getNotifications(timeoutMillis);
+            if (received == null || received.length == 0) {
+                if (!connection.isValid(validationSeconds)) {
+                    throw new SQLException("Соединение для LISTEN " + CHANNEL + " потеряно.");
+                }
+                continue;
+            }
+            for (PGNotification notification : received) {
+                notifications.increment();
+                apply(notification.getParameter());
+            }
+        }
+    }
+
+    void apply(String payload) {
+        String[] parts = payload.split(":");
+        if (parts.length < 2 || FLUSH_MARKER.equals(parts[1])) {
+            flush();
+            return;
+        }
+        try {
+            long id = Long.parseLong(parts[1]);
+            switch (parts[0]) {
+                case "products" -> {
+                    filters.addProduct(id);
+                    catalog.remove(id);
+                    caches.invalidateProduct(id);
+                }
+                case "users" -> {
+                    filters.addUser(id);
+                    caches.invalidateUser(id);
+                }
+                case "orders" -> {
+                    filters.addOrder(id);
+                    caches.invalidateOrder(id);
+                    caches.users().invalidate(Long.parseLong(parts[2]));
+                }
+                case "orders_products" -> {
+                    long productId = Long.parseLong(parts[2]);
+                    caches.orders().invalidate(id);
+                    catalog.remove(productId);
+                    caches.products().invalidate(productId);
+                }
+                default -> flush();
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        caches.invalidateAll();
+        catalog.invalidateAll();
+        catalog.rebuildAsync();
+        filters.rebuildAllAsync();
+        flushes.increment();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(reconnectDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package productstore.cache;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import productstore.config.Readiness;
+import productstore.dao.util.DaoUtils;
+import productstore.db.DataBaseUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+    private static final int DEFAULT_PREPARE_THRESHOLD = 5;
+
+    private final int parallelism;
+    private final int batchSize;
+    private final Duration maxDuration;
+    private final List<String> primedQueries;
+    private final List<Target<?>> targets = new ArrayList<>();
+    private ConnectionSource connectionSource = DataBaseUtil::getConnection;
+    private int connectionLimit = -1;
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder primedConnections = new LongAdder();
+    private final LongAdder primedStatements = new LongAdder();
+
+    private volatile boolean finished;
+    private volatile boolean timedOut;
+    private volatile long durationMillis;
+    private Thread thread;
+
+    public CacheWarmer(int parallelism, int batchSize, Duration maxDuration, List<String> primedQueries) {
+        this.parallelism = Math.max(1, parallelism);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDuration = maxDuration;
+        this.primedQueries = primedQueries;
+    }
+
+    public <V> CacheWarmer add(String name, EntityCache<V> cache, EntityLoader<V> loader, HotIdSource hotIds, int limit) {
+        targets.add(new Target<>(name, cache, loader, hotIds, limit));
+        return this;
+    }
+
+    public CacheWarmer primeConnectionsFrom(ConnectionSource connectionSource, int connectionLimit) {
+        this.connectionSource = connectionSource;
+        this.connectionLimit = Math.max(1, connectionLimit);
+        return this;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        Readiness.markNotReady("warm-up");
+        thread = Thread.ofPlatform().name("cache-warm-up").daemon().start(() -> {
+            run();
+            Readiness.markReady(timedOut ? "warm-up timed out" : "warmed up");
+        });
+    }
+
+    public void run() {
+        long started = System.nanoTime();
+        long deadline = started + maxDuration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("cache-warm-up-", 0).daemon().factory());
+        try {
+            await(List.of(executor.submit(() -> {
+                primeConnections();
+                return null;
+            })), deadline);
+
+            List<Future<?>> batches = new ArrayList<>();
+            for (Target<?> target : targets) {
+                if (System.nanoTime() >= deadline) {
+                    timedOut = true;
+                    break;
+                }
+                List<Long> ids = target.hotIds().load(target.limit());
+                for (int from = 0; from < ids.size(); from += batchSize) {
+                    List<Long> batch = ids.subList(from, Math.min(ids.size(), from + batchSize));
+                    batches.add(executor.submit(() -> load(target, batch, deadline)));
+                }
+            }
+            await(batches, deadline);
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Cache warm-up failed, continuing with cold caches", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            durationMillis = (System.nanoTime() - started) / 1_000_000;
+            finished = true;
+            logger.info("Cache warm-up finished in {} ms: {} entries loaded, {} failed, timed out: {}",
+                    durationMillis, loaded.sum(), failed.sum(), timedOut);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("finished", finished);
+        snapshot.put("timedOut", timedOut);
+        snapshot.put("durationMillis", durationMillis);
+        snapshot.put("loaded", loaded.sum());
+        snapshot.put("failed", failed.sum());
+        snapshot.put("primedConnections", primedConnections.sum());
+        snapshot.put("primedStatements", primedStatements.sum());
+        return snapshot;
+    }
+
+    private void primeConnections() throws SQLException {
+        if (primedQueries.isEmpty()) {
+            return;
+        }
+        List<Connection> connections = new ArrayList<>();
+        try {
+            int limit = connectionLimit > 0 ? connectionLimit : DataBaseUtil.getAvailableConnections();
+            for (int i = 0; i < limit; i++) {
+                try {
+                    connections.add(connectionSource.getConnection());
+                } catch (SQLException e) {
+                    logger.warn("Borrowed {} of {} connections for statement priming", connections.size(), limit, e);
+                    break;
+                }
+            }
+            for (Connection connection : connections) {
+                primeStatements(connection);
+                primedConnections.increment();
+            }
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    private void primeStatements(Connection connection) throws SQLException {
+        int executions = prepareThreshold(connection);
+        for (String sql : primedQueries) {
+            for (int i = 0; i < executions; i++) {
+                try (PreparedStatement stmt = DaoUtils.prepareStatement(connection, sql)) {
+                    stmt.setLong(1, -1L);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        rs.next();
+                    }
+                }
+            }
+            primedStatements.increment();
+        }
+    }
+
+    private static int prepareThreshold(Connection connection) throws SQLException {
+        if (connection.isWrapperFor(PGConnection.class)) {
+            return Math.max(1, connection.unwrap(PGConnection.class).getPrepareThreshold());
+        }
+        return DEFAULT_PREPARE_THRESHOLD;
+    }
+
+    private <V> void load(Target<V> target, List<Long> ids, long deadline) {
+        for (long id : ids) {
+            if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                target.cache().get(id, target.loader());
+                loaded.increment();
+            } catch (SQLException | RuntimeException e) {
+                failed.increment();
+                logger.debug("Warm-up of {} {} failed", target.name(), id, e);
+            }
+        }
+    }
+
+    private void await(List<Future<?>> futures, long deadline) throws InterruptedException {
+        for (Future<?> future : futures) {
+            long remaining = deadline - System.nanoTime();
+            try {
+                future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                timedOut = true;
+                futures.forEach(pending -> pending.cancel(true));
+                return;
+            } catch (ExecutionException e) {
+                failed.increment();
+                logger.warn("Cache warm-up step failed", e.getCause());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection getConnection() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface HotIdSource {
+        List<Long> load(int limit) throws SQLException;
+    }
+
+    private record Target<V>(String name, EntityCache<V> cache, EntityLoader<V> loader, HotIdSource hotIds, int limit) {
+    }
+}
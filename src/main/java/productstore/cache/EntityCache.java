@@ -0,0 +1,330 @@
+package productstore.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import productstore.config.AppConfig;
+import productstore.db.ConnectionPermits;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+public class EntityCache<V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityCache.class);
+    private static final Semaphore REFRESH_SLOTS = new Semaphore((int) Math.max(1, AppConfig.getLong("cache.refresh.maxConcurrent", 4)));
+
+    private final Cache<Long, Stamped<V>> cache;
+    private final Ticker ticker;
+    private final long ttlNanos;
+    private final long whileRevalidateNanos;
+    private final long ifErrorNanos;
+    private final long failureBackoffNanos;
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Loading<V>> loading = new ConcurrentHashMap<>();
+    private final List<ReferenceIndex<V>> indexes = new CopyOnWriteArrayList<>();
+    private final LongAdder staleWhileRevalidate = new LongAdder();
+    private final LongAdder staleIfError = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder refreshesDropped = new LongAdder();
+    private volatile long lastFailureNanos;
+    private volatile boolean failing;
+
+    public EntityCache(long maximumWeight, Duration ttl, ToIntFunction<V> weigher) {
+        this(maximumWeight, ttl, StalenessPolicy.NONE, weigher);
+    }
+
+    public EntityCache(long maximumWeight, Duration ttl, StalenessPolicy staleness, ToIntFunction<V> weigher) {
+        this(maximumWeight, ttl, staleness, weigher, Ticker.systemTicker());
+    }
+
+    EntityCache(long maximumWeight, Duration ttl, StalenessPolicy staleness, ToIntFunction<V> weigher, Ticker ticker) {
+        this.ticker = ticker;
+        this.ttlNanos = ttl.toNanos();
+        this.whileRevalidateNanos = staleness.whileRevalidate().toNanos();
+        this.ifErrorNanos = staleness.ifError().toNanos();
+        this.failureBackoffNanos = staleness.failureBackoff().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Long id, Stamped<V> stamped) -> weigher.applyAsInt(stamped.value()))
+                .expireAfterWrite(ttl.plus(staleness.retention()))
+                .evictionListener((Long id, Stamped<V> stamped, RemovalCause cause) -> unindex(id, stamped))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    public V get(long id, EntityLoader<V> loader) throws SQLException {
+        Stamped<V> cached = cache.getIfPresent(id);
+        if (cached != null) {
+            long age = ageOf(cached);
+            if (age <= ttlNanos) {
+                return cached.value();
+            }
+            if (age <= ttlNanos + whileRevalidateNanos) {
+                staleWhileRevalidate.increment();
+                StaleReads.record(Duration.ofNanos(age), false);
+                refreshAsync(id, cached, loader);
+                return cached.value();
+            }
+            if (age <= ttlNanos + ifErrorNanos && isFailing()) {
+                return serveStaleOnError(id, cached, loader);
+            }
+        }
+
+        try {
+            Stamped<V> loaded = load(id, loader);
+            failing = false;
+            return loaded.value();
+        } catch (SQLException e) {
+            recordFailure();
+            if (cached != null && ageOf(cached) <= ttlNanos + ifErrorNanos) {
+                return fallBack(cached);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            if (cached != null) {
+                remove(id, cached);
+            }
+            throw e;
+        }
+    }
+
+    public <T> T loadOrStale(long id, EntityLoader<T> loader, Function<V, T> fromCached) throws SQLException {
+        Stamped<V> cached = cache.policy().getIfPresentQuietly(id);
+        if (cached != null && isFailing() && ageOf(cached) <= ttlNanos + ifErrorNanos) {
+            return fromCached.apply(fallBack(cached));
+        }
+        try {
+            T loaded = loader.load(id);
+            failing = false;
+            return loaded;
+        } catch (SQLException e) {
+            recordFailure();
+            cached = cache.policy().getIfPresentQuietly(id);
+            if (cached == null || ageOf(cached) > ttlNanos + ifErrorNanos) {
+                throw e;
+            }
+            return fromCached.apply(fallBack(cached));
+        }
+    }
+
+    public V getIfPresent(long id) {
+        Stamped<V> stamped = cache.getIfPresent(id);
+        return stamped == null ? null : stamped.value();
+    }
+
+    public void put(long id, V value) {
+        Stamped<V> stamped = new Stamped<>(value, ticker.read());
+        cache.asMap().compute(id, (key, current) -> swap(key, current, stamped));
+    }
+
+    public void invalidate(long id) {
+        Loading<V> inFlight = loading.get(id);
+        if (inFlight != null) {
+            inFlight.invalidated = true;
+        }
+        cache.asMap().computeIfPresent(id, (key, current) -> swap(key, current, null));
+    }
+
+    public void invalidateAll() {
+        loading.values().forEach(inFlight -> inFlight.invalidated = true);
+        indexes.forEach(ReferenceIndex::clear);
+        cache.invalidateAll();
+    }
+
+    ReferenceIndex<V> index(Function<V, Collection<Long>> references) {
+        ReferenceIndex<V> index = new ReferenceIndex<>(references);
+        indexes.add(index);
+        return index;
+    }
+
+    void invalidateReferencing(ReferenceIndex<V> index, long reference) {
+        for (long id : index.drain(reference)) {
+            invalidate(id);
+        }
+    }
+
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    public Map<String, Object> snapshot() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("hits", stats.hitCount());
+        snapshot.put("misses", stats.missCount());
+        snapshot.put("hitRate", stats.hitRate());
+        snapshot.put("evictions", stats.evictionCount());
+        snapshot.put("size", cache.estimatedSize());
+        cache.policy().eviction().ifPresent(eviction ->
+                eviction.weightedSize().ifPresent(weight -> snapshot.put("weight", weight)));
+        snapshot.put("staleWhileRevalidate", staleWhileRevalidate.sum());
+        snapshot.put("staleIfError", staleIfError.sum());
+        snapshot.put("refreshes", refreshes.sum());
+        snapshot.put("refreshFailures", refreshFailures.sum());
+        snapshot.put("refreshesDropped", refreshesDropped.sum());
+        snapshot.put("failing", isFailing());
+        return snapshot;
+    }
+
+    private V serveStaleOnError(long id, Stamped<V> cached, EntityLoader<V> loader) {
+        refreshAsync(id, cached, loader);
+        return fallBack(cached);
+    }
+
+    private V fallBack(Stamped<V> cached) {
+        long age = ageOf(cached);
+        if (age > ttlNanos) {
+            staleIfError.increment();
+            StaleReads.record(Duration.ofNanos(age), true);
+        }
+        return cached.value();
+    }
+
+    private void refreshAsync(long id, Stamped<V> stale, EntityLoader<V> loader) {
+        if (!refreshing.add(id)) {
+            return;
+        }
+        if (!REFRESH_SLOTS.tryAcquire()) {
+            dropRefresh(id);
+            return;
+        }
+        ConnectionPermits.Reservation permit = ConnectionPermits.tryReserve();
+        if (permit == null) {
+            REFRESH_SLOTS.release();
+            dropRefresh(id);
+            return;
+        }
+        Thread.ofVirtual().name("entity-cache-refresh-" + id).start(() -> {
+            try (permit) {
+                Stamped<V> fresh = new Stamped<>(loader.load(id), ticker.read());
+                failing = false;
+                refreshes.increment();
+                cache.asMap().computeIfPresent(id, (key, current) -> current.equals(stale) ? swap(key, current, fresh) : current);
+            } catch (SQLException e) {
+                recordFailure();
+                refreshFailures.increment();
+                logger.debug("Background refresh of cached entity {} failed", id, e);
+            } catch (RuntimeException e) {
+                remove(id, stale);
+                refreshFailures.increment();
+            } finally {
+                REFRESH_SLOTS.release();
+                refreshing.remove(id);
+            }
+        });
+    }
+
+    private void dropRefresh(long id) {
+        refreshesDropped.increment();
+        refreshing.remove(id);
+    }
+
+    private void remove(long id, Stamped<V> expected) {
+        cache.asMap().computeIfPresent(id, (key, current) -> current.equals(expected) ? swap(key, current, null) : current);
+    }
+
+    private Stamped<V> swap(long id, Stamped<V> current, Stamped<V> replacement) {
+        unindex(id, current);
+        if (replacement != null) {
+            for (ReferenceIndex<V> index : indexes) {
+                index.add(id, replacement.value());
+            }
+        }
+        return replacement;
+    }
+
+    private void unindex(long id, Stamped<V> stamped) {
+        if (stamped != null) {
+            for (ReferenceIndex<V> index : indexes) {
+                index.remove(id, stamped.value());
+            }
+        }
+    }
+
+    private Stamped<V> load(long id, EntityLoader<V> loader) throws SQLException {
+        Loading<V> mine = new Loading<>();
+        Loading<V> inFlight = loading.putIfAbsent(id, mine);
+        if (inFlight != null) {
+            return inFlight.await(id);
+        }
+        try {
+            Stamped<V> observed = cache.policy().getIfPresentQuietly(id);
+            if (observed != null && ageOf(observed) <= ttlNanos) {
+                mine.result.complete(observed);
+                return observed;
+            }
+            Stamped<V> loaded = new Stamped<>(loader.load(id), ticker.read());
+            cache.asMap().compute(id, (key, current) ->
+                    mine.invalidated || current != observed ? current : swap(key, current, loaded));
+            mine.result.complete(loaded);
+            return loaded;
+        } catch (Throwable e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(id, mine);
+        }
+    }
+
+    private long ageOf(Stamped<V> stamped) {
+        return ticker.read() - stamped.loadedAt();
+    }
+
+    private void recordFailure() {
+        lastFailureNanos = ticker.read();
+        failing = true;
+    }
+
+    private boolean isFailing() {
+        return failing && ticker.read() - lastFailureNanos < failureBackoffNanos;
+    }
+
+    private record Stamped<V>(V value, long loadedAt) {
+    }
+
+    private static final class Loading<V> {
+        private final CompletableFuture<Stamped<V>> result = new CompletableFuture<>();
+        private volatile boolean invalidated;
+
+        private Stamped<V> await(long id) throws SQLException {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Ожидание загрузки сущности " + id + " прервано.", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sqlException) {
+                    throw sqlException;
+                }
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package productstore.cache;
+
+import productstore.config.AppConfig;
+import productstore.metrics.MetricsRegistry;
+import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.ProductOutputDTO;
+import productstore.servlet.dto.output.UserOutputDTO;
+
+import java.util.Collection;
+import java.util.List;
+
+public class EntityCaches {
+
+    private static final EntityCaches SHARED = new EntityCaches(
+            new EntityCache<>(AppConfig.getLong("cache.products.maxWeight", 100_000),
+                    AppConfig.getSeconds("cache.products.ttlSeconds", 300),
+                    StalenessPolicy.fromConfig("products", 30, 600), EntityCaches::weighProduct),
+            new EntityCache<>(AppConfig.getLong("cache.users.maxWeight", 50_000),
+                    AppConfig.getSeconds("cache.users.ttlSeconds", 300),
+                    StalenessPolicy.fromConfig("users", 30, 600), EntityCaches::weighUser),
+            new EntityCache<>(AppConfig.getLong("cache.orders.maxWeight", 50_000),
+                    AppConfig.getSeconds("cache.orders.ttlSeconds", 120),
+                    StalenessPolicy.fromConfig("orders", 10, 300), EntityCaches::weighOrder));
+
+    private final EntityCache<ProductOutputDTO> products;
+    private final EntityCache<UserOutputDTO> users;
+    private final EntityCache<OrderOutputDTO> orders;
+    private final ReferenceIndex<ProductOutputDTO> productsByOrder;
+    private final ReferenceIndex<UserOutputDTO> usersByOrder;
+    private final ReferenceIndex<OrderOutputDTO> ordersByProduct;
+    private final ReferenceIndex<OrderOutputDTO> ordersByUser;
+
+    public EntityCaches(EntityCache<ProductOutputDTO> products, EntityCache<UserOutputDTO> users, EntityCache<OrderOutputDTO> orders) {
+        this.products = products;
+        this.users = users;
+        this.orders = orders;
+        this.productsByOrder = products.index(ProductOutputDTO::getOrderIds);
+        this.usersByOrder = users.index(UserOutputDTO::getOrderIds);
+        this.ordersByProduct = orders.index(EntityCaches::productIdsOf);
+        this.ordersByUser = orders.index(order -> order.getUser() == null ? null : List.of(order.getUser().getId()));
+    }
+
+    public static EntityCaches shared() {
+        return SHARED;
+    }
+
+    public static void registerMetrics() {
+        MetricsRegistry.register("cache.products", SHARED.products::snapshot);
+        MetricsRegistry.register("cache.users", SHARED.users::snapshot);
+        MetricsRegistry.register("cache.orders", SHARED.orders::snapshot);
+    }
+
+    public EntityCache<ProductOutputDTO> products() {
+        return products;
+    }
+
+    public EntityCache<UserOutputDTO> users() {
+        return users;
+    }
+
+    public EntityCache<OrderOutputDTO> orders() {
+        return orders;
+    }
+
+    public void invalidateProduct(long productId) {
+        products.invalidate(productId);
+        orders.invalidateReferencing(ordersByProduct, productId);
+    }
+
+    public void invalidateUser(long userId) {
+        users.invalidate(userId);
+        orders.invalidateReferencing(ordersByUser, userId);
+    }
+
+    public void invalidateOrder(long orderId) {
+        orders.invalidate(orderId);
+        products.invalidateReferencing(productsByOrder, orderId);
+        users.invalidateReferencing(usersByOrder, orderId);
+    }
+
+    public void invalidateProducts(Collection<Long> productIds) {
+        productIds.forEach(products::invalidate);
+    }
+
+    public void invalidateAll() {
+        products.invalidateAll();
+        users.invalidateAll();
+        orders.invalidateAll();
+    }
+
+    private static List<Long> productIdsOf(OrderOutputDTO order) {
+        return order.getProducts() == null ? null : order.getProducts().stream().map(ProductOutputDTO::getId).toList();
+    }
+
+    private static int weighProduct(ProductOutputDTO product) {
+        return 1 + sizeOf(product.getOrderIds());
+    }
+
+    private static int weighUser(UserOutputDTO user) {
+        return 1 + sizeOf(user.getOrderIds());
+    }
+
+    private static int weighOrder(OrderOutputDTO order) {
+        return 1 + sizeOf(order.getProducts());
+    }
+
+    private static int sizeOf(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+}
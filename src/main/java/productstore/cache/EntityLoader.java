@@ -0,0 +1,8 @@
+package productstore.cache;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface EntityLoader<V> {
+    V load(long id) throws SQLException;
+}
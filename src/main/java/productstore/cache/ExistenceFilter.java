@@ -0,0 +1,156 @@
+package productstore.cache;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+public class ExistenceFilter {
+
+    private final IdSource source;
+    private final long minCapacity;
+    private final double falsePositiveRate;
+    private final AtomicLong highestId = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder beyondHighest = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder rebuildFailures = new LongAdder();
+
+    private final Object swapLock = new Object();
+
+    private volatile BloomFilter current;
+    private IdBuffer pending;
+    private volatile long lastRebuildMillis;
+    private volatile long lastRebuildIds;
+
+    public ExistenceFilter(IdSource source, long minCapacity, double falsePositiveRate) {
+        this.source = source;
+        this.minCapacity = Math.max(1, minCapacity);
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public boolean mightContain(long id) {
+        BloomFilter filter = current;
+        if (filter == null || filter.mightContain(id)) {
+            passed.increment();
+            return true;
+        }
+        if (id > highestId.get()) {
+            beyondHighest.increment();
+            passed.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void put(long id) {
+        highestId.accumulateAndGet(id, Math::max);
+        synchronized (swapLock) {
+            if (current != null) {
+                current.put(id);
+            }
+            if (pending != null) {
+                pending.accept(id);
+            }
+        }
+    }
+
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    public boolean isSaturated() {
+        BloomFilter filter = current;
+        return filter != null && filter.getInsertions() > filter.getCapacity();
+    }
+
+    public synchronized void rebuild() throws SQLException {
+        long started = System.nanoTime();
+        synchronized (swapLock) {
+            pending = new IdBuffer();
+        }
+        IdBuffer ids = new IdBuffer();
+        try {
+            source.streamIds(ids);
+        } catch (SQLException | RuntimeException e) {
+            synchronized (swapLock) {
+                pending = null;
+            }
+            rebuildFailures.increment();
+            throw e;
+        }
+        BloomFilter next = new BloomFilter(Math.max(minCapacity, ids.size * 2L), falsePositiveRate);
+        ids.forEach(next);
+        synchronized (swapLock) {
+            pending.forEach(next);
+            pending = null;
+            current = next;
+        }
+        highestId.accumulateAndGet(ids.max, Math::max);
+        rebuilds.increment();
+        lastRebuildIds = ids.size;
+        lastRebuildMillis = (System.nanoTime() - started) / 1_000_000;
+    }
+
+    public Map<String, Object> snapshot() {
+        BloomFilter filter = current;
+        long passedCount = passed.sum();
+        long falsePositiveCount = falsePositives.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("ready", filter != null);
+        snapshot.put("rejected", rejected.sum());
+        snapshot.put("passed", passedCount);
+        snapshot.put("falsePositives", falsePositiveCount);
+        snapshot.put("falsePositiveRate", passedCount == 0 ? 0.0 : (double) falsePositiveCount / passedCount);
+        snapshot.put("beyondHighestId", beyondHighest.sum());
+        snapshot.put("highestId", highestId.get());
+        snapshot.put("rebuilds", rebuilds.sum());
+        snapshot.put("rebuildFailures", rebuildFailures.sum());
+        snapshot.put("lastRebuildMillis", lastRebuildMillis);
+        snapshot.put("lastRebuildIds", lastRebuildIds);
+        if (filter != null) {
+            snapshot.put("capacity", filter.getCapacity());
+            snapshot.put("insertions", filter.getInsertions());
+            snapshot.put("bits", filter.getBitCount());
+            snapshot.put("hashFunctions", filter.getHashFunctions());
+            snapshot.put("expectedFalsePositiveRate", filter.expectedFalsePositiveRate());
+        }
+        return snapshot;
+    }
+
+    @FunctionalInterface
+    public interface IdSource {
+        void streamIds(LongConsumer consumer) throws SQLException;
+    }
+
+    private static class IdBuffer implements LongConsumer {
+        private long[] values = new long[1024];
+        private int size;
+        private long max = Long.MIN_VALUE;
+
+        @Override
+        public void accept(long id) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = id;
+            max = Math.max(max, id);
+        }
+
+        private void forEach(BloomFilter filter) {
+            for (int i = 0; i < size; i++) {
+                filter.put(values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package productstore.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import productstore.config.AppConfig;
+import productstore.dao.impl.OrderDaoImpl;
+import productstore.dao.impl.ProductDaoImpl;
+import productstore.dao.impl.UserDaoImpl;
+import productstore.metrics.MetricsRegistry;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ExistenceFilters {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExistenceFilters.class);
+
+    private static final ExistenceFilters SHARED = createShared();
+
+    private final ExistenceFilter products;
+    private final ExistenceFilter users;
+    private final ExistenceFilter orders;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+    private volatile boolean listening;
+    private volatile long listenerEpoch;
+    private volatile boolean enforcing;
+
+    public ExistenceFilters(ExistenceFilter products, ExistenceFilter users, ExistenceFilter orders) {
+        this.products = products;
+        this.users = users;
+        this.orders = orders;
+    }
+
+    public static ExistenceFilters shared() {
+        return SHARED;
+    }
+
+    public static ExistenceFilters disabled() {
+        return new ExistenceFilters(null, null, null);
+    }
+
+    public static void registerMetrics() {
+        if (SHARED.products != null) {
+            MetricsRegistry.register("existence", SHARED::snapshot);
+            MetricsRegistry.register("existence.products", SHARED.products::snapshot);
+            MetricsRegistry.register("existence.users", SHARED.users::snapshot);
+            MetricsRegistry.register("existence.orders", SHARED.orders::snapshot);
+        }
+    }
+
+    public boolean mightContainProduct(long id) {
+        return !enforcing || products == null || products.mightContain(id);
+    }
+
+    public boolean mightContainUser(long id) {
+        return !enforcing || users == null || users.mightContain(id);
+    }
+
+    public boolean mightContainOrder(long id) {
+        return !enforcing || orders == null || orders.mightContain(id);
+    }
+
+    public boolean isEnforcing() {
+        return enforcing;
+    }
+
+    public synchronized void listenerConnected() {
+        listenerEpoch++;
+        listening = true;
+        enforcing = false;
+    }
+
+    public synchronized void listenerDisconnected() {
+        listenerEpoch++;
+        listening = false;
+        enforcing = false;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("listening", listening);
+        snapshot.put("enforcing", enforcing);
+        return snapshot;
+    }
+
+    public void addProduct(long id) {
+        add(products, id);
+    }
+
+    public void addUser(long id) {
+        add(users, id);
+    }
+
+    public void addOrder(long id) {
+        add(orders, id);
+    }
+
+    public void productFalsePositive() {
+        recordFalsePositive(products);
+    }
+
+    public void userFalsePositive() {
+        recordFalsePositive(users);
+    }
+
+    public void orderFalsePositive() {
+        recordFalsePositive(orders);
+    }
+
+    public void rebuildAll() throws SQLException {
+        if (products == null) {
+            return;
+        }
+        long epoch = listenerEpoch;
+        boolean caughtUp = listening;
+        products.rebuild();
+        users.rebuild();
+        orders.rebuild();
+        if (caughtUp) {
+            synchronized (this) {
+                if (epoch == listenerEpoch) {
+                    enforcing = true;
+                }
+            }
+        }
+    }
+
+    public void rebuildAllAsync() {
+        if (products == null) {
+            return;
+        }
+        rebuildRequested.set(true);
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("existence-filter-rebuild").start(this::drainRebuilds);
+        }
+    }
+
+    private void drainRebuilds() {
+        try {
+            while (rebuildRequested.getAndSet(false)) {
+                try {
+                    rebuildAll();
+                } catch (SQLException | RuntimeException e) {
+                    logger.warn("Existence filter rebuild failed, lookups fall through to the database", e);
+                }
+            }
+        } finally {
+            rebuildScheduled.set(false);
+            if (rebuildRequested.get() && rebuildScheduled.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("existence-filter-rebuild").start(this::drainRebuilds);
+            }
+        }
+    }
+
+    private void add(ExistenceFilter filter, long id) {
+        if (filter != null) {
+            filter.put(id);
+            if (filter.isSaturated()) {
+                rebuildAllAsync();
+            }
+        }
+    }
+
+    private static void recordFalsePositive(ExistenceFilter filter) {
+        if (filter != null) {
+            filter.recordFalsePositive();
+        }
+    }
+
+    private static ExistenceFilters createShared() {
+        if (!AppConfig.getBoolean("existence.enabled", true)) {
+            return disabled();
+        }
+        long minCapacity = AppConfig.getLong("existence.minCapacity", 10_000);
+        double falsePositiveRate = Double.parseDouble(AppConfig.getString("existence.falsePositiveRate", "0.01"));
+        return new ExistenceFilters(
+                new ExistenceFilter(new ProductDaoImpl()::streamAllProductIds, minCapacity, falsePositiveRate),
+                new ExistenceFilter(new UserDaoImpl()::streamAllUserIds, minCapacity, falsePositiveRate),
+                new ExistenceFilter(new OrderDaoImpl()::streamAllOrderIds, minCapacity, falsePositiveRate));
+    }
+}
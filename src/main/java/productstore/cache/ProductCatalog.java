@@ -0,0 +1,601 @@
+package productstore.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import productstore.config.AppConfig;
+import productstore.dao.impl.ProductDaoImpl;
+import productstore.model.Order;
+import productstore.model.Product;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class ProductCatalog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalog.class);
+    private static final int INDEX_ENTRY_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 24;
+    private static final int REMOVAL_STRIPES = 1024;
+    private static final long TOMBSTONE = -1L;
+    private static final long MAX_MAPPING_BYTES = Integer.MAX_VALUE & ~7L;
+    private static final VarHandle OFFSETS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final ProductCatalog SHARED = createShared();
+
+    private final Path directory;
+    private final int initialBytes;
+    private final int overflowLimit;
+    private final ProductSource source;
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLongArray removedAt = new AtomicLongArray(REMOVAL_STRIPES);
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private volatile Segment segment;
+    private volatile boolean listening;
+    private volatile long flushedAt;
+    private long garbageBytes;
+
+    public ProductCatalog(Path directory, int initialBytes, int overflowLimit) {
+        this(directory, initialBytes, overflowLimit, null);
+    }
+
+    public ProductCatalog(Path directory, int initialBytes, int overflowLimit, ProductSource source) {
+        this.directory = directory;
+        this.initialBytes = Math.max(4096, initialBytes);
+        this.overflowLimit = Math.max(1, overflowLimit);
+        this.source = source;
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+                segment = Segment.create(directory, generations.incrementAndGet(), this.initialBytes, this.initialBytes / 4);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create product catalog in " + directory, e);
+            }
+        }
+    }
+
+    public static ProductCatalog shared() {
+        return SHARED;
+    }
+
+    public static ProductCatalog disabled() {
+        return new ProductCatalog(null, 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    public Entry get(long id) {
+        Segment current = segment;
+        if (current == null) {
+            return null;
+        }
+        if (!listening) {
+            bypassed.increment();
+            return null;
+        }
+        int position = current.find(id);
+        long offset = position >= 0 ? current.offsetAt(position) : current.overflow.getOrDefault(id, TOMBSTONE);
+        if (offset == TOMBSTONE) {
+            misses.increment();
+            return null;
+        }
+        if (!current.covers(offset)) {
+            Segment resized = segment;
+            if (resized == null || !resized.dataFile.equals(current.dataFile) || !resized.covers(offset)) {
+                stale.increment();
+                return null;
+            }
+            current = resized;
+        }
+        hits.increment();
+        return current.read(id, offset);
+    }
+
+    public long stamp() {
+        return changes.get();
+    }
+
+    public void put(Product product) {
+        put(product, stamp());
+    }
+
+    public synchronized void put(Product product, long stamp) {
+        if (segment == null) {
+            return;
+        }
+        long id = product.getId();
+        if (flushedAt > stamp || removedAt.get(stripe(id)) > stamp) {
+            rejected.increment();
+            return;
+        }
+        try {
+            long[] orderIds = orderIds(product);
+            int position = segment.find(id);
+            long current = position >= 0 ? segment.offsetAt(position) : segment.overflow.getOrDefault(id, TOMBSTONE);
+            if (current != TOMBSTONE && segment.holds(current, product.getVersion(), orderIds)) {
+                unchanged.increment();
+                return;
+            }
+
+            byte[] name = product.getName().getBytes(StandardCharsets.UTF_8);
+            segment = segment.ensureDataCapacity(RECORD_HEADER_BYTES + name.length + orderIds.length * Long.BYTES);
+            long offset = segment.append(product.getVersion(), product.getPrice(), name, orderIds);
+            appends.increment();
+
+            if (position >= 0) {
+                retire(segment.offsetAt(position));
+                segment.setOffset(position, offset);
+            } else if (segment.overflow.containsKey(id)) {
+                retire(segment.overflow.put(id, offset));
+            } else if (segment.count == 0 || id > segment.idAt(segment.count - 1)) {
+                segment = segment.ensureIndexCapacity(segment.count + 1);
+                segment.appendIndex(id, offset);
+            } else {
+                segment.overflow.put(id, offset);
+            }
+
+            if (segment.overflow.size() > overflowLimit || garbageBytes > segment.dataEnd / 2) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            logger.warn("Failed to write product {} to the catalog", product.getId(), e);
+        }
+    }
+
+    public synchronized void remove(long id) {
+        if (segment == null) {
+            return;
+        }
+        long change = changes.incrementAndGet();
+        removedAt.accumulateAndGet(stripe(id), change, Math::max);
+        int position = segment.find(id);
+        if (position >= 0) {
+            retire(segment.offsetAt(position));
+            segment.setOffset(position, TOMBSTONE);
+        }
+        Long offset = segment.overflow.remove(id);
+        if (offset != null) {
+            retire(offset);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        flushedAt = changes.incrementAndGet();
+        if (segment == null) {
+            return;
+        }
+        for (int position = 0; position < segment.count; position++) {
+            retire(segment.offsetAt(position));
+            segment.setOffset(position, TOMBSTONE);
+        }
+        segment.overflow.values().forEach(this::retire);
+        segment.overflow.clear();
+    }
+
+    public void listenerConnected() {
+        listening = true;
+    }
+
+    public void listenerDisconnected() {
+        listening = false;
+    }
+
+    public void rebuild(ProductSource source) throws SQLException {
+        if (directory == null) {
+            return;
+        }
+        long stamp = stamp();
+        Segment rebuilt;
+        try {
+            SegmentWriter writer = new SegmentWriter(Segment.create(directory, generations.incrementAndGet(), initialBytes, initialBytes / 4));
+            try {
+                source.streamProducts(product -> writer.write(product.getId(), product.getVersion(), product.getPrice(),
+                        product.getName().getBytes(StandardCharsets.UTF_8), orderIds(product)));
+            } catch (SQLException | RuntimeException e) {
+                writer.segment.delete();
+                throw e;
+            }
+            rebuilt = writer.segment;
+        } catch (IOException e) {
+            failures.increment();
+            throw new SQLException("Failed to rebuild product catalog", e);
+        } catch (SQLException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        }
+        synchronized (this) {
+            if (flushedAt > stamp || segment == null) {
+                rebuilt.delete();
+                return;
+            }
+            Segment previous = segment;
+            segment = rebuilt;
+            garbageBytes = 0;
+            for (int position = 0; position < rebuilt.count; position++) {
+                if (removedAt.get(stripe(rebuilt.idAt(position))) > stamp) {
+                    retire(rebuilt.offsetAt(position));
+                    rebuilt.setOffset(position, TOMBSTONE);
+                }
+            }
+            previous.delete();
+        }
+        rebuilds.increment();
+    }
+
+    public void rebuildAsync() {
+        if (directory == null || source == null) {
+            return;
+        }
+        rebuildRequested.set(true);
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("product-catalog-rebuild").start(this::drainRebuilds);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        Segment current = segment;
+        snapshot.put("enabled", current != null);
+        snapshot.put("listening", listening);
+        snapshot.put("hits", hits.sum());
+        snapshot.put("misses", misses.sum());
+        snapshot.put("bypassed", bypassed.sum());
+        snapshot.put("staleReads", stale.sum());
+        snapshot.put("appends", appends.sum());
+        snapshot.put("unchanged", unchanged.sum());
+        snapshot.put("rejected", rejected.sum());
+        snapshot.put("compactions", compactions.sum());
+        snapshot.put("rebuilds", rebuilds.sum());
+        snapshot.put("failures", failures.sum());
+        if (current != null) {
+            snapshot.put("indexedEntries", current.count);
+            snapshot.put("overflowEntries", current.overflow.size());
+            snapshot.put("dataBytes", current.dataEnd);
+            snapshot.put("mappedBytes", (long) current.data.capacity() + current.index.capacity());
+        }
+        return snapshot;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (segment != null) {
+            segment.delete();
+            segment = null;
+        }
+    }
+
+    private void drainRebuilds() {
+        try {
+            while (rebuildRequested.getAndSet(false)) {
+                try {
+                    rebuild(source);
+                } catch (SQLException | RuntimeException e) {
+                    logger.warn("Product catalog rebuild failed, reads fall through to the database", e);
+                }
+            }
+        } finally {
+            rebuildScheduled.set(false);
+            if (rebuildRequested.get() && rebuildScheduled.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("product-catalog-rebuild").start(this::drainRebuilds);
+            }
+        }
+    }
+
+    private static int stripe(long id) {
+        return (int) (id & (REMOVAL_STRIPES - 1));
+    }
+
+    private static long[] orderIds(Product product) {
+        List<Order> orders = product.getOrders();
+        if (orders == null) {
+            return new long[0];
+        }
+        long[] ids = new long[orders.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = orders.get(i).getId();
+        }
+        return ids;
+    }
+
+    private void retire(long offset) {
+        if (offset != TOMBSTONE) {
+            garbageBytes += segment.recordSize(offset);
+        }
+    }
+
+    private void compact() throws IOException {
+        Segment source = segment;
+        SegmentWriter writer = new SegmentWriter(Segment.create(directory, generations.incrementAndGet(),
+                (int) Math.min(MAX_MAPPING_BYTES, Math.max(initialBytes, source.dataEnd - garbageBytes + initialBytes)),
+                Math.max(initialBytes / 4, (source.count + source.overflow.size() + 1) * INDEX_ENTRY_BYTES)));
+        try {
+            Iterator<Map.Entry<Long, Long>> extra = source.overflow.entrySet().iterator();
+            Map.Entry<Long, Long> pending = extra.hasNext() ? extra.next() : null;
+            for (int position = 0; position < source.count; position++) {
+                long id = source.idAt(position);
+                while (pending != null && pending.getKey() < id) {
+                    writer.copy(source, pending.getKey(), pending.getValue());
+                    pending = extra.hasNext() ? extra.next() : null;
+                }
+                long offset = source.offsetAt(position);
+                if (offset != TOMBSTONE) {
+                    writer.copy(source, id, offset);
+                }
+            }
+            while (pending != null) {
+                writer.copy(source, pending.getKey(), pending.getValue());
+                pending = extra.hasNext() ? extra.next() : null;
+            }
+        } catch (IOException | RuntimeException e) {
+            writer.segment.delete();
+            throw e;
+        }
+        segment = writer.segment;
+        garbageBytes = 0;
+        source.delete();
+        compactions.increment();
+    }
+
+    private static ProductCatalog createShared() {
+        if (!AppConfig.getBoolean("catalog.enabled", false)) {
+            return disabled();
+        }
+        Path directory = Path.of(AppConfig.getString("catalog.dir",
+                Path.of(System.getProperty("java.io.tmpdir"), "productstore-catalog").toString()));
+        return new ProductCatalog(directory,
+                (int) AppConfig.getLong("catalog.initialBytes", 16L * 1024 * 1024),
+                (int) AppConfig.getLong("catalog.overflowEntries", 1024),
+                new ProductDaoImpl()::streamAllProducts);
+    }
+
+    @FunctionalInterface
+    public interface ProductSource {
+        void streamProducts(Consumer<Product> consumer) throws SQLException;
+    }
+
+    public record Entry(long id, long version, String name, double price, List<Long> orderIds) {
+
+        public Product toProduct() {
+            List<Order> orders = new ArrayList<>(orderIds.size());
+            for (Long orderId : orderIds) {
+                orders.add(new Order.Builder().withId(orderId).withProducts(new ArrayList<>()).build());
+            }
+            return new Product.Builder()
+                    .withId(id)
+                    .withName(name)
+                    .withPrice(price)
+                    .withVersion(version)
+                    .withOrders(orders)
+                    .build();
+        }
+    }
+
+    private static final class SegmentWriter {
+        private Segment segment;
+
+        private SegmentWriter(Segment segment) {
+            this.segment = segment;
+        }
+
+        private void write(long id, long version, double price, byte[] name, long[] orderIds) {
+            try {
+                segment = segment.ensureDataCapacity(RECORD_HEADER_BYTES + name.length + orderIds.length * Long.BYTES);
+                long offset = segment.append(version, price, name, orderIds);
+                segment = segment.ensureIndexCapacity(segment.count + 1);
+                segment.appendIndex(id, offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void copy(Segment source, long id, long offset) throws IOException {
+            Entry entry = source.read(id, offset);
+            write(id, entry.version(), entry.price(), entry.name().getBytes(StandardCharsets.UTF_8),
+                    entry.orderIds().stream().mapToLong(Long::longValue).toArray());
+        }
+    }
+
+    private static final class Segment {
+        private final Path dataFile;
+        private final Path indexFile;
+        private final FileChannel dataChannel;
+        private final FileChannel indexChannel;
+        private final MappedByteBuffer data;
+        private final MappedByteBuffer index;
+        private final ConcurrentSkipListMap<Long, Long> overflow;
+        private volatile int count;
+        private long dataEnd;
+
+        private Segment(Path dataFile, Path indexFile, FileChannel dataChannel, FileChannel indexChannel,
+                        ConcurrentSkipListMap<Long, Long> overflow, int dataCapacity, int indexCapacity) throws IOException {
+            this.dataFile = dataFile;
+            this.indexFile = indexFile;
+            this.dataChannel = dataChannel;
+            this.indexChannel = indexChannel;
+            this.overflow = overflow;
+            this.data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, dataCapacity);
+            this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexCapacity);
+            this.data.order(ByteOrder.nativeOrder());
+            this.index.order(ByteOrder.nativeOrder());
+        }
+
+        private static Segment create(Path directory, long generation, int dataCapacity, int indexCapacity) throws IOException {
+            Path dataFile = directory.resolve("products-" + generation + ".dat");
+            Path indexFile = directory.resolve("products-" + generation + ".idx");
+            return new Segment(dataFile, indexFile, open(dataFile), open(indexFile), new ConcurrentSkipListMap<>(),
+                    dataCapacity, Math.max(INDEX_ENTRY_BYTES, indexCapacity - indexCapacity % INDEX_ENTRY_BYTES));
+        }
+
+        private static FileChannel open(Path file) throws IOException {
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private Segment ensureDataCapacity(int bytes) throws IOException {
+            if (dataEnd + bytes <= data.capacity()) {
+                return this;
+            }
+            return resize(grow(data.capacity(), dataEnd + bytes), index.capacity());
+        }
+
+        private Segment ensureIndexCapacity(int entries) throws IOException {
+            if ((long) entries * INDEX_ENTRY_BYTES <= index.capacity()) {
+                return this;
+            }
+            return resize(data.capacity(), grow(index.capacity(), (long) entries * INDEX_ENTRY_BYTES));
+        }
+
+        private static int grow(int capacity, long required) {
+            long grown = Math.max(required, (long) capacity * 2);
+            if (required > MAX_MAPPING_BYTES) {
+                throw new IllegalStateException("Product catalog file exceeds " + MAX_MAPPING_BYTES + " bytes");
+            }
+            return (int) Math.min(MAX_MAPPING_BYTES, grown);
+        }
+
+        private Segment resize(int dataCapacity, int indexCapacity) throws IOException {
+            Segment resized = new Segment(dataFile, indexFile, dataChannel, indexChannel, overflow, dataCapacity, indexCapacity);
+            resized.dataEnd = dataEnd;
+            resized.count = count;
+            return resized;
+        }
+
+        private long append(long version, double price, byte[] name, long[] orderIds) {
+            int offset = (int) dataEnd;
+            data.putLong(offset, version);
+            data.putDouble(offset + 8, price);
+            data.putInt(offset + 16, name.length);
+            data.putInt(offset + 20, orderIds.length);
+            data.put(offset + RECORD_HEADER_BYTES, name);
+            int idsOffset = offset + RECORD_HEADER_BYTES + name.length;
+            for (int i = 0; i < orderIds.length; i++) {
+                data.putLong(idsOffset + i * Long.BYTES, orderIds[i]);
+            }
+            dataEnd += RECORD_HEADER_BYTES + name.length + (long) orderIds.length * Long.BYTES;
+            return offset;
+        }
+
+        private boolean holds(long offset, long version, long[] orderIds) {
+            int position = (int) offset;
+            if (data.getLong(position) != version || data.getInt(position + 20) != orderIds.length) {
+                return false;
+            }
+            long[] stored = storedOrderIds(position);
+            long[] expected = orderIds.clone();
+            Arrays.sort(stored);
+            Arrays.sort(expected);
+            return Arrays.equals(stored, expected);
+        }
+
+        private long[] storedOrderIds(int position) {
+            long[] ids = new long[data.getInt(position + 20)];
+            int idsOffset = position + RECORD_HEADER_BYTES + data.getInt(position + 16);
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = data.getLong(idsOffset + i * Long.BYTES);
+            }
+            return ids;
+        }
+
+        private void appendIndex(long id, long offset) {
+            int position = count;
+            index.putLong(position * INDEX_ENTRY_BYTES, id);
+            OFFSETS.setRelease(index, position * INDEX_ENTRY_BYTES + 8, offset);
+            count = position + 1;
+        }
+
+        private int find(long id) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midId = idAt(mid);
+                if (midId < id) {
+                    low = mid + 1;
+                } else if (midId > id) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        private long idAt(int position) {
+            return index.getLong(position * INDEX_ENTRY_BYTES);
+        }
+
+        private long offsetAt(int position) {
+            return (long) OFFSETS.getAcquire(index, position * INDEX_ENTRY_BYTES + 8);
+        }
+
+        private void setOffset(int position, long offset) {
+            OFFSETS.setRelease(index, position * INDEX_ENTRY_BYTES + 8, offset);
+        }
+
+        private boolean covers(long offset) {
+            return offset >= 0 && offset + RECORD_HEADER_BYTES <= data.capacity()
+                    && offset + recordSize(offset) <= data.capacity();
+        }
+
+        private int recordSize(long offset) {
+            return RECORD_HEADER_BYTES + data.getInt((int) offset + 16) + data.getInt((int) offset + 20) * Long.BYTES;
+        }
+
+        private Entry read(long id, long offset) {
+            int position = (int) offset;
+            byte[] name = new byte[data.getInt(position + 16)];
+            data.get(position + RECORD_HEADER_BYTES, name);
+            List<Long> orderIds = Arrays.stream(storedOrderIds(position)).boxed().toList();
+            return new Entry(id, data.getLong(position), new String(name, StandardCharsets.UTF_8), data.getDouble(position + 8),
+                    orderIds);
+        }
+
+        private void delete() {
+            try {
+                dataChannel.close();
+                indexChannel.close();
+                Files.deleteIfExists(dataFile);
+                Files.deleteIfExists(indexFile);
+            } catch (IOException e) {
+                logger.warn("Failed to delete catalog files {} and {}", dataFile, indexFile, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package productstore.cache;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+final class ReferenceIndex<V> {
+
+    private final Function<V, Collection<Long>> references;
+    private final ConcurrentHashMap<Long, Set<Long>> keysByReference = new ConcurrentHashMap<>();
+
+    ReferenceIndex(Function<V, Collection<Long>> references) {
+        this.references = references;
+    }
+
+    void add(long key, V value) {
+        for (Long reference : referencesOf(value)) {
+            keysByReference.compute(reference, (ref, keys) -> {
+                Set<Long> updated = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                updated.add(key);
+                return updated;
+            });
+        }
+    }
+
+    void remove(long key, V value) {
+        for (Long reference : referencesOf(value)) {
+            keysByReference.computeIfPresent(reference, (ref, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    Set<Long> drain(long reference) {
+        Set<Long> keys = keysByReference.remove(reference);
+        return keys == null ? Set.of() : keys;
+    }
+
+    void clear() {
+        keysByReference.clear();
+    }
+
+    int size() {
+        return keysByReference.size();
+    }
+
+    private Collection<Long> referencesOf(V value) {
+        Collection<Long> referenced = value == null ? null : references.apply(value);
+        return referenced == null ? Set.of() : referenced;
+    }
+}
@@ -0,0 +1,71 @@
+package productstore.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import productstore.config.AppConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class ResponseBodyCache {
+
+    private static final String IDENTITY = "identity";
+    private static final ResponseBodyCache SHARED = new ResponseBodyCache(AppConfig.getLong("cache.responses.maxBytes", 16L * 1024 * 1024));
+
+    private final Cache<BodyKey, byte[]> cache;
+
+    public ResponseBodyCache(long maxBytes) {
+        this.cache = maxBytes <= 0 ? null : Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((BodyKey key, byte[] body) -> body.length)
+                .recordStats()
+                .build();
+    }
+
+    public static ResponseBodyCache shared() {
+        return SHARED;
+    }
+
+    public static ResponseBodyCache disabled() {
+        return new ResponseBodyCache(0);
+    }
+
+    public byte[] get(String resource, long id, long version, Supplier<byte[]> encoder) {
+        return get(resource, id, version, IDENTITY, encoder);
+    }
+
+    public byte[] get(String resource, long id, long version, String encoding, Supplier<byte[]> encoder) {
+        if (cache == null) {
+            return encoder.get();
+        }
+        return cache.get(new BodyKey(resource, id, version, encoding), key -> encoder.get());
+    }
+
+    public void cleanUp() {
+        if (cache != null) {
+            cache.cleanUp();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        if (cache == null) {
+            snapshot.put("enabled", false);
+            return snapshot;
+        }
+        CacheStats stats = cache.stats();
+        snapshot.put("hits", stats.hitCount());
+        snapshot.put("misses", stats.missCount());
+        snapshot.put("hitRate", stats.hitRate());
+        snapshot.put("evictions", stats.evictionCount());
+        snapshot.put("entries", cache.estimatedSize());
+        cache.policy().eviction().ifPresent(eviction ->
+                eviction.weightedSize().ifPresent(bytes -> snapshot.put("bytes", bytes)));
+        return snapshot;
+    }
+
+    private record BodyKey(String resource, long id, long version, String encoding) {
+    }
+}
@@ -0,0 +1,160 @@
+package productstore.cache;
+
+import productstore.dao.util.TransactionContext;
+import productstore.db.ConnectionPermits;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SingleFlight {
+
+    private static final SingleFlight SHARED = new SingleFlight();
+    private static final String READ_PREFIX = "get";
+    private static final List<String> WRITE_PREFIXES = List.of("create", "update", "delete", "add", "remove");
+    private static final String QUERY_CANCELED = "57014";
+
+    private final ConcurrentHashMap<FlightKey, CompletableFuture<Landing>> flights = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> collapsedByMethod = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder cancelledLeaders = new LongAdder();
+
+    public static SingleFlight shared() {
+        return SHARED;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <S> S wrap(Class<S> serviceType, S delegate) {
+        return (S) Proxy.newProxyInstance(serviceType.getClassLoader(), new Class<?>[]{serviceType},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(delegate, args);
+                    }
+                    if (isWrite(method)) {
+                        try {
+                            return invoke(delegate, method, args);
+                        } finally {
+                            forgetAll();
+                        }
+                    }
+                    if (!method.getName().startsWith(READ_PREFIX) || TransactionContext.isActive()) {
+                        return invoke(delegate, method, args);
+                    }
+                    return execute(new FlightKey(method, args == null ? List.of() : Arrays.asList(args.clone())),
+                            () -> invoke(delegate, method, args));
+                });
+    }
+
+    public void forgetAll() {
+        flights.clear();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        long executed = executions.sum();
+        long joined = collapsed.sum();
+        snapshot.put("executions", executed);
+        snapshot.put("collapsed", joined);
+        snapshot.put("collapseRate", executed + joined == 0 ? 0.0 : (double) joined / (executed + joined));
+        snapshot.put("cancelledLeaders", cancelledLeaders.sum());
+        snapshot.put("inFlight", flights.size());
+        Map<String, Long> byMethod = new TreeMap<>();
+        collapsedByMethod.forEach((method, count) -> byMethod.put(method, count.sum()));
+        snapshot.put("collapsedByMethod", byMethod);
+        return snapshot;
+    }
+
+    private Object execute(FlightKey key, Flight flight) throws Throwable {
+        CompletableFuture<Landing> leader = new CompletableFuture<>();
+        CompletableFuture<Landing> existing = flights.putIfAbsent(key, leader);
+        if (existing != null) {
+            collapsed.increment();
+            collapsedByMethod.computeIfAbsent(key.name(), name -> new LongAdder()).increment();
+            try {
+                Landing landing = existing.join();
+                if (landing.staleRead() != null) {
+                    StaleReads.record(landing.staleRead());
+                }
+                return landing.result();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (isCancelled(cause)) {
+                    cancelledLeaders.increment();
+                    ConnectionPermits.reject("Shared request was cancelled, please retry");
+                    throw new SQLTransientException("Общий запрос " + key.name() + " был отменён.", cause);
+                }
+                throw cause;
+            }
+        }
+
+        executions.increment();
+        StaleReads.Read earlier = StaleReads.take();
+        try {
+            Object result = flight.run();
+            flights.remove(key, leader);
+            leader.complete(new Landing(result, StaleReads.peek()));
+            return result;
+        } catch (Throwable e) {
+            flights.remove(key, leader);
+            leader.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (earlier != null) {
+                StaleReads.record(earlier);
+            }
+        }
+    }
+
+    private static boolean isCancelled(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof SQLTransientException
+                    || cause instanceof SQLException sqlException && QUERY_CANCELED.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWrite(Method method) {
+        String name = method.getName();
+        for (String prefix : WRITE_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object invoke(Object delegate, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private interface Flight {
+        Object run() throws Throwable;
+    }
+
+    private record Landing(Object result, StaleReads.Read staleRead) {
+    }
+
+    private record FlightKey(Method method, List<Object> args) {
+        String name() {
+            return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package productstore.cache;
+
+import java.time.Duration;
+
+public class StaleReads {
+
+    private static final ThreadLocal<Read> CURRENT = new ThreadLocal<>();
+
+    private StaleReads() {}
+
+    public static void record(Duration age, boolean revalidationFailed) {
+        record(new Read(age, revalidationFailed));
+    }
+
+    public static void record(Read read) {
+        Read previous = CURRENT.get();
+        if (previous != null) {
+            read = new Read(previous.age().compareTo(read.age()) >= 0 ? previous.age() : read.age(),
+                    previous.revalidationFailed() || read.revalidationFailed());
+        }
+        CURRENT.set(read);
+    }
+
+    public static Read peek() {
+        return CURRENT.get();
+    }
+
+    public static Read take() {
+        Read read = CURRENT.get();
+        CURRENT.remove();
+        return read;
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public record Read(Duration age, boolean revalidationFailed) {
+    }
+}
@@ -0,0 +1,27 @@
+package productstore.cache;
+
+import productstore.config.AppConfig;
+
+import java.time.Duration;
+
+public record StalenessPolicy(Duration whileRevalidate, Duration ifError, Duration failureBackoff) {
+
+    public static final StalenessPolicy NONE = new StalenessPolicy(Duration.ZERO, Duration.ZERO, Duration.ZERO);
+
+    public StalenessPolicy {
+        if (whileRevalidate.isNegative() || ifError.isNegative() || failureBackoff.isNegative()) {
+            throw new IllegalArgumentException("Staleness durations must not be negative");
+        }
+    }
+
+    public static StalenessPolicy fromConfig(String resource, long whileRevalidateSeconds, long ifErrorSeconds) {
+        return new StalenessPolicy(
+                AppConfig.getSeconds("cache." + resource + ".staleWhileRevalidateSeconds", whileRevalidateSeconds),
+                AppConfig.getSeconds("cache." + resource + ".staleIfErrorSeconds", ifErrorSeconds),
+                Duration.ofMillis(AppConfig.getLong("cache.staleIfError.retryMillis", 5000)));
+    }
+
+    public Duration retention() {
+        return whileRevalidate.compareTo(ifError) >= 0 ? whileRevalidate : ifError;
+    }
+}
@@ -0,0 +1,49 @@
+package productstore.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Properties;
+
+public class AppConfig {
+
+    private static final String CONFIG_FILE = "/app.properties";
+    private static final String SYSTEM_PROPERTY_PREFIX = "productstore.";
+    private static final Properties PROPERTIES = load();
+
+    private AppConfig() {}
+
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(SYSTEM_PROPERTY_PREFIX + key);
+        if (value == null) {
+            value = PROPERTIES.getProperty(key);
+        }
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    public static Duration getSeconds(String key, long defaultSeconds) {
+        return Duration.ofSeconds(getLong(key, defaultSeconds));
+    }
+
+    private static Properties load() {
+        Properties properties = new Properties();
+        try (InputStream in = AppConfig.class.getResourceAsStream(CONFIG_FILE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + CONFIG_FILE, e);
+        }
+        return properties;
+    }
+}
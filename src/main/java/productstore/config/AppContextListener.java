@@ -3,12 +3,39 @@ package productstore.config;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
+import productstore.cache.CacheInvalidationListener;
+import productstore.cache.CacheWarmer;
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.cache.ResponseBodyCache;
+import productstore.cache.SingleFlight;
 import productstore.config.exception.DataSourceInitializationException;
+import productstore.dao.SqlQueries;
+import productstore.dao.impl.OrderDaoImpl;
+import productstore.dao.impl.ProductDaoImpl;
+import productstore.dao.impl.UserDaoImpl;
+import productstore.dao.util.StatementCacheMetrics;
 import productstore.db.DataBaseUtil;
+import productstore.metrics.MetricsRegistry;
+import productstore.service.impl.OrderServiceImpl;
+import productstore.service.impl.ProductServiceImpl;
+import productstore.service.impl.UserServiceImpl;
+import productstore.servlet.mapper.OrderMapper;
+import productstore.servlet.mapper.ProductMapper;
+import productstore.servlet.mapper.UserMapper;
+import productstore.servlet.util.AsyncDispatcher;
+import productstore.servlet.util.Compression;
+import productstore.servlet.util.JsonResponseWriter;
+
+import java.time.Duration;
+import java.util.List;
 
 @WebListener
 public class AppContextListener implements ServletContextListener {
 
+    private CacheInvalidationListener cacheInvalidationListener;
+
     @Override
     public void contextInitialized(ServletContextEvent sce) {
         try {
@@ -16,10 +43,77 @@ public class AppContextListener implements ServletContextListener {
         } catch (Exception e) {
             throw new DataSourceInitializationException("Initialization of the main database DataSource failed.", e);
         }
+        AsyncDispatcher.initialize(DataBaseUtil.getAvailableConnections());
+        MetricsRegistry.register("async", AsyncDispatcher::snapshot);
+        MetricsRegistry.register("preparedStatements", StatementCacheMetrics::snapshot);
+        EntityCaches.registerMetrics();
+        MetricsRegistry.register("singleFlight", SingleFlight.shared()::snapshot);
+        MetricsRegistry.register("cache.responses", ResponseBodyCache.shared()::snapshot);
+        MetricsRegistry.register("responseBuffers", JsonResponseWriter::snapshot);
+        MetricsRegistry.register("compression", Compression::snapshot);
+        ExistenceFilters.registerMetrics();
+        if (ProductCatalog.shared().isEnabled()) {
+            MetricsRegistry.register("catalog", ProductCatalog.shared()::snapshot);
+        }
+
+        Runnable warmUp;
+        if (AppConfig.getBoolean("warmup.enabled", true)) {
+            CacheWarmer cacheWarmer = createCacheWarmer();
+            MetricsRegistry.register("warmup", cacheWarmer::snapshot);
+            warmUp = cacheWarmer::start;
+        } else {
+            warmUp = () -> Readiness.markReady("warm-up disabled");
+        }
+
+        if (AppConfig.getBoolean("cache.invalidation.enabled", true)) {
+            cacheInvalidationListener = new CacheInvalidationListener(EntityCaches.shared(), ExistenceFilters.shared(), ProductCatalog.shared(),
+                    Duration.ofMillis(AppConfig.getLong("cache.invalidation.pollMillis", 500)),
+                    Duration.ofMillis(AppConfig.getLong("cache.invalidation.reconnectDelayMillis", 1000)));
+            Readiness.markNotReady("cache invalidation");
+            cacheInvalidationListener.whenListening(warmUp);
+            cacheInvalidationListener.start();
+            MetricsRegistry.register("cacheInvalidation", cacheInvalidationListener::snapshot);
+        } else {
+            warmUp.run();
+        }
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        if (cacheInvalidationListener != null) {
+            MetricsRegistry.unregister("cacheInvalidation");
+            cacheInvalidationListener.close();
+        }
+        Readiness.markNotReady("stopping");
+        AsyncDispatcher.shutdown();
+        ProductCatalog.shared().close();
         DataBaseUtil.closeDataSource();
     }
+
+    private static CacheWarmer createCacheWarmer() {
+        EntityCaches caches = EntityCaches.shared();
+        ProductDaoImpl productDao = new ProductDaoImpl();
+        UserDaoImpl userDao = new UserDaoImpl();
+        OrderDaoImpl orderDao = new OrderDaoImpl();
+        CacheWarmer cacheWarmer = new CacheWarmer(
+                (int) AppConfig.getLong("warmup.parallelism", 4),
+                (int) AppConfig.getLong("warmup.batchSize", 50),
+                Duration.ofMillis(AppConfig.getLong("warmup.maxMillis", 30000)),
+                List.of(SqlQueries.SELECT_PRODUCT_BY_ID.getSql(),
+                        SqlQueries.SELECT_USER_BY_ID.getSql(),
+                        SqlQueries.SELECT_ORDER_BY_ID.getSql(),
+                        SqlQueries.SELECT_PRODUCT_VERSION_WITH_ORDER_IDS.getSql(),
+                        SqlQueries.SELECT_USER_VERSION.getSql(),
+                        SqlQueries.SELECT_ORDER_VERSION.getSql()));
+        return cacheWarmer
+                .add("products", caches.products(),
+                        new ProductServiceImpl(productDao, ProductMapper.INSTANCE, ProductCatalog.shared())::getProductById,
+                        productDao::getMostOrderedProductIds, (int) AppConfig.getLong("warmup.products", 500))
+                .add("users", caches.users(),
+                        new UserServiceImpl(userDao, UserMapper.INSTANCE)::getUserById,
+                        userDao::getMostActiveUserIds, (int) AppConfig.getLong("warmup.users", 200))
+                .add("orders", caches.orders(),
+                        new OrderServiceImpl(orderDao, productDao, OrderMapper.INSTANCE, ProductMapper.INSTANCE)::getOrderById,
+                        orderDao::getLatestOrderIds, (int) AppConfig.getLong("warmup.orders", 200));
+    }
 }
@@ -0,0 +1,33 @@
+package productstore.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Readiness {
+
+    private static volatile boolean ready;
+    private static volatile String phase = "starting";
+
+    private Readiness() {}
+
+    public static void markNotReady(String currentPhase) {
+        phase = currentPhase;
+        ready = false;
+    }
+
+    public static void markReady(String currentPhase) {
+        phase = currentPhase;
+        ready = true;
+    }
+
+    public static boolean isReady() {
+        return ready;
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("status", ready ? "READY" : "NOT_READY");
+        snapshot.put("phase", phase);
+        return snapshot;
+    }
+}
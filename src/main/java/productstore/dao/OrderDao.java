@@ -1,19 +1,31 @@
 package productstore.dao;
 
 import productstore.model.Order;
+import productstore.model.OrderSummary;
 import productstore.model.Product;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public interface OrderDao {
 
     Order saveOrder(Order order) throws SQLException;
     Order getOrderById(long id) throws SQLException;
+    Long getOrderVersion(long id) throws SQLException;
+    void streamAllOrderIds(LongConsumer consumer) throws SQLException;
+    List<Long> getLatestOrderIds(int limit) throws SQLException;
     List<Order> getAllOrders() throws SQLException;
-    void updateOrder(Order order) throws SQLException;
-    void deleteOrder(long id) throws SQLException;
-    void addProductsToOrder(long orderId, List<Product> products) throws SQLException;
+    void streamAllOrders(Consumer<Order> consumer) throws SQLException;
+    List<OrderSummary> getOrderSummariesWithPagination(int pageNumber, int pageSize) throws SQLException;
+    List<OrderSummary> getOrderSummariesAfterId(long afterId, int pageSize) throws SQLException;
+    void streamAllOrderSummaries(Consumer<OrderSummary> consumer) throws SQLException;
+    int updateOrder(Order order) throws SQLException;
+    int updateOrderUser(long orderId, long userId) throws SQLException;
+    int deleteOrder(long id) throws SQLException;
+    int addProductsToOrder(long orderId, List<Product> products) throws SQLException;
     List<Product> getProductsByOrderId(long orderId) throws SQLException;
     List<Order> getOrdersWithPagination(int pageNumber, int pageSize) throws SQLException;
+    List<Order> getOrdersAfterId(long afterId, int pageSize) throws SQLException;
 }
@@ -3,15 +3,26 @@ package productstore.dao;
 import productstore.model.Product;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public interface ProductDao {
 
     Product saveProduct(Product product) throws SQLException;
-    void deleteProduct(long id) throws SQLException;
-    void updateProduct(Product product) throws SQLException;
+    int deleteProduct(long id) throws SQLException;
+    int updateProduct(Product product) throws SQLException;
     Product getProductById(long id) throws SQLException;
+    Long getProductVersion(long id) throws SQLException;
+    Product getProductVersionWithOrderIds(long id) throws SQLException;
+    void streamAllProductIds(LongConsumer consumer) throws SQLException;
+    List<Long> getMostOrderedProductIds(int limit) throws SQLException;
+    List<Product> getProductsByIds(Collection<Long> ids) throws SQLException;
+    List<Product> getProductsWithoutOrdersByIds(Collection<Long> ids) throws SQLException;
     List<Product> getAllProducts() throws SQLException;
+    void streamAllProducts(Consumer<Product> consumer) throws SQLException;
     List<Product> getProductWithPagination(int pageNumber, int pageSize) throws SQLException;
+    List<Product> getProductsAfterId(long afterId, int pageSize) throws SQLException;
     Product getProductWithOrdersById(long id) throws SQLException;
 }
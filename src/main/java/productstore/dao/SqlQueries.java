@@ -3,29 +3,49 @@ package productstore.dao;
 public enum SqlQueries {
 
     
-    INSERT_INTO("INSERT INTO %s (%s) VALUES (%s)"),
-    SELECT_FROM("SELECT %s FROM %s WHERE %s"),
-    SELECT_ALL_FROM("SELECT %s FROM %s"),
-    SELECT_WITH_PAGINATION("SELECT %s FROM %s ORDER BY %s LIMIT %s OFFSET %s"),
-    DELETE_FROM("DELETE FROM %s WHERE %s"),
-    UPDATE_SET("UPDATE %s SET %s WHERE %s"),
-
-    
     INSERT_ORDER("INSERT INTO orders (user_id) VALUES (?)"),
     INSERT_ORDER_PRODUCTS("INSERT INTO orders_products (order_id, product_id) VALUES (?, ?)"),
-    SELECT_ORDERS_WITH_PAGINATION("SELECT o.id AS order_id, o.user_id, u.id AS user_id, u.name AS user_name, u.email AS user_email, " +
+    INSERT_ORDER_WITH_PRODUCTS("WITH new_order AS (INSERT INTO orders (user_id) VALUES (?) RETURNING id), " +
+            "new_lines AS (INSERT INTO orders_products (order_id, product_id) " +
+            "SELECT new_order.id, unnest(?::bigint[]) FROM new_order RETURNING product_id) " +
+            "SELECT new_order.id, (SELECT count(*) FROM new_lines) AS line_count FROM new_order"),
+    INSERT_MISSING_ORDER_PRODUCTS("INSERT INTO orders_products (order_id, product_id) " +
+            "SELECT ?, unnest(?::bigint[]) " +
+            "ON CONFLICT DO NOTHING"),
+    SELECT_ORDERS_WITH_PAGINATION("SELECT o.id AS order_id, o.version AS order_version, o.user_id, u.id AS user_id, u.name AS user_name, u.email AS user_email, " +
             "p.id AS product_id, p.name AS product_name, p.price AS product_price " +
-            "FROM orders o " +
+            "FROM (SELECT * FROM orders ORDER BY id LIMIT ? OFFSET ?) o " +
+            "JOIN users u ON o.user_id = u.id " +
+            "LEFT JOIN orders_products op ON o.id = op.order_id " +
+            "LEFT JOIN products p ON op.product_id = p.id " +
+            "ORDER BY o.id"),
+    SELECT_ORDERS_AFTER_ID("SELECT o.id AS order_id, o.version AS order_version, o.user_id, u.id AS user_id, u.name AS user_name, u.email AS user_email, " +
+            "p.id AS product_id, p.name AS product_name, p.price AS product_price " +
+            "FROM (SELECT * FROM orders WHERE id > ? ORDER BY id LIMIT ?) o " +
             "JOIN users u ON o.user_id = u.id " +
             "LEFT JOIN orders_products op ON o.id = op.order_id " +
             "LEFT JOIN products p ON op.product_id = p.id " +
-            "ORDER BY o.id LIMIT ? OFFSET ?"),
-    SELECT_ORDER_BY_ID("SELECT o.id AS order_id, o.user_id, u.id AS user_id, u.name AS user_name, u.email AS user_email, " +
+            "ORDER BY o.id"),
+    SELECT_ORDER_BY_ID("SELECT o.id AS order_id, o.version AS order_version, o.user_id, u.id AS user_id, u.name AS user_name, u.email AS user_email, " +
             "p.id AS product_id, p.name AS product_name, p.price AS product_price " +
             "FROM orders o " +
             "JOIN users u ON o.user_id = u.id " +
             "LEFT JOIN orders_products op ON o.id = op.order_id " +
             "LEFT JOIN products p ON op.product_id = p.id WHERE o.id = ?"),
+    SELECT_ALL_ORDERS_ORDERED_BY_ID("SELECT o.id AS order_id, o.version AS order_version, o.user_id, u.id AS user_id, u.name AS user_name, u.email AS user_email, " +
+            "p.id AS product_id, p.name AS product_name, p.price AS product_price " +
+            "FROM orders o " +
+            "JOIN users u ON o.user_id = u.id " +
+            "LEFT JOIN orders_products op ON o.id = op.order_id " +
+            "LEFT JOIN products p ON op.product_id = p.id " +
+            "ORDER BY o.id"),
+    SELECT_ORDER_SUMMARIES_WITH_PAGINATION("SELECT * FROM order_summary ORDER BY order_id LIMIT ? OFFSET ?"),
+    SELECT_ORDER_SUMMARIES_AFTER_ID("SELECT * FROM order_summary WHERE order_id > ? ORDER BY order_id LIMIT ?"),
+    SELECT_ALL_ORDER_SUMMARIES("SELECT * FROM order_summary ORDER BY order_id"),
+    SELECT_ALL_ORDER_IDS("SELECT id FROM orders"),
+    SELECT_LATEST_ORDER_IDS("SELECT id FROM orders ORDER BY id DESC LIMIT ?"),
+    SELECT_ORDER_VERSION("SELECT version FROM orders WHERE id = ?"),
+    UPDATE_ORDER("UPDATE orders SET user_id = ? WHERE id = ?"),
     DELETE_ORDER_PRODUCTS("DELETE FROM orders_products WHERE order_id = ?"),
     DELETE_ORDER("DELETE FROM orders WHERE id = ?"),
 
@@ -36,21 +56,53 @@ public enum SqlQueries {
             "JOIN orders_products op ON p.id = op.product_id " +
             "WHERE op.order_id = ?"),
     SELECT_PRODUCT_WITH_PAGINATION("SELECT * FROM products ORDER BY id LIMIT ? OFFSET ?"),
+    SELECT_PRODUCTS_AFTER_ID("SELECT * FROM products WHERE id > ? ORDER BY id LIMIT ?"),
+    SELECT_ALL_PRODUCTS_WITH_ORDER_IDS("SELECT p.id, p.name, p.price, p.version, op.order_id " +
+            "FROM products p " +
+            "LEFT JOIN orders_products op ON p.id = op.product_id " +
+            "ORDER BY p.id"),
+    SELECT_ALL_PRODUCTS("SELECT * FROM products"),
     SELECT_PRODUCT_BY_ID("SELECT * FROM products WHERE id = ?"),
+    SELECT_PRODUCT_WITH_ORDERS_BY_ID("SELECT p.id, p.name, p.price, p.version, o.id AS order_id " +
+            "FROM products p " +
+            "LEFT JOIN orders_products op ON p.id = op.product_id " +
+            "LEFT JOIN orders o ON op.order_id = o.id " +
+            "WHERE p.id = ?"),
+    SELECT_ALL_PRODUCT_IDS("SELECT id FROM products"),
+    SELECT_MOST_ORDERED_PRODUCT_IDS("SELECT product_id FROM orders_products " +
+            "GROUP BY product_id ORDER BY count(*) DESC, product_id LIMIT ?"),
+    SELECT_PRODUCT_VERSION_WITH_ORDER_IDS("SELECT p.version, op.order_id " +
+            "FROM products p " +
+            "LEFT JOIN orders_products op ON p.id = op.product_id " +
+            "WHERE p.id = ?"),
+    SELECT_PRODUCTS_BY_IDS("SELECT * FROM products WHERE id = ANY(?)"),
+    SELECT_PRODUCT_FIELDS_BY_IDS("SELECT id, name, price, version FROM products WHERE id = ANY(?)"),
+    UPDATE_PRODUCT("UPDATE products SET name = ?, price = ? WHERE id = ?"),
     DELETE_PRODUCT("DELETE FROM products WHERE id = ?"),
     DELETE_PRODUCT_FROM_ORDER_PRODUCTS("DELETE FROM orders_products WHERE product_id = ?"),
-    SELECT_ORDERS_BY_PRODUCT_ID("SELECT o.id AS order_id " +
-            "FROM orders o " +
-            "JOIN orders_products op ON o.id = op.order_id " +
-            "WHERE op.product_id = ?"),
+    SELECT_ORDER_IDS_BY_PRODUCT_IDS("SELECT op.product_id, op.order_id " +
+            "FROM orders_products op " +
+            "WHERE op.product_id = ANY(?)"),
 
     
     INSERT_USER("INSERT INTO users (name, email) VALUES (?, ?)"),
-    SELECT_USER_WITH_PAGINATION("SELECT u.id AS user_id, u.name, u.email, o.id AS order_id FROM users u " +
-            "LEFT JOIN orders o ON u.id = o.user_id ORDER BY u.id LIMIT ? OFFSET ?"),
-    SELECT_USER_BY_ID("SELECT u.id AS user_id, u.name, u.email, o.id AS order_id FROM users u " +
+    SELECT_USER_WITH_PAGINATION("SELECT u.id AS user_id, u.name, u.email, u.version, o.id AS order_id " +
+            "FROM (SELECT * FROM users ORDER BY id LIMIT ? OFFSET ?) u " +
+            "LEFT JOIN orders o ON u.id = o.user_id ORDER BY u.id, o.id"),
+    SELECT_USERS_AFTER_ID("SELECT u.id AS user_id, u.name, u.email, u.version, o.id AS order_id " +
+            "FROM (SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?) u " +
+            "LEFT JOIN orders o ON u.id = o.user_id ORDER BY u.id, o.id"),
+    SELECT_ALL_USERS_ORDERED_BY_ID("SELECT u.id AS user_id, u.name, u.email, u.version, o.id AS order_id FROM users u " +
+            "LEFT JOIN orders o ON u.id = o.user_id ORDER BY u.id"),
+    SELECT_USER_BY_ID("SELECT u.id AS user_id, u.name, u.email, u.version, o.id AS order_id FROM users u " +
             "LEFT JOIN orders o ON u.id = o.user_id WHERE u.id = ?"),
-    DELETE_USER_ORDERS("DELETE FROM orders WHERE user_id = ?"),
+    SELECT_ALL_USER_IDS("SELECT id FROM users"),
+    SELECT_MOST_ACTIVE_USER_IDS("SELECT user_id FROM orders " +
+            "GROUP BY user_id ORDER BY count(*) DESC, user_id LIMIT ?"),
+    SELECT_USER_VERSION("SELECT version FROM users WHERE id = ?"),
+    SELECT_ORDERED_PRODUCT_IDS_BY_USER_ID("SELECT DISTINCT op.product_id FROM orders o " +
+            "JOIN orders_products op ON o.id = op.order_id WHERE o.user_id = ?"),
+    UPDATE_USER("UPDATE users SET name = ?, email = ? WHERE id = ?"),
     DELETE_USER("DELETE FROM users WHERE id = ?");
 
     private final String sql;
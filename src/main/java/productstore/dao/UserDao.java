@@ -4,13 +4,21 @@ import productstore.model.User;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public interface UserDao {
 
     User saveUser(User user) throws SQLException;
     User getUserById(long id) throws SQLException;
+    Long getUserVersion(long id) throws SQLException;
+    List<Long> getOrderedProductIds(long userId) throws SQLException;
+    void streamAllUserIds(LongConsumer consumer) throws SQLException;
+    List<Long> getMostActiveUserIds(int limit) throws SQLException;
     List<User> getAllUsers() throws SQLException;
+    void streamAllUsers(Consumer<User> consumer) throws SQLException;
     List<User> getUserWithPagination(int pageNumber, int pageSize) throws SQLException;
-    void updateUser(User user) throws SQLException;
-    void deleteUser(long id) throws SQLException;
+    List<User> getUsersAfterId(long afterId, int pageSize) throws SQLException;
+    int updateUser(User user) throws SQLException;
+    int deleteUser(long id) throws SQLException;
 }
@@ -4,46 +4,40 @@ import productstore.dao.OrderDao;
 import productstore.dao.SqlQueries;
 import productstore.dao.util.DaoUtils;
 import productstore.dao.util.PreparedStatementSetter;
+import productstore.dao.util.RowMapper;
 import productstore.model.Order;
+import productstore.model.OrderSummary;
 import productstore.model.Product;
 import productstore.model.User;
-import productstore.db.DataBaseUtil;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public class OrderDaoImpl implements OrderDao {
 
     @Override
     public Order saveOrder(Order order) throws SQLException {
-        try (Connection connection = DataBaseUtil.getConnection()) {
-            return DaoUtils.executeInTransaction(connection, () -> {
-                String insertOrderSql = SqlQueries.INSERT_ORDER.getSql();
-                String insertOrderProductsSql = SqlQueries.INSERT_ORDER_PRODUCTS.getSql();
-
-                try (PreparedStatement insertOrderStmt = connection.prepareStatement(insertOrderSql, Statement.RETURN_GENERATED_KEYS);
-                     PreparedStatement insertOrderProductsStmt = connection.prepareStatement(insertOrderProductsSql)) {
-
-                    insertOrderStmt.setLong(1, order.getUser().getId());
-                    insertOrderStmt.executeUpdate();
-
-                    try (ResultSet generatedKeys = insertOrderStmt.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            long generatedOrderId = generatedKeys.getLong(1);
-                            order.setId(generatedOrderId);
-                            insertOrderProductsStmt.setLong(1, generatedOrderId);
-                            for (Product product : order.getProducts()) {
-                                insertOrderProductsStmt.setLong(2, product.getId());
-                                insertOrderProductsStmt.addBatch();
-                            }
-                            insertOrderProductsStmt.executeBatch();
-                        } else {
-                            throw new SQLException("Не удалось сгенерировать айди для сущности order.");
-                        }
-                    }
+        String sql = SqlQueries.INSERT_ORDER_WITH_PRODUCTS.getSql();
+        List<Long> productIds = order.getProducts().stream().map(Product::getId).toList();
+
+        try {
+            return DaoUtils.executeQuery(sql, stmt -> {
+                stmt.setLong(1, order.getUser().getId());
+                DaoUtils.setLongArray(stmt, 2, productIds);
+            }, rs -> {
+                if (!rs.next()) {
+                    throw new SQLException("Не удалось сгенерировать айди для сущности order.");
+                }
+                order.setId(rs.getLong("id"));
+                int lineCount = rs.getInt("line_count");
+                if (lineCount != productIds.size()) {
+                    throw new SQLException("Ожидалось " + productIds.size() + " позиций заказа, сохранено " + lineCount);
                 }
                 return order;
             });
@@ -62,6 +56,16 @@ public class OrderDaoImpl implements OrderDao {
         });
     }
 
+    @Override
+    public List<Order> getOrdersAfterId(long afterId, int pageSize) throws SQLException {
+        String sql = SqlQueries.SELECT_ORDERS_AFTER_ID.getSql();
+
+        return getOrders(sql, stmt -> {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, pageSize);
+        });
+    }
+
     @Override
     public Order getOrderById(long id) throws SQLException {
         String sql = SqlQueries.SELECT_ORDER_BY_ID.getSql();
@@ -74,49 +78,143 @@ public class OrderDaoImpl implements OrderDao {
         return orders.get(0);
     }
 
+    @Override
+    public Long getOrderVersion(long id) throws SQLException {
+        String sql = SqlQueries.SELECT_ORDER_VERSION.getSql();
+        return DaoUtils.executeQuery(sql, stmt -> stmt.setLong(1, id), rs -> rs.next() ? rs.getLong(1) : null);
+    }
+
+    @Override
+    public void streamAllOrderIds(LongConsumer consumer) throws SQLException {
+        String sql = SqlQueries.SELECT_ALL_ORDER_IDS.getSql();
+        DaoUtils.executeStreamingQuery(sql, stmt -> {}, rs -> {
+            while (rs.next()) {
+                consumer.accept(rs.getLong(1));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Long> getLatestOrderIds(int limit) throws SQLException {
+        String sql = SqlQueries.SELECT_LATEST_ORDER_IDS.getSql();
+        return DaoUtils.executeQuery(sql, stmt -> stmt.setInt(1, limit), rs -> {
+            List<Long> ids = new ArrayList<>();
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+            return ids;
+        });
+    }
+
     @Override
     public List<Order> getAllOrders() throws SQLException {
-        String sql = SqlQueries.SELECT_ALL_FROM.getSql().formatted(
-                "o.id AS order_id, o.user_id, u.id AS user_id, u.name AS user_name, u.email AS user_email, " +
-                        "p.id AS product_id, p.name AS product_name, p.price AS product_price",
-                "orders o JOIN users u ON o.user_id = u.id LEFT JOIN orders_products op ON o.id = op.order_id LEFT JOIN products p ON op.product_id = p.id"
-        );
+        String sql = SqlQueries.SELECT_ALL_ORDERS_ORDERED_BY_ID.getSql();
         return getOrders(sql, stmt -> {});
     }
 
     @Override
-    public void updateOrder(Order order) throws SQLException {
-        try (Connection connection = DataBaseUtil.getConnection()) {
-            DaoUtils.executeInTransaction(connection, () -> {
-                String sql = SqlQueries.UPDATE_SET.getSql().formatted("orders", "user_id = ?", "id = ?");
-                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    public void streamAllOrders(Consumer<Order> consumer) throws SQLException {
+        String sql = SqlQueries.SELECT_ALL_ORDERS_ORDERED_BY_ID.getSql();
+        DaoUtils.executeStreamingQuery(sql, stmt -> {}, rs -> {
+            OrderRowMapper orderRowMapper = new OrderRowMapper(rs.getMetaData());
+            ProductRowMapper productRowMapper = new ProductRowMapper(rs.getMetaData());
+            Order current = null;
+            while (rs.next()) {
+                long orderId = orderRowMapper.getOrderId(rs);
+                if (current == null || current.getId() != orderId) {
+                    if (current != null) {
+                        consumer.accept(current);
+                    }
+                    current = orderRowMapper.mapRow(rs);
+                }
+
+                Product product = productRowMapper.mapRow(rs);
+                if (product != null) {
+                    current.getProducts().add(product);
+                }
+            }
+            if (current != null) {
+                consumer.accept(current);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<OrderSummary> getOrderSummariesWithPagination(int pageNumber, int pageSize) throws SQLException {
+        String sql = SqlQueries.SELECT_ORDER_SUMMARIES_WITH_PAGINATION.getSql();
+
+        return getOrderSummaries(sql, stmt -> {
+            stmt.setInt(1, pageSize);
+            stmt.setInt(2, (pageNumber - 1) * pageSize);
+        });
+    }
+
+    @Override
+    public List<OrderSummary> getOrderSummariesAfterId(long afterId, int pageSize) throws SQLException {
+        String sql = SqlQueries.SELECT_ORDER_SUMMARIES_AFTER_ID.getSql();
+
+        return getOrderSummaries(sql, stmt -> {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, pageSize);
+        });
+    }
+
+    @Override
+    public void streamAllOrderSummaries(Consumer<OrderSummary> consumer) throws SQLException {
+        String sql = SqlQueries.SELECT_ALL_ORDER_SUMMARIES.getSql();
+        DaoUtils.executeStreamingQuery(sql, stmt -> {}, rs -> {
+            OrderSummaryRowMapper orderSummaryRowMapper = new OrderSummaryRowMapper(rs.getMetaData());
+            while (rs.next()) {
+                consumer.accept(orderSummaryRowMapper.mapRow(rs));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public int updateOrder(Order order) throws SQLException {
+        try (Connection connection = DaoUtils.getConnection()) {
+            return DaoUtils.executeInTransaction(connection, () -> {
+                String sql = SqlQueries.UPDATE_ORDER.getSql();
+                int updated;
+                try (PreparedStatement stmt = DaoUtils.prepareStatement(connection, sql)) {
                     stmt.setLong(1, order.getUser().getId());
                     stmt.setLong(2, order.getId());
-                    stmt.executeUpdate();
+                    updated = stmt.executeUpdate();
                 }
 
-                deleteProductsFromOrder(order.getId(), connection);
+                if (updated > 0) {
+                    deleteProductsFromOrder(order.getId(), connection);
 
-                addProductsToOrder(order.getId(), order.getProducts(), connection);
+                    addProductsToOrder(order.getId(), order.getProducts(), connection);
+                }
 
-                return null;
+                return updated;
             });
         }
     }
 
     @Override
-    public void deleteOrder(long id) throws SQLException {
+    public int updateOrderUser(long orderId, long userId) throws SQLException {
+        String sql = SqlQueries.UPDATE_ORDER.getSql();
+        return DaoUtils.executeUpdate(sql, stmt -> {
+            stmt.setLong(1, userId);
+            stmt.setLong(2, orderId);
+        });
+    }
+
+    @Override
+    public int deleteOrder(long id) throws SQLException {
         String sql = SqlQueries.DELETE_ORDER.getSql();
-        DaoUtils.executeUpdate(sql, stmt -> stmt.setLong(1, id));
+        return DaoUtils.executeUpdate(sql, stmt -> stmt.setLong(1, id));
     }
 
     @Override
-    public void addProductsToOrder(long orderId, List<Product> products) throws SQLException {
-        try (Connection connection = DataBaseUtil.getConnection()) {
-            DaoUtils.executeInTransaction(connection, () -> {
-                addProductsToOrder(orderId, products, connection);
-                return null;
-            });
+    public int addProductsToOrder(long orderId, List<Product> products) throws SQLException {
+        try (Connection connection = DaoUtils.getConnection()) {
+            return addProductsToOrder(orderId, products, connection);
         }
     }
 
@@ -125,100 +223,169 @@ public class OrderDaoImpl implements OrderDao {
         String sql = SqlQueries.SELECT_PRODUCTS_BY_ORDER_ID.getSql();
 
         return DaoUtils.executeQuery(sql, stmt -> stmt.setLong(1, orderId), rs -> {
+            ProductRowMapper productRowMapper = new ProductRowMapper(rs.getMetaData());
             List<Product> products = new ArrayList<>();
             while (rs.next()) {
-                products.add(mapResultSetToProduct(rs));
+                products.add(productRowMapper.mapRow(rs));
             }
             return products;
         });
     }
 
-    private Order mapResultSetToOrder(ResultSet rs) throws SQLException {
-        return new Order.Builder()
-                .withId(rs.getLong("order_id"))
-                .withUser(mapResultSetToUser(rs))
-                .withProducts(new ArrayList<>())
-                .build();
-    }
-
-    private User mapResultSetToUser(ResultSet rs) throws SQLException {
-        return new User.Builder()
-                .withId(rs.getLong("user_id"))
-                .withName(rs.getString("user_name"))
-                .withEmail(rs.getString("user_email"))
-                .build();
-    }
-
-    private Product mapResultSetToProduct(ResultSet rs) throws SQLException {
-        long productId = rs.getLong("product_id");
-        if (rs.wasNull()) {
-            return null;
-        }
-        return new Product.Builder()
-                .withId(productId)
-                .withName(rs.getString("product_name"))
-                .withPrice(rs.getDouble("product_price"))
-                .withOrders(new ArrayList<>())
-                .build();
-    }
-
     private List<Order> getOrders(String sql, PreparedStatementSetter setter) throws SQLException {
         return DaoUtils.executeQuery(sql, setter, rs -> {
-            Map<Long, Order> orderMap = new HashMap<>();
+            OrderRowMapper orderRowMapper = new OrderRowMapper(rs.getMetaData());
+            ProductRowMapper productRowMapper = new ProductRowMapper(rs.getMetaData());
+            Map<Long, Order> orderMap = new LinkedHashMap<>();
             while (rs.next()) {
-                long orderId = rs.getLong("order_id");
+                long orderId = orderRowMapper.getOrderId(rs);
 
-                Order order = orderMap.computeIfAbsent(orderId, k -> {
-                    try {
-                        return mapResultSetToOrder(rs);
-                    } catch (SQLException e) {
-                        return null;
-                    }
-                });
-
-                Product product = mapResultSetToProduct(rs);
-                if (product != null && order != null && order.getProducts() != null) {
-                        order.getProducts().add(product);
-                    }
+                Order order = orderMap.get(orderId);
+                if (order == null) {
+                    order = orderRowMapper.mapRow(rs);
+                    orderMap.put(orderId, order);
+                }
 
+                Product product = productRowMapper.mapRow(rs);
+                if (product != null) {
+                    order.getProducts().add(product);
+                }
             }
 
             return new ArrayList<>(orderMap.values());
         });
     }
 
-    private void addProductsToOrder(long orderId, List<Product> products, Connection connection) throws SQLException {
-        String insertOrderProductsSql = SqlQueries.INSERT_ORDER_PRODUCTS.getSql();
-        String checkProductExistsSql = "SELECT 1 FROM orders_products WHERE order_id = ? AND product_id = ?";
+    private List<OrderSummary> getOrderSummaries(String sql, PreparedStatementSetter setter) throws SQLException {
+        return DaoUtils.executeQuery(sql, setter, rs -> {
+            OrderSummaryRowMapper orderSummaryRowMapper = new OrderSummaryRowMapper(rs.getMetaData());
+            List<OrderSummary> summaries = new ArrayList<>();
+            while (rs.next()) {
+                summaries.add(orderSummaryRowMapper.mapRow(rs));
+            }
+            return summaries;
+        });
+    }
 
-        try (PreparedStatement insertOrderProductsStmt = connection.prepareStatement(insertOrderProductsSql);
-             PreparedStatement checkProductExistsStmt = connection.prepareStatement(checkProductExistsSql)) {
+    private int addProductsToOrder(long orderId, List<Product> products, Connection connection) throws SQLException {
+        if (products.isEmpty()) {
+            return 0;
+        }
 
-            insertOrderProductsStmt.setLong(1, orderId);
+        List<Long> productIds = products.stream().map(Product::getId).toList();
+        String insertOrderProductsSql = SqlQueries.INSERT_MISSING_ORDER_PRODUCTS.getSql();
 
-            checkProductExistsStmt.setLong(1, orderId);
+        try (PreparedStatement insertOrderProductsStmt = DaoUtils.prepareStatement(connection, insertOrderProductsSql)) {
             insertOrderProductsStmt.setLong(1, orderId);
-
-            for (Product product : products) {
-                checkProductExistsStmt.setLong(2, product.getId());
-                try (ResultSet rs = checkProductExistsStmt.executeQuery()) {
-                    if (rs.next()) {
-                        continue;
-                    }
-                }
-
-                insertOrderProductsStmt.setLong(2, product.getId());
-                insertOrderProductsStmt.addBatch();
-            }
-            insertOrderProductsStmt.executeBatch();
+            DaoUtils.setLongArray(insertOrderProductsStmt, 2, productIds);
+            return insertOrderProductsStmt.executeUpdate();
         }
     }
 
     private void deleteProductsFromOrder(long orderId, Connection connection) throws SQLException {
         String deleteOrderProductsSql = SqlQueries.DELETE_ORDER_PRODUCTS.getSql();
-        try (PreparedStatement deleteStmt = connection.prepareStatement(deleteOrderProductsSql)) {
+        try (PreparedStatement deleteStmt = DaoUtils.prepareStatement(connection, deleteOrderProductsSql)) {
             deleteStmt.setLong(1, orderId);
             deleteStmt.executeUpdate();
         }
     }
+
+    private static final class OrderRowMapper implements RowMapper<Order> {
+        private final int orderIdColumn;
+        private final int orderVersionColumn;
+        private final int userIdColumn;
+        private final int userNameColumn;
+        private final int userEmailColumn;
+
+        private OrderRowMapper(ResultSetMetaData metaData) throws SQLException {
+            orderIdColumn = RowMapper.columnIndex(metaData, "order_id");
+            orderVersionColumn = RowMapper.columnIndex(metaData, "order_version");
+            userIdColumn = RowMapper.columnIndex(metaData, "user_id");
+            userNameColumn = RowMapper.columnIndex(metaData, "user_name");
+            userEmailColumn = RowMapper.columnIndex(metaData, "user_email");
+        }
+
+        private long getOrderId(ResultSet rs) throws SQLException {
+            return rs.getLong(orderIdColumn);
+        }
+
+        @Override
+        public Order mapRow(ResultSet rs) throws SQLException {
+            User user = new User.Builder()
+                    .withId(rs.getLong(userIdColumn))
+                    .withName(rs.getString(userNameColumn))
+                    .withEmail(rs.getString(userEmailColumn))
+                    .build();
+            return new Order.Builder()
+                    .withId(rs.getLong(orderIdColumn))
+                    .withVersion(rs.getLong(orderVersionColumn))
+                    .withUser(user)
+                    .withProducts(new ArrayList<>())
+                    .build();
+        }
+    }
+
+    private static final class ProductRowMapper implements RowMapper<Product> {
+        private final int productIdColumn;
+        private final int productNameColumn;
+        private final int productPriceColumn;
+
+        private ProductRowMapper(ResultSetMetaData metaData) throws SQLException {
+            productIdColumn = RowMapper.columnIndex(metaData, "product_id");
+            productNameColumn = RowMapper.columnIndex(metaData, "product_name");
+            productPriceColumn = RowMapper.columnIndex(metaData, "product_price");
+        }
+
+        @Override
+        public Product mapRow(ResultSet rs) throws SQLException {
+            long productId = rs.getLong(productIdColumn);
+            if (rs.wasNull()) {
+                return null;
+            }
+            return new Product.Builder()
+                    .withId(productId)
+                    .withName(rs.getString(productNameColumn))
+                    .withPrice(rs.getDouble(productPriceColumn))
+                    .withOrders(new ArrayList<>())
+                    .build();
+        }
+    }
+
+    private static final class OrderSummaryRowMapper implements RowMapper<OrderSummary> {
+        private final int orderIdColumn;
+        private final int userIdColumn;
+        private final int userNameColumn;
+        private final int userEmailColumn;
+        private final int lineCountColumn;
+        private final int totalPriceColumn;
+        private final int productIdsColumn;
+
+        private OrderSummaryRowMapper(ResultSetMetaData metaData) throws SQLException {
+            orderIdColumn = RowMapper.columnIndex(metaData, "order_id");
+            userIdColumn = RowMapper.columnIndex(metaData, "user_id");
+            userNameColumn = RowMapper.columnIndex(metaData, "user_name");
+            userEmailColumn = RowMapper.columnIndex(metaData, "user_email");
+            lineCountColumn = RowMapper.columnIndex(metaData, "line_count");
+            totalPriceColumn = RowMapper.columnIndex(metaData, "total_price");
+            productIdsColumn = RowMapper.columnIndex(metaData, "product_ids");
+        }
+
+        @Override
+        public OrderSummary mapRow(ResultSet rs) throws SQLException {
+            Array productIds = rs.getArray(productIdsColumn);
+            try {
+                return new OrderSummary.Builder()
+                        .withOrderId(rs.getLong(orderIdColumn))
+                        .withUserId(rs.getLong(userIdColumn))
+                        .withUserName(rs.getString(userNameColumn))
+                        .withUserEmail(rs.getString(userEmailColumn))
+                        .withLineCount(rs.getInt(lineCountColumn))
+                        .withTotalPrice(rs.getDouble(totalPriceColumn))
+                        .withProductIds(Arrays.asList((Long[]) productIds.getArray()))
+                        .build();
+            } finally {
+                productIds.free();
+            }
+        }
+    }
 }
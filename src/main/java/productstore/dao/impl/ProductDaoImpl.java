@@ -3,17 +3,24 @@ package productstore.dao.impl;
 import productstore.dao.SqlQueries;
 import productstore.dao.ProductDao;
 import productstore.dao.util.DaoUtils;
-import productstore.db.DataBaseUtil;
+import productstore.dao.util.RowMapper;
 import productstore.model.Order;
 import productstore.model.Product;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public class ProductDaoImpl implements ProductDao {
 
+    private static final int ID_CHUNK_SIZE = 1000;
+
     @Override
     public Product saveProduct(Product product) throws SQLException {
         if (product.getPrice() < 0) {
@@ -26,9 +33,7 @@ public class ProductDaoImpl implements ProductDao {
         }, generatedKeys -> {
             if (generatedKeys.next()) {
                 product.setId(generatedKeys.getLong(1));
-
-                
-                populateProductOrders(Collections.singletonList(product));
+                product.setOrders(new ArrayList<>());
                 return product;
             } else {
                 throw new SQLException("Не удалось сгенерировать айди для сущности product.");
@@ -39,75 +44,198 @@ public class ProductDaoImpl implements ProductDao {
     @Override
     public List<Product> getProductWithPagination(int pageNumber, int pageSize) throws SQLException {
         String sql = SqlQueries.SELECT_PRODUCT_WITH_PAGINATION.getSql();
-        return DaoUtils.executeQuery(sql, stmt -> {
+        List<Product> products = DaoUtils.executeQuery(sql, stmt -> {
             stmt.setInt(1, pageSize);
             stmt.setInt(2, (pageNumber - 1) * pageSize);
-        }, rs -> {
-            List<Product> products = mapResultSetToProducts(rs);
-            populateProductOrders(products);
-            return products;
-        });
+        }, this::mapResultSetToProducts);
+
+        populateProductOrders(products);
+        return products;
+    }
+
+    @Override
+    public List<Product> getProductsAfterId(long afterId, int pageSize) throws SQLException {
+        String sql = SqlQueries.SELECT_PRODUCTS_AFTER_ID.getSql();
+        List<Product> products = DaoUtils.executeQuery(sql, stmt -> {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, pageSize);
+        }, this::mapResultSetToProducts);
+
+        populateProductOrders(products);
+        return products;
     }
 
     @Override
-    public void deleteProduct(long id) throws SQLException {
+    public int deleteProduct(long id) throws SQLException {
         String sql = SqlQueries.DELETE_PRODUCT.getSql();
-        DaoUtils.executeUpdate(sql, stmt -> stmt.setLong(1, id));
+        return DaoUtils.executeUpdate(sql, stmt -> stmt.setLong(1, id));
     }
 
     @Override
-    public void updateProduct(Product product) throws SQLException {
-        String sql = SqlQueries.UPDATE_SET.getSql().formatted("products", "name = ?, price = ?", "id = ?");
-        DaoUtils.executeUpdate(sql, stmt -> {
+    public int updateProduct(Product product) throws SQLException {
+        String sql = SqlQueries.UPDATE_PRODUCT.getSql();
+        int updated = DaoUtils.executeUpdate(sql, stmt -> {
             stmt.setString(1, product.getName());
             stmt.setDouble(2, product.getPrice());
             stmt.setLong(3, product.getId());
         });
 
-        updateOrdersForProduct(product);
+        if (updated > 0) {
+            updateOrdersForProduct(product);
+        }
+        return updated;
     }
 
     @Override
     public Product getProductById(long id) throws SQLException {
         String sql = SqlQueries.SELECT_PRODUCT_BY_ID.getSql();
+        Product product = DaoUtils.executeQuery(sql, stmt -> stmt.setLong(1, id),
+                rs -> rs.next() ? new ProductRowMapper(rs.getMetaData()).mapRow(rs) : null);
+
+        if (product != null) {
+            populateProductOrders(Collections.singletonList(product));
+        }
+        return product;
+    }
+
+    @Override
+    public Long getProductVersion(long id) throws SQLException {
+        Product links = getProductVersionWithOrderIds(id);
+        return links == null ? null : links.getLinkedVersion();
+    }
+
+    @Override
+    public Product getProductVersionWithOrderIds(long id) throws SQLException {
+        String sql = SqlQueries.SELECT_PRODUCT_VERSION_WITH_ORDER_IDS.getSql();
         return DaoUtils.executeQuery(sql, stmt -> stmt.setLong(1, id), rs -> {
-            if (rs.next()) {
-                Product product = mapResultSetToProduct(rs);
-                populateProductOrders(Collections.singletonList(product));
-                return product;
+            OrderLinkRowMapper orderLinkRowMapper = new OrderLinkRowMapper(rs.getMetaData());
+            int versionColumn = RowMapper.columnIndex(rs.getMetaData(), "version");
+            Product product = null;
+            while (rs.next()) {
+                if (product == null) {
+                    product = new Product.Builder()
+                            .withId(id)
+                            .withVersion(rs.getLong(versionColumn))
+                            .withOrders(new ArrayList<>())
+                            .build();
+                }
+
+                if (orderLinkRowMapper.getOrderId(rs) > 0) {
+                    Order order = orderLinkRowMapper.mapRow(rs);
+                    product.getOrders().add(order);
+                    order.getProducts().add(product);
+                }
+            }
+            return product;
+        });
+    }
+
+    @Override
+    public void streamAllProductIds(LongConsumer consumer) throws SQLException {
+        String sql = SqlQueries.SELECT_ALL_PRODUCT_IDS.getSql();
+        DaoUtils.executeStreamingQuery(sql, stmt -> {}, rs -> {
+            while (rs.next()) {
+                consumer.accept(rs.getLong(1));
             }
             return null;
         });
     }
 
+    @Override
+    public List<Long> getMostOrderedProductIds(int limit) throws SQLException {
+        String sql = SqlQueries.SELECT_MOST_ORDERED_PRODUCT_IDS.getSql();
+        return DaoUtils.executeQuery(sql, stmt -> stmt.setInt(1, limit), rs -> {
+            List<Long> ids = new ArrayList<>();
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+            return ids;
+        });
+    }
+
+    @Override
+    public List<Product> getProductsByIds(Collection<Long> ids) throws SQLException {
+        return getProductsByIds(SqlQueries.SELECT_PRODUCTS_BY_IDS.getSql(), ids, true);
+    }
+
+    @Override
+    public List<Product> getProductsWithoutOrdersByIds(Collection<Long> ids) throws SQLException {
+        return getProductsByIds(SqlQueries.SELECT_PRODUCT_FIELDS_BY_IDS.getSql(), ids, false);
+    }
+
+    private List<Product> getProductsByIds(String sql, Collection<Long> ids, boolean withOrders) throws SQLException {
+        List<Long> distinctIds = ids.stream().distinct().toList();
+
+        List<Product> products = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + ID_CHUNK_SIZE, distinctIds.size()));
+            List<Product> chunkProducts = DaoUtils.executeQuery(sql,
+                    stmt -> DaoUtils.setLongArray(stmt, 1, chunk), this::mapResultSetToProducts);
+
+            if (withOrders) {
+                populateProductOrders(chunkProducts);
+            }
+            products.addAll(chunkProducts);
+        }
+        return products;
+    }
+
     @Override
     public List<Product> getAllProducts() throws SQLException {
-        String sql = SqlQueries.SELECT_ALL_FROM.getSql().formatted("*", "products");
+        String sql = SqlQueries.SELECT_ALL_PRODUCTS.getSql();
         List<Product> products = DaoUtils.executeQuery(sql, stmt -> {}, this::mapResultSetToProducts);
 
         populateProductOrders(products);
         return products;
     }
 
+    @Override
+    public void streamAllProducts(Consumer<Product> consumer) throws SQLException {
+        String sql = SqlQueries.SELECT_ALL_PRODUCTS_WITH_ORDER_IDS.getSql();
+        DaoUtils.executeStreamingQuery(sql, stmt -> {}, rs -> {
+            ProductRowMapper productRowMapper = new ProductRowMapper(rs.getMetaData());
+            OrderLinkRowMapper orderLinkRowMapper = new OrderLinkRowMapper(rs.getMetaData());
+            Product current = null;
+            while (rs.next()) {
+                long productId = productRowMapper.getProductId(rs);
+                if (current == null || current.getId() != productId) {
+                    if (current != null) {
+                        consumer.accept(current);
+                    }
+                    current = productRowMapper.mapRow(rs);
+                }
+
+                long orderId = orderLinkRowMapper.getOrderId(rs);
+                if (orderId > 0) {
+                    Order order = orderLinkRowMapper.mapRow(rs);
+                    current.getOrders().add(order);
+                    order.getProducts().add(current);
+                }
+            }
+            if (current != null) {
+                consumer.accept(current);
+            }
+            return null;
+        });
+    }
+
     @Override
     public Product getProductWithOrdersById(long id) throws SQLException {
-        String sql = "SELECT p.id, p.name, p.price, o.id AS order_id " +
-                "FROM products p " +
-                "LEFT JOIN orders_products op ON p.id = op.product_id " +
-                "LEFT JOIN orders o ON op.order_id = o.id " +
-                "WHERE p.id = ?";
+        String sql = SqlQueries.SELECT_PRODUCT_WITH_ORDERS_BY_ID.getSql();
 
         return DaoUtils.executeQuery(sql, stmt -> stmt.setLong(1, id), rs -> {
+            ProductRowMapper productRowMapper = new ProductRowMapper(rs.getMetaData());
+            OrderLinkRowMapper orderLinkRowMapper = new OrderLinkRowMapper(rs.getMetaData());
             Product.Builder productBuilder = null;
             List<Order> orders = new ArrayList<>();
             while (rs.next()) {
                 if (productBuilder == null) {
-                    productBuilder = mapResultSetToProduct(rs).toBuilder();
+                    productBuilder = productRowMapper.mapRow(rs).toBuilder();
                 }
 
-                long orderId = rs.getLong("order_id");
+                long orderId = orderLinkRowMapper.getOrderId(rs);
                 if (orderId > 0) {
-                    Order order = mapResultSetToOrder(rs);
+                    Order order = orderLinkRowMapper.mapRow(rs);
                     orders.add(order);
                     order.getProducts().add(productBuilder.build());
                 }
@@ -118,49 +246,37 @@ public class ProductDaoImpl implements ProductDao {
     }
 
     private List<Product> mapResultSetToProducts(ResultSet rs) throws SQLException {
+        ProductRowMapper productRowMapper = new ProductRowMapper(rs.getMetaData());
         List<Product> products = new ArrayList<>();
         while (rs.next()) {
-            Product product = mapResultSetToProduct(rs);
+            Product product = productRowMapper.mapRow(rs);
             products.add(product);
         }
         return products;
     }
 
-    private Product mapResultSetToProduct(ResultSet rs) throws SQLException {
-        return new Product.Builder()
-                .withId(rs.getLong("id"))
-                .withName(rs.getString("name"))
-                .withPrice(rs.getDouble("price"))
-                .withOrders(new ArrayList<>()) 
-                .build();
-    }
-
-    private Order mapResultSetToOrder(ResultSet rs) throws SQLException {
-        return new Order.Builder()
-                .withId(rs.getLong("order_id"))
-                .withProducts(new ArrayList<>()) 
-                .build();
-    }
-
-    
     private void populateProductOrders(List<Product> products) throws SQLException {
+        if (products.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Product> productsById = new HashMap<>();
         for (Product product : products) {
-            List<Order> orders = getOrdersByProductId(product.getId());
-            product.setOrders(orders); 
-            for (Order order : orders) {
-                order.getProducts().add(product); 
-            }
+            product.setOrders(new ArrayList<>());
+            productsById.put(product.getId(), product);
         }
-    }
 
-    private List<Order> getOrdersByProductId(long productId) throws SQLException {
-        String sql = SqlQueries.SELECT_ORDERS_BY_PRODUCT_ID.getSql();
-        return DaoUtils.executeQuery(sql, stmt -> stmt.setLong(1, productId), rs -> {
-            List<Order> orders = new ArrayList<>();
+        String sql = SqlQueries.SELECT_ORDER_IDS_BY_PRODUCT_IDS.getSql();
+        DaoUtils.executeQuery(sql, stmt -> DaoUtils.setLongArray(stmt, 1, productsById.keySet()), rs -> {
+            int productIdColumn = RowMapper.columnIndex(rs.getMetaData(), "product_id");
+            OrderLinkRowMapper orderLinkRowMapper = new OrderLinkRowMapper(rs.getMetaData());
             while (rs.next()) {
-                orders.add(mapResultSetToOrder(rs));
+                Product product = productsById.get(rs.getLong(productIdColumn));
+                Order order = orderLinkRowMapper.mapRow(rs);
+                product.getOrders().add(order);
+                order.getProducts().add(product);
             }
-            return orders;
+            return null;
         });
     }
 
@@ -169,9 +285,9 @@ public class ProductDaoImpl implements ProductDao {
         DaoUtils.executeUpdate(deleteSql, stmt -> stmt.setLong(1, product.getId()));
 
         if (product.getOrders() != null && !product.getOrders().isEmpty()) {
-            String insertSql = SqlQueries.INSERT_INTO.getSql().formatted("orders_products", "order_id, product_id", "?, ?");
-            try (Connection connection = DataBaseUtil.getConnection();
-                 PreparedStatement insertStmt = connection.prepareStatement(insertSql)) {
+            String insertSql = SqlQueries.INSERT_ORDER_PRODUCTS.getSql();
+            try (Connection connection = DaoUtils.getConnection();
+                 PreparedStatement insertStmt = DaoUtils.prepareStatement(connection, insertSql)) {
                 for (Order order : product.getOrders()) {
                     insertStmt.setLong(1, order.getId());
                     insertStmt.setLong(2, product.getId());
@@ -183,4 +299,53 @@ public class ProductDaoImpl implements ProductDao {
             }
         }
     }
+
+    private static final class ProductRowMapper implements RowMapper<Product> {
+        private final int idColumn;
+        private final int nameColumn;
+        private final int priceColumn;
+        private final int versionColumn;
+
+        private ProductRowMapper(ResultSetMetaData metaData) throws SQLException {
+            idColumn = RowMapper.columnIndex(metaData, "id");
+            nameColumn = RowMapper.columnIndex(metaData, "name");
+            priceColumn = RowMapper.columnIndex(metaData, "price");
+            versionColumn = RowMapper.columnIndex(metaData, "version");
+        }
+
+        private long getProductId(ResultSet rs) throws SQLException {
+            return rs.getLong(idColumn);
+        }
+
+        @Override
+        public Product mapRow(ResultSet rs) throws SQLException {
+            return new Product.Builder()
+                    .withId(rs.getLong(idColumn))
+                    .withName(rs.getString(nameColumn))
+                    .withPrice(rs.getDouble(priceColumn))
+                    .withVersion(rs.getLong(versionColumn))
+                    .withOrders(new ArrayList<>())
+                    .build();
+        }
+    }
+
+    private static final class OrderLinkRowMapper implements RowMapper<Order> {
+        private final int orderIdColumn;
+
+        private OrderLinkRowMapper(ResultSetMetaData metaData) throws SQLException {
+            orderIdColumn = RowMapper.columnIndex(metaData, "order_id");
+        }
+
+        private long getOrderId(ResultSet rs) throws SQLException {
+            return rs.getLong(orderIdColumn);
+        }
+
+        @Override
+        public Order mapRow(ResultSet rs) throws SQLException {
+            return new Order.Builder()
+                    .withId(rs.getLong(orderIdColumn))
+                    .withProducts(new ArrayList<>())
+                    .build();
+        }
+    }
 }
@@ -3,14 +3,17 @@ package productstore.dao.impl;
 import productstore.dao.SqlQueries;
 import productstore.dao.UserDao;
 import productstore.dao.util.DaoUtils;
+import productstore.dao.util.RowMapper;
 import productstore.model.Order;
 import productstore.model.User;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public class UserDaoImpl implements UserDao {
 
@@ -23,6 +26,15 @@ public class UserDaoImpl implements UserDao {
         }, this::mapResultSetToUsers);
     }
 
+    @Override
+    public List<User> getUsersAfterId(long afterId, int pageSize) throws SQLException {
+        String sql = SqlQueries.SELECT_USERS_AFTER_ID.getSql();
+        return DaoUtils.executeQuery(sql, stmt -> {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, pageSize);
+        }, this::mapResultSetToUsers);
+    }
+
     @Override
     public User saveUser(User user) throws SQLException {
         if (user.getName() == null || user.getName().trim().isEmpty()) {
@@ -54,16 +66,84 @@ public class UserDaoImpl implements UserDao {
         });
     }
 
+    @Override
+    public Long getUserVersion(long id) throws SQLException {
+        String sql = SqlQueries.SELECT_USER_VERSION.getSql();
+        return DaoUtils.executeQuery(sql, stmt -> stmt.setLong(1, id), rs -> rs.next() ? rs.getLong(1) : null);
+    }
+
+    @Override
+    public List<Long> getOrderedProductIds(long userId) throws SQLException {
+        String sql = SqlQueries.SELECT_ORDERED_PRODUCT_IDS_BY_USER_ID.getSql();
+        return DaoUtils.executeQuery(sql, stmt -> stmt.setLong(1, userId), rs -> {
+            List<Long> ids = new ArrayList<>();
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+            return ids;
+        });
+    }
+
+    @Override
+    public void streamAllUserIds(LongConsumer consumer) throws SQLException {
+        String sql = SqlQueries.SELECT_ALL_USER_IDS.getSql();
+        DaoUtils.executeStreamingQuery(sql, stmt -> {}, rs -> {
+            while (rs.next()) {
+                consumer.accept(rs.getLong(1));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Long> getMostActiveUserIds(int limit) throws SQLException {
+        String sql = SqlQueries.SELECT_MOST_ACTIVE_USER_IDS.getSql();
+        return DaoUtils.executeQuery(sql, stmt -> stmt.setInt(1, limit), rs -> {
+            List<Long> ids = new ArrayList<>();
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+            return ids;
+        });
+    }
+
     @Override
     public List<User> getAllUsers() throws SQLException {
-        String sql = SqlQueries.SELECT_ALL_FROM.getSql().formatted("u.id AS user_id, u.name, u.email, o.id AS order_id", "users u LEFT JOIN orders o ON u.id = o.user_id");
+        String sql = SqlQueries.SELECT_ALL_USERS_ORDERED_BY_ID.getSql();
         return DaoUtils.executeQuery(sql, stmt -> {}, this::mapResultSetToUsers);
     }
 
     @Override
-    public void updateUser(User user) throws SQLException {
-        String sql = SqlQueries.UPDATE_SET.getSql().formatted("users", "name = ?, email = ?", "id = ?");
-        DaoUtils.executeUpdate(sql, stmt -> {
+    public void streamAllUsers(Consumer<User> consumer) throws SQLException {
+        String sql = SqlQueries.SELECT_ALL_USERS_ORDERED_BY_ID.getSql();
+        DaoUtils.executeStreamingQuery(sql, stmt -> {}, rs -> {
+            UserRowMapper userRowMapper = new UserRowMapper(rs.getMetaData());
+            User current = null;
+            while (rs.next()) {
+                long userId = userRowMapper.getUserId(rs);
+                if (current == null || current.getId() != userId) {
+                    if (current != null) {
+                        consumer.accept(current);
+                    }
+                    current = userRowMapper.mapRow(rs);
+                }
+
+                long orderId = userRowMapper.getOrderId(rs);
+                if (orderId > 0) {
+                    current.getOrders().add(new Order.Builder().withId(orderId).build());
+                }
+            }
+            if (current != null) {
+                consumer.accept(current);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public int updateUser(User user) throws SQLException {
+        String sql = SqlQueries.UPDATE_USER.getSql();
+        return DaoUtils.executeUpdate(sql, stmt -> {
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
             stmt.setLong(3, user.getId());
@@ -71,28 +151,24 @@ public class UserDaoImpl implements UserDao {
     }
 
     @Override
-    public void deleteUser(long id) throws SQLException {
-
-        String deleteOrdersSql = SqlQueries.DELETE_USER_ORDERS.getSql();
-        DaoUtils.executeUpdate(deleteOrdersSql, stmt -> stmt.setLong(1, id));
-
-
+    public int deleteUser(long id) throws SQLException {
         String deleteUserSql = SqlQueries.DELETE_USER.getSql();
-        DaoUtils.executeUpdate(deleteUserSql, stmt -> stmt.setLong(1, id));
+        return DaoUtils.executeUpdate(deleteUserSql, stmt -> stmt.setLong(1, id));
     }
 
     private Map<Long, User> mapResultSetToUsersWithOrders(ResultSet rs) throws SQLException {
-        Map<Long, User> userMap = new HashMap<>();
+        UserRowMapper userRowMapper = new UserRowMapper(rs.getMetaData());
+        Map<Long, User> userMap = new LinkedHashMap<>();
         while (rs.next()) {
-            long userId = rs.getLong("user_id");
+            long userId = userRowMapper.getUserId(rs);
             User user = userMap.get(userId);
 
             if (user == null) {
-                user = mapResultSetToUser(rs);
+                user = userRowMapper.mapRow(rs);
                 userMap.put(userId, user);
             }
 
-            long orderId = rs.getLong("order_id");
+            long orderId = userRowMapper.getOrderId(rs);
             if (orderId > 0) {
                 user.getOrders().add(new Order.Builder().withId(orderId).build());
             }
@@ -104,12 +180,38 @@ public class UserDaoImpl implements UserDao {
         return new ArrayList<>(mapResultSetToUsersWithOrders(rs).values());
     }
 
-    private User mapResultSetToUser(ResultSet rs) throws SQLException {
-        return new User.Builder()
-                .withId(rs.getLong("user_id"))
-                .withName(rs.getString("name"))
-                .withEmail(rs.getString("email"))
-                .withOrders(new ArrayList<>())
-                .build();
+    private static final class UserRowMapper implements RowMapper<User> {
+        private final int userIdColumn;
+        private final int nameColumn;
+        private final int emailColumn;
+        private final int versionColumn;
+        private final int orderIdColumn;
+
+        private UserRowMapper(ResultSetMetaData metaData) throws SQLException {
+            userIdColumn = RowMapper.columnIndex(metaData, "user_id");
+            nameColumn = RowMapper.columnIndex(metaData, "name");
+            emailColumn = RowMapper.columnIndex(metaData, "email");
+            versionColumn = RowMapper.columnIndex(metaData, "version");
+            orderIdColumn = RowMapper.columnIndex(metaData, "order_id");
+        }
+
+        private long getUserId(ResultSet rs) throws SQLException {
+            return rs.getLong(userIdColumn);
+        }
+
+        private long getOrderId(ResultSet rs) throws SQLException {
+            return rs.getLong(orderIdColumn);
+        }
+
+        @Override
+        public User mapRow(ResultSet rs) throws SQLException {
+            return new User.Builder()
+                    .withId(rs.getLong(userIdColumn))
+                    .withName(rs.getString(nameColumn))
+                    .withEmail(rs.getString(emailColumn))
+                    .withVersion(rs.getLong(versionColumn))
+                    .withOrders(new ArrayList<>())
+                    .build();
+        }
     }
 }
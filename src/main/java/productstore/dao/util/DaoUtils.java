@@ -3,14 +3,32 @@ package productstore.dao.util;
 import productstore.db.DataBaseUtil;
 
 import java.sql.*;
+import java.util.Collection;
 
 public class DaoUtils {
 
+    private static final int STREAMING_FETCH_SIZE = 500;
+
     private DaoUtils() {}
 
+    public static Connection getConnection() throws SQLException {
+        Connection connection = TransactionContext.currentConnection();
+        return connection != null ? connection : DataBaseUtil.getConnection();
+    }
+
+    public static PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        StatementCacheMetrics.record(connection, sql);
+        return connection.prepareStatement(sql);
+    }
+
+    private static PreparedStatement prepareStatement(Connection connection, String sql, int autoGeneratedKeys) throws SQLException {
+        StatementCacheMetrics.record(connection, sql);
+        return connection.prepareStatement(sql, autoGeneratedKeys);
+    }
+
     public static <T> T executeInsert(String sql, PreparedStatementSetter setter, GeneratedKeyHandler<T> handler) throws SQLException {
-        try(Connection connection = DataBaseUtil.getConnection();
-            PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try(Connection connection = getConnection();
+            PreparedStatement stmt = prepareStatement(connection, sql, Statement.RETURN_GENERATED_KEYS)) {
             setter.setParameters(stmt);
             stmt.executeUpdate();
             try(ResultSet generatedKeys = stmt.getGeneratedKeys()) {
@@ -20,12 +38,15 @@ public class DaoUtils {
     }
 
     public static <T> T executeInTransaction(Connection connection, TransactionalOperation<T> operation) throws SQLException {
+        if (TransactionContext.isActive()) {
+            return operation.execute();
+        }
         try {
             connection.setAutoCommit(false);
             T result = operation.execute();
             connection.commit();
             return result;
-        } catch (SQLException e) {
+        } catch (SQLException | RuntimeException e) {
             connection.rollback();
             throw e;
         } finally {
@@ -34,8 +55,8 @@ public class DaoUtils {
     }
 
     public static <T> T executeQuery(String sql, PreparedStatementSetter setter, ResultSetHandler<T> handler) throws SQLException {
-        try (Connection connection = DataBaseUtil.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = prepareStatement(connection, sql)) {
             setter.setParameters(stmt);
             try (ResultSet rs = stmt.executeQuery()) {
                 return handler.handle(rs);
@@ -43,11 +64,30 @@ public class DaoUtils {
         }
     }
 
-    public static void executeUpdate(String sql, PreparedStatementSetter setter) throws SQLException {
-        try (Connection connection = DataBaseUtil.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
+    public static <T> T executeStreamingQuery(String sql, PreparedStatementSetter setter, ResultSetHandler<T> handler) throws SQLException {
+        try (Connection connection = getConnection()) {
+            return executeInTransaction(connection, () -> {
+                try (PreparedStatement stmt = prepareStatement(connection, sql)) {
+                    stmt.setFetchSize(STREAMING_FETCH_SIZE);
+                    setter.setParameters(stmt);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        return handler.handle(rs);
+                    }
+                }
+            });
+        }
+    }
+
+    public static void setLongArray(PreparedStatement stmt, int parameterIndex, Collection<Long> values) throws SQLException {
+        Array array = stmt.getConnection().createArrayOf("bigint", values.toArray());
+        stmt.setArray(parameterIndex, array);
+    }
+
+    public static int executeUpdate(String sql, PreparedStatementSetter setter) throws SQLException {
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = prepareStatement(connection, sql)) {
             setter.setParameters(stmt);
-            stmt.executeUpdate();
+            return stmt.executeUpdate();
         }
     }
 }
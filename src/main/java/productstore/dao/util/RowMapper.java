@@ -0,0 +1,19 @@
+package productstore.dao.util;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface RowMapper<T> {
+    T mapRow(ResultSet rs) throws SQLException;
+
+    static int columnIndex(ResultSetMetaData metaData, String label) throws SQLException {
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+            if (label.equalsIgnoreCase(metaData.getColumnLabel(column))) {
+                return column;
+            }
+        }
+        throw new SQLException("Колонка " + label + " отсутствует в результате запроса.");
+    }
+}
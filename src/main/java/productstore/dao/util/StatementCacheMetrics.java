@@ -0,0 +1,60 @@
+package productstore.dao.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class StatementCacheMetrics {
+
+    private static final Cache<Connection, Set<String>> PREPARED_BY_CONNECTION = Caffeine.newBuilder().weakKeys().build();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private StatementCacheMetrics() {}
+
+    static void record(Connection connection, String sql) throws SQLException {
+        Connection physicalConnection = connection.unwrap(Connection.class);
+        Set<String> prepared = PREPARED_BY_CONNECTION.get(physicalConnection, key -> ConcurrentHashMap.newKeySet());
+        if (prepared.add(sql)) {
+            MISSES.increment();
+        } else {
+            HITS.increment();
+        }
+    }
+
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    public static double getHitRate() {
+        long hits = HITS.sum();
+        long total = hits + MISSES.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("hits", getHits());
+        snapshot.put("misses", getMisses());
+        snapshot.put("hitRate", getHitRate());
+        snapshot.put("connections", PREPARED_BY_CONNECTION.estimatedSize());
+        return snapshot;
+    }
+
+    public static void reset() {
+        PREPARED_BY_CONNECTION.invalidateAll();
+        HITS.reset();
+        MISSES.reset();
+    }
+}
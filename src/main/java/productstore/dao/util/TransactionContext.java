@@ -0,0 +1,143 @@
+package productstore.dao.util;
+
+import productstore.db.ConnectionPermits;
+import productstore.db.DataBaseUtil;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class TransactionContext {
+
+    private static final ThreadLocal<TransactionContext> CURRENT = new ThreadLocal<>();
+
+    private final boolean readOnly;
+    private Connection connection;
+    private Connection sharedConnection;
+    private ConnectionPermits.Gate permit;
+
+    private TransactionContext(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public static <T> T inTransaction(TransactionalOperation<T> operation) throws SQLException {
+        return execute(false, operation);
+    }
+
+    public static <T> T inReadOnlyTransaction(TransactionalOperation<T> operation) throws SQLException {
+        return execute(true, operation);
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    static Connection currentConnection() throws SQLException {
+        TransactionContext context = CURRENT.get();
+        return context == null ? null : context.getConnection();
+    }
+
+    private static <T> T execute(boolean readOnly, TransactionalOperation<T> operation) throws SQLException {
+        TransactionContext outer = CURRENT.get();
+        if (outer != null) {
+            if (outer.readOnly && !readOnly) {
+                throw new IllegalStateException("Нельзя начать изменяющую транзакцию внутри транзакции только для чтения.");
+            }
+            return operation.execute();
+        }
+
+        TransactionContext context = new TransactionContext(readOnly);
+        CURRENT.set(context);
+        try {
+            T result = operation.execute();
+            context.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            context.rollback(e);
+            throw e;
+        } finally {
+            CURRENT.remove();
+            context.close();
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (connection == null) {
+            ConnectionPermits.Gate gate = ConnectionPermits.acquire();
+            Connection opened;
+            try {
+                opened = DataBaseUtil.getConnection();
+                try {
+                    opened.setAutoCommit(false);
+                    opened.setReadOnly(readOnly);
+                    if (gate != null) {
+                        gate.opened(opened);
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    opened.close();
+                    throw e;
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (gate != null) {
+                    gate.release();
+                }
+                throw e;
+            }
+            permit = gate;
+            connection = opened;
+            sharedConnection = nonClosing(opened);
+        }
+        return sharedConnection;
+    }
+
+    private void commit() throws SQLException {
+        if (connection != null) {
+            connection.commit();
+        }
+    }
+
+    private void rollback(Exception cause) {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
+    private void close() throws SQLException {
+        if (connection != null) {
+            try {
+                connection.setReadOnly(false);
+                connection.setAutoCommit(true);
+            } finally {
+                try {
+                    if (permit != null) {
+                        permit.closing(connection);
+                    }
+                    connection.close();
+                } finally {
+                    if (permit != null) {
+                        permit.release();
+                    }
+                }
+            }
+        }
+    }
+
+    private static Connection nonClosing(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,69 @@
+package productstore.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+
+public final class ConnectionPermits {
+
+    private static final ThreadLocal<Gate> CURRENT = new ThreadLocal<>();
+    private static volatile Semaphore pool;
+
+    private ConnectionPermits() {}
+
+    public static void install(Semaphore permits) {
+        pool = permits;
+    }
+
+    public static Reservation tryReserve() {
+        Semaphore permits = pool;
+        if (permits == null) {
+            return new Reservation(null);
+        }
+        return permits.tryAcquire() ? new Reservation(permits) : null;
+    }
+
+    public static void bind(Gate gate) {
+        CURRENT.set(gate);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public static void reject(String reason) {
+        Gate gate = CURRENT.get();
+        if (gate != null) {
+            gate.reject(reason);
+        }
+    }
+
+    public static Gate acquire() throws SQLException {
+        Gate gate = CURRENT.get();
+        if (gate != null) {
+            gate.acquire();
+        }
+        return gate;
+    }
+
+    public record Reservation(Semaphore permits) implements AutoCloseable {
+        @Override
+        public void close() {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    public interface Gate {
+        void acquire() throws SQLException;
+
+        void opened(Connection connection) throws SQLException;
+
+        void closing(Connection connection);
+
+        void release();
+
+        void reject(String reason);
+    }
+}
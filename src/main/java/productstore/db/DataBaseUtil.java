@@ -2,11 +2,15 @@ package productstore.db;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import productstore.config.AppConfig;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 public class DataBaseUtil {
+    private static final int RESERVED_CONNECTIONS = (int) Math.max(0, AppConfig.getLong("db.reservedConnections", 2));
     private static HikariDataSource dataSource;
 
     private DataBaseUtil() {}
@@ -49,6 +53,32 @@ public class DataBaseUtil {
         return dataSource.getConnection();
     }
 
+    public static Connection openDedicatedConnection() throws SQLException {
+        if (dataSource == null) {
+            throw new IllegalStateException("DataSource не инициализирован. Вызовите initializeDataSource() перед использованием.");
+        }
+        Properties properties = new Properties();
+        properties.putAll(dataSource.getDataSourceProperties());
+        if (dataSource.getUsername() != null) {
+            properties.setProperty("user", dataSource.getUsername());
+        }
+        if (dataSource.getPassword() != null) {
+            properties.setProperty("password", dataSource.getPassword());
+        }
+        return DriverManager.getConnection(dataSource.getJdbcUrl(), properties);
+    }
+
+    public static int getMaximumPoolSize() {
+        if (dataSource == null) {
+            throw new IllegalStateException("DataSource не инициализирован. Вызовите initializeDataSource() перед использованием.");
+        }
+        return dataSource.getMaximumPoolSize();
+    }
+
+    public static int getAvailableConnections() {
+        return Math.max(1, getMaximumPoolSize() - RESERVED_CONNECTIONS);
+    }
+
     public static void closeDataSource() {
         if (dataSource != null) {
             dataSource.close();
@@ -0,0 +1,27 @@
+package productstore.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+public class MetricsRegistry {
+
+    private static final Map<String, Supplier<Map<String, Object>>> SOURCES = new ConcurrentSkipListMap<>();
+
+    private MetricsRegistry() {}
+
+    public static void register(String name, Supplier<Map<String, Object>> source) {
+        SOURCES.put(name, source);
+    }
+
+    public static void unregister(String name) {
+        SOURCES.remove(name);
+    }
+
+    public static Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        SOURCES.forEach((name, source) -> snapshot.put(name, source.get()));
+        return snapshot;
+    }
+}
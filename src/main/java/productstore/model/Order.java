@@ -7,6 +7,7 @@ public class Order {
 
     private long id;
     private User user;
+    private long version;
     private List<Product> products = new ArrayList<>();
 
     public Order() {}
@@ -14,6 +15,7 @@ public class Order {
     private Order(Builder builder) {
         this.id = builder.id;
         this.user = builder.user;
+        this.version = builder.version;
         this.products = builder.products;
     }
 
@@ -25,6 +27,10 @@ public class Order {
         return user;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public List<Product> getProducts() {
         if (this.products == null) {
             this.products = new ArrayList<>();
@@ -40,6 +46,10 @@ public class Order {
         this.user = user;
     }
 
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public void setProducts(List<Product> products) {
         if (products != null) {
             this.products = new ArrayList<>(products); 
@@ -52,6 +62,7 @@ public class Order {
         return new Builder()
                 .withId(this.id)
                 .withUser(this.user)
+                .withVersion(this.version)
                 .withProducts(this.products);
     }
 
@@ -66,6 +77,7 @@ public class Order {
     public static class Builder {
         private long id;
         private User user;
+        private long version;
         private List<Product> products = new ArrayList<>();
 
         public Builder withId(long id) {
@@ -78,6 +90,11 @@ public class Order {
             return this;
         }
 
+        public Builder withVersion(long version) {
+            this.version = version;
+            return this;
+        }
+
         public Builder withProducts(List<Product> products) {
             if (products != null) {
                 this.products = new ArrayList<>(products); 
@@ -0,0 +1,114 @@
+package productstore.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderSummary {
+
+    private long orderId;
+    private long userId;
+    private String userName;
+    private String userEmail;
+    private int lineCount;
+    private double totalPrice;
+    private List<Long> productIds = new ArrayList<>();
+
+    public OrderSummary() {}
+
+    private OrderSummary(Builder builder) {
+        this.orderId = builder.orderId;
+        this.userId = builder.userId;
+        this.userName = builder.userName;
+        this.userEmail = builder.userEmail;
+        this.lineCount = builder.lineCount;
+        this.totalPrice = builder.totalPrice;
+        this.productIds = builder.productIds;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderSummary{" +
+                "orderId=" + orderId +
+                ", userId=" + userId +
+                ", lineCount=" + lineCount +
+                ", totalPrice=" + totalPrice +
+                '}';
+    }
+
+    public static class Builder {
+        private long orderId;
+        private long userId;
+        private String userName;
+        private String userEmail;
+        private int lineCount;
+        private double totalPrice;
+        private List<Long> productIds = new ArrayList<>();
+
+        public Builder withOrderId(long orderId) {
+            this.orderId = orderId;
+            return this;
+        }
+
+        public Builder withUserId(long userId) {
+            this.userId = userId;
+            return this;
+        }
+
+        public Builder withUserName(String userName) {
+            this.userName = userName;
+            return this;
+        }
+
+        public Builder withUserEmail(String userEmail) {
+            this.userEmail = userEmail;
+            return this;
+        }
+
+        public Builder withLineCount(int lineCount) {
+            this.lineCount = lineCount;
+            return this;
+        }
+
+        public Builder withTotalPrice(double totalPrice) {
+            this.totalPrice = totalPrice;
+            return this;
+        }
+
+        public Builder withProductIds(List<Long> productIds) {
+            this.productIds = productIds != null ? new ArrayList<>(productIds) : new ArrayList<>();
+            return this;
+        }
+
+        public OrderSummary build() {
+            return new OrderSummary(this);
+        }
+    }
+}
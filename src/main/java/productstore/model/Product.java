@@ -7,6 +7,7 @@ public class Product {
     private long id;
     private String name;
     private double price;
+    private long version;
     private List<Order> orders;
 
     public Product(){}
@@ -15,6 +16,7 @@ public class Product {
         this.id = builder.id;
         this.name = builder.name;
         this.price = builder.price;
+        this.version = builder.version;
         this.orders = builder.orders;
     }
 
@@ -30,10 +32,25 @@ public class Product {
         return price;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public List<Order> getOrders() {
         return orders;
     }
 
+    public long getLinkedVersion() {
+        if (orders == null || orders.isEmpty()) {
+            return version;
+        }
+        long links = 0;
+        for (Order order : orders) {
+            links += mix(order.getId());
+        }
+        return mix(version ^ mix(links)) & Long.MAX_VALUE;
+    }
+
     public void setId(long id) {
         this.id = id;
     }
@@ -46,6 +63,10 @@ public class Product {
         this.price = price;
     }
 
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public void setOrders(List<Order> orders) {
         this.orders = orders;
     }
@@ -55,9 +76,16 @@ public class Product {
                 .withId(this.id)
                 .withName(this.name)
                 .withPrice(this.price)
+                .withVersion(this.version)
                 .withOrders(this.orders);
     }
 
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
     @Override
     public String toString() {
         return "Product{" +
@@ -71,6 +99,7 @@ public class Product {
         private long id;
         private String name;
         private double price;
+        private long version;
         private List<Order> orders;
 
         public Builder withId(long id) {
@@ -88,6 +117,11 @@ public class Product {
             return this;
         }
 
+        public Builder withVersion(long version) {
+            this.version = version;
+            return this;
+        }
+
         public Builder withOrders(List<Order> orders) {
             this.orders = orders;
             return this;
@@ -7,6 +7,7 @@ public class User {
     private long id;
     private String name;
     private String email;
+    private long version;
     private List<Order> orders;
 
     public User() {}
@@ -48,6 +49,14 @@ public class User {
         this.email = email;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public List<Order> getOrders() {
         return orders;
     }
@@ -70,6 +79,7 @@ public class User {
         private long id;
         private String name;
         private String email;
+        private long version;
         private List<Order> orders;
 
         public Builder withId(long id) {
@@ -87,13 +97,20 @@ public class User {
             return this;
         }
 
+        public Builder withVersion(long version) {
+            this.version = version;
+            return this;
+        }
+
         public Builder withOrders(List<Order> orders) {
             this.orders = orders;
             return this;
         }
 
         public User build() {
-            return new User(id, name, email, orders);
+            User user = new User(id, name, email, orders);
+            user.setVersion(version);
+            return user;
         }
     }
 
@@ -2,18 +2,26 @@ package productstore.service;
 
 import productstore.servlet.dto.input.OrderInputDTO;
 import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.OrderSummaryOutputDTO;
 import productstore.servlet.dto.output.ProductOutputDTO;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface OrderService {
     OrderOutputDTO createOrder(OrderInputDTO orderDto) throws SQLException;
     OrderOutputDTO getOrderById(long id) throws SQLException;
+    long getOrderVersion(long id) throws SQLException;
     List<OrderOutputDTO> getAllOrders() throws SQLException;
-    void addProductsToOrder(long orderId, List<Long> productIds) throws SQLException;
+    void streamAllOrders(Consumer<OrderOutputDTO> consumer) throws SQLException;
+    int addProductsToOrder(long orderId, List<Long> productIds) throws SQLException;
     List<ProductOutputDTO> getProductsByOrderId(long orderId) throws SQLException;
     List<OrderOutputDTO> getOrdersWithPagination(int pageNumber, int pageSize) throws SQLException;
+    List<OrderOutputDTO> getOrdersAfterId(long afterId, int pageSize) throws SQLException;
+    List<OrderSummaryOutputDTO> getOrderSummariesWithPagination(int pageNumber, int pageSize) throws SQLException;
+    List<OrderSummaryOutputDTO> getOrderSummariesAfterId(long afterId, int pageSize) throws SQLException;
+    void streamAllOrderSummaries(Consumer<OrderSummaryOutputDTO> consumer) throws SQLException;
     void updateOrder(OrderInputDTO orderInputDTO) throws SQLException;
     void deleteOrder(long id) throws SQLException;
 }
@@ -5,16 +5,23 @@ import productstore.servlet.dto.output.ProductOutputDTO;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ProductService {
     ProductOutputDTO createProduct(ProductInputDTO productInputDTO) throws SQLException;
 
     ProductOutputDTO getProductById(long id) throws SQLException;
 
+    long getProductVersion(long id) throws SQLException;
+
     List<ProductOutputDTO> getAllProducts() throws SQLException;
 
+    void streamAllProducts(Consumer<ProductOutputDTO> consumer) throws SQLException;
+
     List<ProductOutputDTO> getProductsWithPagination(int pageNumber, int pageSize) throws SQLException;
 
+    List<ProductOutputDTO> getProductsAfterId(long afterId, int pageSize) throws SQLException;
+
     void updateProduct(ProductInputDTO productInputDTO) throws SQLException;
 
     void deleteProduct(long id) throws SQLException;
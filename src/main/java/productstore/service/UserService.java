@@ -5,6 +5,7 @@ import productstore.servlet.dto.output.UserOutputDTO;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserService {
 
@@ -12,10 +13,18 @@ public interface UserService {
 
     UserOutputDTO getUserById(long id) throws SQLException;
 
+    long getUserVersion(long id) throws SQLException;
+
+    List<Long> getOrderedProductIds(long id) throws SQLException;
+
     List<UserOutputDTO> getAllUsers() throws SQLException;
 
+    void streamAllUsers(Consumer<UserOutputDTO> consumer) throws SQLException;
+
     List<UserOutputDTO> getUsersWithPagination(int pageNumber, int pageSize) throws SQLException;
 
+    List<UserOutputDTO> getUsersAfterId(long afterId, int pageSize) throws SQLException;
+
     void updateUser(UserInputDTO userInputDTO) throws SQLException;
 
     void deleteUser(long id) throws SQLException;
@@ -0,0 +1,162 @@
+package productstore.service.impl;
+
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.service.OrderService;
+import productstore.service.apierror.OrderNotFoundException;
+import productstore.servlet.dto.input.OrderInputDTO;
+import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.OrderSummaryOutputDTO;
+import productstore.servlet.dto.output.ProductOutputDTO;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class CachingOrderService implements OrderService {
+
+    private final OrderService delegate;
+    private final EntityCaches caches;
+    private final ExistenceFilters filters;
+    private final ProductCatalog catalog;
+
+    public CachingOrderService(OrderService delegate, EntityCaches caches) {
+        this(delegate, caches, ExistenceFilters.disabled());
+    }
+
+    public CachingOrderService(OrderService delegate, EntityCaches caches, ExistenceFilters filters) {
+        this(delegate, caches, filters, ProductCatalog.disabled());
+    }
+
+    public CachingOrderService(OrderService delegate, EntityCaches caches, ExistenceFilters filters, ProductCatalog catalog) {
+        this.delegate = delegate;
+        this.caches = caches;
+        this.filters = filters;
+        this.catalog = catalog;
+    }
+
+    @Override
+    public OrderOutputDTO createOrder(OrderInputDTO orderDto) throws SQLException {
+        OrderOutputDTO createdOrder = delegate.createOrder(orderDto);
+        filters.addOrder(createdOrder.getId());
+        caches.users().invalidate(orderDto.getUserId());
+        caches.invalidateProducts(orderDto.getProductIds());
+        orderDto.getProductIds().forEach(catalog::remove);
+        return createdOrder;
+    }
+
+    @Override
+    public OrderOutputDTO getOrderById(long id) throws SQLException {
+        requireKnownOrder(id);
+        try {
+            return caches.orders().get(id, delegate::getOrderById);
+        } catch (OrderNotFoundException e) {
+            filters.orderFalsePositive();
+            throw e;
+        }
+    }
+
+    @Override
+    public long getOrderVersion(long id) throws SQLException {
+        requireKnownOrder(id);
+        try {
+            return caches.orders().loadOrStale(id, delegate::getOrderVersion, OrderOutputDTO::getVersion);
+        } catch (OrderNotFoundException e) {
+            filters.orderFalsePositive();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<OrderOutputDTO> getAllOrders() throws SQLException {
+        return delegate.getAllOrders();
+    }
+
+    @Override
+    public void streamAllOrders(Consumer<OrderOutputDTO> consumer) throws SQLException {
+        delegate.streamAllOrders(consumer);
+    }
+
+    @Override
+    public int addProductsToOrder(long orderId, List<Long> productIds) throws SQLException {
+        try {
+            return delegate.addProductsToOrder(orderId, productIds);
+        } finally {
+            caches.orders().invalidate(orderId);
+            caches.invalidateProducts(productIds);
+            productIds.forEach(catalog::remove);
+        }
+    }
+
+    @Override
+    public List<ProductOutputDTO> getProductsByOrderId(long orderId) throws SQLException {
+        requireKnownOrder(orderId);
+        try {
+            return delegate.getProductsByOrderId(orderId);
+        } catch (OrderNotFoundException e) {
+            filters.orderFalsePositive();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<OrderOutputDTO> getOrdersWithPagination(int pageNumber, int pageSize) throws SQLException {
+        return delegate.getOrdersWithPagination(pageNumber, pageSize);
+    }
+
+    @Override
+    public List<OrderOutputDTO> getOrdersAfterId(long afterId, int pageSize) throws SQLException {
+        return delegate.getOrdersAfterId(afterId, pageSize);
+    }
+
+    @Override
+    public List<OrderSummaryOutputDTO> getOrderSummariesWithPagination(int pageNumber, int pageSize) throws SQLException {
+        return delegate.getOrderSummariesWithPagination(pageNumber, pageSize);
+    }
+
+    @Override
+    public List<OrderSummaryOutputDTO> getOrderSummariesAfterId(long afterId, int pageSize) throws SQLException {
+        return delegate.getOrderSummariesAfterId(afterId, pageSize);
+    }
+
+    @Override
+    public void streamAllOrderSummaries(Consumer<OrderSummaryOutputDTO> consumer) throws SQLException {
+        delegate.streamAllOrderSummaries(consumer);
+    }
+
+    @Override
+    public void updateOrder(OrderInputDTO orderInputDTO) throws SQLException {
+        try {
+            delegate.updateOrder(orderInputDTO);
+        } finally {
+            caches.invalidateOrder(orderInputDTO.getId());
+            caches.users().invalidate(orderInputDTO.getUserId());
+        }
+    }
+
+    @Override
+    public void deleteOrder(long id) throws SQLException {
+        List<Long> linkedProductIds = catalog.isEnabled() ? linkedProductIds(id) : List.of();
+        try {
+            delegate.deleteOrder(id);
+        } finally {
+            caches.invalidateOrder(id);
+            linkedProductIds.forEach(catalog::remove);
+        }
+    }
+
+    private List<Long> linkedProductIds(long orderId) throws SQLException {
+        try {
+            return delegate.getProductsByOrderId(orderId).stream().map(ProductOutputDTO::getId).toList();
+        } catch (OrderNotFoundException e) {
+            return List.of();
+        }
+    }
+
+    private void requireKnownOrder(long id) {
+        if (!filters.mightContainOrder(id)) {
+            throw new OrderNotFoundException(OrderServiceImpl.ORDER_WITH_ID + id + OrderServiceImpl.NOT_FOUND);
+        }
+    }
+}
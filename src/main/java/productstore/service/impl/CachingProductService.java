@@ -0,0 +1,135 @@
+package productstore.service.impl;
+
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.service.ProductService;
+import productstore.service.apierror.ProductNotFoundException;
+import productstore.servlet.dto.input.ProductInputDTO;
+import productstore.servlet.dto.output.ProductOutputDTO;
+import productstore.servlet.mapper.ProductMapper;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class CachingProductService implements ProductService {
+
+    private static final String PRODUCT_WITH_ID = "Product with ID ";
+    private static final String NOT_FOUND = " not found.";
+
+    private final ProductService delegate;
+    private final EntityCaches caches;
+    private final ExistenceFilters filters;
+    private final ProductCatalog catalog;
+    private final ProductMapper productMapper;
+
+    public CachingProductService(ProductService delegate, EntityCaches caches) {
+        this(delegate, caches, ExistenceFilters.disabled());
+    }
+
+    public CachingProductService(ProductService delegate, EntityCaches caches, ExistenceFilters filters) {
+        this(delegate, caches, filters, ProductCatalog.disabled(), ProductMapper.INSTANCE);
+    }
+
+    public CachingProductService(ProductService delegate, EntityCaches caches, ExistenceFilters filters,
+                                 ProductCatalog catalog, ProductMapper productMapper) {
+        this.delegate = delegate;
+        this.caches = caches;
+        this.filters = filters;
+        this.catalog = catalog;
+        this.productMapper = productMapper;
+    }
+
+    @Override
+    public ProductOutputDTO createProduct(ProductInputDTO productInputDTO) throws SQLException {
+        ProductOutputDTO createdProduct = delegate.createProduct(productInputDTO);
+        filters.addProduct(createdProduct.getId());
+        return createdProduct;
+    }
+
+    @Override
+    public ProductOutputDTO getProductById(long id) throws SQLException {
+        requireKnownProduct(id);
+        ProductCatalog.Entry cataloged = catalog.get(id);
+        if (cataloged != null) {
+            return productMapper.toProductOutputDTO(true, cataloged.toProduct());
+        }
+        try {
+            return caches.products().get(id, delegate::getProductById);
+        } catch (ProductNotFoundException e) {
+            filters.productFalsePositive();
+            throw e;
+        }
+    }
+
+    @Override
+    public long getProductVersion(long id) throws SQLException {
+        requireKnownProduct(id);
+        ProductCatalog.Entry cataloged = catalog.get(id);
+        if (cataloged != null) {
+            return cataloged.toProduct().getLinkedVersion();
+        }
+        try {
+            return caches.products().loadOrStale(id, delegate::getProductVersion, ProductOutputDTO::getVersion);
+        } catch (ProductNotFoundException e) {
+            filters.productFalsePositive();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ProductOutputDTO> getAllProducts() throws SQLException {
+        return delegate.getAllProducts();
+    }
+
+    @Override
+    public void streamAllProducts(Consumer<ProductOutputDTO> consumer) throws SQLException {
+        delegate.streamAllProducts(consumer);
+    }
+
+    @Override
+    public List<ProductOutputDTO> getProductsWithPagination(int pageNumber, int pageSize) throws SQLException {
+        return delegate.getProductsWithPagination(pageNumber, pageSize);
+    }
+
+    @Override
+    public List<ProductOutputDTO> getProductsAfterId(long afterId, int pageSize) throws SQLException {
+        return delegate.getProductsAfterId(afterId, pageSize);
+    }
+
+    @Override
+    public void updateProduct(ProductInputDTO productInputDTO) throws SQLException {
+        try {
+            delegate.updateProduct(productInputDTO);
+        } finally {
+            caches.invalidateProduct(productInputDTO.getId());
+        }
+    }
+
+    @Override
+    public void deleteProduct(long id) throws SQLException {
+        try {
+            delegate.deleteProduct(id);
+        } finally {
+            caches.invalidateProduct(id);
+        }
+    }
+
+    @Override
+    public ProductOutputDTO getProductWithOrdersById(long id) throws SQLException {
+        requireKnownProduct(id);
+        try {
+            return delegate.getProductWithOrdersById(id);
+        } catch (ProductNotFoundException e) {
+            filters.productFalsePositive();
+            throw e;
+        }
+    }
+
+    private void requireKnownProduct(long id) {
+        if (!filters.mightContainProduct(id)) {
+            throw new ProductNotFoundException(PRODUCT_WITH_ID + id + NOT_FOUND);
+        }
+    }
+}
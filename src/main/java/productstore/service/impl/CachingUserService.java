@@ -0,0 +1,120 @@
+package productstore.service.impl;
+
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.service.UserService;
+import productstore.service.apierror.UserNotFoundException;
+import productstore.servlet.dto.input.UserInputDTO;
+import productstore.servlet.dto.output.UserOutputDTO;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class CachingUserService implements UserService {
+
+    private static final String USER_WITH_ID = "User with ID ";
+    private static final String NOT_FOUND = " not found.";
+
+    private final UserService delegate;
+    private final EntityCaches caches;
+    private final ExistenceFilters filters;
+    private final ProductCatalog catalog;
+
+    public CachingUserService(UserService delegate, EntityCaches caches) {
+        this(delegate, caches, ExistenceFilters.disabled());
+    }
+
+    public CachingUserService(UserService delegate, EntityCaches caches, ExistenceFilters filters) {
+        this(delegate, caches, filters, ProductCatalog.disabled());
+    }
+
+    public CachingUserService(UserService delegate, EntityCaches caches, ExistenceFilters filters, ProductCatalog catalog) {
+        this.delegate = delegate;
+        this.caches = caches;
+        this.filters = filters;
+        this.catalog = catalog;
+    }
+
+    @Override
+    public UserOutputDTO createUser(UserInputDTO userInputDTO) throws SQLException {
+        UserOutputDTO createdUser = delegate.createUser(userInputDTO);
+        filters.addUser(createdUser.getId());
+        return createdUser;
+    }
+
+    @Override
+    public UserOutputDTO getUserById(long id) throws SQLException {
+        requireKnownUser(id);
+        try {
+            return caches.users().get(id, delegate::getUserById);
+        } catch (UserNotFoundException e) {
+            filters.userFalsePositive();
+            throw e;
+        }
+    }
+
+    @Override
+    public long getUserVersion(long id) throws SQLException {
+        requireKnownUser(id);
+        try {
+            return caches.users().loadOrStale(id, delegate::getUserVersion, UserOutputDTO::getVersion);
+        } catch (UserNotFoundException e) {
+            filters.userFalsePositive();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Long> getOrderedProductIds(long id) throws SQLException {
+        return delegate.getOrderedProductIds(id);
+    }
+
+    @Override
+    public List<UserOutputDTO> getAllUsers() throws SQLException {
+        return delegate.getAllUsers();
+    }
+
+    @Override
+    public void streamAllUsers(Consumer<UserOutputDTO> consumer) throws SQLException {
+        delegate.streamAllUsers(consumer);
+    }
+
+    @Override
+    public List<UserOutputDTO> getUsersWithPagination(int pageNumber, int pageSize) throws SQLException {
+        return delegate.getUsersWithPagination(pageNumber, pageSize);
+    }
+
+    @Override
+    public List<UserOutputDTO> getUsersAfterId(long afterId, int pageSize) throws SQLException {
+        return delegate.getUsersAfterId(afterId, pageSize);
+    }
+
+    @Override
+    public void updateUser(UserInputDTO userInputDTO) throws SQLException {
+        try {
+            delegate.updateUser(userInputDTO);
+        } finally {
+            caches.invalidateUser(userInputDTO.getId());
+        }
+    }
+
+    @Override
+    public void deleteUser(long id) throws SQLException {
+        List<Long> orderedProductIds = catalog.isEnabled() ? delegate.getOrderedProductIds(id) : List.of();
+        try {
+            delegate.deleteUser(id);
+        } finally {
+            caches.invalidateUser(id);
+            caches.products().invalidateAll();
+            orderedProductIds.forEach(catalog::remove);
+        }
+    }
+
+    private void requireKnownUser(long id) {
+        if (!filters.mightContainUser(id)) {
+            throw new UserNotFoundException(USER_WITH_ID + id + NOT_FOUND);
+        }
+    }
+}
@@ -2,7 +2,9 @@ package productstore.service.impl;
 
 import productstore.dao.OrderDao;
 import productstore.dao.ProductDao;
+import productstore.dao.util.TransactionContext;
 import productstore.model.Order;
+import productstore.model.OrderSummary;
 import productstore.model.Product;
 import productstore.service.OrderService;
 import productstore.service.apierror.OrderNotFoundException;
@@ -10,6 +12,7 @@ import productstore.service.apierror.ProductNotFoundException;
 import productstore.service.apierror.ProductServiceException;
 import productstore.servlet.dto.input.OrderInputDTO;
 import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.OrderSummaryOutputDTO;
 import productstore.servlet.dto.output.ProductOutputDTO;
 import productstore.servlet.mapper.OrderMapper;
 import productstore.servlet.mapper.ProductMapper;
@@ -17,11 +20,15 @@ import productstore.servlet.mapper.ProductMapper;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class OrderServiceImpl implements OrderService {
 
-    private static final String ORDER_WITH_ID = "User with ID ";
-    private static final String NOT_FOUND = " not found.";
+    static final String ORDER_WITH_ID = "Order with ID ";
+    static final String NOT_FOUND = " not found.";
     private final OrderDao orderDao;
     private final ProductDao productDao;
     private final OrderMapper orderMapper;
@@ -36,12 +43,44 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public List<OrderOutputDTO> getOrdersWithPagination(int pageNumber, int pageSize) throws SQLException {
-        List<Order> orders = orderDao.getOrdersWithPagination(pageNumber, pageSize);
+        List<Order> orders = TransactionContext.inReadOnlyTransaction(() -> orderDao.getOrdersWithPagination(pageNumber, pageSize));
         return orders.stream()
                 .map(order -> orderMapper.toOrderOutputDTO(false, order))
                 .toList();
     }
 
+    @Override
+    public List<OrderOutputDTO> getOrdersAfterId(long afterId, int pageSize) throws SQLException {
+        List<Order> orders = TransactionContext.inReadOnlyTransaction(() -> orderDao.getOrdersAfterId(afterId, pageSize));
+        return orders.stream()
+                .map(order -> orderMapper.toOrderOutputDTO(false, order))
+                .toList();
+    }
+
+    @Override
+    public List<OrderSummaryOutputDTO> getOrderSummariesWithPagination(int pageNumber, int pageSize) throws SQLException {
+        List<OrderSummary> summaries = TransactionContext.inReadOnlyTransaction(() -> orderDao.getOrderSummariesWithPagination(pageNumber, pageSize));
+        return summaries.stream()
+                .map(orderMapper::toOrderSummaryOutputDTO)
+                .toList();
+    }
+
+    @Override
+    public List<OrderSummaryOutputDTO> getOrderSummariesAfterId(long afterId, int pageSize) throws SQLException {
+        List<OrderSummary> summaries = TransactionContext.inReadOnlyTransaction(() -> orderDao.getOrderSummariesAfterId(afterId, pageSize));
+        return summaries.stream()
+                .map(orderMapper::toOrderSummaryOutputDTO)
+                .toList();
+    }
+
+    @Override
+    public void streamAllOrderSummaries(Consumer<OrderSummaryOutputDTO> consumer) throws SQLException {
+        TransactionContext.inReadOnlyTransaction(() -> {
+            orderDao.streamAllOrderSummaries(summary -> consumer.accept(orderMapper.toOrderSummaryOutputDTO(summary)));
+            return null;
+        });
+    }
+
     @Override
     public OrderOutputDTO createOrder(OrderInputDTO orderInputDTO) throws SQLException {
         if (orderInputDTO == null) {
@@ -50,86 +89,93 @@ public class OrderServiceImpl implements OrderService {
 
         Order order = orderMapper.toOrder(orderInputDTO);
 
-        List<Product> products = orderInputDTO.getProductIds().stream()
-                .map(this::getProductById).toList();
+        Order savedOrder = TransactionContext.inTransaction(() -> {
+            List<Product> products = getProductsByIds(orderInputDTO.getProductIds());
 
-        if (products.isEmpty()) {
-            throw new IllegalArgumentException("Order must contain at least one product.");
-        }
-
-        order.setProducts(products);
-        products.forEach(product -> {
-            if (product.getOrders() == null) {
-                product.setOrders(new ArrayList<>());
+            if (products.isEmpty()) {
+                throw new IllegalArgumentException("Order must contain at least one product.");
             }
-            product.getOrders().add(order);
-        });
 
-        Order savedOrder = orderDao.saveOrder(order);
+            order.setProducts(products);
+            products.forEach(product -> {
+                if (product.getOrders() == null) {
+                    product.setOrders(new ArrayList<>());
+                }
+                product.getOrders().add(order);
+            });
+
+            return orderDao.saveOrder(order);
+        });
         return orderMapper.toOrderOutputDTO(false, savedOrder);
     }
 
     @Override
     public OrderOutputDTO getOrderById(long id) throws SQLException {
-        Order order = orderDao.getOrderById(id);
+        Order order = TransactionContext.inReadOnlyTransaction(() -> orderDao.getOrderById(id));
         if (order == null) {
             throw new OrderNotFoundException(ORDER_WITH_ID + id + NOT_FOUND);
         }
         return orderMapper.toOrderOutputDTO(false, order);
     }
 
+    @Override
+    public long getOrderVersion(long id) throws SQLException {
+        Long version = TransactionContext.inReadOnlyTransaction(() -> orderDao.getOrderVersion(id));
+        if (version == null) {
+            throw new OrderNotFoundException(ORDER_WITH_ID + id + NOT_FOUND);
+        }
+        return version;
+    }
+
     @Override
     public void updateOrder(OrderInputDTO orderInputDTO) throws SQLException {
         if (orderInputDTO.getId() == null) {
             throw new IllegalArgumentException("Order ID cannot be null.");
         }
 
-        Order existingOrder = orderDao.getOrderById(orderInputDTO.getId());
-        if (existingOrder == null) {
+        int updated = TransactionContext.inTransaction(() ->
+                orderDao.updateOrderUser(orderInputDTO.getId(), orderInputDTO.getUserId()));
+        if (updated == 0) {
             throw new OrderNotFoundException(ORDER_WITH_ID + orderInputDTO.getId() + NOT_FOUND);
         }
-
-        Order order = orderMapper.toOrder(orderInputDTO);
-        order.setProducts(existingOrder.getProducts()); 
-
-        orderDao.updateOrder(order);
     }
 
     @Override
     public List<OrderOutputDTO> getAllOrders() throws SQLException {
-        List<Order> orders = orderDao.getAllOrders();
+        List<Order> orders = TransactionContext.inReadOnlyTransaction(orderDao::getAllOrders);
         return orders.stream()
                 .map(order -> orderMapper.toOrderOutputDTO(false, order))
                 .toList();
     }
 
     @Override
-    public void addProductsToOrder(long orderId, List<Long> productIds) throws SQLException {
-        Order order = orderDao.getOrderById(orderId);
-        if (order == null) {
-            throw new OrderNotFoundException(ORDER_WITH_ID + orderId + NOT_FOUND);
-        }
+    public void streamAllOrders(Consumer<OrderOutputDTO> consumer) throws SQLException {
+        TransactionContext.inReadOnlyTransaction(() -> {
+            orderDao.streamAllOrders(order -> consumer.accept(orderMapper.toOrderOutputDTO(false, order)));
+            return null;
+        });
+    }
 
-        List<Product> products = productIds.stream()
-                .map(this::getProductById).toList();
+    @Override
+    public int addProductsToOrder(long orderId, List<Long> productIds) throws SQLException {
+        return TransactionContext.inTransaction(() -> {
+            if (orderDao.getOrderVersion(orderId) == null) {
+                throw new OrderNotFoundException(ORDER_WITH_ID + orderId + NOT_FOUND);
+            }
 
-        if (products.isEmpty()) {
-            throw new IllegalArgumentException("At least one product must be added to the order.");
-        }
+            List<Product> products = getProductsByIds(productIds);
 
-        products.forEach(product -> {
-            if (product.getOrders() == null) {
-                product.setOrders(new ArrayList<>());
+            if (products.isEmpty()) {
+                throw new IllegalArgumentException("At least one product must be added to the order.");
             }
-            product.getOrders().add(order);
-        });
 
-        orderDao.addProductsToOrder(orderId, products);
+            return orderDao.addProductsToOrder(orderId, products);
+        });
     }
 
     @Override
     public List<ProductOutputDTO> getProductsByOrderId(long orderId) throws SQLException {
-        Order order = orderDao.getOrderById(orderId);
+        Order order = TransactionContext.inReadOnlyTransaction(() -> orderDao.getOrderById(orderId));
         if (order == null) {
             throw new OrderNotFoundException(ORDER_WITH_ID + orderId + NOT_FOUND);
         }
@@ -140,22 +186,32 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public void deleteOrder(long id) throws SQLException {
-        Order order = orderDao.getOrderById(id);
-        if (order == null) {
+        int deleted = TransactionContext.inTransaction(() -> orderDao.deleteOrder(id));
+        if (deleted == 0) {
             throw new OrderNotFoundException(ORDER_WITH_ID + id + NOT_FOUND);
         }
-        orderDao.deleteOrder(id);
     }
 
-    private Product getProductById(long productId) {
+    private List<Product> getProductsByIds(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+
         try {
-            Product product = productDao.getProductById(productId);
-            if (product == null) {
-                throw new ProductNotFoundException("Product with ID " + productId + NOT_FOUND);
+            Map<Long, Product> productsById = productDao.getProductsWithoutOrdersByIds(productIds).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+            List<Long> missingIds = productIds.stream()
+                    .filter(productId -> !productsById.containsKey(productId))
+                    .distinct()
+                    .toList();
+            if (!missingIds.isEmpty()) {
+                throw new ProductNotFoundException("Products with IDs " + missingIds + NOT_FOUND);
             }
-            return product;
+
+            return productIds.stream().map(productsById::get).toList();
         } catch (SQLException e) {
-            throw new ProductServiceException("Failed to retrieve product with ID " + productId, e);
+            throw new ProductServiceException("Failed to retrieve products with IDs " + productIds, e);
         }
     }
 }
@@ -1,6 +1,8 @@
 package productstore.service.impl;
 
+import productstore.cache.ProductCatalog;
 import productstore.dao.ProductDao;
+import productstore.dao.util.TransactionContext;
 import productstore.model.Product;
 import productstore.service.ProductService;
 import productstore.service.apierror.ProductNotFoundException;
@@ -10,6 +12,7 @@ import productstore.servlet.mapper.ProductMapper;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class ProductServiceImpl implements ProductService {
 
@@ -17,39 +20,72 @@ public class ProductServiceImpl implements ProductService {
     private static final String NOT_FOUND = " not found.";
     private final ProductDao productDao;
     private final ProductMapper productMapper;
+    private final ProductCatalog catalog;
 
     public ProductServiceImpl(ProductDao productDao, ProductMapper productMapper) {
+        this(productDao, productMapper, ProductCatalog.disabled());
+    }
+
+    public ProductServiceImpl(ProductDao productDao, ProductMapper productMapper, ProductCatalog catalog) {
         this.productDao = productDao;
         this.productMapper = productMapper;
+        this.catalog = catalog;
     }
 
     @Override
     public ProductOutputDTO createProduct(ProductInputDTO productInputDTO) throws SQLException {
         Product product = productMapper.toProduct(productInputDTO);
-        Product savedProduct = productDao.saveProduct(product);
+        Product savedProduct = TransactionContext.inTransaction(() -> productDao.saveProduct(product));
         return productMapper.toProductOutputDTO(true, savedProduct);
     }
 
     @Override
     public ProductOutputDTO getProductById(long id) throws SQLException {
-        Product product = productDao.getProductById(id);
+        long stamp = catalog.stamp();
+        Product product = TransactionContext.inReadOnlyTransaction(() -> productDao.getProductById(id));
         if (product == null) {
             throw new ProductNotFoundException(PRODUCT_WITH_ID + id + NOT_FOUND);
         }
+        catalog.put(product, stamp);
         return productMapper.toProductOutputDTO(true, product);
     }
 
+    @Override
+    public long getProductVersion(long id) throws SQLException {
+        Long version = TransactionContext.inReadOnlyTransaction(() -> productDao.getProductVersion(id));
+        if (version == null) {
+            throw new ProductNotFoundException(PRODUCT_WITH_ID + id + NOT_FOUND);
+        }
+        return version;
+    }
+
     @Override
     public List<ProductOutputDTO> getAllProducts() throws SQLException {
-        List<Product> products = productDao.getAllProducts();
+        List<Product> products = TransactionContext.inReadOnlyTransaction(productDao::getAllProducts);
         return products.stream()
                 .map(product -> productMapper.toProductOutputDTO(true, product))
                 .toList();
     }
 
+    @Override
+    public void streamAllProducts(Consumer<ProductOutputDTO> consumer) throws SQLException {
+        TransactionContext.inReadOnlyTransaction(() -> {
+            productDao.streamAllProducts(product -> consumer.accept(productMapper.toProductOutputDTO(true, product)));
+            return null;
+        });
+    }
+
     @Override
     public List<ProductOutputDTO> getProductsWithPagination(int pageNumber, int pageSize) throws SQLException {
-        List<Product> products = productDao.getProductWithPagination(pageNumber, pageSize);
+        List<Product> products = TransactionContext.inReadOnlyTransaction(() -> productDao.getProductWithPagination(pageNumber, pageSize));
+        return products.stream()
+                .map(product -> productMapper.toProductOutputDTO(true, product))
+                .toList();
+    }
+
+    @Override
+    public List<ProductOutputDTO> getProductsAfterId(long afterId, int pageSize) throws SQLException {
+        List<Product> products = TransactionContext.inReadOnlyTransaction(() -> productDao.getProductsAfterId(afterId, pageSize));
         return products.stream()
                 .map(product -> productMapper.toProductOutputDTO(true, product))
                 .toList();
@@ -58,23 +94,25 @@ public class ProductServiceImpl implements ProductService {
     @Override
     public void updateProduct(ProductInputDTO productInputDTO) throws SQLException {
         Product product = productMapper.toProduct(productInputDTO);
-        if (productDao.getProductById(product.getId()) == null) {
+        int updated = TransactionContext.inTransaction(() -> productDao.updateProduct(product));
+        catalog.remove(product.getId());
+        if (updated == 0) {
             throw new ProductNotFoundException(PRODUCT_WITH_ID + product.getId() + NOT_FOUND);
         }
-        productDao.updateProduct(product);
     }
 
     @Override
     public void deleteProduct(long id) throws SQLException {
-        if (productDao.getProductById(id) == null) {
+        int deleted = TransactionContext.inTransaction(() -> productDao.deleteProduct(id));
+        catalog.remove(id);
+        if (deleted == 0) {
             throw new ProductNotFoundException(PRODUCT_WITH_ID + id + NOT_FOUND);
         }
-        productDao.deleteProduct(id);
     }
 
     @Override
     public ProductOutputDTO getProductWithOrdersById(long id) throws SQLException {
-        Product product = productDao.getProductWithOrdersById(id);
+        Product product = TransactionContext.inReadOnlyTransaction(() -> productDao.getProductWithOrdersById(id));
         if (product == null) {
             throw new ProductNotFoundException(PRODUCT_WITH_ID + id + NOT_FOUND);
         }
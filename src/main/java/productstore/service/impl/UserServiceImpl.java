@@ -1,6 +1,7 @@
 package productstore.service.impl;
 
 import productstore.dao.UserDao;
+import productstore.dao.util.TransactionContext;
 import productstore.model.User;
 import productstore.service.UserService;
 import productstore.service.apierror.UserNotFoundException;
@@ -10,6 +11,7 @@ import productstore.servlet.mapper.UserMapper;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class UserServiceImpl implements UserService {
 
@@ -27,30 +29,60 @@ public class UserServiceImpl implements UserService {
     @Override
     public UserOutputDTO createUser(UserInputDTO userInputDTO) throws SQLException {
         User user = userMapper.toUser(userInputDTO);
-        User savedUser = userDao.saveUser(user);
+        User savedUser = TransactionContext.inTransaction(() -> userDao.saveUser(user));
         return userMapper.toUserOutputDTO(true, savedUser);
     }
 
     @Override
     public UserOutputDTO getUserById(long id) throws SQLException {
-        User user = userDao.getUserById(id);
+        User user = TransactionContext.inReadOnlyTransaction(() -> userDao.getUserById(id));
         if (user == null) {
             throw new UserNotFoundException(USER_WITH_ID + id + NOT_FOUND);
         }
         return userMapper.toUserOutputDTO(true, user);
     }
 
+    @Override
+    public long getUserVersion(long id) throws SQLException {
+        Long version = TransactionContext.inReadOnlyTransaction(() -> userDao.getUserVersion(id));
+        if (version == null) {
+            throw new UserNotFoundException(USER_WITH_ID + id + NOT_FOUND);
+        }
+        return version;
+    }
+
+    @Override
+    public List<Long> getOrderedProductIds(long id) throws SQLException {
+        return TransactionContext.inReadOnlyTransaction(() -> userDao.getOrderedProductIds(id));
+    }
+
     @Override
     public List<UserOutputDTO> getAllUsers() throws SQLException {
-        List<User> users = userDao.getAllUsers();
+        List<User> users = TransactionContext.inReadOnlyTransaction(userDao::getAllUsers);
         return users.stream()
                 .map(user -> userMapper.toUserOutputDTO(true, user))
                 .toList();
     }
 
+    @Override
+    public void streamAllUsers(Consumer<UserOutputDTO> consumer) throws SQLException {
+        TransactionContext.inReadOnlyTransaction(() -> {
+            userDao.streamAllUsers(user -> consumer.accept(userMapper.toUserOutputDTO(true, user)));
+            return null;
+        });
+    }
+
     @Override
     public List<UserOutputDTO> getUsersWithPagination(int pageNumber, int pageSize) throws SQLException {
-        List<User> users = userDao.getUserWithPagination(pageNumber, pageSize);
+        List<User> users = TransactionContext.inReadOnlyTransaction(() -> userDao.getUserWithPagination(pageNumber, pageSize));
+        return users.stream()
+                .map(user -> userMapper.toUserOutputDTO(true, user))
+                .toList();
+    }
+
+    @Override
+    public List<UserOutputDTO> getUsersAfterId(long afterId, int pageSize) throws SQLException {
+        List<User> users = TransactionContext.inReadOnlyTransaction(() -> userDao.getUsersAfterId(afterId, pageSize));
         return users.stream()
                 .map(user -> userMapper.toUserOutputDTO(true, user))
                 .toList();
@@ -59,17 +91,17 @@ public class UserServiceImpl implements UserService {
     @Override
     public void updateUser(UserInputDTO userInputDTO) throws SQLException {
         User user = userMapper.toUser(userInputDTO);
-        if (userDao.getUserById(user.getId()) == null) {
+        int updated = TransactionContext.inTransaction(() -> userDao.updateUser(user));
+        if (updated == 0) {
             throw new UserNotFoundException(USER_WITH_ID + user.getId() + NOT_FOUND);
         }
-        userDao.updateUser(user);
     }
 
     @Override
     public void deleteUser(long id) throws SQLException {
-        if (userDao.getUserById(id) == null) {
+        int deleted = TransactionContext.inTransaction(() -> userDao.deleteUser(id));
+        if (deleted == 0) {
             throw new UserNotFoundException(USER_WITH_ID + id + NOT_FOUND);
         }
-        userDao.deleteUser(id);
     }
 }
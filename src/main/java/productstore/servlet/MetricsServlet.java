@@ -0,0 +1,23 @@
+package productstore.servlet;
+
+import com.google.gson.Gson;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import productstore.metrics.MetricsRegistry;
+
+import java.io.IOException;
+
+@WebServlet("/api/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    private final transient Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.getWriter().write(gson.toJson(MetricsRegistry.snapshot()));
+    }
+}
@@ -7,59 +7,118 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.cache.ResponseBodyCache;
+import productstore.cache.SingleFlight;
 import productstore.dao.impl.OrderDaoImpl;
 import productstore.dao.impl.ProductDaoImpl;
 import productstore.service.apierror.ApiErrorResponse;
 import productstore.service.apierror.OrderNotFoundException;
 import productstore.service.OrderService;
 import productstore.service.apierror.ProductNotFoundException;
+import productstore.service.impl.CachingOrderService;
 import productstore.service.impl.OrderServiceImpl;
 import productstore.servlet.dto.input.OrderInputDTO;
 import productstore.servlet.dto.input.ProductIdsRequest;
+import productstore.servlet.dto.output.AddedProductsOutputDTO;
 import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.OrderSummaryOutputDTO;
 import productstore.servlet.dto.output.ProductOutputDTO;
 import productstore.servlet.dto.output.UserOutputDTO;
+import productstore.servlet.exception.RequestBodyTooLargeException;
 import productstore.servlet.mapper.OrderMapper;
 import productstore.servlet.mapper.ProductMapper;
+import productstore.servlet.util.AsyncDispatcher;
+import productstore.servlet.util.Compression;
+import productstore.servlet.util.ETagUtils;
+import productstore.servlet.util.JsonRequestReader;
+import productstore.servlet.util.JsonResponseWriter;
+import productstore.servlet.util.JsonStreamWriter;
 import productstore.servlet.util.PaginationUtils;
+import productstore.servlet.util.PathRouter;
+import productstore.servlet.util.StaleResponseUtils;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.List;
-import java.util.stream.Collectors;
 
-@WebServlet("/api/orders/*")
+@WebServlet(value = "/api/orders/*", asyncSupported = true)
 public class OrderServlet extends HttpServlet {
 
     private static final String INVALID_JSON_FORMAT = "Invalid JSON format: ";
     private static final String INTERNAL_SERVER_ERROR = "Internal Server Error";
+    private static final String ETAG_RESOURCE = "order";
+    private static final String VIEW_PARAM = "view";
+    private static final String SUMMARY_VIEW = "summary";
+    private static final String INVALID_ORDER_ID_FORMAT = "Invalid order ID format.";
+
+    private enum Route { ROOT, ORDER, ORDER_PRODUCTS, ORDER_USER }
+
+    private static final PathRouter<Route> ROUTER = PathRouter.<Route>builder()
+            .route("/", Route.ROOT)
+            .route("/{id}", Route.ORDER)
+            .route("/{id}/products", Route.ORDER_PRODUCTS)
+            .route("/{id}/users", Route.ORDER_USER)
+            .build();
+    private static final AsyncDispatcher ASYNC_DISPATCHER = AsyncDispatcher.forEndpoint("orders");
 
     private final transient OrderService orderService;
+    private final transient ResponseBodyCache responseBodyCache;
     private final transient Gson gson = new Gson();
 
     public OrderServlet() {
-        this(new OrderServiceImpl(new OrderDaoImpl(), new ProductDaoImpl(), OrderMapper.INSTANCE, ProductMapper.INSTANCE));
+        this(SingleFlight.shared().wrap(OrderService.class,
+                new CachingOrderService(new OrderServiceImpl(new OrderDaoImpl(), new ProductDaoImpl(), OrderMapper.INSTANCE, ProductMapper.INSTANCE),
+                        EntityCaches.shared(), ExistenceFilters.shared(), ProductCatalog.shared())),
+                ResponseBodyCache.shared());
     }
 
     public OrderServlet(OrderService orderService) {
+        this(orderService, ResponseBodyCache.disabled());
+    }
+
+    public OrderServlet(OrderService orderService, ResponseBodyCache responseBodyCache) {
         this.orderService = orderService;
+        this.responseBodyCache = responseBodyCache;
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        String pathInfo = req.getPathInfo();
+        ASYNC_DISPATCHER.dispatch(req, resp, this::serveGet);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::servePost);
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::servePut);
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::serveDelete);
+    }
+
+    private void serveGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        PathRouter.Match<Route> match = ROUTER.match(req.getPathInfo());
 
         try {
-            if (isRootPath(pathInfo)) {
+            if (match == null) {
+                handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid request path");
+            } else if (match.route() == Route.ROOT) {
                 handleGetAllOrders(resp, req);
-            } else if (isProductsPath(pathInfo)) {
-                handleGetProductsByOrderId(resp, pathInfo);
-            } else if (isUsersPath(pathInfo)) {
-                handleGetUserByOrderId(resp, pathInfo);
-            } else if (isOrderIdPath(pathInfo)) {
-                handleGetOrderById(resp, pathInfo);
+            } else if (match.route() == Route.ORDER_PRODUCTS) {
+                handleGetProductsByOrderId(resp, match.id());
+            } else if (match.route() == Route.ORDER_USER) {
+                handleGetUserByOrderId(resp, match.id());
             } else {
-                handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid request path");
+                handleGetOrderById(req, resp, match.id());
             }
         } catch (OrderNotFoundException e) {
             handleException(resp, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
@@ -68,29 +127,27 @@ public class OrderServlet extends HttpServlet {
         }
     }
 
-    @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    private void servePost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
-            String requestBody = req.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
-
-            if (requestBody.isEmpty()) {
+            OrderInputDTO orderInputDTO = JsonRequestReader.read(req, gson, OrderInputDTO.class);
+            if (orderInputDTO == null) {
                 handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Request body is empty");
                 return;
             }
 
-            OrderInputDTO orderInputDTO = gson.fromJson(requestBody, OrderInputDTO.class);
             OrderOutputDTO createdOrder = orderService.createOrder(orderInputDTO);
             writeResponse(resp, HttpServletResponse.SC_CREATED, createdOrder);
 
         } catch (JsonSyntaxException e) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_JSON_FORMAT + e.getMessage());
+        } catch (RequestBodyTooLargeException e) {
+            handleException(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
         } catch (Exception e) {
             handleException(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR);
         }
     }
 
-    @Override
-    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    private void servePut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String pathInfo = req.getPathInfo();
 
         if (isInvalidPath(pathInfo)) {
@@ -98,19 +155,24 @@ public class OrderServlet extends HttpServlet {
             return;
         }
 
+        PathRouter.Match<Route> match = ROUTER.match(pathInfo);
+        if (match == null || (match.route() != Route.ORDER && match.route() != Route.ORDER_PRODUCTS)) {
+            handleException(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_ORDER_ID_FORMAT);
+            return;
+        }
+
         try {
-            if (isProductsPath(pathInfo)) {
-                handleUpdateProducts(req, resp, pathInfo);
+            if (match.route() == Route.ORDER_PRODUCTS) {
+                handleUpdateProducts(req, resp, match.id());
             } else {
-                handleUpdateOrder(req, resp, pathInfo);
+                handleUpdateOrder(req, resp, match.id());
             }
         } catch (RuntimeException e) {
             handleException(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Unexpected error: " + e.getMessage());
         }
     }
 
-    @Override
-    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    private void serveDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String pathInfo = req.getPathInfo();
 
         try {
@@ -119,24 +181,22 @@ public class OrderServlet extends HttpServlet {
                 return;
             }
 
-            long id = parseOrderId(pathInfo, resp);
-            if (id == -1) return;
+            PathRouter.Match<Route> match = ROUTER.match(pathInfo);
+            if (match == null || match.route() != Route.ORDER) {
+                handleException(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_ORDER_ID_FORMAT);
+                return;
+            }
 
-            orderService.deleteOrder(id);
+            orderService.deleteOrder(match.id());
             resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
         } catch (OrderNotFoundException e) {
             handleException(resp, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
-        } catch (NumberFormatException e) {
-            handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid order ID format");
         } catch (Exception e) {
             handleException(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR);
         }
     }
 
-    private void handleGetUserByOrderId(HttpServletResponse resp, String pathInfo) throws IOException, SQLException {
-        long orderId = parseOrderId(pathInfo, resp);
-        if (orderId == -1) return;
-
+    private void handleGetUserByOrderId(HttpServletResponse resp, long orderId) throws IOException, SQLException {
         OrderOutputDTO order = orderService.getOrderById(orderId);
         if (order == null) {
             handleException(resp, HttpServletResponse.SC_NOT_FOUND, "Order with ID " + orderId + " not found.");
@@ -148,10 +208,27 @@ public class OrderServlet extends HttpServlet {
     }
 
     private void handleGetAllOrders(HttpServletResponse resp, HttpServletRequest req) throws IOException, SQLException {
+        if (SUMMARY_VIEW.equals(req.getParameter(VIEW_PARAM))) {
+            handleGetOrderSummaries(resp, req);
+            return;
+        }
+
         try {
-            int pageNumber = PaginationUtils.getPageNumber(req);
+            if (JsonStreamWriter.isStreamRequest(req)) {
+                JsonStreamWriter.writeArray(resp, gson, OrderOutputDTO.class, orderService::streamAllOrders);
+                return;
+            }
+
             int pageSize = PaginationUtils.getPageSize(req);
 
+            if (PaginationUtils.isCursorRequest(req)) {
+                long afterId = PaginationUtils.getAfterId(req);
+                List<OrderOutputDTO> orders = orderService.getOrdersAfterId(afterId, pageSize);
+                writeResponse(resp, HttpServletResponse.SC_OK, PaginationUtils.toPage(orders, pageSize, OrderOutputDTO::getId));
+                return;
+            }
+
+            int pageNumber = PaginationUtils.getPageNumber(req);
             List<OrderOutputDTO> orders = orderService.getOrdersWithPagination(pageNumber, pageSize);
             writeResponse(resp, HttpServletResponse.SC_OK, orders);
         } catch (NumberFormatException e) {
@@ -159,36 +236,58 @@ public class OrderServlet extends HttpServlet {
         }
     }
 
-    private void handleGetProductsByOrderId(HttpServletResponse resp, String pathInfo) throws IOException, SQLException {
-        long id = parseOrderId(pathInfo, resp);
-        if (id == -1) return;
+    private void handleGetOrderSummaries(HttpServletResponse resp, HttpServletRequest req) throws IOException, SQLException {
+        try {
+            if (JsonStreamWriter.isStreamRequest(req)) {
+                JsonStreamWriter.writeArray(resp, gson, OrderSummaryOutputDTO.class, orderService::streamAllOrderSummaries);
+                return;
+            }
+
+            int pageSize = PaginationUtils.getPageSize(req);
+
+            if (PaginationUtils.isCursorRequest(req)) {
+                long afterId = PaginationUtils.getAfterId(req);
+                List<OrderSummaryOutputDTO> summaries = orderService.getOrderSummariesAfterId(afterId, pageSize);
+                writeResponse(resp, HttpServletResponse.SC_OK, PaginationUtils.toPage(summaries, pageSize, OrderSummaryOutputDTO::getId));
+                return;
+            }
+
+            int pageNumber = PaginationUtils.getPageNumber(req);
+            List<OrderSummaryOutputDTO> summaries = orderService.getOrderSummariesWithPagination(pageNumber, pageSize);
+            writeResponse(resp, HttpServletResponse.SC_OK, summaries);
+        } catch (NumberFormatException e) {
+            handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid pagination parameters");
+        }
+    }
 
+    private void handleGetProductsByOrderId(HttpServletResponse resp, long id) throws IOException, SQLException {
         List<ProductOutputDTO> products = orderService.getProductsByOrderId(id);
         writeResponse(resp, HttpServletResponse.SC_OK, products);
     }
 
-    private void handleGetOrderById(HttpServletResponse resp, String pathInfo) throws IOException, SQLException {
-        long id = parseOrderId(pathInfo, resp);
-        if (id == -1) return;
-
+    private void handleGetOrderById(HttpServletRequest req, HttpServletResponse resp, long id) throws IOException, SQLException {
+        StaleResponseUtils.reset();
+        if (ETagUtils.isConditionalRequest(req)
+                && ETagUtils.writeNotModified(req, resp, ETAG_RESOURCE, id, orderService.getOrderVersion(id))) {
+            StaleResponseUtils.setStaleHeaders(resp);
+            return;
+        }
         OrderOutputDTO order = orderService.getOrderById(id);
+        StaleResponseUtils.setStaleHeaders(resp);
         if (order == null) {
             handleException(resp, HttpServletResponse.SC_NOT_FOUND, "Order not found");
             return;
         }
-        writeResponse(resp, HttpServletResponse.SC_OK, order);
+        writeEncodedResponse(req, resp, id, order.getVersion(), order);
     }
 
-    private void handleUpdateProducts(HttpServletRequest req, HttpServletResponse resp, String pathInfo) throws IOException {
-        long orderId = parseOrderId(pathInfo, resp);
-        if (orderId == -1) return;
-
+    private void handleUpdateProducts(HttpServletRequest req, HttpServletResponse resp, long orderId) throws IOException {
         ProductIdsRequest productIdsRequest = parseProductIdsRequest(req, resp);
         if (productIdsRequest == null) return;
 
         try {
-            orderService.addProductsToOrder(orderId, productIdsRequest.getProductIds());
-            resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            int addedCount = orderService.addProductsToOrder(orderId, productIdsRequest.getProductIds());
+            writeResponse(resp, HttpServletResponse.SC_OK, new AddedProductsOutputDTO(orderId, addedCount));
         } catch (OrderNotFoundException | ProductNotFoundException e) {
             handleException(resp, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
         } catch (SQLException e) {
@@ -196,10 +295,7 @@ public class OrderServlet extends HttpServlet {
         }
     }
 
-    private void handleUpdateOrder(HttpServletRequest req, HttpServletResponse resp, String pathInfo) throws IOException {
-        long orderId = parseOrderId(pathInfo, resp);
-        if (orderId == -1) return;
-
+    private void handleUpdateOrder(HttpServletRequest req, HttpServletResponse resp, long orderId) throws IOException {
         OrderInputDTO orderInputDTO = parseOrderInput(req, resp);
         if (orderInputDTO == null) return;
 
@@ -214,19 +310,9 @@ public class OrderServlet extends HttpServlet {
         }
     }
 
-    private long parseOrderId(String pathInfo, HttpServletResponse resp) throws IOException {
-        try {
-            return Long.parseLong(pathInfo.split("/")[1]);
-        } catch (NumberFormatException e) {
-            handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid order ID format.");
-            return -1;
-        }
-    }
-
     private ProductIdsRequest parseProductIdsRequest(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        String requestBody = req.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
         try {
-            ProductIdsRequest productIdsRequest = gson.fromJson(requestBody, ProductIdsRequest.class);
+            ProductIdsRequest productIdsRequest = JsonRequestReader.read(req, gson, ProductIdsRequest.class);
             if (productIdsRequest == null || productIdsRequest.getProductIds() == null || productIdsRequest.getProductIds().isEmpty()) {
                 handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Product IDs are required.");
                 return null;
@@ -235,13 +321,15 @@ public class OrderServlet extends HttpServlet {
         } catch (JsonSyntaxException e) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_JSON_FORMAT + e.getMessage());
             return null;
+        } catch (RequestBodyTooLargeException e) {
+            handleException(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+            return null;
         }
     }
 
     private OrderInputDTO parseOrderInput(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        String requestBody = req.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
         try {
-            OrderInputDTO orderInputDTO = gson.fromJson(requestBody, OrderInputDTO.class);
+            OrderInputDTO orderInputDTO = JsonRequestReader.read(req, gson, OrderInputDTO.class);
             if (orderInputDTO == null) {
                 handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Request body is empty");
                 return null;
@@ -250,37 +338,41 @@ public class OrderServlet extends HttpServlet {
         } catch (JsonSyntaxException e) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_JSON_FORMAT + e.getMessage());
             return null;
+        } catch (RequestBodyTooLargeException e) {
+            handleException(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+            return null;
         }
     }
 
-    private boolean isRootPath(String pathInfo) {
-        return pathInfo == null || pathInfo.equals("/");
-    }
-
     private boolean isInvalidPath(String pathInfo) {
         return pathInfo == null || pathInfo.length() < 2;
     }
 
-    private boolean isProductsPath(String pathInfo) {
-        return pathInfo.matches("/\\d+/products");
-    }
-
-    private boolean isUsersPath(String pathInfo) {
-        return pathInfo.matches("/\\d+/users");
-    }
-
-    private boolean isOrderIdPath(String pathInfo) {
-        return pathInfo.matches("/\\d+");
-    }
-
     private void handleException(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        if (resp.isCommitted()) {
+            return;
+        }
         writeResponse(resp, statusCode, new ApiErrorResponse(message, statusCode));
     }
 
     private void writeResponse(HttpServletResponse resp, int statusCode, Object data) throws IOException {
+        JsonResponseWriter.write(resp, gson, statusCode, data);
+    }
+
+    private void writeEncodedResponse(HttpServletRequest req, HttpServletResponse resp, long id, long version, Object data) throws IOException {
+        byte[] body = responseBodyCache.get(ETAG_RESOURCE, id, version, () -> JsonResponseWriter.encode(gson, data));
+        Compression.Encoding encoding = Compression.negotiated(req, body.length);
         resp.setContentType("application/json");
-        resp.setStatus(statusCode);
-        resp.getWriter().write(gson.toJson(data));
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setStatus(HttpServletResponse.SC_OK);
+        ETagUtils.setETag(resp, ETagUtils.of(ETAG_RESOURCE, id, version, encoding));
+        Compression.addVary(resp);
+        if (encoding != null) {
+            Compression.writeCompressed(resp, encoding, responseBodyCache.get(ETAG_RESOURCE, id, version, encoding.token(),
+                    () -> Compression.compress(body, encoding)));
+            return;
+        }
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
     }
 }
-
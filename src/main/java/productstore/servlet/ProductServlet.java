@@ -8,58 +8,126 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.cache.ResponseBodyCache;
+import productstore.cache.SingleFlight;
 import productstore.dao.impl.ProductDaoImpl;
 import productstore.service.ProductService;
 import productstore.service.apierror.ApiErrorResponse;
 import productstore.service.apierror.ProductNotFoundException;
+import productstore.service.impl.CachingProductService;
 import productstore.service.impl.ProductServiceImpl;
 import productstore.servlet.dto.input.ProductInputDTO;
 import productstore.servlet.dto.output.ProductOutputDTO;
+import productstore.servlet.exception.RequestBodyTooLargeException;
 import productstore.servlet.mapper.ProductMapper;
+import productstore.servlet.util.AsyncDispatcher;
+import productstore.servlet.util.Compression;
+import productstore.servlet.util.ETagUtils;
+import productstore.servlet.util.JsonRequestReader;
+import productstore.servlet.util.JsonResponseWriter;
+import productstore.servlet.util.JsonStreamWriter;
 import productstore.servlet.util.PaginationUtils;
+import productstore.servlet.util.PathRouter;
+import productstore.servlet.util.StaleResponseUtils;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.stream.Collectors;
 
-@WebServlet("/api/products/*")
+@WebServlet(value = "/api/products/*", asyncSupported = true)
 public class ProductServlet extends HttpServlet {
 
     private static final String INVALID_PRODUCT_ID_FORMAT = "Invalid product ID format";
     private static final String INTERNAL_SERVER_ERROR = "Internal Server Error";
+    private static final String ETAG_RESOURCE = "product";
+
+    private enum Route { ROOT, PRODUCT, PRODUCT_ORDERS }
+
+    private static final PathRouter<Route> ROUTER = PathRouter.<Route>builder()
+            .route("/", Route.ROOT)
+            .route("/{id}", Route.PRODUCT)
+            .route("/{id}/orders", Route.PRODUCT_ORDERS)
+            .build();
+    private static final AsyncDispatcher ASYNC_DISPATCHER = AsyncDispatcher.forEndpoint("products");
 
     private final transient ProductService productService;
+    private final transient ResponseBodyCache responseBodyCache;
     private final transient Gson gson = new GsonBuilder().serializeNulls().create();
 
     public ProductServlet() {
-        ProductMapper productMapper = ProductMapper.INSTANCE;
-        this.productService = new ProductServiceImpl(new ProductDaoImpl(), productMapper);
+        this(SingleFlight.shared().wrap(ProductService.class,
+                        new CachingProductService(new ProductServiceImpl(new ProductDaoImpl(), ProductMapper.INSTANCE, ProductCatalog.shared()),
+                                EntityCaches.shared(), ExistenceFilters.shared(), ProductCatalog.shared(), ProductMapper.INSTANCE)),
+                ResponseBodyCache.shared());
     }
 
     public ProductServlet(ProductService productService) {
+        this(productService, ResponseBodyCache.disabled());
+    }
+
+    public ProductServlet(ProductService productService, ResponseBodyCache responseBodyCache) {
         this.productService = productService;
+        this.responseBodyCache = responseBodyCache;
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        String pathInfo = req.getPathInfo();
+        ASYNC_DISPATCHER.dispatch(req, resp, this::serveGet);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::servePost);
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::servePut);
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::serveDelete);
+    }
+
+    private void serveGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        PathRouter.Match<Route> match = ROUTER.match(req.getPathInfo());
 
         try {
-            if (pathInfo == null || pathInfo.equals("/")) {
-                int pageNumber = PaginationUtils.getPageNumber(req);
-                int pageSize = PaginationUtils.getPageSize(req);
-                List<ProductOutputDTO> products = productService.getProductsWithPagination(pageNumber, pageSize);
-                writeResponse(resp, HttpServletResponse.SC_OK, products);
-            } else if (pathInfo.matches("/\\d+/orders")) {
-                long id = parseId(pathInfo.split("/")[1]);
+            if (match == null) {
+                handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid URL path");
+            } else if (match.route() == Route.ROOT) {
+                if (JsonStreamWriter.isStreamRequest(req)) {
+                    JsonStreamWriter.writeArray(resp, gson, ProductOutputDTO.class, productService::streamAllProducts);
+                } else if (PaginationUtils.isCursorRequest(req)) {
+                    long afterId = PaginationUtils.getAfterId(req);
+                    int pageSize = PaginationUtils.getPageSize(req);
+                    List<ProductOutputDTO> products = productService.getProductsAfterId(afterId, pageSize);
+                    writeResponse(resp, HttpServletResponse.SC_OK, PaginationUtils.toPage(products, pageSize, ProductOutputDTO::getId));
+                } else {
+                    int pageNumber = PaginationUtils.getPageNumber(req);
+                    int pageSize = PaginationUtils.getPageSize(req);
+                    List<ProductOutputDTO> products = productService.getProductsWithPagination(pageNumber, pageSize);
+                    writeResponse(resp, HttpServletResponse.SC_OK, products);
+                }
+            } else if (match.route() == Route.PRODUCT_ORDERS) {
+                long id = match.id();
                 ProductOutputDTO product = productService.getProductWithOrdersById(id);
                 writeResponse(resp, HttpServletResponse.SC_OK, product);
-            } else if (pathInfo.matches("/\\d+")) {
-                long id = parseId(pathInfo.substring(1));
-                ProductOutputDTO product = productService.getProductById(id);
-                writeResponse(resp, HttpServletResponse.SC_OK, product);
             } else {
-                handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid URL path");
+                long id = match.id();
+                StaleResponseUtils.reset();
+                if (ETagUtils.isConditionalRequest(req)
+                        && ETagUtils.writeNotModified(req, resp, ETAG_RESOURCE, id, productService.getProductVersion(id))) {
+                    StaleResponseUtils.setStaleHeaders(resp);
+                    return;
+                }
+                ProductOutputDTO product = productService.getProductById(id);
+                StaleResponseUtils.setStaleHeaders(resp);
+                writeEncodedResponse(req, resp, id, product.getVersion(), product);
             }
         } catch (ProductNotFoundException e) {
             handleException(resp, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
@@ -70,17 +138,13 @@ public class ProductServlet extends HttpServlet {
         }
     }
 
-    @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    private void servePost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
-            String requestBody = req.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
-            if (requestBody.isEmpty()) {
+            ProductInputDTO productInputDTO = JsonRequestReader.read(req, gson, ProductInputDTO.class);
+            if (productInputDTO == null) {
                 handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Request body is empty");
                 return;
             }
-
-            ProductInputDTO productInputDTO = gson.fromJson(requestBody, ProductInputDTO.class);
-
             if (productInputDTO.getName() == null || productInputDTO.getPrice() == null || productInputDTO.getPrice() <= 0) {
                 handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Missing required fields: name and price");
                 return;
@@ -90,13 +154,14 @@ public class ProductServlet extends HttpServlet {
             writeResponse(resp, HttpServletResponse.SC_CREATED, createdProduct);
         } catch (JsonSyntaxException e) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid JSON format: " + e.getMessage());
+        } catch (RequestBodyTooLargeException e) {
+            handleException(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
         } catch (Exception e) {
             handleException(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR);
         }
     }
 
-    @Override
-    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    private void servePut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String pathInfo = req.getPathInfo();
         if (pathInfo == null || pathInfo.length() < 2) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Product ID is required.");
@@ -105,25 +170,25 @@ public class ProductServlet extends HttpServlet {
 
         long productId;
         try {
-            productId = Long.parseLong(pathInfo.substring(1));
+            productId = parseId(pathInfo);
         } catch (NumberFormatException e) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_PRODUCT_ID_FORMAT);
             return;
         }
 
         try {
-            String requestBody = req.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
-            if (requestBody.isEmpty()) {
+            ProductInputDTO productInputDTO = JsonRequestReader.read(req, gson, ProductInputDTO.class);
+            if (productInputDTO == null) {
                 handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Request body is empty");
                 return;
             }
-
-            ProductInputDTO productInputDTO = gson.fromJson(requestBody, ProductInputDTO.class);
             productInputDTO.setId(productId);
             productService.updateProduct(productInputDTO);
             resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
         } catch (JsonSyntaxException e) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid JSON format: " + e.getMessage());
+        } catch (RequestBodyTooLargeException e) {
+            handleException(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
         } catch (ProductNotFoundException e) {
             handleException(resp, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
         } catch (Exception e) {
@@ -131,8 +196,7 @@ public class ProductServlet extends HttpServlet {
         }
     }
 
-    @Override
-    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    private void serveDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String pathInfo = req.getPathInfo();
 
         try {
@@ -141,7 +205,7 @@ public class ProductServlet extends HttpServlet {
                 return;
             }
 
-            long id = parseId(pathInfo.substring(1));
+            long id = parseId(pathInfo);
             productService.deleteProduct(id);
             resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
         } catch (ProductNotFoundException e) {
@@ -153,22 +217,39 @@ public class ProductServlet extends HttpServlet {
         }
     }
 
-    private long parseId(String id) {
-        try {
-            return Long.parseLong(id);
-        } catch (NumberFormatException e) {
+    private long parseId(String pathInfo) {
+        PathRouter.Match<Route> match = ROUTER.match(pathInfo);
+        if (match == null || match.route() != Route.PRODUCT) {
             throw new NumberFormatException(INVALID_PRODUCT_ID_FORMAT);
         }
+        return match.id();
     }
 
     private void handleException(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        if (resp.isCommitted()) {
+            return;
+        }
         writeResponse(resp, statusCode, new ApiErrorResponse(message, statusCode));
     }
 
     private void writeResponse(HttpServletResponse resp, int statusCode, Object data) throws IOException {
+        JsonResponseWriter.write(resp, gson, statusCode, data);
+    }
+
+    private void writeEncodedResponse(HttpServletRequest req, HttpServletResponse resp, long id, long version, Object data) throws IOException {
+        byte[] body = responseBodyCache.get(ETAG_RESOURCE, id, version, () -> JsonResponseWriter.encode(gson, data));
+        Compression.Encoding encoding = Compression.negotiated(req, body.length);
         resp.setContentType("application/json");
-        resp.setStatus(statusCode);
-        String jsonResponse = gson.toJson(data);
-        resp.getWriter().write(jsonResponse);
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setStatus(HttpServletResponse.SC_OK);
+        ETagUtils.setETag(resp, ETagUtils.of(ETAG_RESOURCE, id, version, encoding));
+        Compression.addVary(resp);
+        if (encoding != null) {
+            Compression.writeCompressed(resp, encoding, responseBodyCache.get(ETAG_RESOURCE, id, version, encoding.token(),
+                    () -> Compression.compress(body, encoding)));
+            return;
+        }
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package productstore.servlet;
+
+import com.google.gson.Gson;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import productstore.config.Readiness;
+
+import java.io.IOException;
+
+@WebServlet("/api/health/ready")
+public class ReadinessServlet extends HttpServlet {
+
+    private final transient Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setHeader("Cache-Control", "no-store");
+        resp.setStatus(Readiness.isReady() ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        resp.getWriter().write(gson.toJson(Readiness.snapshot()));
+    }
+}
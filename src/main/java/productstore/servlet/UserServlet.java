@@ -7,59 +7,121 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.cache.ResponseBodyCache;
+import productstore.cache.SingleFlight;
 import productstore.dao.impl.UserDaoImpl;
 import productstore.service.UserService;
 import productstore.service.apierror.ApiErrorResponse;
 import productstore.service.apierror.UserNotFoundException;
+import productstore.service.impl.CachingUserService;
 import productstore.service.impl.UserServiceImpl;
 import productstore.servlet.dto.input.UserInputDTO;
 import productstore.servlet.dto.output.UserOutputDTO;
+import productstore.servlet.exception.RequestBodyTooLargeException;
 import productstore.servlet.mapper.UserMapper;
+import productstore.servlet.util.AsyncDispatcher;
+import productstore.servlet.util.Compression;
+import productstore.servlet.util.ETagUtils;
+import productstore.servlet.util.JsonRequestReader;
+import productstore.servlet.util.JsonResponseWriter;
+import productstore.servlet.util.JsonStreamWriter;
 import productstore.servlet.util.PaginationUtils;
+import productstore.servlet.util.PathRouter;
+import productstore.servlet.util.StaleResponseUtils;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.List;
-import java.util.stream.Collectors;
 
 
-@WebServlet("/api/users/*")
+@WebServlet(value = "/api/users/*", asyncSupported = true)
 public class UserServlet extends HttpServlet {
 
     private static final String INVALID_USER_ID_FORMAT = "Invalid user ID format";
     private static final String INTERNAL_SERVER_ERROR = "Internal Server Error";
+    private static final String ETAG_RESOURCE = "user";
+
+    private enum Route { USER }
+
+    private static final PathRouter<Route> ROUTER = PathRouter.<Route>builder()
+            .route("/{id}", Route.USER)
+            .build();
+    private static final AsyncDispatcher ASYNC_DISPATCHER = AsyncDispatcher.forEndpoint("users");
 
     private final transient UserService userService;
+    private final transient ResponseBodyCache responseBodyCache;
     private final transient Gson gson = new Gson();
 
 
     public UserServlet() {
+        this(SingleFlight.shared().wrap(UserService.class,
+                        new CachingUserService(new UserServiceImpl(new UserDaoImpl(), UserMapper.INSTANCE), EntityCaches.shared(), ExistenceFilters.shared(),
+                                ProductCatalog.shared())),
+                ResponseBodyCache.shared());
+    }
 
-        UserMapper userMapper = UserMapper.INSTANCE;
+    public UserServlet(UserService userService) {
+        this(userService, ResponseBodyCache.disabled());
+    }
 
+    public UserServlet(UserService userService, ResponseBodyCache responseBodyCache) {
+        this.userService = userService;
+        this.responseBodyCache = responseBodyCache;
+    }
 
-        this.userService = new UserServiceImpl(new UserDaoImpl(), userMapper);
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::serveGet);
     }
 
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::servePost);
+    }
 
-    public UserServlet(UserService userService) {
-        this.userService = userService;
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::servePut);
     }
 
     @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ASYNC_DISPATCHER.dispatch(req, resp, this::serveDelete);
+    }
+
+    private void serveGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String pathInfo = req.getPathInfo();
 
         try {
             if (pathInfo == null || pathInfo.equals("/")) {
-                int pageNumber = PaginationUtils.getPageNumber(req);
-                int pageSize = PaginationUtils.getPageSize(req);
-                List<UserOutputDTO> users = userService.getUsersWithPagination(pageNumber, pageSize);
-                writeResponse(resp, HttpServletResponse.SC_OK, users);
+                if (JsonStreamWriter.isStreamRequest(req)) {
+                    JsonStreamWriter.writeArray(resp, gson, UserOutputDTO.class, userService::streamAllUsers);
+                } else if (PaginationUtils.isCursorRequest(req)) {
+                    long afterId = PaginationUtils.getAfterId(req);
+                    int pageSize = PaginationUtils.getPageSize(req);
+                    List<UserOutputDTO> users = userService.getUsersAfterId(afterId, pageSize);
+                    writeResponse(resp, HttpServletResponse.SC_OK, PaginationUtils.toPage(users, pageSize, UserOutputDTO::getId));
+                } else {
+                    int pageNumber = PaginationUtils.getPageNumber(req);
+                    int pageSize = PaginationUtils.getPageSize(req);
+                    List<UserOutputDTO> users = userService.getUsersWithPagination(pageNumber, pageSize);
+                    writeResponse(resp, HttpServletResponse.SC_OK, users);
+                }
             } else {
-                long id = parseId(pathInfo.substring(1));
+                long id = parseId(pathInfo);
+                StaleResponseUtils.reset();
+                if (ETagUtils.isConditionalRequest(req)
+                        && ETagUtils.writeNotModified(req, resp, ETAG_RESOURCE, id, userService.getUserVersion(id))) {
+                    StaleResponseUtils.setStaleHeaders(resp);
+                    return;
+                }
                 UserOutputDTO user = userService.getUserById(id);
-                writeResponse(resp, HttpServletResponse.SC_OK, user);
+                StaleResponseUtils.setStaleHeaders(resp);
+                writeEncodedResponse(req, resp, id, user.getVersion(), user);
             }
         } catch (UserNotFoundException e) {
             handleException(resp, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
@@ -70,27 +132,26 @@ public class UserServlet extends HttpServlet {
         }
     }
 
-    @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    private void servePost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
-            String requestBody = req.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
-            if (requestBody.isEmpty()) {
+            UserInputDTO userInputDTO = JsonRequestReader.read(req, gson, UserInputDTO.class);
+            if (userInputDTO == null) {
                 handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Request body is required");
                 return;
             }
 
-            UserInputDTO userInputDTO = gson.fromJson(requestBody, UserInputDTO.class);
             UserOutputDTO createdUser = userService.createUser(userInputDTO);
             writeResponse(resp, HttpServletResponse.SC_CREATED, createdUser);
         } catch (JsonSyntaxException e) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid JSON format: " + e.getMessage());
+        } catch (RequestBodyTooLargeException e) {
+            handleException(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
         } catch (Exception e) {
             handleException(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR);
         }
     }
 
-    @Override
-    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    private void servePut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String pathInfo = req.getPathInfo();
 
         if (pathInfo == null || pathInfo.length() < 2) {
@@ -100,25 +161,26 @@ public class UserServlet extends HttpServlet {
 
         long userId;
         try {
-            userId = Long.parseLong(pathInfo.substring(1));
+            userId = parseId(pathInfo);
         } catch (NumberFormatException e) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_USER_ID_FORMAT);
             return;
         }
 
-        String requestBody = req.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
-
         UserInputDTO userInputDTO;
         try {
-            if (requestBody.isEmpty()) {
+            userInputDTO = JsonRequestReader.read(req, gson, UserInputDTO.class);
+            if (userInputDTO == null) {
                 handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Request body is required");
                 return;
             }
-            userInputDTO = gson.fromJson(requestBody, UserInputDTO.class);
             userInputDTO.setId(userId);
         } catch (JsonSyntaxException e) {
             handleException(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid JSON format: " + e.getMessage());
             return;
+        } catch (RequestBodyTooLargeException e) {
+            handleException(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+            return;
         }
 
         try {
@@ -131,8 +193,7 @@ public class UserServlet extends HttpServlet {
         }
     }
 
-    @Override
-    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    private void serveDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String pathInfo = req.getPathInfo();
 
         try {
@@ -141,7 +202,7 @@ public class UserServlet extends HttpServlet {
                 return;
             }
 
-            long id = parseId(pathInfo.substring(1));
+            long id = parseId(pathInfo);
             userService.deleteUser(id);
             resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
         } catch (UserNotFoundException e) {
@@ -153,21 +214,39 @@ public class UserServlet extends HttpServlet {
         }
     }
 
-    private long parseId(String id) {
-        try {
-            return Long.parseLong(id);
-        } catch (NumberFormatException e) {
+    private long parseId(String pathInfo) {
+        PathRouter.Match<Route> match = ROUTER.match(pathInfo);
+        if (match == null) {
             throw new NumberFormatException(INVALID_USER_ID_FORMAT);
         }
+        return match.id();
     }
 
     private void handleException(HttpServletResponse resp, int statusCode, String message) throws IOException {
+        if (resp.isCommitted()) {
+            return;
+        }
         writeResponse(resp, statusCode, new ApiErrorResponse(message, statusCode));
     }
 
     private void writeResponse(HttpServletResponse resp, int statusCode, Object data) throws IOException {
+        JsonResponseWriter.write(resp, gson, statusCode, data);
+    }
+
+    private void writeEncodedResponse(HttpServletRequest req, HttpServletResponse resp, long id, long version, Object data) throws IOException {
+        byte[] body = responseBodyCache.get(ETAG_RESOURCE, id, version, () -> JsonResponseWriter.encode(gson, data));
+        Compression.Encoding encoding = Compression.negotiated(req, body.length);
         resp.setContentType("application/json");
-        resp.setStatus(statusCode);
-        resp.getWriter().write(gson.toJson(data));
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setStatus(HttpServletResponse.SC_OK);
+        ETagUtils.setETag(resp, ETagUtils.of(ETAG_RESOURCE, id, version, encoding));
+        Compression.addVary(resp);
+        if (encoding != null) {
+            Compression.writeCompressed(resp, encoding, responseBodyCache.get(ETAG_RESOURCE, id, version, encoding.token(),
+                    () -> Compression.compress(body, encoding)));
+            return;
+        }
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
     }
 }
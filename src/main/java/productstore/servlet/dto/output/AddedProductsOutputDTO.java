@@ -0,0 +1,38 @@
+package productstore.servlet.dto.output;
+
+public class AddedProductsOutputDTO {
+
+    private long orderId;
+    private int addedCount;
+
+    public AddedProductsOutputDTO() {}
+
+    public AddedProductsOutputDTO(long orderId, int addedCount) {
+        this.orderId = orderId;
+        this.addedCount = addedCount;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(long orderId) {
+        this.orderId = orderId;
+    }
+
+    public int getAddedCount() {
+        return addedCount;
+    }
+
+    public void setAddedCount(int addedCount) {
+        this.addedCount = addedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "AddedProductsOutputDTO{" +
+                "orderId=" + orderId +
+                ", addedCount=" + addedCount +
+                '}';
+    }
+}
@@ -6,6 +6,7 @@ public class OrderOutputDTO {
     private long id;
     private UserOutputDTO user;
     private List<ProductOutputDTO> products;
+    private transient long version;
 
     public long getId() {
         return id;
@@ -31,6 +32,14 @@ public class OrderOutputDTO {
         this.products = products;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "OrderOutputDTO{" +
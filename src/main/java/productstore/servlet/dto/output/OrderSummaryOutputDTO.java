@@ -0,0 +1,79 @@
+package productstore.servlet.dto.output;
+
+import java.util.List;
+
+public class OrderSummaryOutputDTO {
+    private long id;
+    private long userId;
+    private String userName;
+    private String userEmail;
+    private int lineCount;
+    private double totalPrice;
+    private List<Long> productIds;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(int lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+
+    public void setTotalPrice(double totalPrice) {
+        this.totalPrice = totalPrice;
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+
+    public void setProductIds(List<Long> productIds) {
+        this.productIds = productIds;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderSummaryOutputDTO{" +
+                "id=" + id +
+                ", userId=" + userId +
+                ", lineCount=" + lineCount +
+                ", totalPrice=" + totalPrice +
+                '}';
+    }
+}
@@ -0,0 +1,41 @@
+package productstore.servlet.dto.output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PageOutputDTO<T> {
+
+    private List<T> items = new ArrayList<>();
+    private String nextCursor;
+
+    public PageOutputDTO() {}
+
+    public PageOutputDTO(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "PageOutputDTO{" +
+                "items=" + items +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
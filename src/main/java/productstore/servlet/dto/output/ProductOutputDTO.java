@@ -9,6 +9,7 @@ public class ProductOutputDTO {
     private String name;
     private double price;
     private List<Long> orderIds = new ArrayList<>();
+    private transient long version;
 
     public ProductOutputDTO() {}
 
@@ -51,6 +52,14 @@ public class ProductOutputDTO {
         this.orderIds = orderIds;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "ProductOutputDTO{" +
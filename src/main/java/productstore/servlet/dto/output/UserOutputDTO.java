@@ -9,6 +9,7 @@ public class UserOutputDTO {
     private String name;
     private String email;
     private List<Long> orderIds = new ArrayList<>();
+    private transient long version;
 
     public UserOutputDTO() {}
 
@@ -51,6 +52,14 @@ public class UserOutputDTO {
         this.orderIds = orderIds;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "UserOutputDTO{" +
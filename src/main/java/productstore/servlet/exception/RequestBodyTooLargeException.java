@@ -0,0 +1,7 @@
+package productstore.servlet.exception;
+
+public class RequestBodyTooLargeException extends RuntimeException {
+    public RequestBodyTooLargeException(String message) {
+        super(message);
+    }
+}
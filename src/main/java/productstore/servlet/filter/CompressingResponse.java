@@ -0,0 +1,202 @@
+package productstore.servlet.filter;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import productstore.servlet.util.Compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+public class CompressingResponse extends HttpServletResponseWrapper {
+
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+    private final Compression.Encoding encoding;
+    private long contentLength = -1;
+    private Boolean compressing;
+    private boolean encodingDeclared;
+    private OutputStream compressed;
+    private ServletOutputStream stream;
+    private PrintWriter writer;
+    private boolean finished;
+
+    public CompressingResponse(HttpServletResponse response, Compression.Encoding encoding) {
+        super(response);
+        this.encoding = encoding;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (compressing == null) {
+            contentLength = len;
+        } else if (!compressing) {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            setContentLengthLong(value == null ? -1 : Long.parseLong(value));
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            setContentLengthLong(value == null ? -1 : Long.parseLong(value));
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        if (stream == null) {
+            stream = new CompressingServletOutputStream(super.getOutputStream());
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            stream = new CompressingServletOutputStream(super.getOutputStream());
+            writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else if (stream != null) {
+            stream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        discardCompressed();
+        encodingDeclared = false;
+        contentLength = -1;
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        discardCompressed();
+    }
+
+    public synchronized void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (writer != null) {
+            writer.flush();
+        }
+        if (compressing == null && encodingDeclared) {
+            target();
+        }
+        if (compressed != null) {
+            compressed.close();
+        } else if (compressing == null && contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+        }
+    }
+
+    private OutputStream target() throws IOException {
+        if (compressing == null) {
+            compressing = encodingDeclared || shouldCompress();
+            if (compressing) {
+                if (!encodingDeclared) {
+                    super.setHeader(Compression.CONTENT_ENCODING, encoding.token());
+                    encodingDeclared = true;
+                }
+                compressed = Compression.compressing(super.getOutputStream(), encoding);
+            } else if (contentLength >= 0) {
+                super.setContentLengthLong(contentLength);
+            }
+        }
+        return compressing ? compressed : super.getOutputStream();
+    }
+
+    private void discardCompressed() {
+        if (compressed != null) {
+            Compression.discard(compressed);
+            compressed = null;
+        }
+        compressing = null;
+    }
+
+    private boolean shouldCompress() {
+        int status = getStatus();
+        String contentType = getContentType();
+        return status != SC_NO_CONTENT && status != SC_NOT_MODIFIED
+                && !containsHeader(Compression.CONTENT_ENCODING)
+                && contentType != null && (contentType.startsWith("application/json") || contentType.startsWith("text/"))
+                && Compression.isWorthCompressing(contentLength);
+    }
+
+    private final class CompressingServletOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+
+        private CompressingServletOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (compressing != null) {
+                target().flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package productstore.servlet.filter;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import productstore.servlet.util.Compression;
+
+import java.io.IOException;
+
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class CompressionFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (!Compression.isEnabled() || !(request instanceof HttpServletRequest req) || !(response instanceof HttpServletResponse resp)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Compression.addVary(resp);
+        Compression.Encoding encoding = Compression.negotiate(req.getHeader(Compression.ACCEPT_ENCODING));
+        if (encoding == null || "HEAD".equals(req.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        req.setAttribute(Compression.ENCODING_ATTRIBUTE, encoding);
+        CompressingResponse compressing = new CompressingResponse(resp, encoding);
+        try {
+            chain.doFilter(req, compressing);
+        } finally {
+            if (!req.isAsyncStarted()) {
+                compressing.finish();
+            }
+        }
+    }
+}
@@ -3,8 +3,10 @@ package productstore.servlet.mapper;
 import org.mapstruct.*;
 import org.mapstruct.factory.Mappers;
 import productstore.model.Order;
+import productstore.model.OrderSummary;
 import productstore.servlet.dto.input.OrderInputDTO;
 import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.OrderSummaryOutputDTO;
 
 
 @Mapper(uses = {UserMapper.class, ProductMapper.class})
@@ -18,5 +20,9 @@ public interface OrderMapper {
     @Mapping(target = "user.id", source = "userId")
     @Mapping(target = "id", source = "id") 
     @Mapping(target = "products", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Order toOrder(OrderInputDTO orderInputDTO);
+
+    @Mapping(target = "id", source = "orderId")
+    OrderSummaryOutputDTO toOrderSummaryOutputDTO(OrderSummary orderSummary);
 }
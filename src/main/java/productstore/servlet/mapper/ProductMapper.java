@@ -17,9 +17,11 @@ public interface ProductMapper {
     
     @Mapping(target = "id", source = "id") 
     @Mapping(target = "orders", ignore = true) 
+    @Mapping(target = "version", ignore = true)
     Product toProduct(ProductInputDTO productInputDTO);
 
     @Mapping(target = "orderIds", expression = "java(includeOrderIds ? ordersToOrderIds(product.getOrders()) : null)")
+    @Mapping(target = "version", source = "linkedVersion")
     ProductOutputDTO toProductOutputDTO(@Context boolean includeOrderIds, Product product);
 
     List<ProductOutputDTO> toProductOutputDTOList(@Context boolean includeOrderIds, List<Product> products);
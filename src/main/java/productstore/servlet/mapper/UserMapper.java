@@ -20,6 +20,7 @@ public interface UserMapper {
     
     @Mapping(target = "id", source = "id")
     @Mapping(target = "orders", ignore = true)
+    @Mapping(target = "version", ignore = true)
     User toUser(UserInputDTO userInputDTO);
 
     @Mapping(target = "orderIds", expression = "java(includeOrderIds ? ordersToOrderIds(user.getOrders()) : null)")
@@ -0,0 +1,579 @@
+package productstore.servlet.util;
+
+import com.google.gson.Gson;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.postgresql.PGConnection;
+import productstore.config.AppConfig;
+import productstore.db.ConnectionPermits;
+import productstore.service.apierror.ApiErrorResponse;
+import productstore.servlet.filter.CompressingResponse;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class AsyncDispatcher {
+
+    private static final boolean ENABLED = AppConfig.getBoolean("async.enabled", true);
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Map<String, AsyncDispatcher> ENDPOINTS = new ConcurrentHashMap<>();
+    private static final Gson GSON = new Gson();
+    private static volatile Semaphore databasePermits;
+    private static volatile int databasePermitCount;
+
+    private final long timeoutMillis;
+    private final long streamTimeoutMillis;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder committedTimeouts = new LongAdder();
+    private final LongAdder cancelledQueries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private AsyncDispatcher(long timeoutMillis, long streamTimeoutMillis, int maxConcurrent) {
+        this.timeoutMillis = timeoutMillis;
+        this.streamTimeoutMillis = streamTimeoutMillis;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public static AsyncDispatcher forEndpoint(String endpoint) {
+        return ENDPOINTS.computeIfAbsent(endpoint, name -> new AsyncDispatcher(
+                Math.max(1, AppConfig.getLong("async." + name + ".timeoutMillis", 10000)),
+                Math.max(0, AppConfig.getLong("async." + name + ".streamTimeoutMillis", 0)),
+                (int) Math.max(1, AppConfig.getLong("async." + name + ".maxConcurrent", 8))));
+    }
+
+    public static void initialize(int databaseConnections) {
+        databasePermitCount = Math.max(1, databaseConnections);
+        databasePermits = new Semaphore(databasePermitCount);
+        ConnectionPermits.install(databasePermits);
+    }
+
+    public static void shutdown() {
+        ConnectionPermits.install(null);
+        databasePermits = null;
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        Semaphore database = databasePermits;
+        snapshot.put("enabled", ENABLED && database != null);
+        if (database != null) {
+            snapshot.put("databasePermits", databasePermitCount);
+            snapshot.put("databasePermitsAvailable", database.availablePermits());
+        }
+        Map<String, Object> endpoints = new TreeMap<>();
+        ENDPOINTS.forEach((name, dispatcher) -> endpoints.put(name, dispatcher.endpointSnapshot()));
+        snapshot.put("endpoints", endpoints);
+        return snapshot;
+    }
+
+    public void dispatch(HttpServletRequest req, HttpServletResponse resp, Handler handler) throws ServletException, IOException {
+        Semaphore database = databasePermits;
+        if (!ENABLED || database == null || !req.isAsyncSupported()) {
+            handler.handle(req, resp);
+            return;
+        }
+
+        dispatched.increment();
+        GuardedResponse guarded = new GuardedResponse(resp);
+        AsyncContext asyncContext = req.startAsync(req, guarded);
+        asyncContext.setTimeout(JsonStreamWriter.isStreamRequest(req) ? streamTimeoutMillis : timeoutMillis);
+        AsyncRequest request = new AsyncRequest(asyncContext, req, guarded, handler, database,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        asyncContext.addListener(request);
+        request.future = EXECUTOR.submit(request);
+    }
+
+    private Map<String, Object> endpointSnapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("timeoutMillis", timeoutMillis);
+        snapshot.put("streamTimeoutMillis", streamTimeoutMillis);
+        snapshot.put("maxConcurrent", maxConcurrent);
+        snapshot.put("active", maxConcurrent - permits.availablePermits());
+        snapshot.put("dispatched", dispatched.sum());
+        snapshot.put("completed", completed.sum());
+        snapshot.put("rejected", rejected.sum());
+        snapshot.put("timeouts", timeouts.sum());
+        snapshot.put("committedTimeouts", committedTimeouts.sum());
+        snapshot.put("cancelledQueries", cancelledQueries.sum());
+        snapshot.put("failures", failures.sum());
+        return snapshot;
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException;
+    }
+
+    private final class AsyncRequest implements Runnable, AsyncListener {
+        private final AsyncContext asyncContext;
+        private final HttpServletRequest req;
+        private final GuardedResponse resp;
+        private final Handler handler;
+        private final DatabaseGate gate;
+        private volatile Future<?> future;
+
+        private AsyncRequest(AsyncContext asyncContext, HttpServletRequest req, GuardedResponse resp, Handler handler,
+                             Semaphore database, long deadline) {
+            this.asyncContext = asyncContext;
+            this.req = req;
+            this.resp = resp;
+            this.handler = handler;
+            this.gate = new DatabaseGate(database, deadline, resp);
+        }
+
+        @Override
+        public void run() {
+            boolean endpointAcquired = false;
+            try {
+                endpointAcquired = permits.tryAcquire(gate.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (!endpointAcquired) {
+                    rejected.increment();
+                    resp.abort(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many concurrent requests");
+                    return;
+                }
+                if (resp.isClosed()) {
+                    return;
+                }
+                ConnectionPermits.bind(gate);
+                handler.handle(req, resp);
+                if (!gate.isRejected()) {
+                    completed.increment();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                if (!gate.isRejected()) {
+                    failures.increment();
+                }
+                resp.abort(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal Server Error");
+            } finally {
+                ConnectionPermits.unbind();
+                gate.releaseAll();
+                if (endpointAcquired) {
+                    permits.release();
+                }
+                resp.complete(asyncContext);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            timeouts.increment();
+            if (!resp.abort(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Request timed out")) {
+                committedTimeouts.increment();
+                return;
+            }
+            stop();
+            resp.complete(asyncContext);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            stop();
+            resp.complete(asyncContext);
+        }
+
+        private void stop() {
+            List<Connection> connections = gate.cancel();
+            if (connections == null) {
+                Future<?> running = future;
+                if (running != null) {
+                    running.cancel(true);
+                }
+                return;
+            }
+            if (!connections.isEmpty()) {
+                Thread.ofVirtual().start(() -> cancelQueries(connections));
+            }
+        }
+
+        private void cancelQueries(List<Connection> connections) {
+            for (Connection connection : connections) {
+                try {
+                    connection.unwrap(PGConnection.class).cancelQuery();
+                    cancelledQueries.increment();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private final class DatabaseGate implements ConnectionPermits.Gate {
+        private final Semaphore database;
+        private final long deadline;
+        private final GuardedResponse resp;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Connection> connections = new ArrayList<>();
+        private int held;
+        private boolean rejected;
+        private boolean cancelled;
+
+        private DatabaseGate(Semaphore database, long deadline, GuardedResponse resp) {
+            this.database = database;
+            this.deadline = deadline;
+            this.resp = resp;
+        }
+
+        @Override
+        public void acquire() throws SQLException {
+            checkNotCancelled();
+            boolean acquired;
+            try {
+                acquired = database.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database permit", e);
+            }
+            if (!acquired) {
+                reject("Too many concurrent requests");
+                throw new SQLTransientConnectionException("No database permit became available in time");
+            }
+            lock.lock();
+            try {
+                if (cancelled) {
+                    database.release();
+                    throw new SQLTransientException("Request timed out");
+                }
+                held++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void opened(Connection connection) throws SQLException {
+            lock.lock();
+            try {
+                if (cancelled) {
+                    throw new SQLTransientException("Request timed out");
+                }
+                connections.add(connection);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void closing(Connection connection) {
+            lock.lock();
+            try {
+                connections.remove(connection);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void release() {
+            lock.lock();
+            try {
+                if (held > 0) {
+                    held--;
+                    database.release();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void reject(String reason) {
+            lock.lock();
+            try {
+                if (rejected) {
+                    return;
+                }
+                rejected = true;
+            } finally {
+                lock.unlock();
+            }
+            AsyncDispatcher.this.rejected.increment();
+            resp.abort(HttpServletResponse.SC_SERVICE_UNAVAILABLE, reason);
+        }
+
+        private boolean isRejected() {
+            lock.lock();
+            try {
+                return rejected;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private List<Connection> cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                return held == 0 ? null : List.copyOf(connections);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void checkNotCancelled() throws SQLException {
+            lock.lock();
+            try {
+                if (cancelled) {
+                    throw new SQLTransientException("Request timed out");
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void releaseAll() {
+            lock.lock();
+            try {
+                database.release(held);
+                held = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class GuardedResponse extends HttpServletResponseWrapper {
+        private final ReentrantLock lock = new ReentrantLock();
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+        private boolean closed;
+        private boolean completed;
+
+        private GuardedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        private boolean isClosed() {
+            lock.lock();
+            try {
+                return closed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean abort(int statusCode, String message) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return true;
+                }
+                if (isCommitted()) {
+                    return false;
+                }
+                closed = true;
+                HttpServletResponse response = (HttpServletResponse) getResponse();
+                response.reset();
+                if (statusCode == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+                    response.setHeader("Retry-After", "1");
+                }
+                JsonResponseWriter.write(response, GSON, statusCode, new ApiErrorResponse(message, statusCode));
+                return true;
+            } catch (IOException | IllegalStateException ignored) {
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void complete(AsyncContext asyncContext) {
+            lock.lock();
+            try {
+                if (completed) {
+                    return;
+                }
+                if (writer != null && !closed) {
+                    writer.flush();
+                }
+                closed = true;
+                completed = true;
+                finishCompression(getResponse());
+                asyncContext.complete();
+            } catch (IOException | IllegalStateException ignored) {
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static void finishCompression(ServletResponse response) throws IOException {
+            ServletResponse current = response;
+            while (current instanceof ServletResponseWrapper wrapper) {
+                if (wrapper instanceof CompressingResponse compressing) {
+                    compressing.finish();
+                }
+                current = wrapper.getResponse();
+            }
+        }
+
+        private void guarded(Runnable action) {
+            lock.lock();
+            try {
+                if (!closed) {
+                    action.run();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            guarded(() -> super.setStatus(sc));
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            guarded(() -> super.setHeader(name, value));
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            guarded(() -> super.addHeader(name, value));
+        }
+
+        @Override
+        public void setContentType(String type) {
+            guarded(() -> super.setContentType(type));
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+            guarded(() -> super.setCharacterEncoding(charset));
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            guarded(() -> super.setContentLength(len));
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            guarded(() -> super.setContentLengthLong(len));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            lock.lock();
+            try {
+                if (stream == null) {
+                    stream = new GuardedOutputStream(super.getOutputStream());
+                }
+                return stream;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            lock.lock();
+            try {
+                if (writer == null) {
+                    writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+                }
+                return writer;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private final class GuardedOutputStream extends ServletOutputStream {
+            private final ServletOutputStream delegate;
+
+            private GuardedOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                delegate.setWriteListener(writeListener);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                lock.lock();
+                try {
+                    ensureOpen();
+                    delegate.write(b);
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                lock.lock();
+                try {
+                    ensureOpen();
+                    delegate.write(b, off, len);
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                lock.lock();
+                try {
+                    if (!closed) {
+                        delegate.flush();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            private void ensureOpen() throws IOException {
+                if (closed) {
+                    throw new IOException("Response has already been completed");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package productstore.servlet.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import productstore.config.AppConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class Compression {
+
+    public static final String ENCODING_ATTRIBUTE = Compression.class.getName() + ".encoding";
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String VARY = "Vary";
+
+    private static final boolean ENABLED = AppConfig.getBoolean("compression.enabled", true);
+    private static final long MIN_BYTES = Math.max(0, AppConfig.getLong("compression.minBytes", 1024));
+    private static final int LEVEL = Math.clamp(AppConfig.getLong("compression.level", 5), 1, 9);
+    private static final int POOL_SIZE = (int) Math.max(1, AppConfig.getLong("compression.pooledDeflaters", 32));
+    private static final int BUFFER_BYTES = 8 * 1024;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final BlockingQueue<Compressor> GZIP_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final BlockingQueue<Compressor> DEFLATE_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final LongAdder ALLOCATED = new LongAdder();
+    private static final LongAdder COMPRESSED = new LongAdder();
+    private static final LongAdder BYTES_IN = new LongAdder();
+    private static final LongAdder BYTES_OUT = new LongAdder();
+
+    private Compression() {}
+
+    public enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        public String token() {
+            return token;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static boolean isWorthCompressing(long length) {
+        return length < 0 || length >= MIN_BYTES;
+    }
+
+    public static void addVary(HttpServletResponse resp) {
+        if (ENABLED && !resp.containsHeader(VARY)) {
+            resp.addHeader(VARY, ACCEPT_ENCODING);
+        }
+    }
+
+    public static Encoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            double quality = quality(tokens);
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzip = Math.max(gzip, quality);
+                case "deflate" -> deflate = Math.max(deflate, quality);
+                case "*" -> wildcard = Math.max(wildcard, quality);
+                default -> {
+                }
+            }
+        }
+        if (gzip < 0) {
+            gzip = wildcard;
+        }
+        if (deflate < 0) {
+            deflate = wildcard;
+        }
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? Encoding.GZIP : Encoding.DEFLATE;
+    }
+
+    public static Encoding negotiated(HttpServletRequest req, long length) {
+        if (ENABLED && req.getAttribute(ENCODING_ATTRIBUTE) instanceof Encoding encoding && isWorthCompressing(length)) {
+            return encoding;
+        }
+        return null;
+    }
+
+    public static OutputStream compressing(OutputStream target, Encoding encoding) throws IOException {
+        return new CompressingOutputStream(target, encoding, borrow(encoding));
+    }
+
+    public static void discard(OutputStream stream) {
+        if (stream instanceof CompressingOutputStream compressing) {
+            compressing.discard();
+        }
+    }
+
+    public static byte[] compress(byte[] body, Encoding encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream compressing = compressing(out, encoding)) {
+            compressing.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static void writeCompressed(HttpServletResponse resp, Encoding encoding, byte[] body) throws IOException {
+        resp.setHeader(CONTENT_ENCODING, encoding.token());
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", ENABLED);
+        snapshot.put("minBytes", MIN_BYTES);
+        snapshot.put("level", LEVEL);
+        snapshot.put("pooled", GZIP_POOL.size() + DEFLATE_POOL.size());
+        snapshot.put("allocated", ALLOCATED.sum());
+        snapshot.put("compressed", COMPRESSED.sum());
+        long in = BYTES_IN.sum();
+        long out = BYTES_OUT.sum();
+        snapshot.put("bytesIn", in);
+        snapshot.put("bytesOut", out);
+        snapshot.put("ratio", in == 0 ? 0.0 : (double) out / in);
+        return snapshot;
+    }
+
+    private static double quality(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String parameter = tokens[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static BlockingQueue<Compressor> pool(Encoding encoding) {
+        return encoding == Encoding.GZIP ? GZIP_POOL : DEFLATE_POOL;
+    }
+
+    private static Compressor borrow(Encoding encoding) {
+        Compressor compressor = pool(encoding).poll();
+        if (compressor == null) {
+            ALLOCATED.increment();
+            compressor = new Compressor(new Deflater(LEVEL, encoding == Encoding.GZIP), new byte[BUFFER_BYTES]);
+        }
+        return compressor;
+    }
+
+    private static void release(Encoding encoding, Compressor compressor) {
+        compressor.deflater().reset();
+        if (!pool(encoding).offer(compressor)) {
+            compressor.deflater().end();
+        }
+    }
+
+    private record Compressor(Deflater deflater, byte[] buffer) {
+    }
+
+    private static final class CompressingOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final Encoding encoding;
+        private final Compressor compressor;
+        private final CRC32 crc = new CRC32();
+        private boolean closed;
+
+        private CompressingOutputStream(OutputStream target, Encoding encoding, Compressor compressor) throws IOException {
+            this.target = target;
+            this.encoding = encoding;
+            this.compressor = compressor;
+            if (encoding == Encoding.GZIP) {
+                target.write(GZIP_HEADER);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return;
+            }
+            Deflater deflater = compressor.deflater();
+            deflater.setInput(b, off, len);
+            if (encoding == Encoding.GZIP) {
+                crc.update(b, off, len);
+            }
+            while (!deflater.needsInput()) {
+                deflate(Deflater.NO_FLUSH);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (closed) {
+                return;
+            }
+            int length;
+            do {
+                length = deflate(Deflater.SYNC_FLUSH);
+            } while (length == compressor.buffer().length);
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Deflater deflater = compressor.deflater();
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate(Deflater.NO_FLUSH);
+                }
+                if (encoding == Encoding.GZIP) {
+                    writeIntLE((int) crc.getValue());
+                    writeIntLE((int) deflater.getBytesRead());
+                }
+                COMPRESSED.increment();
+                BYTES_IN.add(deflater.getBytesRead());
+                BYTES_OUT.add(deflater.getBytesWritten() + (encoding == Encoding.GZIP ? GZIP_HEADER.length + 8 : 0));
+                target.flush();
+            } finally {
+                release(encoding, compressor);
+            }
+        }
+
+        private void discard() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            release(encoding, compressor);
+        }
+
+        private int deflate(int flush) throws IOException {
+            byte[] buffer = compressor.buffer();
+            int length = compressor.deflater().deflate(buffer, 0, buffer.length, flush);
+            if (length > 0) {
+                target.write(buffer, 0, length);
+            }
+            return length;
+        }
+
+        private void writeIntLE(int value) throws IOException {
+            target.write(value & 0xff);
+            target.write((value >> 8) & 0xff);
+            target.write((value >> 16) & 0xff);
+            target.write((value >> 24) & 0xff);
+        }
+    }
+}
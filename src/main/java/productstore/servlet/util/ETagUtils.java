@@ -0,0 +1,70 @@
+package productstore.servlet.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class ETagUtils {
+
+    private static final String ETAG_HEADER = "ETag";
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    private static final String WEAK_PREFIX = "W/";
+    private static final String ANY = "*";
+
+    private ETagUtils() {}
+
+    public static String of(String resource, long id, long version) {
+        return "\"" + resource + "-" + id + "-" + version + "\"";
+    }
+
+    public static String of(String resource, long id, long version, Compression.Encoding encoding) {
+        if (encoding == null) {
+            return of(resource, id, version);
+        }
+        return "\"" + resource + "-" + id + "-" + version + "-" + encoding.token() + "\"";
+    }
+
+    public static boolean isConditionalRequest(HttpServletRequest req) {
+        return req.getHeader(IF_NONE_MATCH_HEADER) != null;
+    }
+
+    public static boolean matches(HttpServletRequest req, String etag) {
+        String ifNoneMatch = req.getHeader(IF_NONE_MATCH_HEADER);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith(WEAK_PREFIX)) {
+                tag = tag.substring(WEAK_PREFIX.length());
+            }
+            if (tag.equals(ANY) || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean writeNotModified(HttpServletRequest req, HttpServletResponse resp, String resource, long id, long version) {
+        boolean notModified = writeNotModified(req, resp, of(resource, id, version));
+        for (Compression.Encoding encoding : Compression.Encoding.values()) {
+            notModified = notModified || writeNotModified(req, resp, of(resource, id, version, encoding));
+        }
+        if (notModified) {
+            Compression.addVary(resp);
+        }
+        return notModified;
+    }
+
+    public static boolean writeNotModified(HttpServletRequest req, HttpServletResponse resp, String etag) {
+        if (!matches(req, etag)) {
+            return false;
+        }
+        resp.setHeader(ETAG_HEADER, etag);
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+    }
+
+    public static void setETag(HttpServletResponse resp, String etag) {
+        resp.setHeader(ETAG_HEADER, etag);
+    }
+}
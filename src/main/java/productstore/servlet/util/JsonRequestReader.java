@@ -0,0 +1,159 @@
+package productstore.servlet.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import jakarta.servlet.http.HttpServletRequest;
+import productstore.config.AppConfig;
+import productstore.servlet.exception.RequestBodyTooLargeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public class JsonRequestReader {
+
+    private static final long MAX_BODY_BYTES = AppConfig.getLong("request.maxBodyBytes", 1024 * 1024);
+    private static final int MAX_DEPTH = (int) AppConfig.getLong("request.maxDepth", 32);
+
+    private JsonRequestReader() {}
+
+    public static <T> T read(HttpServletRequest req, Gson gson, Class<T> type) throws IOException {
+        if (req.getContentLengthLong() > MAX_BODY_BYTES) {
+            throw tooLarge(MAX_BODY_BYTES);
+        }
+
+        Reader body = new InputStreamReader(new BoundedInputStream(req.getInputStream(), MAX_BODY_BYTES), charset(req));
+        DepthLimitedJsonReader reader = new DepthLimitedJsonReader(body, MAX_DEPTH);
+        T value = gson.fromJson(reader, type);
+        try {
+            if (value != null && reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("JSON document was not fully consumed.");
+            }
+        } catch (MalformedJsonException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return value;
+    }
+
+    private static Charset charset(HttpServletRequest req) {
+        String encoding = req.getCharacterEncoding();
+        return encoding != null && Charset.isSupported(encoding) ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+    }
+
+    private static RequestBodyTooLargeException tooLarge(long maxBodyBytes) {
+        return new RequestBodyTooLargeException("Request body exceeds " + maxBodyBytes + " bytes");
+    }
+
+    private static final class BoundedInputStream extends FilterInputStream {
+        private final long limit;
+        private long read;
+
+        private BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) {
+                count(skipped);
+            }
+            return skipped;
+        }
+
+        private void count(long bytes) {
+            read += bytes;
+            if (read > limit) {
+                throw tooLarge(limit);
+            }
+        }
+    }
+
+    private static final class DepthLimitedJsonReader extends JsonReader {
+        private final int maxDepth;
+        private int depth;
+
+        private DepthLimitedJsonReader(Reader in, int maxDepth) {
+            super(in);
+            this.maxDepth = maxDepth;
+        }
+
+        @Override
+        public void beginArray() throws IOException {
+            enter();
+            super.beginArray();
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            super.endArray();
+            depth--;
+        }
+
+        @Override
+        public void beginObject() throws IOException {
+            enter();
+            super.beginObject();
+        }
+
+        @Override
+        public void endObject() throws IOException {
+            super.endObject();
+            depth--;
+        }
+
+        @Override
+        public void skipValue() throws IOException {
+            switch (peek()) {
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    while (hasNext()) {
+                        skipValue();
+                    }
+                    endArray();
+                }
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    while (hasNext()) {
+                        nextName();
+                        skipValue();
+                    }
+                    endObject();
+                }
+                default -> super.skipValue();
+            }
+        }
+
+        private void enter() {
+            if (++depth > maxDepth) {
+                throw new JsonSyntaxException("JSON nesting depth exceeds " + maxDepth);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package productstore.servlet.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonNull;
+import com.google.gson.stream.JsonWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import productstore.config.AppConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+public class JsonResponseWriter {
+
+    private static final String CONTENT_TYPE = "application/json";
+    private static final int BUFFER_BYTES = (int) Math.max(1024, AppConfig.getLong("response.bufferBytes", 64 * 1024));
+    private static final BlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(
+            (int) Math.max(1, AppConfig.getLong("response.pooledBuffers", 64)));
+    private static final LongAdder BUFFERED = new LongAdder();
+    private static final LongAdder CHUNKED = new LongAdder();
+    private static final LongAdder ALLOCATED = new LongAdder();
+
+    private JsonResponseWriter() {}
+
+    public static void write(HttpServletResponse resp, Gson gson, int statusCode, Object data) throws IOException {
+        resp.setContentType(CONTENT_TYPE);
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setStatus(statusCode);
+
+        byte[] buffer = borrow();
+        try {
+            SpillingOutputStream body = new SpillingOutputStream(buffer, resp::getOutputStream);
+            serialize(gson, data, body);
+            if (body.isSpilled()) {
+                CHUNKED.increment();
+            } else {
+                BUFFERED.increment();
+                resp.setContentLength(body.size());
+                resp.getOutputStream().write(buffer, 0, body.size());
+            }
+        } finally {
+            release(buffer);
+        }
+    }
+
+    public static byte[] encode(Gson gson, Object data) {
+        byte[] buffer = borrow();
+        try {
+            ByteArrayOutputStream overflow = new ByteArrayOutputStream(buffer.length * 2);
+            SpillingOutputStream body = new SpillingOutputStream(buffer, () -> overflow);
+            serialize(gson, data, body);
+            return body.isSpilled() ? overflow.toByteArray() : Arrays.copyOf(buffer, body.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("bufferBytes", BUFFER_BYTES);
+        snapshot.put("pooled", POOL.size());
+        snapshot.put("allocated", ALLOCATED.sum());
+        snapshot.put("withContentLength", BUFFERED.sum());
+        snapshot.put("chunked", CHUNKED.sum());
+        return snapshot;
+    }
+
+    private static void serialize(Gson gson, Object data, OutputStream out) throws IOException {
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Object source = data == null ? JsonNull.INSTANCE : data;
+        gson.toJson(source, source.getClass(), writer);
+        writer.flush();
+    }
+
+    private static byte[] borrow() {
+        byte[] buffer = POOL.poll();
+        if (buffer == null) {
+            ALLOCATED.increment();
+            buffer = new byte[BUFFER_BYTES];
+        }
+        return buffer;
+    }
+
+    private static void release(byte[] buffer) {
+        POOL.offer(buffer);
+    }
+
+    @FunctionalInterface
+    private interface StreamTarget {
+        OutputStream open() throws IOException;
+    }
+
+    private static final class SpillingOutputStream extends OutputStream {
+        private final byte[] buffer;
+        private final StreamTarget target;
+        private OutputStream spilled;
+        private int size;
+
+        private SpillingOutputStream(byte[] buffer, StreamTarget target) {
+            this.buffer = buffer;
+            this.target = target;
+        }
+
+        private boolean isSpilled() {
+            return spilled != null;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (spilled == null && size < buffer.length) {
+                buffer[size++] = (byte) b;
+                return;
+            }
+            spill().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (spilled == null && size + len <= buffer.length) {
+                System.arraycopy(b, off, buffer, size, len);
+                size += len;
+                return;
+            }
+            spill().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (spilled != null) {
+                spilled.flush();
+            }
+        }
+
+        private OutputStream spill() throws IOException {
+            if (spilled == null) {
+                spilled = target.open();
+                spilled.write(buffer, 0, size);
+            }
+            return spilled;
+        }
+    }
+}
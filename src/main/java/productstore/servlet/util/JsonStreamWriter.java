@@ -0,0 +1,47 @@
+package productstore.servlet.util;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+public class JsonStreamWriter {
+
+    private static final String STREAM_PARAM = "stream";
+
+    private JsonStreamWriter() {}
+
+    public static boolean isStreamRequest(HttpServletRequest req) {
+        return Boolean.parseBoolean(req.getParameter(STREAM_PARAM));
+    }
+
+    public static <T> void writeArray(HttpServletResponse resp, Gson gson, Class<T> type, ItemSource<T> source) throws IOException, SQLException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setStatus(HttpServletResponse.SC_OK);
+
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(resp.getOutputStream(), StandardCharsets.UTF_8));
+        try {
+            writer.beginArray();
+            source.forEach(item -> gson.toJson(item, type, writer));
+            writer.endArray();
+            writer.flush();
+        } catch (SQLException | RuntimeException e) {
+            if (!resp.isCommitted()) {
+                resp.resetBuffer();
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ItemSource<T> {
+        void forEach(Consumer<T> consumer) throws SQLException;
+    }
+}
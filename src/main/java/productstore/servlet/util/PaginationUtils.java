@@ -1,9 +1,17 @@
 package productstore.servlet.util;
 
 import jakarta.servlet.http.HttpServletRequest;
+import productstore.servlet.dto.output.PageOutputDTO;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToLongFunction;
 
 public class PaginationUtils {
 
+    private static final String AFTER_PARAM = "after";
+
     private PaginationUtils() {}
 
     public static int getPageNumber(HttpServletRequest req) {
@@ -29,4 +37,45 @@ public class PaginationUtils {
         }
         return 10;
     }
+
+    public static boolean isCursorRequest(HttpServletRequest req) {
+        return req.getParameter(AFTER_PARAM) != null;
+    }
+
+    public static long getAfterId(HttpServletRequest req) {
+        String cursor = req.getParameter(AFTER_PARAM);
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        return decodeCursor(cursor);
+    }
+
+    public static <T> PageOutputDTO<T> toPage(List<T> items, int pageSize, ToLongFunction<T> idExtractor) {
+        String nextCursor = null;
+        if (!items.isEmpty() && items.size() >= pageSize) {
+            nextCursor = encodeCursor(idExtractor.applyAsLong(items.get(items.size() - 1)));
+        }
+        return new PageOutputDTO<>(items, nextCursor);
+    }
+
+    public static String encodeCursor(long id) {
+        byte[] bytes = ByteBuffer.allocate(Long.BYTES).putLong(id).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public static long decodeCursor(String cursor) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length != Long.BYTES) {
+                throw new NumberFormatException("Invalid cursor");
+            }
+            long id = ByteBuffer.wrap(bytes).getLong();
+            if (id < 0) {
+                throw new NumberFormatException("Invalid cursor");
+            }
+            return id;
+        } catch (IllegalArgumentException e) {
+            throw new NumberFormatException("Invalid cursor");
+        }
+    }
 }
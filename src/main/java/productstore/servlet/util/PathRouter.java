@@ -0,0 +1,153 @@
+package productstore.servlet.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class PathRouter<R> {
+
+    private static final String PARAMETER = "{id}";
+    private static final long NO_ID = -1;
+
+    private final Node<R> root;
+
+    private PathRouter(Node<R> root) {
+        this.root = root;
+    }
+
+    public static <R> Builder<R> builder() {
+        return new Builder<>();
+    }
+
+    public Match<R> match(String path) {
+        if (path == null || path.equals("/")) {
+            return root.route == null ? null : new Match<>(root.route, NO_ID);
+        }
+        if (path.charAt(0) != '/') {
+            return null;
+        }
+
+        Node<R> node = root;
+        long id = NO_ID;
+        int length = path.length();
+        int start = 1;
+        while (true) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end == start) {
+                return null;
+            }
+
+            Node<R> next = node.literal(path, start, end);
+            if (next == null && node.parameter != null) {
+                long parsed = parseId(path, start, end);
+                if (parsed < 0) {
+                    return null;
+                }
+                id = parsed;
+                next = node.parameter;
+            }
+            if (next == null) {
+                return null;
+            }
+
+            node = next;
+            if (end == length) {
+                return node.route == null ? null : new Match<>(node.route, id);
+            }
+            start = end + 1;
+        }
+    }
+
+    private static long parseId(String path, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = path.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    public record Match<R>(R route, long id) {
+    }
+
+    private static final class Node<R> {
+        private final Map<String, Node<R>> children = new LinkedHashMap<>();
+        private String[] literals = new String[0];
+        private Node<R>[] literalNodes;
+        private Node<R> parameter;
+        private R route;
+
+        private Node<R> literal(String path, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < literals.length; i++) {
+                String literal = literals[i];
+                if (literal.length() == length && path.regionMatches(start, literal, 0, length)) {
+                    return literalNodes[i];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void compile() {
+            literals = children.keySet().toArray(new String[0]);
+            literalNodes = children.values().toArray(new Node[0]);
+            for (Node<R> child : literalNodes) {
+                child.compile();
+            }
+            if (parameter != null) {
+                parameter.compile();
+            }
+        }
+    }
+
+    public static final class Builder<R> {
+        private final Node<R> root = new Node<>();
+
+        private Builder() {
+        }
+
+        public Builder<R> route(String pattern, R route) {
+            if (pattern == null || !pattern.startsWith("/") || route == null) {
+                throw new IllegalArgumentException("Invalid route pattern: " + pattern);
+            }
+
+            Node<R> node = root;
+            int parameters = 0;
+            if (pattern.length() > 1) {
+                for (String segment : pattern.substring(1).split("/", -1)) {
+                    if (segment.isEmpty()) {
+                        throw new IllegalArgumentException("Invalid route pattern: " + pattern);
+                    }
+                    if (PARAMETER.equals(segment)) {
+                        if (++parameters > 1) {
+                            throw new IllegalArgumentException("Only one " + PARAMETER + " segment is supported: " + pattern);
+                        }
+                        if (node.parameter == null) {
+                            node.parameter = new Node<>();
+                        }
+                        node = node.parameter;
+                    } else {
+                        node = node.children.computeIfAbsent(segment, key -> new Node<>());
+                    }
+                }
+            }
+
+            if (node.route != null) {
+                throw new IllegalArgumentException("Duplicate route pattern: " + pattern);
+            }
+            node.route = route;
+            return this;
+        }
+
+        public PathRouter<R> build() {
+            root.compile();
+            return new PathRouter<>(root);
+        }
+    }
+}
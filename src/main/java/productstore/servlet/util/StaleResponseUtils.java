@@ -0,0 +1,27 @@
+package productstore.servlet.util;
+
+import jakarta.servlet.http.HttpServletResponse;
+import productstore.cache.StaleReads;
+
+public class StaleResponseUtils {
+
+    private static final String AGE_HEADER = "Age";
+    private static final String WARNING_HEADER = "Warning";
+    private static final String RESPONSE_IS_STALE = "110 - \"Response is Stale\"";
+    private static final String REVALIDATION_FAILED = "111 - \"Revalidation Failed\"";
+
+    private StaleResponseUtils() {}
+
+    public static void reset() {
+        StaleReads.clear();
+    }
+
+    public static void setStaleHeaders(HttpServletResponse resp) {
+        StaleReads.Read read = StaleReads.take();
+        if (read == null) {
+            return;
+        }
+        resp.setHeader(AGE_HEADER, String.valueOf(read.age().toSeconds()));
+        resp.setHeader(WARNING_HEADER, read.revalidationFailed() ? REVALIDATION_FAILED : RESPONSE_IS_STALE);
+    }
+}
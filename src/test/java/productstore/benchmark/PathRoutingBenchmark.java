@@ -0,0 +1,69 @@
+package productstore.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import productstore.servlet.util.PathRouter;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathRoutingBenchmark {
+
+    private enum Route { ROOT, ORDER, ORDER_PRODUCTS, ORDER_USER }
+
+    private static final String[] PATHS = {"/", "/12345", "/12345/products", "/12345/users", "/abc"};
+
+    private final PathRouter<Route> router = PathRouter.<Route>builder()
+            .route("/", Route.ROOT)
+            .route("/{id}", Route.ORDER)
+            .route("/{id}/products", Route.ORDER_PRODUCTS)
+            .route("/{id}/users", Route.ORDER_USER)
+            .build();
+
+    @Benchmark
+    public void regexDispatch(Blackhole blackhole) {
+        for (String path : PATHS) {
+            if (path == null || path.equals("/")) {
+                blackhole.consume(Route.ROOT);
+            } else if (path.matches("/\\d+/products")) {
+                blackhole.consume(Long.parseLong(path.split("/")[1]));
+            } else if (path.matches("/\\d+/users")) {
+                blackhole.consume(Long.parseLong(path.split("/")[1]));
+            } else if (path.matches("/\\d+")) {
+                blackhole.consume(Long.parseLong(path.split("/")[1]));
+            } else {
+                blackhole.consume(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void trieDispatch(Blackhole blackhole) {
+        for (String path : PATHS) {
+            PathRouter.Match<Route> match = router.match(path);
+            if (match == null) {
+                blackhole.consume(path);
+            } else if (match.route() == Route.ROOT) {
+                blackhole.consume(Route.ROOT);
+            } else {
+                blackhole.consume(match.id());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PathRoutingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,134 @@
+package productstore.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import productstore.dao.SqlQueries;
+import productstore.dao.impl.OrderDaoImpl;
+import productstore.dao.util.DaoUtils;
+import productstore.dao.util.RowMapper;
+import productstore.db.DataBaseUtil;
+import productstore.model.Order;
+import productstore.model.Product;
+import productstore.model.User;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    private static final int ORDERS = 2000;
+    private static final int LINES_PER_ORDER = 5;
+
+    private User user;
+    private final List<Product> products = new ArrayList<>();
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet rs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        DataBaseUtil.initializeDataSource(
+                System.getProperty("benchmark.jdbcUrl", "jdbc:postgresql://localhost:5432/productstore"),
+                System.getProperty("benchmark.user", "postgres"),
+                System.getProperty("benchmark.password", "password"));
+
+        String userName = "benchmark-" + System.nanoTime();
+        long userId = DaoUtils.executeInsert(SqlQueries.INSERT_USER.getSql(), stmt -> {
+            stmt.setString(1, userName);
+            stmt.setString(2, userName + "@example.com");
+        }, keys -> {
+            keys.next();
+            return keys.getLong(1);
+        });
+        user = new User.Builder().withId(userId).withName(userName).build();
+
+        for (int i = 0; i < LINES_PER_ORDER; i++) {
+            String productName = "benchmark-product-" + i;
+            long productId = DaoUtils.executeInsert(SqlQueries.INSERT_PRODUCT.getSql(), stmt -> {
+                stmt.setString(1, productName);
+                stmt.setDouble(2, 1.00);
+            }, keys -> {
+                keys.next();
+                return keys.getLong(1);
+            });
+            products.add(new Product.Builder().withId(productId).withName(productName).withPrice(1.00).build());
+        }
+
+        OrderDaoImpl orderDao = new OrderDaoImpl();
+        for (int i = 0; i < ORDERS; i++) {
+            orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(products).build());
+        }
+
+        connection = DataBaseUtil.getConnection();
+        statement = connection.prepareStatement(SqlQueries.SELECT_ALL_ORDERS_ORDERED_BY_ID.getSql(),
+                ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rs = statement.executeQuery();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        rs.close();
+        statement.close();
+        connection.close();
+        DaoUtils.executeUpdate(SqlQueries.DELETE_USER.getSql(), stmt -> stmt.setLong(1, user.getId()));
+        for (Product product : products) {
+            DaoUtils.executeUpdate(SqlQueries.DELETE_PRODUCT.getSql(), stmt -> stmt.setLong(1, product.getId()));
+        }
+        DataBaseUtil.closeDataSource();
+    }
+
+    @Benchmark
+    public void labelLookup(Blackhole blackhole) throws SQLException {
+        rs.beforeFirst();
+        while (rs.next()) {
+            blackhole.consume(rs.getLong("order_id"));
+            blackhole.consume(rs.getLong("user_id"));
+            blackhole.consume(rs.getString("user_name"));
+            blackhole.consume(rs.getString("user_email"));
+            blackhole.consume(rs.getLong("product_id"));
+            blackhole.consume(rs.getString("product_name"));
+            blackhole.consume(rs.getDouble("product_price"));
+        }
+    }
+
+    @Benchmark
+    public void resolvedIndexes(Blackhole blackhole) throws SQLException {
+        rs.beforeFirst();
+        ResultSetMetaData metaData = rs.getMetaData();
+        int orderId = RowMapper.columnIndex(metaData, "order_id");
+        int userId = RowMapper.columnIndex(metaData, "user_id");
+        int userName = RowMapper.columnIndex(metaData, "user_name");
+        int userEmail = RowMapper.columnIndex(metaData, "user_email");
+        int productId = RowMapper.columnIndex(metaData, "product_id");
+        int productName = RowMapper.columnIndex(metaData, "product_name");
+        int productPrice = RowMapper.columnIndex(metaData, "product_price");
+        while (rs.next()) {
+            blackhole.consume(rs.getLong(orderId));
+            blackhole.consume(rs.getLong(userId));
+            blackhole.consume(rs.getString(userName));
+            blackhole.consume(rs.getString(userEmail));
+            blackhole.consume(rs.getLong(productId));
+            blackhole.consume(rs.getString(productName));
+            blackhole.consume(rs.getDouble(productPrice));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RowMappingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,121 @@
+package productstore.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import productstore.dao.SqlQueries;
+import productstore.dao.impl.OrderDaoImpl;
+import productstore.dao.util.DaoUtils;
+import productstore.db.DataBaseUtil;
+import productstore.model.Order;
+import productstore.model.Product;
+import productstore.model.User;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveOrderBenchmark {
+
+    @Param({"1", "5", "20"})
+    private int linesPerOrder;
+
+    private final OrderDaoImpl orderDao = new OrderDaoImpl();
+    private User user;
+    private List<Product> products;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        DataBaseUtil.initializeDataSource(
+                System.getProperty("benchmark.jdbcUrl", "jdbc:postgresql://localhost:5432/productstore"),
+                System.getProperty("benchmark.user", "postgres"),
+                System.getProperty("benchmark.password", "password"));
+
+        String userName = "benchmark-" + System.nanoTime();
+        long userId = DaoUtils.executeInsert(SqlQueries.INSERT_USER.getSql(), stmt -> {
+            stmt.setString(1, userName);
+            stmt.setString(2, userName + "@example.com");
+        }, keys -> {
+            keys.next();
+            return keys.getLong(1);
+        });
+        user = new User.Builder().withId(userId).withName(userName).build();
+
+        products = new ArrayList<>();
+        for (int i = 0; i < linesPerOrder; i++) {
+            String productName = "benchmark-product-" + i;
+            long productId = DaoUtils.executeInsert(SqlQueries.INSERT_PRODUCT.getSql(), stmt -> {
+                stmt.setString(1, productName);
+                stmt.setDouble(2, 1.00);
+            }, keys -> {
+                keys.next();
+                return keys.getLong(1);
+            });
+            products.add(new Product.Builder().withId(productId).withName(productName).withPrice(1.00).build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        DaoUtils.executeUpdate(SqlQueries.DELETE_USER.getSql(), stmt -> stmt.setLong(1, user.getId()));
+        for (Product product : products) {
+            DaoUtils.executeUpdate(SqlQueries.DELETE_PRODUCT.getSql(), stmt -> stmt.setLong(1, product.getId()));
+        }
+        DataBaseUtil.closeDataSource();
+    }
+
+    @Benchmark
+    public long singleStatement() throws SQLException {
+        return orderDao.saveOrder(newOrder()).getId();
+    }
+
+    @Benchmark
+    public long insertThenBatch() throws SQLException {
+        Order order = newOrder();
+        try (Connection connection = DataBaseUtil.getConnection()) {
+            return DaoUtils.executeInTransaction(connection, () -> {
+                try (PreparedStatement insertOrderStmt = connection.prepareStatement(SqlQueries.INSERT_ORDER.getSql(), Statement.RETURN_GENERATED_KEYS);
+                     PreparedStatement insertOrderProductsStmt = connection.prepareStatement(SqlQueries.INSERT_ORDER_PRODUCTS.getSql())) {
+
+                    insertOrderStmt.setLong(1, order.getUser().getId());
+                    insertOrderStmt.executeUpdate();
+
+                    try (ResultSet generatedKeys = insertOrderStmt.getGeneratedKeys()) {
+                        generatedKeys.next();
+                        long orderId = generatedKeys.getLong(1);
+                        insertOrderProductsStmt.setLong(1, orderId);
+                        for (Product product : order.getProducts()) {
+                            insertOrderProductsStmt.setLong(2, product.getId());
+                            insertOrderProductsStmt.addBatch();
+                        }
+                        insertOrderProductsStmt.executeBatch();
+                        return orderId;
+                    }
+                }
+            });
+        }
+    }
+
+    private Order newOrder() {
+        return new Order.Builder()
+                .withUser(user)
+                .withProducts(products)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SaveOrderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,161 @@
+package productstore.cache;
+
+import org.junit.jupiter.api.*;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import productstore.dao.OrderDao;
+import productstore.dao.ProductDao;
+import productstore.dao.UserDao;
+import productstore.dao.impl.OrderDaoImpl;
+import productstore.dao.impl.ProductDaoImpl;
+import productstore.dao.impl.UserDaoImpl;
+import productstore.dao.utils.PostgreSQLContainerProvider;
+import productstore.db.DataBaseUtil;
+import productstore.model.Order;
+import productstore.model.Product;
+import productstore.model.User;
+import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.ProductOutputDTO;
+import productstore.servlet.dto.output.UserOutputDTO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+public class CacheInvalidationListenerTest {
+    private ProductDao productDao;
+    private UserDao userDao;
+    private OrderDao orderDao;
+    private EntityCaches caches;
+    private CacheInvalidationListener listener;
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        PostgreSQLContainerProvider.startContainer();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        productDao = new ProductDaoImpl();
+        userDao = new UserDaoImpl();
+        orderDao = new OrderDaoImpl();
+        caches = new EntityCaches(
+                new EntityCache<>(100, Duration.ofMinutes(1), product -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), user -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), order -> 1));
+        listener = new CacheInvalidationListener(caches, Duration.ofMillis(200), Duration.ofMillis(100));
+        listener.start();
+        await(listener::isListening);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        listener.close();
+        try (Connection connection = DataBaseUtil.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("TRUNCATE TABLE orders_products CASCADE;");
+            stmt.execute("TRUNCATE TABLE products CASCADE;");
+            stmt.execute("TRUNCATE TABLE orders CASCADE;");
+            stmt.execute("TRUNCATE TABLE users CASCADE;");
+        }
+    }
+
+    @AfterAll
+    public static void tearDownAll() {
+        PostgreSQLContainerProvider.stopContainer();
+    }
+
+    @Test
+    public void testProductUpdateEvictsProduct() throws SQLException {
+        Product product = productDao.saveProduct(new Product.Builder().withName("Product").withPrice(10.0).build());
+        caches.products().put(product.getId(), new ProductOutputDTO(product.getId(), "Product", 10.0, List.of()));
+
+        product.setName("Updated");
+        productDao.updateProduct(product);
+
+        await(() -> caches.products().getIfPresent(product.getId()) == null);
+    }
+
+    @Test
+    public void testOrderLinkChangeEvictsOrderAndProduct() throws SQLException {
+        User user = userDao.saveUser(new User.Builder().withName("Test User").withEmail("testuser@example.com").build());
+        Product product = productDao.saveProduct(new Product.Builder().withName("Product").withPrice(10.0).build());
+        Order order = orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(List.of()).build());
+        OrderOutputDTO cachedOrder = new OrderOutputDTO();
+        cachedOrder.setId(order.getId());
+        caches.orders().put(order.getId(), cachedOrder);
+        caches.products().put(product.getId(), new ProductOutputDTO(product.getId(), "Product", 10.0, List.of()));
+
+        orderDao.addProductsToOrder(order.getId(), List.of(product));
+
+        await(() -> caches.orders().getIfPresent(order.getId()) == null
+                && caches.products().getIfPresent(product.getId()) == null);
+    }
+
+    @Test
+    public void testUserDeleteEvictsCascadedOrders() throws SQLException {
+        User user = userDao.saveUser(new User.Builder().withName("Test User").withEmail("testuser@example.com").build());
+        Order order = orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(List.of()).build());
+        caches.users().put(user.getId(), new UserOutputDTO(user.getId(), "Test User", "testuser@example.com", List.of(order.getId())));
+        caches.orders().put(order.getId(), new OrderOutputDTO());
+
+        userDao.deleteUser(user.getId());
+
+        await(() -> caches.users().getIfPresent(user.getId()) == null
+                && caches.orders().getIfPresent(order.getId()) == null);
+    }
+
+    @Test
+    public void testReconnectFlushesEverything() throws SQLException {
+        caches.products().put(1L, new ProductOutputDTO(1L, "Unrelated", 10.0, List.of()));
+        int firstPid = listener.getBackendPid();
+
+        try (Connection connection = DataBaseUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT pg_terminate_backend(?)")) {
+            stmt.setInt(1, firstPid);
+            stmt.execute();
+        }
+
+        await(() -> listener.isListening() && listener.getBackendPid() != firstPid);
+        assertNull(caches.products().getIfPresent(1L));
+        assertTrue((Long) listener.snapshot().get("reconnects") >= 1);
+    }
+
+    @Test
+    public void testWarmUpRunsAfterTheInitialFlush() {
+        CacheInvalidationListener starting = new CacheInvalidationListener(caches, Duration.ofMillis(200), Duration.ofMillis(100));
+        AtomicBoolean warmed = new AtomicBoolean();
+        starting.whenListening(() -> {
+            caches.products().put(1L, new ProductOutputDTO(1L, "Warmed", 10.0, List.of()));
+            warmed.set(true);
+        });
+        try {
+            starting.start();
+            await(warmed::get);
+            assertTrue(starting.isListening());
+            assertEquals("Warmed", caches.products().getIfPresent(1L).getName());
+        } finally {
+            starting.close();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
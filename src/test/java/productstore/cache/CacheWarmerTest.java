@@ -0,0 +1,158 @@
+package productstore.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import productstore.config.Readiness;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CacheWarmerTest {
+
+    @AfterEach
+    public void tearDown() {
+        Readiness.markNotReady("starting");
+    }
+
+    @Test
+    public void testLoadsHotIdsInBatches() {
+        EntityCache<String> cache = new EntityCache<>(1_000, Duration.ofMinutes(1), value -> 1);
+        AtomicInteger requestedLimit = new AtomicInteger();
+        CacheWarmer warmer = new CacheWarmer(2, 3, Duration.ofSeconds(5), List.of())
+                .add("products", cache, id -> "product-" + id, limit -> {
+                    requestedLimit.set(limit);
+                    return LongStream.rangeClosed(1, 10).boxed().toList();
+                }, 10);
+
+        warmer.run();
+
+        assertEquals(10, requestedLimit.get());
+        assertEquals("product-7", cache.getIfPresent(7L));
+        Map<String, Object> snapshot = warmer.snapshot();
+        assertEquals(10L, snapshot.get("loaded"));
+        assertEquals(false, snapshot.get("timedOut"));
+        assertEquals(true, snapshot.get("finished"));
+    }
+
+    @Test
+    public void testFailedLoadsAreCountedAndSkipped() {
+        EntityCache<String> cache = new EntityCache<>(1_000, Duration.ofMinutes(1), value -> 1);
+        CacheWarmer warmer = new CacheWarmer(2, 2, Duration.ofSeconds(5), List.of())
+                .add("users", cache, id -> {
+                    if (id == 2L) {
+                        throw new IllegalStateException("gone");
+                    }
+                    return "user-" + id;
+                }, limit -> List.of(1L, 2L, 3L), 3);
+
+        warmer.run();
+
+        assertNull(cache.getIfPresent(2L));
+        assertEquals("user-3", cache.getIfPresent(3L));
+        assertEquals(2L, warmer.snapshot().get("loaded"));
+        assertEquals(1L, warmer.snapshot().get("failed"));
+    }
+
+    @Test
+    public void testTimeCapMarksReady() throws InterruptedException {
+        EntityCache<String> cache = new EntityCache<>(1_000, Duration.ofMinutes(1), value -> 1);
+        CacheWarmer warmer = new CacheWarmer(1, 1, Duration.ofMillis(200), List.of())
+                .add("orders", cache, id -> {
+                    LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(10));
+                    return "order-" + id;
+                }, limit -> List.of(1L, 2L), 2);
+
+        warmer.start();
+        assertFalse(Readiness.isReady());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Readiness.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertTrue(Readiness.isReady());
+        assertEquals(true, warmer.snapshot().get("timedOut"));
+        assertEquals("warm-up timed out", Readiness.snapshot().get("phase"));
+    }
+
+    @Test
+    public void testPrimesOnlyFreeConnectionsWhileOneIsHeld() throws Exception {
+        BlockingQueue<Connection> pool = poolOf(4);
+        Connection held = pool.take();
+        AtomicInteger borrowed = new AtomicInteger();
+        EntityCache<String> cache = new EntityCache<>(1_000, Duration.ofMinutes(1), value -> 1);
+        CacheWarmer warmer = new CacheWarmer(1, 10, Duration.ofSeconds(30), List.of("SELECT 1 WHERE ? < 0"))
+                .primeConnectionsFrom(() -> borrow(pool, borrowed), 3)
+                .add("products", cache, id -> "product-" + id, limit -> List.of(1L, 2L), 2);
+
+        warmer.run();
+
+        assertEquals(3, borrowed.get());
+        assertEquals(3, pool.size());
+        assertFalse(pool.contains(held));
+        Map<String, Object> snapshot = warmer.snapshot();
+        assertEquals(3L, snapshot.get("primedConnections"));
+        assertEquals(2L, snapshot.get("loaded"));
+        assertEquals(false, snapshot.get("timedOut"));
+    }
+
+    @Test
+    public void testPrimesBorrowedConnectionsWhenPoolRunsDry() throws Exception {
+        BlockingQueue<Connection> pool = poolOf(4);
+        pool.take();
+        EntityCache<String> cache = new EntityCache<>(1_000, Duration.ofMinutes(1), value -> 1);
+        CacheWarmer warmer = new CacheWarmer(1, 10, Duration.ofSeconds(30), List.of("SELECT 1 WHERE ? < 0"))
+                .primeConnectionsFrom(() -> borrow(pool, new AtomicInteger()), 4)
+                .add("users", cache, id -> "user-" + id, limit -> List.of(1L), 1);
+
+        warmer.run();
+
+        assertEquals(3L, warmer.snapshot().get("primedConnections"));
+        assertEquals("user-1", cache.getIfPresent(1L));
+        assertEquals(3, pool.size());
+    }
+
+    private static BlockingQueue<Connection> poolOf(int size) throws SQLException {
+        BlockingQueue<Connection> pool = new LinkedBlockingQueue<>();
+        for (int i = 0; i < size; i++) {
+            Connection connection = mock(Connection.class);
+            PreparedStatement statement = mock(PreparedStatement.class);
+            when(connection.unwrap(Connection.class)).thenReturn(connection);
+            when(connection.prepareStatement(anyString())).thenReturn(statement);
+            when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+            doAnswer(invocation -> pool.add(connection)).when(connection).close();
+            pool.add(connection);
+        }
+        return pool;
+    }
+
+    private static Connection borrow(BlockingQueue<Connection> pool, AtomicInteger borrowed) throws SQLException {
+        borrowed.incrementAndGet();
+        try {
+            Connection connection = pool.poll(100, TimeUnit.MILLISECONDS);
+            if (connection == null) {
+                throw new SQLTransientConnectionException("Connection is not available, request timed out");
+            }
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+    }
+}
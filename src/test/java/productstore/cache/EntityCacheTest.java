@@ -0,0 +1,301 @@
+package productstore.cache;
+
+import org.junit.jupiter.api.Test;
+import productstore.db.ConnectionPermits;
+import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.ProductOutputDTO;
+import productstore.servlet.dto.output.UserOutputDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityCacheTest {
+
+    @Test
+    public void testGetLoadsOnceAndCountsHits() throws SQLException {
+        EntityCache<String> cache = new EntityCache<>(100, Duration.ofMinutes(1), value -> 1);
+        AtomicInteger loads = new AtomicInteger();
+
+        EntityLoader<String> loader = id -> {
+            loads.incrementAndGet();
+            return "value-" + id;
+        };
+
+        assertEquals("value-1", cache.get(1L, loader));
+        assertEquals("value-1", cache.get(1L, loader));
+
+        assertEquals(1, loads.get());
+        Map<String, Object> snapshot = cache.snapshot();
+        assertEquals(1L, snapshot.get("hits"));
+        assertEquals(1L, snapshot.get("misses"));
+    }
+
+    @Test
+    public void testLoaderRunsWithoutPinningTheCarrier() throws Exception {
+        EntityCache<String> cache = new EntityCache<>(100, Duration.ofMinutes(1), value -> 1);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        EntityLoader<String> loader = id -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "value-" + id;
+        };
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream traces = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(traces, true, StandardCharsets.UTF_8));
+        Thread first;
+        Thread second;
+        try {
+            first = Thread.ofVirtual().start(() -> assertDoesNotThrow(() -> cache.get(1L, loader)));
+            second = Thread.ofVirtual().start(() -> assertDoesNotThrow(() -> cache.get(1L, loader)));
+            TimeUnit.MILLISECONDS.sleep(100);
+            release.countDown();
+            first.join(TimeUnit.SECONDS.toMillis(5));
+            second.join(TimeUnit.SECONDS.toMillis(5));
+        } finally {
+            System.setOut(out);
+        }
+
+        assertFalse(first.isAlive() || second.isAlive());
+        assertFalse(traces.toString(StandardCharsets.UTF_8).contains("<== monitors"), traces.toString(StandardCharsets.UTF_8));
+        assertEquals(1, loads.get());
+        assertEquals("value-1", cache.getIfPresent(1L));
+    }
+
+    @Test
+    public void testInvalidationDuringLoadIsNotCached() throws SQLException {
+        EntityCache<String> cache = new EntityCache<>(100, Duration.ofMinutes(1), value -> 1);
+
+        assertEquals("value-1", cache.get(1L, id -> {
+            cache.invalidate(id);
+            return "value-" + id;
+        }));
+
+        assertNull(cache.getIfPresent(1L));
+    }
+
+    @Test
+    public void testLoaderSQLExceptionIsRethrownAndNotCached() throws SQLException {
+        EntityCache<String> cache = new EntityCache<>(100, Duration.ofMinutes(1), value -> 1);
+        SQLException failure = new SQLException("boom");
+
+        SQLException thrown = assertThrows(SQLException.class, () -> cache.get(1L, id -> {
+            throw failure;
+        }));
+
+        assertSame(failure, thrown);
+        assertNull(cache.getIfPresent(1L));
+        assertEquals("loaded", cache.get(1L, id -> "loaded"));
+    }
+
+    @Test
+    public void testMaximumWeightEvicts() {
+        EntityCache<String> cache = new EntityCache<>(10, Duration.ofMinutes(1), value -> 5);
+        for (long id = 0; id < 10; id++) {
+            cache.put(id, "value");
+        }
+        cache.cleanUp();
+
+        Map<String, Object> snapshot = cache.snapshot();
+        assertTrue((Long) snapshot.get("weight") <= 10);
+        assertTrue((Long) snapshot.get("evictions") > 0);
+    }
+
+    @Test
+    public void testInvalidateOrderDropsLinkedEntities() {
+        EntityCaches caches = newCaches();
+        caches.products().put(1L, new ProductOutputDTO(1L, "Linked", 10.0, List.of(7L)));
+        caches.products().put(2L, new ProductOutputDTO(2L, "Other", 10.0, List.of(8L)));
+        caches.users().put(3L, new UserOutputDTO(3L, "User", "user@example.com", List.of(7L)));
+        caches.orders().put(7L, new OrderOutputDTO());
+
+        caches.invalidateOrder(7L);
+
+        assertNull(caches.orders().getIfPresent(7L));
+        assertNull(caches.products().getIfPresent(1L));
+        assertNotNull(caches.products().getIfPresent(2L));
+        assertNull(caches.users().getIfPresent(3L));
+    }
+
+    @Test
+    public void testInvalidateProductAndUserDropOrdersReferencingThem() {
+        EntityCaches caches = newCaches();
+        UserOutputDTO user = new UserOutputDTO(3L, "User", "user@example.com", List.of(7L));
+        ProductOutputDTO product = new ProductOutputDTO(1L, "Product", 10.0, List.of(7L));
+        OrderOutputDTO order = new OrderOutputDTO();
+        order.setId(7L);
+        order.setUser(user);
+        order.setProducts(List.of(product));
+
+        caches.orders().put(7L, order);
+        caches.invalidateProduct(1L);
+        assertNull(caches.orders().getIfPresent(7L));
+
+        caches.orders().put(7L, order);
+        caches.invalidateUser(3L);
+        assertNull(caches.orders().getIfPresent(7L));
+    }
+
+    @Test
+    public void testReplacedOrderIsIndexedByItsCurrentProductsOnly() {
+        EntityCaches caches = newCaches();
+        OrderOutputDTO before = new OrderOutputDTO();
+        before.setId(7L);
+        before.setProducts(List.of(new ProductOutputDTO(1L, "Removed", 10.0, List.of(7L))));
+        OrderOutputDTO after = new OrderOutputDTO();
+        after.setId(7L);
+        after.setProducts(List.of(new ProductOutputDTO(2L, "Added", 10.0, List.of(7L))));
+
+        caches.orders().put(7L, before);
+        caches.orders().put(7L, after);
+
+        caches.invalidateProduct(1L);
+        assertSame(after, caches.orders().getIfPresent(7L));
+        caches.invalidateProduct(2L);
+        assertNull(caches.orders().getIfPresent(7L));
+    }
+
+    @Test
+    public void testServesStaleWhileRevalidating() throws SQLException {
+        AtomicLong nanos = new AtomicLong();
+        EntityCache<String> cache = new EntityCache<>(100, Duration.ofSeconds(10),
+                new StalenessPolicy(Duration.ofSeconds(30), Duration.ZERO, Duration.ZERO), value -> 1, nanos::get);
+        AtomicInteger loads = new AtomicInteger();
+        EntityLoader<String> loader = id -> "value-" + loads.incrementAndGet();
+
+        assertEquals("value-1", cache.get(1L, loader));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(15));
+        StaleReads.clear();
+
+        assertEquals("value-1", cache.get(1L, loader));
+
+        StaleReads.Read read = StaleReads.take();
+        assertEquals(Duration.ofSeconds(15), read.age());
+        assertFalse(read.revalidationFailed());
+        awaitValue(cache, 1L, "value-2");
+        assertEquals(1L, cache.snapshot().get("staleWhileRevalidate"));
+        assertEquals(1L, cache.snapshot().get("refreshes"));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(45));
+        assertEquals("value-3", cache.get(1L, loader));
+        assertNull(StaleReads.take());
+    }
+
+    @Test
+    public void testRefreshHoldsADatabasePermit() throws SQLException {
+        AtomicLong nanos = new AtomicLong();
+        EntityCache<String> cache = new EntityCache<>(100, Duration.ofSeconds(10),
+                new StalenessPolicy(Duration.ofSeconds(30), Duration.ZERO, Duration.ZERO), value -> 1, nanos::get);
+        cache.get(1L, id -> "value-1");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(15));
+        Semaphore permits = new Semaphore(1);
+        AtomicInteger availableDuringLoad = new AtomicInteger(-1);
+        ConnectionPermits.install(permits);
+        try {
+            assertEquals("value-1", cache.get(1L, id -> {
+                availableDuringLoad.set(permits.availablePermits());
+                return "value-2";
+            }));
+            awaitValue(cache, 1L, "value-2");
+        } finally {
+            ConnectionPermits.install(null);
+        }
+
+        assertEquals(0, availableDuringLoad.get());
+        assertEquals(1, permits.availablePermits());
+    }
+
+    @Test
+    public void testDropsRefreshWhenNoDatabasePermitIsFree() throws SQLException {
+        AtomicLong nanos = new AtomicLong();
+        EntityCache<String> cache = new EntityCache<>(100, Duration.ofSeconds(10),
+                new StalenessPolicy(Duration.ofSeconds(30), Duration.ZERO, Duration.ZERO), value -> 1, nanos::get);
+        cache.get(1L, id -> "value-1");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(15));
+        AtomicInteger loads = new AtomicInteger();
+        ConnectionPermits.install(new Semaphore(0));
+        try {
+            assertEquals("value-1", cache.get(1L, id -> "value-" + (1 + loads.incrementAndGet())));
+        } finally {
+            ConnectionPermits.install(null);
+        }
+
+        assertEquals(0, loads.get());
+        assertEquals(1L, cache.snapshot().get("refreshesDropped"));
+        assertEquals("value-1", cache.get(1L, id -> "value-" + (1 + loads.incrementAndGet())));
+        awaitValue(cache, 1L, "value-2");
+    }
+
+    @Test
+    public void testServesStaleIfErrorAndBacksOff() throws SQLException {
+        AtomicLong nanos = new AtomicLong();
+        EntityCache<String> cache = new EntityCache<>(100, Duration.ofSeconds(10),
+                new StalenessPolicy(Duration.ZERO, Duration.ofSeconds(60), Duration.ofSeconds(5)), value -> 1, nanos::get);
+        cache.get(1L, id -> "cached");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        AtomicInteger attempts = new AtomicInteger();
+        EntityLoader<String> failing = id -> {
+            attempts.incrementAndGet();
+            throw new SQLException("connection timed out");
+        };
+        StaleReads.clear();
+
+        assertEquals("cached", cache.get(1L, failing));
+        assertTrue(StaleReads.take().revalidationFailed());
+        assertEquals(1, attempts.get());
+
+        assertEquals(6, (int) cache.loadOrStale(1L, id -> {
+            throw new AssertionError("database is backing off");
+        }, String::length));
+        assertTrue(StaleReads.take().revalidationFailed());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertThrows(SQLException.class, () -> cache.get(1L, failing));
+    }
+
+    @Test
+    public void testLoadOrStaleRethrowsWithoutCachedEntry() {
+        EntityCache<String> cache = new EntityCache<>(100, Duration.ofSeconds(10),
+                new StalenessPolicy(Duration.ZERO, Duration.ofSeconds(60), Duration.ofSeconds(5)), value -> 1);
+        SQLException failure = new SQLException("boom");
+
+        SQLException thrown = assertThrows(SQLException.class, () -> cache.loadOrStale(1L, id -> {
+            throw failure;
+        }, String::length));
+
+        assertSame(failure, thrown);
+    }
+
+    private static void awaitValue(EntityCache<String> cache, long id, String expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!expected.equals(cache.getIfPresent(id)) && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(expected, cache.getIfPresent(id));
+    }
+
+    private EntityCaches newCaches() {
+        return new EntityCaches(
+                new EntityCache<>(100, Duration.ofMinutes(1), product -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), user -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), order -> 1));
+    }
+}
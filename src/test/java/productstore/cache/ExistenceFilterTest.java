@@ -0,0 +1,133 @@
+package productstore.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExistenceFilterTest {
+
+    @Test
+    public void testFailsOpenUntilBuilt() {
+        ExistenceFilter filter = new ExistenceFilter(consumer -> {}, 100, 0.01);
+
+        assertFalse(filter.isReady());
+        assertTrue(filter.mightContain(42L));
+    }
+
+    @Test
+    public void testRebuildLoadsIdsAndRejectsUnknown() throws SQLException {
+        ExistenceFilter filter = new ExistenceFilter(consumer -> {
+            consumer.accept(1L);
+            consumer.accept(3L);
+        }, 100, 0.001);
+
+        filter.rebuild();
+
+        assertTrue(filter.isReady());
+        assertTrue(filter.mightContain(1L));
+        assertTrue(filter.mightContain(3L));
+        assertFalse(filter.mightContain(2L));
+        Map<String, Object> snapshot = filter.snapshot();
+        assertEquals(1L, snapshot.get("rebuilds"));
+        assertEquals(2L, snapshot.get("lastRebuildIds"));
+        assertEquals(1L, snapshot.get("rejected"));
+        assertEquals(2L, snapshot.get("passed"));
+    }
+
+    @Test
+    public void testIdsAboveHighestSeenFallThroughToTheDatabase() throws SQLException {
+        ExistenceFilter filter = new ExistenceFilter(consumer -> consumer.accept(5L), 100, 0.001);
+        filter.rebuild();
+
+        assertTrue(filter.mightContain(6L));
+        filter.put(6L);
+        assertFalse(filter.mightContain(4L));
+        assertTrue(filter.mightContain(7L));
+        assertEquals(2L, filter.snapshot().get("beyondHighestId"));
+        assertEquals(6L, filter.snapshot().get("highestId"));
+    }
+
+    @Test
+    public void testFiltersEnforceOnlyAfterRebuildWhileListening() throws SQLException {
+        ExistenceFilters filters = new ExistenceFilters(
+                new ExistenceFilter(consumer -> {
+                    consumer.accept(1L);
+                    consumer.accept(3L);
+                }, 100, 0.001),
+                new ExistenceFilter(consumer -> {}, 100, 0.001),
+                new ExistenceFilter(consumer -> {}, 100, 0.001));
+
+        filters.rebuildAll();
+        assertTrue(filters.mightContainProduct(2L));
+
+        filters.listenerConnected();
+        assertTrue(filters.mightContainProduct(2L));
+        filters.rebuildAll();
+        assertFalse(filters.mightContainProduct(2L));
+
+        filters.listenerDisconnected();
+        assertTrue(filters.mightContainProduct(2L));
+        assertFalse(filters.isEnforcing());
+    }
+
+    @Test
+    public void testPutAfterRebuildIsVisible() throws SQLException {
+        ExistenceFilter filter = new ExistenceFilter(consumer -> consumer.accept(1L), 100, 0.001);
+        filter.rebuild();
+
+        filter.put(7L);
+
+        assertTrue(filter.mightContain(7L));
+    }
+
+    @Test
+    public void testPutDuringRebuildIsKept() throws SQLException {
+        List<Long> ids = new CopyOnWriteArrayList<>(List.of(1L));
+        ExistenceFilter[] holder = new ExistenceFilter[1];
+        holder[0] = new ExistenceFilter(consumer -> {
+            holder[0].put(9L);
+            ids.forEach(consumer::accept);
+        }, 100, 0.001);
+
+        holder[0].rebuild();
+
+        assertTrue(holder[0].mightContain(1L));
+        assertTrue(holder[0].mightContain(9L));
+    }
+
+    @Test
+    public void testFailedRebuildKeepsPreviousFilter() throws SQLException {
+        boolean[] fail = {false};
+        ExistenceFilter filter = new ExistenceFilter(consumer -> {
+            if (fail[0]) {
+                throw new SQLException("boom");
+            }
+            consumer.accept(1L);
+            consumer.accept(3L);
+        }, 100, 0.001);
+        filter.rebuild();
+
+        fail[0] = true;
+        assertThrows(SQLException.class, filter::rebuild);
+
+        assertTrue(filter.mightContain(1L));
+        assertFalse(filter.mightContain(2L));
+        assertEquals(1L, filter.snapshot().get("rebuildFailures"));
+    }
+
+    @Test
+    public void testFalsePositivesAreCounted() {
+        ExistenceFilter filter = new ExistenceFilter(consumer -> {}, 100, 0.01);
+        filter.mightContain(5L);
+
+        filter.recordFalsePositive();
+
+        assertEquals(1L, filter.snapshot().get("falsePositives"));
+        assertEquals(1.0, filter.snapshot().get("falsePositiveRate"));
+    }
+}
@@ -0,0 +1,306 @@
+package productstore.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import productstore.model.Order;
+import productstore.model.Product;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductCatalogTest {
+
+    @TempDir
+    private Path directory;
+
+    private ProductCatalog catalog;
+
+    @AfterEach
+    public void tearDown() {
+        if (catalog != null) {
+            catalog.close();
+        }
+    }
+
+    @Test
+    public void testDisabledCatalogStoresNothing() {
+        catalog = ProductCatalog.disabled();
+        catalog.put(product(1L, "Phone", 10.0, 1L));
+
+        assertFalse(catalog.isEnabled());
+        assertNull(catalog.get(1L));
+    }
+
+    @Test
+    public void testPutAndGet() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        catalog.put(product(1L, "Телефон", 199.99, 3L));
+
+        ProductCatalog.Entry entry = catalog.get(1L);
+
+        assertEquals(new ProductCatalog.Entry(1L, 3L, "Телефон", 199.99, List.of()), entry);
+        assertNull(catalog.get(2L));
+    }
+
+    @Test
+    public void testPutReplacesExistingEntry() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        catalog.put(product(1L, "Phone", 10.0, 1L));
+        catalog.put(product(1L, "Phone X", 12.5, 2L));
+
+        assertEquals(new ProductCatalog.Entry(1L, 2L, "Phone X", 12.5, List.of()), catalog.get(1L));
+        assertEquals(1, catalog.snapshot().get("indexedEntries"));
+    }
+
+    @Test
+    public void testRemove() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        catalog.put(product(1L, "Phone", 10.0, 1L));
+        catalog.put(product(2L, "Laptop", 20.0, 1L));
+
+        catalog.remove(1L);
+
+        assertNull(catalog.get(1L));
+        assertNotNull(catalog.get(2L));
+    }
+
+    @Test
+    public void testOutOfOrderIdsAreMergedOnCompaction() {
+        catalog = new ProductCatalog(directory, 4096, 2);
+        catalog.listenerConnected();
+        catalog.put(product(10L, "Ten", 10.0, 1L));
+        catalog.put(product(3L, "Three", 3.0, 1L));
+        catalog.put(product(7L, "Seven", 7.0, 1L));
+
+        assertEquals(2, catalog.snapshot().get("overflowEntries"));
+
+        catalog.put(product(5L, "Five", 5.0, 1L));
+
+        Map<String, Object> snapshot = catalog.snapshot();
+        assertEquals(0, snapshot.get("overflowEntries"));
+        assertEquals(4, snapshot.get("indexedEntries"));
+        assertEquals(1L, snapshot.get("compactions"));
+        for (long id : new long[]{3L, 5L, 7L, 10L}) {
+            assertEquals(id, catalog.get(id).price(), 0.0001);
+        }
+    }
+
+    @Test
+    public void testGrowsBeyondInitialMapping() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        for (long id = 1; id <= 2000; id++) {
+            catalog.put(product(id, "Product " + id, id, 1L));
+        }
+
+        for (long id = 1; id <= 2000; id++) {
+            assertEquals("Product " + id, catalog.get(id).name());
+        }
+        assertTrue((long) catalog.snapshot().get("mappedBytes") > 4096 + 1024);
+    }
+
+    @Test
+    public void testReadsDuringGrowthAndCompactionNeverFail() throws InterruptedException {
+        catalog = new ProductCatalog(directory, 4096, 4);
+        catalog.listenerConnected();
+        AtomicLong written = new AtomicLong();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    while (!done.get()) {
+                        long latest = written.get();
+                        for (long id = Math.max(1, latest - 8); id <= latest + 1; id++) {
+                            ProductCatalog.Entry entry = catalog.get(id);
+                            if (entry != null && entry.price() != id) {
+                                throw new AssertionError("Read product " + id + " with price " + entry.price());
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+
+        String padding = "x".repeat(256);
+        for (long id = 1; id <= 3000 && failure.get() == null; id++) {
+            long stored = id % 5 == 0 ? id + 2 : id % 5 == 2 ? id - 2 : id;
+            catalog.put(product(stored, padding + stored, stored, id, 1L, 2L, 3L));
+            written.set(id);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testRebuildReplacesContentsAndRemovesOldFiles() throws SQLException, IOException {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        catalog.put(product(1L, "Stale", 1.0, 1L));
+
+        catalog.rebuild(consumer -> {
+            consumer.accept(product(2L, "Laptop", 20.0, 4L));
+            consumer.accept(product(3L, "Mouse", 5.0, 2L));
+        });
+
+        assertNull(catalog.get(1L));
+        assertEquals(new ProductCatalog.Entry(2L, 4L, "Laptop", 20.0, List.of()), catalog.get(2L));
+        assertEquals(new ProductCatalog.Entry(3L, 2L, "Mouse", 5.0, List.of()), catalog.get(3L));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    public void testFailedRebuildKeepsCurrentContents() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        catalog.put(product(1L, "Phone", 10.0, 1L));
+
+        assertThrows(SQLException.class, () -> catalog.rebuild(consumer -> {
+            throw new SQLException("boom");
+        }));
+
+        assertNotNull(catalog.get(1L));
+        assertEquals(1L, catalog.snapshot().get("failures"));
+    }
+
+    @Test
+    public void testStoresOrderIdsAndRebuildsProduct() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        Product product = product(1L, "Phone", 10.0, 2L, 7L, 5L);
+        catalog.put(product);
+
+        ProductCatalog.Entry entry = catalog.get(1L);
+
+        assertEquals(new ProductCatalog.Entry(1L, 2L, "Phone", 10.0, List.of(7L, 5L)), entry);
+        assertEquals(product.getLinkedVersion(), entry.toProduct().getLinkedVersion());
+    }
+
+    @Test
+    public void testPutSkipsUnchangedEntry() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        catalog.put(product(1L, "Phone", 10.0, 1L, 3L, 4L));
+        catalog.put(product(1L, "Phone", 10.0, 1L, 4L, 3L));
+
+        assertEquals(1L, catalog.snapshot().get("appends"));
+        assertEquals(1L, catalog.snapshot().get("unchanged"));
+
+        catalog.put(product(1L, "Phone", 10.0, 1L, 3L));
+
+        assertEquals(2L, catalog.snapshot().get("appends"));
+        assertEquals(List.of(3L), catalog.get(1L).orderIds());
+    }
+
+    @Test
+    public void testPutRejectsReadsOlderThanARemoval() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        long stamp = catalog.stamp();
+        catalog.remove(1L);
+
+        catalog.put(product(1L, "Stale", 1.0, 1L), stamp);
+
+        assertNull(catalog.get(1L));
+        assertEquals(1L, catalog.snapshot().get("rejected"));
+
+        catalog.put(product(1L, "Fresh", 2.0, 2L), catalog.stamp());
+        assertEquals("Fresh", catalog.get(1L).name());
+    }
+
+    @Test
+    public void testServesNothingUntilTheListenerIsCaughtUp() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.put(product(1L, "Phone", 10.0, 1L));
+
+        assertNull(catalog.get(1L));
+        assertEquals(1L, catalog.snapshot().get("bypassed"));
+
+        catalog.listenerConnected();
+        assertNotNull(catalog.get(1L));
+
+        catalog.listenerDisconnected();
+        assertNull(catalog.get(1L));
+    }
+
+    @Test
+    public void testInvalidateAllDropsEntriesAndInFlightReads() {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+        catalog.put(product(1L, "Phone", 10.0, 1L));
+        long stamp = catalog.stamp();
+
+        catalog.invalidateAll();
+        catalog.put(product(2L, "Laptop", 20.0, 1L), stamp);
+
+        assertNull(catalog.get(1L));
+        assertNull(catalog.get(2L));
+    }
+
+    @Test
+    public void testRebuildDropsProductsChangedWhileStreaming() throws SQLException {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+
+        catalog.rebuild(consumer -> {
+            consumer.accept(product(1L, "Phone", 10.0, 1L));
+            consumer.accept(product(2L, "Laptop", 20.0, 1L));
+            catalog.remove(1L);
+        });
+
+        assertNull(catalog.get(1L));
+        assertNotNull(catalog.get(2L));
+    }
+
+    @Test
+    public void testRebuildIsDiscardedAfterAFlush() throws SQLException, IOException {
+        catalog = new ProductCatalog(directory, 4096, 16);
+        catalog.listenerConnected();
+
+        catalog.rebuild(consumer -> {
+            consumer.accept(product(1L, "Phone", 10.0, 1L));
+            catalog.invalidateAll();
+        });
+
+        assertNull(catalog.get(1L));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    private static Product product(long id, String name, double price, long version) {
+        return new Product.Builder().withId(id).withName(name).withPrice(price).withVersion(version).build();
+    }
+
+    private static Product product(long id, String name, double price, long version, Long... orderIds) {
+        List<Order> orders = new ArrayList<>();
+        for (Long orderId : orderIds) {
+            orders.add(new Order.Builder().withId(orderId).withProducts(new ArrayList<>()).build());
+        }
+        return new Product.Builder().withId(id).withName(name).withPrice(price).withVersion(version).withOrders(orders).build();
+    }
+}
@@ -0,0 +1,85 @@
+package productstore.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseBodyCacheTest {
+
+    @Test
+    public void testSameVersionIsEncodedOnce() {
+        ResponseBodyCache cache = new ResponseBodyCache(1024);
+        AtomicInteger encodings = new AtomicInteger();
+        Supplier<byte[]> encoder = () -> {
+            encodings.incrementAndGet();
+            return "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        };
+
+        byte[] first = cache.get("product", 1L, 3L, encoder);
+        byte[] second = cache.get("product", 1L, 3L, encoder);
+
+        assertSame(first, second);
+        assertEquals(1, encodings.get());
+        assertEquals(1L, cache.snapshot().get("hits"));
+    }
+
+    @Test
+    public void testNewVersionIsEncodedAgain() {
+        ResponseBodyCache cache = new ResponseBodyCache(1024);
+
+        byte[] oldBody = cache.get("product", 1L, 3L, () -> "old".getBytes(StandardCharsets.UTF_8));
+        byte[] newBody = cache.get("product", 1L, 4L, () -> "new".getBytes(StandardCharsets.UTF_8));
+        byte[] otherResource = cache.get("order", 1L, 3L, () -> "order".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("old", new String(oldBody, StandardCharsets.UTF_8));
+        assertEquals("new", new String(newBody, StandardCharsets.UTF_8));
+        assertEquals("order", new String(otherResource, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEncodedVariantsAreCachedSeparately() {
+        ResponseBodyCache cache = new ResponseBodyCache(1024);
+        AtomicInteger compressions = new AtomicInteger();
+        byte[] identity = cache.get("product", 1L, 3L, () -> "identity".getBytes(StandardCharsets.UTF_8));
+        Supplier<byte[]> compressor = () -> {
+            compressions.incrementAndGet();
+            return "gzip".getBytes(StandardCharsets.UTF_8);
+        };
+
+        byte[] first = cache.get("product", 1L, 3L, "gzip", compressor);
+        byte[] second = cache.get("product", 1L, 3L, "gzip", compressor);
+
+        assertSame(first, second);
+        assertEquals(1, compressions.get());
+        assertEquals("identity", new String(cache.get("product", 1L, 3L, () -> new byte[0]), StandardCharsets.UTF_8));
+        assertEquals("identity", new String(identity, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTotalBytesAreBounded() {
+        ResponseBodyCache cache = new ResponseBodyCache(1000);
+        for (long id = 0; id < 50; id++) {
+            cache.get("product", id, 1L, () -> new byte[100]);
+        }
+        cache.cleanUp();
+
+        assertTrue((Long) cache.snapshot().get("bytes") <= 1000);
+        assertTrue((Long) cache.snapshot().get("evictions") > 0);
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysEncodes() {
+        ResponseBodyCache cache = ResponseBodyCache.disabled();
+        AtomicInteger encodings = new AtomicInteger();
+
+        cache.get("product", 1L, 1L, () -> new byte[encodings.incrementAndGet()]);
+        cache.get("product", 1L, 1L, () -> new byte[encodings.incrementAndGet()]);
+
+        assertEquals(2, encodings.get());
+        assertEquals(false, cache.snapshot().get("enabled"));
+    }
+}
@@ -0,0 +1,232 @@
+package productstore.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import productstore.dao.util.TransactionContext;
+import productstore.db.ConnectionPermits;
+import productstore.service.ProductService;
+import productstore.service.apierror.ProductNotFoundException;
+import productstore.servlet.dto.input.ProductInputDTO;
+import productstore.servlet.dto.output.ProductOutputDTO;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private SingleFlight singleFlight;
+    private ProductService delegate;
+    private ProductService productService;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        singleFlight = new SingleFlight();
+        delegate = mock(ProductService.class);
+        productService = singleFlight.wrap(ProductService.class, delegate);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentIdenticalReadsShareOneCall() throws Exception {
+        ProductOutputDTO product = new ProductOutputDTO(1L, "Product", 10.0, List.of());
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.getProductById(1L)).thenAnswer(invocation -> {
+            release.await();
+            return product;
+        });
+
+        List<Future<ProductOutputDTO>> results = submitConcurrently(() -> productService.getProductById(1L));
+        awaitCollapsed(CALLERS - 1);
+        release.countDown();
+
+        for (Future<ProductOutputDTO> result : results) {
+            assertSame(product, result.get(5, TimeUnit.SECONDS));
+        }
+        verify(delegate, times(1)).getProductById(1L);
+        Map<String, Object> snapshot = singleFlight.snapshot();
+        assertEquals(1L, snapshot.get("executions"));
+        assertEquals(Map.of("ProductService.getProductById", (long) CALLERS - 1), snapshot.get("collapsedByMethod"));
+        assertEquals(0, snapshot.get("inFlight"));
+    }
+
+    @Test
+    public void testFollowersReceiveLeaderFailure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.getProductById(1L)).thenAnswer(invocation -> {
+            release.await();
+            throw new ProductNotFoundException("Product not found");
+        });
+
+        List<Future<ProductOutputDTO>> results = submitConcurrently(() -> productService.getProductById(1L));
+        awaitCollapsed(CALLERS - 1);
+        release.countDown();
+
+        for (Future<ProductOutputDTO> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(ProductNotFoundException.class, e.getCause());
+        }
+        verify(delegate, times(1)).getProductById(1L);
+    }
+
+    @Test
+    public void testFollowersOfACancelledLeaderAreRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SQLException cancelled = new SQLException("canceling statement due to user request", "57014");
+        when(delegate.getProductById(1L)).thenAnswer(invocation -> {
+            release.await();
+            throw cancelled;
+        });
+        ConnectionPermits.Gate gate = mock(ConnectionPermits.Gate.class);
+
+        List<Future<ProductOutputDTO>> results = submitConcurrently(() -> {
+            ConnectionPermits.bind(gate);
+            try {
+                return productService.getProductById(1L);
+            } finally {
+                ConnectionPermits.unbind();
+            }
+        });
+        awaitCollapsed(CALLERS - 1);
+        release.countDown();
+
+        int rejectedFollowers = 0;
+        for (Future<ProductOutputDTO> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            if (e.getCause() instanceof SQLTransientException transientException) {
+                assertSame(cancelled, transientException.getCause());
+                rejectedFollowers++;
+            } else {
+                assertSame(cancelled, e.getCause());
+            }
+        }
+        assertEquals(CALLERS - 1, rejectedFollowers);
+        verify(gate, times(CALLERS - 1)).reject(anyString());
+        assertEquals((long) CALLERS - 1, singleFlight.snapshot().get("cancelledLeaders"));
+    }
+
+    @Test
+    public void testDifferentArgumentsAreNotCollapsed() throws SQLException {
+        when(delegate.getProductsWithPagination(anyInt(), anyInt())).thenReturn(List.of());
+
+        productService.getProductsWithPagination(1, 10);
+        productService.getProductsWithPagination(2, 10);
+
+        verify(delegate).getProductsWithPagination(1, 10);
+        verify(delegate).getProductsWithPagination(2, 10);
+        assertEquals(0L, singleFlight.snapshot().get("collapsed"));
+    }
+
+    @Test
+    public void testWriteForgetsInFlightReads() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.getProductById(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return new ProductOutputDTO();
+        });
+
+        Future<ProductOutputDTO> beforeWrite = executor.submit(() -> productService.getProductById(1L));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        productService.updateProduct(new ProductInputDTO());
+        assertEquals(0, singleFlight.snapshot().get("inFlight"));
+        release.countDown();
+
+        productService.getProductById(1L);
+        beforeWrite.get(5, TimeUnit.SECONDS);
+        verify(delegate).updateProduct(any());
+        verify(delegate, times(2)).getProductById(1L);
+    }
+
+    @Test
+    public void testStreamingReadsBypassFlightsWithoutForgettingThem() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.getProductById(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return new ProductOutputDTO();
+        });
+
+        Future<ProductOutputDTO> inFlight = executor.submit(() -> productService.getProductById(1L));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        productService.streamAllProducts(product -> {
+        });
+        assertEquals(1, singleFlight.snapshot().get("inFlight"));
+        release.countDown();
+
+        inFlight.get(5, TimeUnit.SECONDS);
+        verify(delegate).streamAllProducts(any());
+        assertEquals(1L, singleFlight.snapshot().get("executions"));
+    }
+
+    @Test
+    public void testReadsInsideTransactionBypassFlights() throws SQLException {
+        when(delegate.getProductById(1L)).thenReturn(new ProductOutputDTO());
+
+        TransactionContext.inTransaction(() -> productService.getProductById(1L));
+
+        assertEquals(0L, singleFlight.snapshot().get("executions"));
+        verify(delegate).getProductById(1L);
+    }
+
+    @Test
+    public void testJoinedCallersSeeStaleReadOfLeader() throws Exception {
+        ProductOutputDTO product = new ProductOutputDTO(1L, "Product", 10.0, List.of());
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.getProductById(1L)).thenAnswer(invocation -> {
+            release.await();
+            StaleReads.record(Duration.ofSeconds(42), true);
+            return product;
+        });
+
+        List<Future<StaleReads.Read>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> {
+                StaleReads.clear();
+                productService.getProductById(1L);
+                return StaleReads.take();
+            }));
+        }
+        awaitCollapsed(CALLERS - 1);
+        release.countDown();
+
+        for (Future<StaleReads.Read> result : results) {
+            assertEquals(new StaleReads.Read(Duration.ofSeconds(42), true), result.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private List<Future<ProductOutputDTO>> submitConcurrently(Callable<ProductOutputDTO> call) {
+        List<Future<ProductOutputDTO>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(call));
+        }
+        return results;
+    }
+
+    private void awaitCollapsed(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((Long) singleFlight.snapshot().get("collapsed") < expected) {
+            assertTrue(System.nanoTime() < deadline, "Callers did not join the flight in time");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import productstore.db.DataBaseUtil;
 import productstore.model.Product;
 import productstore.model.User;
 import productstore.model.Order;
+import productstore.model.OrderSummary;
 
 
 import java.sql.Connection;
@@ -69,6 +70,25 @@ public class OrderDaoImplTest {
         assertEquals(2, savedOrder.getProducts().size());
     }
 
+    @Test
+    public void testSaveOrderWithUnknownProductIsAtomic() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        Product product = createProduct("Product 1", 10.00);
+        Product missingProduct = new Product.Builder()
+                .withId(product.getId() + 1000)
+                .withName("Missing")
+                .withPrice(1.00)
+                .build();
+
+        Order order = new Order.Builder()
+                .withUser(user)
+                .withProducts(List.of(product, missingProduct))
+                .build();
+
+        assertThrows(SQLException.class, () -> orderDao.saveOrder(order));
+        assertTrue(orderDao.getAllOrders().isEmpty());
+    }
+
     @Test
     public void testGetOrderById() throws SQLException {
         User user = createUser("Test User", "testuser@example.com");
@@ -107,6 +127,32 @@ public class OrderDaoImplTest {
         assertEquals(5, secondPage.size());
     }
 
+    @Test
+    public void testPaginationCountsOrdersNotOrderLines() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        Product product1 = createProduct("Product 1", 10.00);
+        Product product2 = createProduct("Product 2", 20.00);
+        Product product3 = createProduct("Product 3", 30.00);
+
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Order order = new Order.Builder()
+                    .withUser(user)
+                    .withProducts(List.of(product1, product2, product3))
+                    .build();
+            orderIds.add(orderDao.saveOrder(order).getId());
+        }
+
+        List<Order> offsetPage = orderDao.getOrdersWithPagination(2, 2);
+        List<Order> firstPage = orderDao.getOrdersAfterId(0, 4);
+        List<Order> secondPage = orderDao.getOrdersAfterId(firstPage.get(3).getId(), 4);
+
+        assertEquals(List.of(orderIds.get(2), orderIds.get(3)), offsetPage.stream().map(Order::getId).toList());
+        assertEquals(orderIds.subList(0, 4), firstPage.stream().map(Order::getId).toList());
+        assertEquals(orderIds.subList(4, 6), secondPage.stream().map(Order::getId).toList());
+        assertTrue(firstPage.stream().allMatch(order -> order.getProducts().size() == 3));
+    }
+
     @Test
     public void testUpdateOrder() throws SQLException {
         User user = createUser("Test User", "testuser@example.com");
@@ -141,10 +187,32 @@ public class OrderDaoImplTest {
                 .build();
 
         Order savedOrder = orderDao.saveOrder(order);
-        orderDao.deleteOrder(savedOrder.getId());
+        assertEquals(1, orderDao.deleteOrder(savedOrder.getId()));
 
         Order deletedOrder = orderDao.getOrderById(savedOrder.getId());
         assertNull(deletedOrder);
+        assertEquals(0, orderDao.deleteOrder(savedOrder.getId()));
+    }
+
+    @Test
+    public void testUpdateOrderUserKeepsProducts() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        User otherUser = createUser("Other User", "otheruser@example.com");
+        Product product = createProduct("Product 1", 10.00);
+
+        Order order = new Order.Builder()
+                .withUser(user)
+                .withProducts(List.of(product))
+                .build();
+
+        Order savedOrder = orderDao.saveOrder(order);
+
+        assertEquals(1, orderDao.updateOrderUser(savedOrder.getId(), otherUser.getId()));
+        assertEquals(0, orderDao.updateOrderUser(savedOrder.getId() + 1000, otherUser.getId()));
+
+        Order updatedOrder = orderDao.getOrderById(savedOrder.getId());
+        assertEquals(otherUser.getId(), updatedOrder.getUser().getId());
+        assertEquals(1, updatedOrder.getProducts().size());
     }
 
     @Test
@@ -164,6 +232,24 @@ public class OrderDaoImplTest {
         assertEquals(3, orders.size());
     }
 
+    @Test
+    public void testStreamAllOrders() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        Product product1 = createProduct("Product 1", 10.00);
+        Product product2 = createProduct("Product 2", 20.00);
+
+        Order first = orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(List.of(product1, product2)).build());
+        Order second = orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(new ArrayList<>()).build());
+
+        List<Order> orders = new ArrayList<>();
+        orderDao.streamAllOrders(orders::add);
+
+        assertEquals(List.of(first.getId(), second.getId()), orders.stream().map(Order::getId).toList());
+        assertEquals(2, orders.get(0).getProducts().size());
+        assertTrue(orders.get(1).getProducts().isEmpty());
+        assertEquals("Test User", orders.get(1).getUser().getName());
+    }
+
     @Test
     public void testAddProductsToOrder() throws SQLException {
         User user = createUser("Test User", "testuser@example.com");
@@ -178,9 +264,10 @@ public class OrderDaoImplTest {
         Order savedOrder = orderDao.saveOrder(order);
 
         
-        orderDao.addProductsToOrder(savedOrder.getId(), List.of(product2));
+        int added = orderDao.addProductsToOrder(savedOrder.getId(), List.of(product2));
 
         Order updatedOrder = orderDao.getOrderById(savedOrder.getId());
+        assertEquals(1, added);
         assertEquals(2, updatedOrder.getProducts().size());
     }
 
@@ -281,14 +368,139 @@ public class OrderDaoImplTest {
         Order savedOrder = orderDao.saveOrder(order);
 
         
-        orderDao.addProductsToOrder(savedOrder.getId(), List.of(product1));
+        int added = orderDao.addProductsToOrder(savedOrder.getId(), List.of(product1));
 
         Order updatedOrder = orderDao.getOrderById(savedOrder.getId());
         
+        assertEquals(0, added);
         assertEquals(1, updatedOrder.getProducts().size());
     }
 
+    @Test
+    public void testAddProductsToOrderCountsOnlyNewLinks() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        Product product1 = createProduct("Product 1", 10.00);
+        Product product2 = createProduct("Product 2", 20.00);
+        Product product3 = createProduct("Product 3", 30.00);
+
+        Order order = new Order.Builder()
+                .withUser(user)
+                .withProducts(List.of(product1))
+                .build();
+
+        Order savedOrder = orderDao.saveOrder(order);
+
+        int added = orderDao.addProductsToOrder(savedOrder.getId(), List.of(product1, product2, product3, product2));
+
+        Order updatedOrder = orderDao.getOrderById(savedOrder.getId());
+        assertEquals(2, added);
+        assertEquals(3, updatedOrder.getProducts().size());
+    }
+
     
+    @Test
+    public void testVersionsFollowEmbeddedChanges() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        Product product = createProduct("Product 1", 10.00);
+        Product otherProduct = createProduct("Product 2", 20.00);
+        Order order = orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(List.of(product)).build());
+        ProductDaoImpl productDao = new ProductDaoImpl();
+
+        long orderVersion = orderDao.getOrderVersion(order.getId());
+        assertEquals(orderVersion, orderDao.getOrderById(order.getId()).getVersion());
+
+        long productVersion = productDao.getProductVersion(otherProduct.getId());
+        orderDao.addProductsToOrder(order.getId(), List.of(otherProduct));
+        assertTrue(orderDao.getOrderVersion(order.getId()) > orderVersion);
+        assertNotEquals(productVersion, productDao.getProductVersion(otherProduct.getId()));
+        assertEquals(1, productDao.getProductById(otherProduct.getId()).getVersion());
+
+        orderVersion = orderDao.getOrderVersion(order.getId());
+        product.setName("Renamed");
+        product.setOrders(List.of(order));
+        productDao.updateProduct(product);
+        assertTrue(orderDao.getOrderVersion(order.getId()) > orderVersion);
+
+        long userVersion = new UserDaoImpl().getUserVersion(user.getId());
+        orderDao.deleteOrder(order.getId());
+        assertTrue(new UserDaoImpl().getUserVersion(user.getId()) > userVersion);
+        assertNull(orderDao.getOrderVersion(order.getId()));
+    }
+
+    @Test
+    public void testOrderSummaryFollowsWrites() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        User otherUser = createUser("Other User", "other@example.com");
+        Product product = createProduct("Product 1", 10.00);
+        Product otherProduct = createProduct("Product 2", 20.50);
+        Order order = orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(List.of(product)).build());
+
+        OrderSummary summary = orderDao.getOrderSummariesAfterId(0, 10).get(0);
+        assertEquals(order.getId(), summary.getOrderId());
+        assertEquals("Test User", summary.getUserName());
+        assertEquals(1, summary.getLineCount());
+        assertEquals(10.00, summary.getTotalPrice(), 0.001);
+        assertEquals(List.of(product.getId()), summary.getProductIds());
+
+        orderDao.addProductsToOrder(order.getId(), List.of(otherProduct));
+        orderDao.updateOrderUser(order.getId(), otherUser.getId());
+        summary = orderDao.getOrderSummariesWithPagination(1, 10).get(0);
+        assertEquals(2, summary.getLineCount());
+        assertEquals(30.50, summary.getTotalPrice(), 0.001);
+        assertEquals(otherUser.getId(), summary.getUserId());
+        assertEquals("other@example.com", summary.getUserEmail());
+
+        otherProduct.setPrice(5.00);
+        otherProduct.setOrders(List.of(order));
+        new ProductDaoImpl().updateProduct(otherProduct);
+        otherUser.setName("Renamed User");
+        new UserDaoImpl().updateUser(otherUser);
+        new ProductDaoImpl().deleteProduct(product.getId());
+
+        List<OrderSummary> summaries = new ArrayList<>();
+        orderDao.streamAllOrderSummaries(summaries::add);
+        assertEquals(1, summaries.size());
+        assertEquals(1, summaries.get(0).getLineCount());
+        assertEquals(5.00, summaries.get(0).getTotalPrice(), 0.001);
+        assertEquals("Renamed User", summaries.get(0).getUserName());
+        assertEquals(List.of(otherProduct.getId()), summaries.get(0).getProductIds());
+
+        orderDao.deleteOrder(order.getId());
+        assertTrue(orderDao.getOrderSummariesAfterId(0, 10).isEmpty());
+    }
+
+    @Test
+    public void testHotIdQueries() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        User busyUser = createUser("Busy User", "busy@example.com");
+        Product product = createProduct("Product 1", 10.00);
+        Product popularProduct = createProduct("Product 2", 20.00);
+        orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(List.of(product, popularProduct)).build());
+        orderDao.saveOrder(new Order.Builder().withUser(busyUser).withProducts(List.of(popularProduct)).build());
+        Order latest = orderDao.saveOrder(new Order.Builder().withUser(busyUser).withProducts(List.of(popularProduct)).build());
+
+        assertEquals(List.of(popularProduct.getId()), new ProductDaoImpl().getMostOrderedProductIds(1));
+        assertEquals(List.of(busyUser.getId(), user.getId()), new UserDaoImpl().getMostActiveUserIds(5));
+        assertEquals(List.of(latest.getId()), orderDao.getLatestOrderIds(1));
+    }
+
+    @Test
+    public void testGetOrderedProductIds() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        User otherUser = createUser("Other User", "other@example.com");
+        Product product = createProduct("Product 1", 10.00);
+        Product sharedProduct = createProduct("Product 2", 20.00);
+        Product otherProduct = createProduct("Product 3", 30.00);
+        orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(List.of(product, sharedProduct)).build());
+        orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(List.of(sharedProduct)).build());
+        orderDao.saveOrder(new Order.Builder().withUser(otherUser).withProducts(List.of(otherProduct)).build());
+
+        List<Long> orderedProductIds = new UserDaoImpl().getOrderedProductIds(user.getId());
+
+        assertEquals(2, orderedProductIds.size());
+        assertTrue(orderedProductIds.containsAll(List.of(product.getId(), sharedProduct.getId())));
+    }
+
     private User createUser(String name, String email) throws SQLException {
         User user = new User.Builder()
                 .withName(name)
@@ -1,20 +1,29 @@
 package productstore.dao;
 
 import org.junit.jupiter.api.*;
+import org.mockito.MockedStatic;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import productstore.dao.impl.UserDaoImpl;
 import productstore.dao.utils.PostgreSQLContainerProvider;
 import productstore.dao.impl.ProductDaoImpl;
+import productstore.dao.util.StatementCacheMetrics;
+import productstore.dao.util.TransactionContext;
 import productstore.db.DataBaseUtil;
 import productstore.model.Order;
 import productstore.model.Product;
 import productstore.model.User;
 
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mockStatic;
 
 @Testcontainers
 public class ProductDaoImplTest {
@@ -38,6 +47,7 @@ public class ProductDaoImplTest {
             stmt.execute("TRUNCATE TABLE orders_products CASCADE;");
             stmt.execute("TRUNCATE TABLE products CASCADE;");
             stmt.execute("TRUNCATE TABLE orders CASCADE;");
+            stmt.execute("TRUNCATE TABLE users CASCADE;");
         }
     }
 
@@ -87,6 +97,43 @@ public class ProductDaoImplTest {
         assertEquals("Product 6", secondPage.get(0).getName());
     }
 
+    @Test
+    public void testGetProductsAfterId() throws SQLException {
+        for (int i = 1; i <= 10; i++) {
+            productDao.saveProduct(new Product.Builder().withName("Product " + i).withPrice(50.0 + i).build());
+        }
+
+        List<Product> firstPage = productDao.getProductsAfterId(0, 4);
+        List<Product> secondPage = productDao.getProductsAfterId(firstPage.get(3).getId(), 4);
+        List<Product> lastPage = productDao.getProductsAfterId(secondPage.get(3).getId(), 4);
+
+        assertEquals(4, firstPage.size());
+        assertEquals(4, secondPage.size());
+        assertEquals(2, lastPage.size());
+        assertEquals("Product 1", firstPage.get(0).getName());
+        assertEquals("Product 5", secondPage.get(0).getName());
+        assertEquals("Product 10", lastPage.get(1).getName());
+    }
+
+    @Test
+    public void testStreamAllProducts() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        long firstOrderId = createOrder(user);
+        long secondOrderId = createOrder(user);
+
+        Product linked = productDao.saveProduct(new Product.Builder().withName("Linked").withPrice(10.0).build());
+        Product unlinked = productDao.saveProduct(new Product.Builder().withName("Unlinked").withPrice(20.0).build());
+        linkProductToOrder(linked.getId(), firstOrderId);
+        linkProductToOrder(linked.getId(), secondOrderId);
+
+        List<Product> products = new ArrayList<>();
+        productDao.streamAllProducts(products::add);
+
+        assertEquals(List.of(linked.getId(), unlinked.getId()), products.stream().map(Product::getId).toList());
+        assertEquals(2, products.get(0).getOrders().size());
+        assertTrue(products.get(1).getOrders().isEmpty());
+    }
+
     @Test
     public void testUpdateProduct() throws SQLException {
         Product product = new Product.Builder().withName("Test Product").withPrice(99.99).build();
@@ -95,7 +142,7 @@ public class ProductDaoImplTest {
         
         savedProduct.setName("Updated Product");
         savedProduct.setPrice(79.99);
-        productDao.updateProduct(savedProduct);
+        assertEquals(1, productDao.updateProduct(savedProduct));
 
         Product updatedProduct = productDao.getProductById(savedProduct.getId());
         assertEquals("Updated Product", updatedProduct.getName());
@@ -108,7 +155,7 @@ public class ProductDaoImplTest {
         Product savedProduct = productDao.saveProduct(product);
 
         
-        productDao.deleteProduct(savedProduct.getId());
+        assertEquals(1, productDao.deleteProduct(savedProduct.getId()));
 
         Product fetchedProduct = productDao.getProductById(savedProduct.getId());
         assertNull(fetchedProduct);
@@ -143,7 +190,7 @@ public class ProductDaoImplTest {
     @Test
     public void testDeleteNonExistingProduct() throws SQLException {
         
-        productDao.deleteProduct(9999L); 
+        assertEquals(0, productDao.deleteProduct(9999L));
         
     }
 
@@ -200,7 +247,160 @@ public class ProductDaoImplTest {
         assertEquals(2, updatedProduct.getOrders().size());
     }
 
+    @Test
+    public void testGetProductsByIds() throws SQLException {
+        Product first = productDao.saveProduct(new Product.Builder().withName("First").withPrice(10.0).build());
+        Product second = productDao.saveProduct(new Product.Builder().withName("Second").withPrice(20.0).build());
+        productDao.saveProduct(new Product.Builder().withName("Third").withPrice(30.0).build());
+
+        List<Product> products = productDao.getProductsByIds(List.of(first.getId(), second.getId(), first.getId(), 9999L));
+
+        assertEquals(2, products.size());
+        assertTrue(products.stream().anyMatch(p -> p.getId() == first.getId()));
+        assertTrue(products.stream().anyMatch(p -> p.getId() == second.getId()));
+    }
+
+    @Test
+    public void testGetProductsWithoutOrdersByIdsSkipsOrderLinks() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        long orderId = createOrder(user);
+        Product product = productDao.saveProduct(new Product.Builder().withName("Linked").withPrice(10.0).build());
+        linkProductToOrder(product.getId(), orderId);
+
+        AtomicInteger statements = new AtomicInteger();
+        List<Product> products = countStatements(statements, () -> productDao.getProductsWithoutOrdersByIds(List.of(product.getId())));
+
+        assertEquals(1, products.size());
+        assertEquals("Linked", products.get(0).getName());
+        assertTrue(products.get(0).getOrders() == null || products.get(0).getOrders().isEmpty());
+        assertEquals(1, statements.get());
+    }
+
+    @Test
+    public void testGetProductsByIdsSplitsLargeIdLists() throws SQLException {
+        Product first = productDao.saveProduct(new Product.Builder().withName("First").withPrice(10.0).build());
+        Product last = productDao.saveProduct(new Product.Builder().withName("Last").withPrice(20.0).build());
+
+        List<Long> ids = new ArrayList<>();
+        ids.add(first.getId());
+        for (long id = last.getId() + 1; ids.size() < 2500; id++) {
+            ids.add(id);
+        }
+        ids.add(last.getId());
+
+        AtomicInteger statements = new AtomicInteger();
+        List<Product> products = countStatements(statements, () -> productDao.getProductsByIds(ids));
+
+        assertEquals(2, products.size());
+        assertEquals(5, statements.get());
+    }
+
+    @Test
+    public void testPaginationStatementCountDoesNotGrowWithPageSize() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        long orderId = createOrder(user);
+
+        for (int i = 1; i <= 50; i++) {
+            Product product = productDao.saveProduct(new Product.Builder().withName("Product " + i).withPrice(10.0 + i).build());
+            linkProductToOrder(product.getId(), orderId);
+        }
+
+        AtomicInteger smallPageStatements = new AtomicInteger();
+        List<Product> smallPage = countStatements(smallPageStatements, () -> productDao.getProductWithPagination(1, 5));
+
+        AtomicInteger largePageStatements = new AtomicInteger();
+        List<Product> largePage = countStatements(largePageStatements, () -> productDao.getProductWithPagination(1, 50));
+
+        assertEquals(5, smallPage.size());
+        assertEquals(50, largePage.size());
+        assertEquals(smallPageStatements.get(), largePageStatements.get());
+        assertTrue(largePage.stream().allMatch(p -> p.getOrders().size() == 1 && p.getOrders().get(0).getId() == orderId));
+    }
+
+    @Test
+    public void testGetAllProductsLoadsOrdersInOneStatement() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        long firstOrderId = createOrder(user);
+        long secondOrderId = createOrder(user);
+
+        Product linked = productDao.saveProduct(new Product.Builder().withName("Linked").withPrice(10.0).build());
+        productDao.saveProduct(new Product.Builder().withName("Unlinked").withPrice(20.0).build());
+        linkProductToOrder(linked.getId(), firstOrderId);
+        linkProductToOrder(linked.getId(), secondOrderId);
+
+        AtomicInteger statements = new AtomicInteger();
+        List<Product> products = countStatements(statements, productDao::getAllProducts);
+
+        assertEquals(2, statements.get());
+        for (Product product : products) {
+            assertEquals(product.getId() == linked.getId() ? 2 : 0, product.getOrders().size());
+        }
+    }
+
+    @Test
+    public void testRepeatedQueryHitsStatementCache() throws SQLException {
+        Product savedProduct = productDao.saveProduct(new Product.Builder().withName("Cached").withPrice(10.0).build());
+        StatementCacheMetrics.reset();
+
+        TransactionContext.inReadOnlyTransaction(() -> {
+            productDao.getProductById(savedProduct.getId());
+            productDao.getProductById(savedProduct.getId());
+            return null;
+        });
+
+        assertEquals(2, StatementCacheMetrics.getMisses());
+        assertEquals(2, StatementCacheMetrics.getHits());
+        assertEquals(0.5, StatementCacheMetrics.getHitRate());
+    }
+
     
+    private <T> T countStatements(AtomicInteger counter, SqlCall<T> call) throws SQLException {
+        try (MockedStatic<DataBaseUtil> dataBaseUtil = mockStatic(DataBaseUtil.class, CALLS_REAL_METHODS)) {
+            dataBaseUtil.when(DataBaseUtil::getConnection)
+                    .thenAnswer(invocation -> countingConnection((Connection) invocation.callRealMethod(), counter));
+            return call.execute();
+        }
+    }
+
+    private Connection countingConnection(Connection connection, AtomicInteger counter) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+                        counter.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private long createOrder(User user) throws SQLException {
+        try (Connection connection = DataBaseUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("INSERT INTO orders (user_id) VALUES (?) RETURNING id;")) {
+            stmt.setLong(1, user.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private void linkProductToOrder(long productId, long orderId) throws SQLException {
+        try (Connection connection = DataBaseUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("INSERT INTO orders_products (order_id, product_id) VALUES (?, ?);")) {
+            stmt.setLong(1, orderId);
+            stmt.setLong(2, productId);
+            stmt.executeUpdate();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T execute() throws SQLException;
+    }
+
     private User createUser(String name, String email) throws SQLException {
         User user = new User.Builder()
                 .withName(name)
@@ -208,4 +408,53 @@ public class ProductDaoImplTest {
                 .build();
         return new UserDaoImpl().saveUser(user);
     }
+
+    @Test
+    public void testStreamAllProductIds() throws SQLException {
+        Product first = productDao.saveProduct(new Product.Builder().withName("First").withPrice(1.0).build());
+        Product second = productDao.saveProduct(new Product.Builder().withName("Second").withPrice(2.0).build());
+
+        List<Long> ids = new ArrayList<>();
+        productDao.streamAllProductIds(ids::add);
+
+        assertEquals(2, ids.size());
+        assertTrue(ids.containsAll(List.of(first.getId(), second.getId())));
+    }
+
+    @Test
+    public void testGetProductVersionWithOrderIds() throws SQLException {
+        User user = createUser("Test User", "testuser@example.com");
+        Product product = productDao.saveProduct(new Product.Builder().withName("Linked").withPrice(5.0).build());
+        long orderId;
+        try (Connection connection = DataBaseUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("INSERT INTO orders (user_id) VALUES (?) RETURNING id;")) {
+            stmt.setLong(1, user.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                orderId = rs.getLong(1);
+            }
+        }
+        linkProductToOrder(product.getId(), orderId);
+
+        Product links = productDao.getProductVersionWithOrderIds(product.getId());
+
+        assertEquals(productDao.getProductVersion(product.getId()), links.getLinkedVersion());
+        assertEquals(1, links.getVersion());
+        assertEquals(1, links.getOrders().size());
+        assertEquals(orderId, links.getOrders().get(0).getId());
+        assertNull(productDao.getProductVersionWithOrderIds(-1L));
+    }
+
+    @Test
+    public void testStreamAllProductsIsOrderedById() throws SQLException {
+        Product first = productDao.saveProduct(new Product.Builder().withName("First").withPrice(1.0).build());
+        Product second = productDao.saveProduct(new Product.Builder().withName("Second").withPrice(2.0).build());
+
+        List<Product> catalog = new ArrayList<>();
+        productDao.streamAllProducts(catalog::add);
+
+        assertEquals(List.of(first.getId(), second.getId()), catalog.stream().map(Product::getId).toList());
+        assertEquals("Second", catalog.get(1).getName());
+        assertEquals(2.0, catalog.get(1).getPrice());
+    }
 }
@@ -0,0 +1,136 @@
+package productstore.dao;
+
+import org.junit.jupiter.api.*;
+import org.mockito.MockedStatic;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import productstore.dao.impl.OrderDaoImpl;
+import productstore.dao.impl.ProductDaoImpl;
+import productstore.dao.impl.UserDaoImpl;
+import productstore.dao.util.TransactionContext;
+import productstore.dao.utils.PostgreSQLContainerProvider;
+import productstore.db.DataBaseUtil;
+import productstore.model.Order;
+import productstore.model.Product;
+import productstore.model.User;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mockStatic;
+
+@Testcontainers
+public class TransactionContextTest {
+    private ProductDao productDao;
+    private UserDao userDao;
+    private OrderDao orderDao;
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        PostgreSQLContainerProvider.startContainer();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        productDao = new ProductDaoImpl();
+        userDao = new UserDaoImpl();
+        orderDao = new OrderDaoImpl();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        try (Connection connection = DataBaseUtil.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("TRUNCATE TABLE orders_products CASCADE;");
+            stmt.execute("TRUNCATE TABLE products CASCADE;");
+            stmt.execute("TRUNCATE TABLE orders CASCADE;");
+            stmt.execute("TRUNCATE TABLE users CASCADE;");
+        }
+    }
+
+    @AfterAll
+    public static void tearDownAll() {
+        PostgreSQLContainerProvider.stopContainer();
+    }
+
+    @Test
+    public void testUpdateProductUsesSingleConnection() throws SQLException {
+        User user = userDao.saveUser(new User.Builder().withName("Test User").withEmail("testuser@example.com").build());
+        Product product = productDao.saveProduct(new Product.Builder().withName("Product").withPrice(10.0).build());
+        Order order = orderDao.saveOrder(new Order.Builder().withUser(user).withProducts(List.of(product)).build());
+
+        product.setName("Updated");
+        product.setOrders(new ArrayList<>(List.of(new Order.Builder().withId(order.getId()).withProducts(new ArrayList<>()).build())));
+
+        AtomicInteger connections = new AtomicInteger();
+        try (MockedStatic<DataBaseUtil> dataBaseUtil = mockStatic(DataBaseUtil.class, CALLS_REAL_METHODS)) {
+            dataBaseUtil.when(DataBaseUtil::getConnection).thenAnswer(invocation -> {
+                connections.incrementAndGet();
+                return invocation.callRealMethod();
+            });
+            TransactionContext.inTransaction(() -> {
+                productDao.getProductById(product.getId());
+                productDao.updateProduct(product);
+                return null;
+            });
+        }
+
+        assertEquals(1, connections.get());
+        Product updated = productDao.getProductById(product.getId());
+        assertEquals("Updated", updated.getName());
+        assertEquals(1, updated.getOrders().size());
+    }
+
+    @Test
+    public void testRollbackOnException() throws SQLException {
+        assertThrows(IllegalStateException.class, () -> TransactionContext.inTransaction(() -> {
+            productDao.saveProduct(new Product.Builder().withName("Rolled back").withPrice(10.0).build());
+            throw new IllegalStateException("boom");
+        }));
+
+        assertTrue(productDao.getAllProducts().isEmpty());
+        assertFalse(TransactionContext.isActive());
+    }
+
+    @Test
+    public void testNestedTransactionJoinsOuter() throws SQLException {
+        assertThrows(IllegalStateException.class, () -> TransactionContext.inTransaction(() -> {
+            TransactionContext.inTransaction(() ->
+                    productDao.saveProduct(new Product.Builder().withName("Inner").withPrice(10.0).build()));
+            throw new IllegalStateException("boom");
+        }));
+
+        assertTrue(productDao.getAllProducts().isEmpty());
+    }
+
+    @Test
+    public void testReadOnlyTransactionRejectsWrites() throws SQLException {
+        assertThrows(SQLException.class, () -> TransactionContext.inReadOnlyTransaction(() ->
+                productDao.saveProduct(new Product.Builder().withName("Read only").withPrice(10.0).build())));
+
+        assertThrows(IllegalStateException.class, () -> TransactionContext.inReadOnlyTransaction(() ->
+                TransactionContext.inTransaction(() -> null)));
+
+        Product saved = productDao.saveProduct(new Product.Builder().withName("Writable").withPrice(10.0).build());
+        assertNotNull(saved);
+    }
+
+    @Test
+    public void testNoConnectionIsBorrowedWithoutStatements() throws SQLException {
+        AtomicInteger connections = new AtomicInteger();
+        try (MockedStatic<DataBaseUtil> dataBaseUtil = mockStatic(DataBaseUtil.class, CALLS_REAL_METHODS)) {
+            dataBaseUtil.when(DataBaseUtil::getConnection).thenAnswer(invocation -> {
+                connections.incrementAndGet();
+                return invocation.callRealMethod();
+            });
+            TransactionContext.inTransaction(() -> null);
+        }
+
+        assertEquals(0, connections.get());
+    }
+}
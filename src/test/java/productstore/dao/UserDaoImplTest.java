@@ -10,6 +10,7 @@ import productstore.model.User;
 
 
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -85,7 +86,7 @@ public class UserDaoImplTest {
 
         
         savedUser.setName("John Smith");
-        userDao.updateUser(savedUser);
+        assertEquals(1, userDao.updateUser(savedUser));
 
         User updatedUser = userDao.getUserById(savedUser.getId());
         assertEquals("John Smith", updatedUser.getName());
@@ -97,7 +98,7 @@ public class UserDaoImplTest {
         User savedUser = userDao.saveUser(user);
 
         
-        userDao.deleteUser(savedUser.getId());
+        assertEquals(1, userDao.deleteUser(savedUser.getId()));
 
         User fetchedUser = userDao.getUserById(savedUser.getId());
         assertNull(fetchedUser);
@@ -121,6 +122,37 @@ public class UserDaoImplTest {
         assertEquals("User 6", secondPage.get(0).getName());
     }
 
+    @Test
+    public void testGetUsersAfterIdCountsUsersNotOrders() throws SQLException {
+        for (int i = 1; i <= 5; i++) {
+            User user = userDao.saveUser(new User.Builder().withName("User " + i).withEmail("user" + i + "@example.com").build());
+            createOrders(user.getId(), 3);
+        }
+
+        List<User> firstPage = userDao.getUsersAfterId(0, 3);
+        List<User> secondPage = userDao.getUsersAfterId(firstPage.get(2).getId(), 3);
+
+        assertEquals(3, firstPage.size());
+        assertEquals(2, secondPage.size());
+        assertEquals("User 1", firstPage.get(0).getName());
+        assertEquals("User 4", secondPage.get(0).getName());
+        assertTrue(firstPage.stream().allMatch(user -> user.getOrders().size() == 3));
+    }
+
+    @Test
+    public void testStreamAllUsers() throws SQLException {
+        User withOrders = userDao.saveUser(new User.Builder().withName("User 1").withEmail("user1@example.com").build());
+        User withoutOrders = userDao.saveUser(new User.Builder().withName("User 2").withEmail("user2@example.com").build());
+        createOrders(withOrders.getId(), 2);
+
+        List<User> users = new ArrayList<>();
+        userDao.streamAllUsers(users::add);
+
+        assertEquals(List.of(withOrders.getId(), withoutOrders.getId()), users.stream().map(User::getId).toList());
+        assertEquals(2, users.get(0).getOrders().size());
+        assertTrue(users.get(1).getOrders().isEmpty());
+    }
+
     @Test
     public void testSaveUserWithEmptyNameOrEmail() {
         User userWithEmptyName = new User.Builder().withName("").withEmail("test@example.com").build();
@@ -177,7 +209,7 @@ public class UserDaoImplTest {
 
         
         
-        userDao.updateUser(nonExistentUser);
+        assertEquals(0, userDao.updateUser(nonExistentUser));
         User user = userDao.getUserById(9999L);
         assertNull(user, "Ожидается, что обновление несуществующего пользователя не изменит базу данных.");
     }
@@ -216,4 +248,15 @@ public class UserDaoImplTest {
             }
         }
     }
+
+    private void createOrders(long userId, int count) throws SQLException {
+        try (Connection connection = DataBaseUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("INSERT INTO orders (user_id) VALUES (?)")) {
+            for (int i = 0; i < count; i++) {
+                stmt.setLong(1, userId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
 }
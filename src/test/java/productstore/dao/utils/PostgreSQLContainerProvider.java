@@ -53,11 +53,7 @@ public class PostgreSQLContainerProvider {
 
             String sqlScript = new String(Files.readAllBytes(Paths.get(schemaFilePath)));
 
-            for (String sqlCommand : sqlScript.split(";")) {
-                if (!sqlCommand.trim().isEmpty()) {
-                    stmt.execute(sqlCommand);
-                }
-            }
+            stmt.execute(sqlScript);
 
         } catch (IOException | SQLException e) {
             e.printStackTrace();
@@ -0,0 +1,152 @@
+package productstore.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import productstore.cache.EntityCache;
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.model.Product;
+import productstore.service.impl.CachingOrderService;
+import productstore.service.impl.CachingProductService;
+import productstore.servlet.dto.input.OrderInputDTO;
+import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.ProductOutputDTO;
+import productstore.servlet.dto.output.UserOutputDTO;
+import productstore.servlet.mapper.ProductMapper;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CachingOrderServiceTest {
+
+    @Mock
+    private OrderService delegate;
+
+    private EntityCaches caches;
+    private CachingOrderService orderService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        caches = new EntityCaches(
+                new EntityCache<>(100, Duration.ofMinutes(1), product -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), user -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), order -> 1));
+        orderService = new CachingOrderService(delegate, caches);
+    }
+
+    @Test
+    public void testGetOrderByIdIsCached() throws SQLException {
+        OrderOutputDTO order = new OrderOutputDTO();
+        order.setId(1L);
+        when(delegate.getOrderById(1L)).thenReturn(order);
+
+        assertSame(order, orderService.getOrderById(1L));
+        assertSame(order, orderService.getOrderById(1L));
+
+        verify(delegate, times(1)).getOrderById(1L);
+    }
+
+    @Test
+    public void testCreateOrderInvalidatesUserAndProducts() throws SQLException {
+        caches.users().put(1L, new UserOutputDTO(1L, "User", "user@example.com", List.of()));
+        caches.products().put(2L, new ProductOutputDTO(2L, "Product", 10.0, List.of()));
+        OrderInputDTO orderInputDTO = new OrderInputDTO();
+        orderInputDTO.setUserId(1L);
+        orderInputDTO.setProductIds(List.of(2L));
+        when(delegate.createOrder(orderInputDTO)).thenReturn(new OrderOutputDTO());
+
+        orderService.createOrder(orderInputDTO);
+
+        assertNull(caches.users().getIfPresent(1L));
+        assertNull(caches.products().getIfPresent(2L));
+    }
+
+    @Test
+    public void testCreatedOrderIsVisibleOnTheCatalogedProduct(@TempDir Path directory) throws SQLException {
+        try (ProductCatalog catalog = new ProductCatalog(directory, 4096, 16)) {
+            catalog.listenerConnected();
+            catalog.put(new Product.Builder().withId(2L).withName("Product").withPrice(10.0).withVersion(1L).build());
+            ProductService products = mock(ProductService.class);
+            ProductOutputDTO linked = new ProductOutputDTO(2L, "Product", 10.0, List.of(7L));
+            when(products.getProductById(2L)).thenReturn(linked);
+            CachingProductService productService = new CachingProductService(products, caches, ExistenceFilters.disabled(),
+                    catalog, ProductMapper.INSTANCE);
+            orderService = new CachingOrderService(delegate, caches, ExistenceFilters.disabled(), catalog);
+            assertEquals(List.of(), productService.getProductById(2L).getOrderIds());
+            OrderInputDTO orderInputDTO = new OrderInputDTO();
+            orderInputDTO.setUserId(1L);
+            orderInputDTO.setProductIds(List.of(2L));
+            when(delegate.createOrder(orderInputDTO)).thenReturn(new OrderOutputDTO());
+
+            orderService.createOrder(orderInputDTO);
+
+            assertNull(catalog.get(2L));
+            assertEquals(List.of(7L), productService.getProductById(2L).getOrderIds());
+        }
+    }
+
+    @Test
+    public void testDeleteOrderRemovesLinkedProductsFromTheCatalog(@TempDir Path directory) throws SQLException {
+        try (ProductCatalog catalog = new ProductCatalog(directory, 4096, 16)) {
+            catalog.listenerConnected();
+            catalog.put(new Product.Builder().withId(2L).withName("Product").withPrice(10.0).withVersion(1L).build());
+            when(delegate.getProductsByOrderId(1L)).thenReturn(List.of(new ProductOutputDTO(2L, "Product", 10.0, List.of(1L))));
+            orderService = new CachingOrderService(delegate, caches, ExistenceFilters.disabled(), catalog);
+
+            orderService.deleteOrder(1L);
+
+            verify(delegate).deleteOrder(1L);
+            assertNull(catalog.get(2L));
+        }
+    }
+
+    @Test
+    public void testUpdateOrderInvalidatesOldAndNewUser() throws SQLException {
+        caches.orders().put(1L, new OrderOutputDTO());
+        caches.users().put(2L, new UserOutputDTO(2L, "Old", "old@example.com", List.of(1L)));
+        caches.users().put(3L, new UserOutputDTO(3L, "New", "new@example.com", List.of()));
+        OrderInputDTO orderInputDTO = new OrderInputDTO();
+        orderInputDTO.setId(1L);
+        orderInputDTO.setUserId(3L);
+
+        orderService.updateOrder(orderInputDTO);
+
+        assertNull(caches.orders().getIfPresent(1L));
+        assertNull(caches.users().getIfPresent(2L));
+        assertNull(caches.users().getIfPresent(3L));
+    }
+
+    @Test
+    public void testAddProductsToOrderInvalidatesOrderAndProducts() throws SQLException {
+        caches.orders().put(1L, new OrderOutputDTO());
+        caches.products().put(2L, new ProductOutputDTO(2L, "Product", 10.0, List.of()));
+        when(delegate.addProductsToOrder(1L, List.of(2L))).thenReturn(1);
+
+        assertEquals(1, orderService.addProductsToOrder(1L, List.of(2L)));
+
+        assertNull(caches.orders().getIfPresent(1L));
+        assertNull(caches.products().getIfPresent(2L));
+    }
+
+    @Test
+    public void testDeleteOrderInvalidatesLinkedProducts() throws SQLException {
+        caches.orders().put(1L, new OrderOutputDTO());
+        caches.products().put(2L, new ProductOutputDTO(2L, "Product", 10.0, List.of(1L)));
+
+        orderService.deleteOrder(1L);
+
+        verify(delegate).deleteOrder(1L);
+        assertNull(caches.orders().getIfPresent(1L));
+        assertNull(caches.products().getIfPresent(2L));
+    }
+}
@@ -0,0 +1,168 @@
+package productstore.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import productstore.cache.EntityCache;
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilter;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.model.Order;
+import productstore.model.Product;
+import productstore.service.apierror.ProductNotFoundException;
+import productstore.service.impl.CachingProductService;
+import productstore.servlet.dto.input.ProductInputDTO;
+import productstore.servlet.dto.output.ProductOutputDTO;
+import productstore.servlet.mapper.ProductMapper;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CachingProductServiceTest {
+
+    @Mock
+    private ProductService delegate;
+
+    private EntityCaches caches;
+    private CachingProductService productService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        caches = new EntityCaches(
+                new EntityCache<>(100, Duration.ofMinutes(1), product -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), user -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), order -> 1));
+        productService = new CachingProductService(delegate, caches);
+    }
+
+    @Test
+    public void testGetProductByIdIsCached() throws SQLException {
+        ProductOutputDTO product = new ProductOutputDTO(1L, "Product", 10.0, List.of());
+        when(delegate.getProductById(1L)).thenReturn(product);
+
+        assertSame(product, productService.getProductById(1L));
+        assertSame(product, productService.getProductById(1L));
+
+        verify(delegate, times(1)).getProductById(1L);
+    }
+
+    @Test
+    public void testCatalogHitIsServedAheadOfTheHeapCache(@TempDir Path directory) throws SQLException {
+        try (ProductCatalog catalog = new ProductCatalog(directory, 4096, 16)) {
+            catalog.listenerConnected();
+            Product product = new Product.Builder().withId(1L).withName("Phone").withPrice(10.0).withVersion(2L)
+                    .withOrders(new ArrayList<>(List.of(new Order.Builder().withId(5L).withProducts(new ArrayList<>()).build())))
+                    .build();
+            catalog.put(product);
+            productService = new CachingProductService(delegate, caches, ExistenceFilters.disabled(), catalog, ProductMapper.INSTANCE);
+
+            ProductOutputDTO cataloged = productService.getProductById(1L);
+
+            assertEquals("Phone", cataloged.getName());
+            assertEquals(List.of(5L), cataloged.getOrderIds());
+            assertEquals(product.getLinkedVersion(), cataloged.getVersion());
+            assertEquals(product.getLinkedVersion(), productService.getProductVersion(1L));
+            assertNull(caches.products().getIfPresent(1L));
+            verifyNoInteractions(delegate);
+        }
+    }
+
+    @Test
+    public void testCatalogMissFallsBackToTheHeapCache(@TempDir Path directory) throws SQLException {
+        try (ProductCatalog catalog = new ProductCatalog(directory, 4096, 16)) {
+            catalog.put(new Product.Builder().withId(1L).withName("Phone").withPrice(10.0).withVersion(2L).build());
+            productService = new CachingProductService(delegate, caches, ExistenceFilters.disabled(), catalog, ProductMapper.INSTANCE);
+            ProductOutputDTO product = new ProductOutputDTO(1L, "Phone", 10.0, List.of());
+            when(delegate.getProductById(1L)).thenReturn(product);
+
+            assertSame(product, productService.getProductById(1L));
+
+            verify(delegate).getProductById(1L);
+        }
+    }
+
+    @Test
+    public void testNotFoundIsNotCached() throws SQLException {
+        when(delegate.getProductById(1L)).thenThrow(new ProductNotFoundException("Product not found"));
+
+        assertThrows(ProductNotFoundException.class, () -> productService.getProductById(1L));
+        assertThrows(ProductNotFoundException.class, () -> productService.getProductById(1L));
+
+        verify(delegate, times(2)).getProductById(1L);
+    }
+
+    @Test
+    public void testUpdateProductInvalidates() throws SQLException {
+        ProductOutputDTO product = new ProductOutputDTO(1L, "Product", 10.0, List.of());
+        when(delegate.getProductById(1L)).thenReturn(product);
+        productService.getProductById(1L);
+
+        ProductInputDTO productInputDTO = new ProductInputDTO();
+        productInputDTO.setId(1L);
+        productService.updateProduct(productInputDTO);
+        productService.getProductById(1L);
+
+        verify(delegate).updateProduct(productInputDTO);
+        verify(delegate, times(2)).getProductById(1L);
+    }
+
+    @Test
+    public void testDeleteProductInvalidatesEvenOnFailure() throws SQLException {
+        ProductOutputDTO product = new ProductOutputDTO(1L, "Product", 10.0, List.of());
+        when(delegate.getProductById(1L)).thenReturn(product);
+        productService.getProductById(1L);
+        doThrow(new ProductNotFoundException("Product not found")).when(delegate).deleteProduct(1L);
+
+        assertThrows(ProductNotFoundException.class, () -> productService.deleteProduct(1L));
+
+        assertNull(caches.products().getIfPresent(1L));
+    }
+
+    @Test
+    public void testUnknownIdIsRejectedWithoutDelegate() throws SQLException {
+        CachingProductService filtered = new CachingProductService(delegate, caches, builtFilters(1L, 3L));
+
+        assertThrows(ProductNotFoundException.class, () -> filtered.getProductById(2L));
+        assertThrows(ProductNotFoundException.class, () -> filtered.getProductVersion(2L));
+
+        verify(delegate, never()).getProductById(anyLong());
+        verify(delegate, never()).getProductVersion(anyLong());
+    }
+
+    @Test
+    public void testCreatedProductPassesFilter() throws SQLException {
+        CachingProductService filtered = new CachingProductService(delegate, caches, builtFilters(1L));
+        ProductInputDTO productInputDTO = new ProductInputDTO();
+        ProductOutputDTO created = new ProductOutputDTO(5L, "Product", 10.0, List.of());
+        when(delegate.createProduct(productInputDTO)).thenReturn(created);
+        when(delegate.getProductById(5L)).thenReturn(created);
+
+        filtered.createProduct(productInputDTO);
+
+        assertSame(created, filtered.getProductById(5L));
+    }
+
+    private static ExistenceFilters builtFilters(long... productIds) throws SQLException {
+        ExistenceFilters filters = new ExistenceFilters(
+                new ExistenceFilter(consumer -> {
+                    for (long id : productIds) {
+                        consumer.accept(id);
+                    }
+                }, 100, 0.001),
+                new ExistenceFilter(consumer -> {}, 100, 0.001),
+                new ExistenceFilter(consumer -> {}, 100, 0.001));
+        filters.listenerConnected();
+        filters.rebuildAll();
+        return filters;
+    }
+}
@@ -0,0 +1,92 @@
+package productstore.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import productstore.cache.EntityCache;
+import productstore.cache.EntityCaches;
+import productstore.cache.ExistenceFilters;
+import productstore.cache.ProductCatalog;
+import productstore.model.Product;
+import productstore.service.impl.CachingUserService;
+import productstore.servlet.dto.input.UserInputDTO;
+import productstore.servlet.dto.output.ProductOutputDTO;
+import productstore.servlet.dto.output.UserOutputDTO;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CachingUserServiceTest {
+
+    @Mock
+    private UserService delegate;
+
+    private EntityCaches caches;
+    private CachingUserService userService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        caches = new EntityCaches(
+                new EntityCache<>(100, Duration.ofMinutes(1), product -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), user -> 1),
+                new EntityCache<>(100, Duration.ofMinutes(1), order -> 1));
+        userService = new CachingUserService(delegate, caches);
+    }
+
+    @Test
+    public void testGetUserByIdIsCached() throws SQLException {
+        UserOutputDTO user = new UserOutputDTO(1L, "User", "user@example.com", List.of());
+        when(delegate.getUserById(1L)).thenReturn(user);
+
+        assertSame(user, userService.getUserById(1L));
+        assertSame(user, userService.getUserById(1L));
+
+        verify(delegate, times(1)).getUserById(1L);
+    }
+
+    @Test
+    public void testUpdateUserInvalidates() throws SQLException {
+        when(delegate.getUserById(1L)).thenReturn(new UserOutputDTO(1L, "User", "user@example.com", List.of()));
+        userService.getUserById(1L);
+
+        userService.updateUser(new UserInputDTO(1L, "Updated", "updated@example.com"));
+
+        assertNull(caches.users().getIfPresent(1L));
+    }
+
+    @Test
+    public void testDeleteUserDropsProductsLinkedThroughCascadedOrders() throws SQLException {
+        caches.users().put(1L, new UserOutputDTO(1L, "User", "user@example.com", List.of(5L)));
+        caches.products().put(2L, new ProductOutputDTO(2L, "Product", 10.0, List.of(5L)));
+
+        userService.deleteUser(1L);
+
+        verify(delegate).deleteUser(1L);
+        assertNull(caches.users().getIfPresent(1L));
+        assertNull(caches.products().getIfPresent(2L));
+    }
+
+    @Test
+    public void testDeleteUserRemovesOrderedProductsFromTheCatalog(@TempDir Path directory) throws SQLException {
+        try (ProductCatalog catalog = new ProductCatalog(directory, 4096, 16)) {
+            catalog.listenerConnected();
+            catalog.put(new Product.Builder().withId(2L).withName("Product").withPrice(10.0).withVersion(1L).build());
+            catalog.put(new Product.Builder().withId(3L).withName("Other").withPrice(10.0).withVersion(1L).build());
+            when(delegate.getOrderedProductIds(1L)).thenReturn(List.of(2L));
+            userService = new CachingUserService(delegate, caches, ExistenceFilters.disabled(), catalog);
+
+            userService.deleteUser(1L);
+
+            assertNull(catalog.get(2L));
+            assertNotNull(catalog.get(3L));
+        }
+    }
+}
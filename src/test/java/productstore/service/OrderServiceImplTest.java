@@ -1,6 +1,9 @@
 package productstore.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -10,6 +13,7 @@ import org.mockito.MockitoAnnotations;
 import productstore.dao.OrderDao;
 import productstore.dao.ProductDao;
 import productstore.model.Order;
+import productstore.model.OrderSummary;
 import productstore.model.Product;
 import productstore.service.apierror.OrderNotFoundException;
 import productstore.service.apierror.ProductNotFoundException;
@@ -17,14 +21,17 @@ import productstore.service.apierror.ProductServiceException;
 import productstore.service.impl.OrderServiceImpl;
 import productstore.servlet.dto.input.OrderInputDTO;
 import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.OrderSummaryOutputDTO;
 import productstore.servlet.dto.output.ProductOutputDTO;
 import productstore.servlet.mapper.OrderMapper;
 import productstore.servlet.mapper.ProductMapper;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class OrderServiceImplTest {
 
@@ -71,38 +78,68 @@ public class OrderServiceImplTest {
         OrderInputDTO orderInputDTO = new OrderInputDTO();
         orderInputDTO.setProductIds(Arrays.asList(1L));
 
-        when(productDao.getProductById(1L)).thenReturn(null);
+        when(productDao.getProductsWithoutOrdersByIds(List.of(1L))).thenReturn(Collections.emptyList());
 
         assertThrows(ProductNotFoundException.class, () -> orderService.createOrder(orderInputDTO));
     }
 
+    @Test
+    public void testCreateOrderReportsAllMissingProducts() throws SQLException {
+        OrderInputDTO orderInputDTO = new OrderInputDTO();
+        orderInputDTO.setProductIds(Arrays.asList(1L, 2L, 3L));
+
+        Product product = new Product();
+        product.setId(2L);
+
+        when(productDao.getProductsWithoutOrdersByIds(List.of(1L, 2L, 3L))).thenReturn(List.of(product));
+
+        ProductNotFoundException exception = assertThrows(ProductNotFoundException.class, () -> orderService.createOrder(orderInputDTO));
+        assertTrue(exception.getMessage().contains("[1, 3]"));
+        verify(productDao, times(1)).getProductsWithoutOrdersByIds(anyCollection());
+        verify(productDao, never()).getProductsByIds(anyCollection());
+        verify(productDao, never()).getProductById(anyLong());
+    }
+
+    @Test
+    public void testGetOrderVersion() throws SQLException {
+        when(orderDao.getOrderVersion(1L)).thenReturn(4L);
+
+        assertEquals(4L, orderService.getOrderVersion(1L));
+    }
+
+    @Test
+    public void testGetOrderVersionNotFound() throws SQLException {
+        when(orderDao.getOrderVersion(1L)).thenReturn(null);
+
+        assertThrows(OrderNotFoundException.class, () -> orderService.getOrderVersion(1L));
+    }
+
     @Test
     public void testGetOrderByIdNotFound() throws SQLException {
         when(orderDao.getOrderById(1L)).thenReturn(null);
 
-        assertThrows(OrderNotFoundException.class, () -> orderService.getOrderById(1L));
+        OrderNotFoundException exception = assertThrows(OrderNotFoundException.class, () -> orderService.getOrderById(1L));
+        assertEquals("Order with ID 1 not found.", exception.getMessage());
     }
 
     @Test
     public void testAddProductsToOrderWithNonExistingOrder() throws SQLException {
-        when(orderDao.getOrderById(1L)).thenReturn(null);
+        when(orderDao.getOrderVersion(1L)).thenReturn(null);
 
         assertThrows(OrderNotFoundException.class, () -> orderService.addProductsToOrder(1L, Arrays.asList(1L)));
     }
 
     @Test
     public void testAddProductsToOrderWithNonExistingProduct() throws SQLException {
-        Order order = new Order();
-        when(orderDao.getOrderById(1L)).thenReturn(order);
-        when(productDao.getProductById(1L)).thenReturn(null);
+        when(orderDao.getOrderVersion(1L)).thenReturn(1L);
+        when(productDao.getProductsWithoutOrdersByIds(List.of(1L))).thenReturn(Collections.emptyList());
 
         assertThrows(ProductNotFoundException.class, () -> orderService.addProductsToOrder(1L, Arrays.asList(1L)));
     }
 
     @Test
     public void testAddProductsToOrderWithEmptyProductList() throws SQLException {
-        Order order = new Order();
-        when(orderDao.getOrderById(1L)).thenReturn(order);
+        when(orderDao.getOrderVersion(1L)).thenReturn(1L);
 
         assertThrows(IllegalArgumentException.class, () -> orderService.addProductsToOrder(1L, Collections.emptyList()));
     }
@@ -123,21 +160,20 @@ public class OrderServiceImplTest {
         Product product = new Product();
         product.setId(1L);
 
-        when(productDao.getProductById(1L)).thenThrow(new SQLException("Database error"));
+        when(productDao.getProductsWithoutOrdersByIds(List.of(1L))).thenThrow(new SQLException("Database error"));
 
         RuntimeException exception = assertThrows(ProductServiceException.class, () -> orderService.createOrder(orderInputDTO));
-        assertTrue(exception.getMessage().contains("Failed to retrieve product with ID 1"));
+        assertTrue(exception.getMessage().contains("Failed to retrieve products with IDs [1]"));
     }
 
     @Test
     public void testAddProductsToOrderWithSQLException() throws SQLException {
-        Order order = new Order();
-        when(orderDao.getOrderById(1L)).thenReturn(order);
+        when(orderDao.getOrderVersion(1L)).thenReturn(1L);
 
-        when(productDao.getProductById(1L)).thenThrow(new SQLException("Database error"));
+        when(productDao.getProductsWithoutOrdersByIds(List.of(1L))).thenThrow(new SQLException("Database error"));
 
         RuntimeException exception = assertThrows(ProductServiceException.class, () -> orderService.addProductsToOrder(1L, List.of(1L)));
-        assertTrue(exception.getMessage().contains("Failed to retrieve product with ID 1"));
+        assertTrue(exception.getMessage().contains("Failed to retrieve products with IDs [1]"));
     }
 
     @Test
@@ -151,7 +187,7 @@ public class OrderServiceImplTest {
         Order order = new Order();
         order.setId(1L);
 
-        when(productDao.getProductById(1L)).thenReturn(product);
+        when(productDao.getProductsWithoutOrdersByIds(List.of(1L))).thenReturn(List.of(product));
         when(orderMapper.toOrder(orderInputDTO)).thenReturn(order);
         when(orderDao.saveOrder(order)).thenReturn(order);
         when(orderMapper.toOrderOutputDTO(false, order)).thenReturn(new OrderOutputDTO());
@@ -182,36 +218,42 @@ public class OrderServiceImplTest {
     public void testUpdateOrderSuccess() throws SQLException {
         OrderInputDTO orderInputDTO = new OrderInputDTO();
         orderInputDTO.setId(1L);
+        orderInputDTO.setUserId(2L);
         orderInputDTO.setProductIds(Arrays.asList(1L));
 
-        Order existingOrder = new Order();
-        existingOrder.setId(1L);
+        when(orderDao.updateOrderUser(1L, 2L)).thenReturn(1);
+
+        orderService.updateOrder(orderInputDTO);
 
-        Order updatedOrder = new Order();
-        updatedOrder.setId(1L);
+        verify(orderDao).updateOrderUser(1L, 2L);
+        verify(orderDao, never()).getOrderById(anyLong());
+    }
 
-        when(orderDao.getOrderById(1L)).thenReturn(existingOrder);
-        when(orderMapper.toOrder(orderInputDTO)).thenReturn(updatedOrder);
+    @Test
+    public void testUpdateOrderNotFound() throws SQLException {
+        OrderInputDTO orderInputDTO = new OrderInputDTO();
+        orderInputDTO.setId(1L);
+        orderInputDTO.setUserId(2L);
 
-        orderService.updateOrder(orderInputDTO);
+        when(orderDao.updateOrderUser(1L, 2L)).thenReturn(0);
 
-        verify(orderDao).updateOrder(updatedOrder);
+        assertThrows(OrderNotFoundException.class, () -> orderService.updateOrder(orderInputDTO));
     }
 
     @Test
     public void testAddProductsToOrderSuccess() throws SQLException {
-        Order order = new Order();
-        order.setId(1L);
-
         Product product = new Product();
         product.setId(1L);
 
-        when(orderDao.getOrderById(1L)).thenReturn(order);
-        when(productDao.getProductById(1L)).thenReturn(product);
+        when(orderDao.getOrderVersion(1L)).thenReturn(1L);
+        when(productDao.getProductsWithoutOrdersByIds(List.of(1L))).thenReturn(List.of(product));
+        when(orderDao.addProductsToOrder(1L, Arrays.asList(product))).thenReturn(1);
 
-        orderService.addProductsToOrder(1L, Arrays.asList(1L));
+        int added = orderService.addProductsToOrder(1L, Arrays.asList(1L));
 
+        assertEquals(1, added);
         verify(orderDao).addProductsToOrder(1L, Arrays.asList(product));
+        verify(orderDao, never()).getOrderById(anyLong());
     }
 
     @Test
@@ -229,20 +271,51 @@ public class OrderServiceImplTest {
     }
 
     @Test
-    public void testDeleteOrderSuccess() throws SQLException {
+    public void testGetOrdersAfterIdSuccess() throws SQLException {
         Order order = new Order();
-        order.setId(1L);
+        order.setId(6L);
 
-        when(orderDao.getOrderById(1L)).thenReturn(order);
+        when(orderDao.getOrdersAfterId(5L, 10)).thenReturn(List.of(order));
+        when(orderMapper.toOrderOutputDTO(false, order)).thenReturn(new OrderOutputDTO());
+
+        List<OrderOutputDTO> result = orderService.getOrdersAfterId(5L, 10);
+
+        assertEquals(1, result.size());
+        verify(orderDao).getOrdersAfterId(5L, 10);
+    }
+
+    @Test
+    public void testStreamAllOrdersSuccess() throws SQLException {
+        Order order = new Order();
+        doAnswer(invocation -> {
+            Consumer<Order> consumer = invocation.getArgument(0);
+            consumer.accept(order);
+            return null;
+        }).when(orderDao).streamAllOrders(any());
+
+        OrderOutputDTO orderOutputDTO = new OrderOutputDTO();
+        when(orderMapper.toOrderOutputDTO(false, order)).thenReturn(orderOutputDTO);
+
+        List<OrderOutputDTO> result = new ArrayList<>();
+        orderService.streamAllOrders(result::add);
+
+        assertEquals(List.of(orderOutputDTO), result);
+        verify(orderDao, never()).getAllOrders();
+    }
+
+    @Test
+    public void testDeleteOrderSuccess() throws SQLException {
+        when(orderDao.deleteOrder(1L)).thenReturn(1);
 
         orderService.deleteOrder(1L);
 
         verify(orderDao).deleteOrder(1L);
+        verify(orderDao, never()).getOrderById(anyLong());
     }
 
     @Test
     public void testDeleteOrderNotFound() throws SQLException {
-        when(orderDao.getOrderById(1L)).thenReturn(null);
+        when(orderDao.deleteOrder(1L)).thenReturn(0);
 
         assertThrows(OrderNotFoundException.class, () -> orderService.deleteOrder(1L));
     }
@@ -267,14 +340,24 @@ public class OrderServiceImplTest {
 
     @Test
     public void testDeleteOrderWithSQLException() throws SQLException {
-        Order order = new Order();
-        order.setId(1L);
-
-        when(orderDao.getOrderById(1L)).thenReturn(order);
-        doThrow(new SQLException("Database error")).when(orderDao).deleteOrder(1L);
+        when(orderDao.deleteOrder(1L)).thenThrow(new SQLException("Database error"));
 
         SQLException exception = assertThrows(SQLException.class, () -> orderService.deleteOrder(1L));
         assertTrue(exception.getMessage().contains("Database error"));
     }
-}
 
+    @Test
+    public void testGetOrderSummariesWithPagination() throws SQLException {
+        OrderSummary summary = new OrderSummary.Builder().withOrderId(1L).withLineCount(2).build();
+        OrderSummaryOutputDTO summaryDTO = new OrderSummaryOutputDTO();
+        summaryDTO.setId(1L);
+
+        when(orderDao.getOrderSummariesWithPagination(1, 10)).thenReturn(List.of(summary));
+        when(orderMapper.toOrderSummaryOutputDTO(summary)).thenReturn(summaryDTO);
+
+        List<OrderSummaryOutputDTO> result = orderService.getOrderSummariesWithPagination(1, 10);
+
+        assertEquals(List.of(summaryDTO), result);
+        verify(orderDao, never()).getOrdersWithPagination(anyInt(), anyInt());
+    }
+}
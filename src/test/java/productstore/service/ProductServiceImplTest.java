@@ -2,9 +2,12 @@ package productstore.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import productstore.cache.ProductCatalog;
 import productstore.dao.ProductDao;
+import productstore.model.Order;
 import productstore.model.Product;
 import productstore.service.apierror.ProductNotFoundException;
 import productstore.service.impl.ProductServiceImpl;
@@ -12,10 +15,13 @@ import productstore.servlet.dto.input.ProductInputDTO;
 import productstore.servlet.dto.output.ProductOutputDTO;
 import productstore.servlet.mapper.ProductMapper;
 
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -79,6 +85,57 @@ public class ProductServiceImplTest {
     }
 
     
+    @Test
+    public void testGetProductByIdWritesCatalog(@TempDir Path directory) throws SQLException {
+        try (ProductCatalog catalog = new ProductCatalog(directory, 4096, 16)) {
+            catalog.listenerConnected();
+            productService = new ProductServiceImpl(productDao, productMapper, catalog);
+            Product product = new Product.Builder().withId(1L).withName("Phone").withPrice(10.0).withVersion(2L)
+                    .withOrders(new ArrayList<>(List.of(new Order.Builder().withId(5L).withProducts(new ArrayList<>()).build())))
+                    .build();
+            when(productDao.getProductById(1L)).thenReturn(product);
+            when(productMapper.toProductOutputDTO(true, product)).thenReturn(new ProductOutputDTO());
+
+            assertNotNull(productService.getProductById(1L));
+
+            assertEquals(new ProductCatalog.Entry(1L, 2L, "Phone", 10.0, List.of(5L)), catalog.get(1L));
+        }
+    }
+
+    
+    @Test
+    public void testGetProductByIdSkipsCatalogWriteWhenRemovedDuringRead(@TempDir Path directory) throws SQLException {
+        try (ProductCatalog catalog = new ProductCatalog(directory, 4096, 16)) {
+            catalog.listenerConnected();
+            productService = new ProductServiceImpl(productDao, productMapper, catalog);
+            Product product = new Product.Builder().withId(1L).withName("Phone").withPrice(10.0).withVersion(1L)
+                    .withOrders(new ArrayList<>()).build();
+            when(productDao.getProductById(1L)).thenAnswer(invocation -> {
+                catalog.remove(1L);
+                return product;
+            });
+            when(productMapper.toProductOutputDTO(true, product)).thenReturn(new ProductOutputDTO());
+
+            assertNotNull(productService.getProductById(1L));
+
+            assertNull(catalog.get(1L));
+        }
+    }
+
+    @Test
+    public void testGetProductVersion() throws SQLException {
+        when(productDao.getProductVersion(1L)).thenReturn(4L);
+
+        assertEquals(4L, productService.getProductVersion(1L));
+    }
+
+    @Test
+    public void testGetProductVersionNotFound() throws SQLException {
+        when(productDao.getProductVersion(1L)).thenReturn(null);
+
+        assertThrows(ProductNotFoundException.class, () -> productService.getProductVersion(1L));
+    }
+
     @Test
     public void testGetProductByIdNotFound() throws SQLException {
         when(productDao.getProductById(1L)).thenReturn(null);
@@ -114,6 +171,25 @@ public class ProductServiceImplTest {
         verify(productDao, times(1)).getAllProducts();
     }
 
+    @Test
+    public void testStreamAllProducts() throws SQLException {
+        Product product = new Product();
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            consumer.accept(product);
+            return null;
+        }).when(productDao).streamAllProducts(any());
+
+        ProductOutputDTO productOutputDTO = new ProductOutputDTO();
+        when(productMapper.toProductOutputDTO(true, product)).thenReturn(productOutputDTO);
+
+        List<ProductOutputDTO> result = new ArrayList<>();
+        productService.streamAllProducts(result::add);
+
+        assertEquals(List.of(productOutputDTO), result);
+        verify(productDao, never()).getAllProducts();
+    }
+
     
     @Test
     public void testGetProductsWithPagination() throws SQLException {
@@ -131,6 +207,20 @@ public class ProductServiceImplTest {
         verify(productMapper, times(1)).toProductOutputDTO(true, product);
     }
 
+    @Test
+    public void testGetProductsAfterId() throws SQLException {
+        Product product = new Product();
+        when(productDao.getProductsAfterId(5L, 10)).thenReturn(List.of(product));
+
+        ProductOutputDTO productOutputDTO = new ProductOutputDTO();
+        when(productMapper.toProductOutputDTO(true, product)).thenReturn(productOutputDTO);
+
+        List<ProductOutputDTO> result = productService.getProductsAfterId(5L, 10);
+
+        assertEquals(1, result.size());
+        verify(productDao, times(1)).getProductsAfterId(5L, 10);
+    }
+
     
     @Test
     public void testUpdateProduct() throws SQLException {
@@ -142,7 +232,7 @@ public class ProductServiceImplTest {
         Product product = new Product();
         product.setId(1L);  
         when(productMapper.toProduct(productInputDTO)).thenReturn(product);
-        when(productDao.getProductById(1L)).thenReturn(product); 
+        when(productDao.updateProduct(product)).thenReturn(1);
 
         productService.updateProduct(productInputDTO);
 
@@ -156,7 +246,7 @@ public class ProductServiceImplTest {
         productInputDTO.setId(1L);
 
         when(productMapper.toProduct(productInputDTO)).thenReturn(new Product());
-        when(productDao.getProductById(1L)).thenReturn(null);
+        when(productDao.updateProduct(any())).thenReturn(0);
 
         assertThrows(ProductNotFoundException.class, () -> productService.updateProduct(productInputDTO));
     }
@@ -164,8 +254,7 @@ public class ProductServiceImplTest {
     
     @Test
     public void testDeleteProduct() throws SQLException {
-        Product product = new Product();
-        when(productDao.getProductById(1L)).thenReturn(product);
+        when(productDao.deleteProduct(1L)).thenReturn(1);
 
         productService.deleteProduct(1L);
 
@@ -175,7 +264,7 @@ public class ProductServiceImplTest {
     
     @Test
     public void testDeleteProductNotFound() throws SQLException {
-        when(productDao.getProductById(1L)).thenReturn(null);
+        when(productDao.deleteProduct(1L)).thenReturn(0);
 
         assertThrows(ProductNotFoundException.class, () -> productService.deleteProduct(1L));
     }
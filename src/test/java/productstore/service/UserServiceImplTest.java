@@ -13,9 +13,11 @@ import productstore.servlet.dto.output.UserOutputDTO;
 import productstore.servlet.mapper.UserMapper;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -79,6 +81,20 @@ public class UserServiceImplTest {
     }
 
     
+    @Test
+    public void testGetUserVersion() throws SQLException {
+        when(userDao.getUserVersion(1L)).thenReturn(4L);
+
+        assertEquals(4L, userService.getUserVersion(1L));
+    }
+
+    @Test
+    public void testGetUserVersionNotFound() throws SQLException {
+        when(userDao.getUserVersion(1L)).thenReturn(null);
+
+        assertThrows(UserNotFoundException.class, () -> userService.getUserVersion(1L));
+    }
+
     @Test
     public void testGetUserByIdNotFound() throws SQLException {
         when(userDao.getUserById(1L)).thenReturn(null);
@@ -114,6 +130,25 @@ public class UserServiceImplTest {
         verify(userDao, times(1)).getAllUsers();
     }
 
+    @Test
+    public void testStreamAllUsers() throws SQLException {
+        User user = new User();
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(0);
+            consumer.accept(user);
+            return null;
+        }).when(userDao).streamAllUsers(any());
+
+        UserOutputDTO userOutputDTO = new UserOutputDTO();
+        when(userMapper.toUserOutputDTO(true, user)).thenReturn(userOutputDTO);
+
+        List<UserOutputDTO> result = new ArrayList<>();
+        userService.streamAllUsers(result::add);
+
+        assertEquals(List.of(userOutputDTO), result);
+        verify(userDao, never()).getAllUsers();
+    }
+
     
     @Test
     public void testGetUsersWithPagination() throws SQLException {
@@ -131,6 +166,20 @@ public class UserServiceImplTest {
         verify(userMapper, times(1)).toUserOutputDTO(true, user);
     }
 
+    @Test
+    public void testGetUsersAfterId() throws SQLException {
+        User user = new User();
+        when(userDao.getUsersAfterId(5L, 10)).thenReturn(List.of(user));
+
+        UserOutputDTO userOutputDTO = new UserOutputDTO();
+        when(userMapper.toUserOutputDTO(true, user)).thenReturn(userOutputDTO);
+
+        List<UserOutputDTO> result = userService.getUsersAfterId(5L, 10);
+
+        assertEquals(1, result.size());
+        verify(userDao, times(1)).getUsersAfterId(5L, 10);
+    }
+
     
     @Test
     public void testUpdateUser() throws SQLException {
@@ -142,7 +191,7 @@ public class UserServiceImplTest {
         User user = new User();
         user.setId(1L);  
         when(userMapper.toUser(userInputDTO)).thenReturn(user);
-        when(userDao.getUserById(1L)).thenReturn(user); 
+        when(userDao.updateUser(user)).thenReturn(1);
 
         userService.updateUser(userInputDTO);
 
@@ -156,7 +205,7 @@ public class UserServiceImplTest {
         userInputDTO.setId(1L);
 
         when(userMapper.toUser(userInputDTO)).thenReturn(new User());
-        when(userDao.getUserById(1L)).thenReturn(null);
+        when(userDao.updateUser(any())).thenReturn(0);
 
         assertThrows(UserNotFoundException.class, () -> userService.updateUser(userInputDTO));
     }
@@ -164,8 +213,7 @@ public class UserServiceImplTest {
     
     @Test
     public void testDeleteUser() throws SQLException {
-        User user = new User();
-        when(userDao.getUserById(1L)).thenReturn(user);
+        when(userDao.deleteUser(1L)).thenReturn(1);
 
         userService.deleteUser(1L);
 
@@ -175,7 +223,7 @@ public class UserServiceImplTest {
     
     @Test
     public void testDeleteUserNotFound() throws SQLException {
-        when(userDao.getUserById(1L)).thenReturn(null);
+        when(userDao.deleteUser(1L)).thenReturn(0);
 
         assertThrows(UserNotFoundException.class, () -> userService.deleteUser(1L));
     }
@@ -0,0 +1,54 @@
+package productstore.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import productstore.metrics.MetricsRegistry;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class MetricsServletTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    private StringWriter responseWriter;
+    private MetricsServlet metricsServlet;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        responseWriter = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        metricsServlet = new MetricsServlet();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MetricsRegistry.unregister("test");
+    }
+
+    @Test
+    public void testDoGet_writesRegisteredMetrics() throws Exception {
+        MetricsRegistry.register("test", () -> Map.of("hits", 3));
+
+        metricsServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response).setContentType("application/json");
+        String jsonResponse = responseWriter.toString();
+        assertTrue(jsonResponse.contains("\"test\":{\"hits\":3}"));
+    }
+}
@@ -12,19 +12,23 @@ import productstore.service.OrderService;
 import productstore.service.apierror.OrderNotFoundException;
 import productstore.servlet.dto.input.OrderInputDTO;
 import productstore.servlet.dto.output.OrderOutputDTO;
+import productstore.servlet.dto.output.OrderSummaryOutputDTO;
+import productstore.servlet.util.PaginationUtils;
+import productstore.servlet.utils.CapturingServletOutputStream;
+import productstore.servlet.utils.StubServletInputStream;
 import productstore.servlet.dto.output.ProductOutputDTO;
 import productstore.servlet.dto.output.UserOutputDTO;
 
-import java.io.BufferedReader;
 import java.io.PrintWriter;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 public class OrderServletTest {
@@ -39,6 +43,7 @@ public class OrderServletTest {
     private HttpServletResponse response;
 
     private StringWriter responseWriter;
+    private CapturingServletOutputStream responseOutputStream;
     private OrderServlet orderServlet;
     private Gson gson = new Gson();
 
@@ -47,6 +52,8 @@ public class OrderServletTest {
         MockitoAnnotations.openMocks(this);
         responseWriter = new StringWriter();
         when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        responseOutputStream = new CapturingServletOutputStream();
+        when(response.getOutputStream()).thenReturn(responseOutputStream);
 
         
         orderServlet = new OrderServlet(orderService);
@@ -67,10 +74,93 @@ public class OrderServletTest {
         verify(orderService, times(1)).getOrdersWithPagination(anyInt(), anyInt());
         verify(response).setStatus(HttpServletResponse.SC_OK);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("[")); 
     }
 
+    @Test
+    public void testDoGet_ordersAfterCursor() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("after")).thenReturn(PaginationUtils.encodeCursor(5L));
+        when(request.getParameter("pageSize")).thenReturn("2");
+
+        OrderOutputDTO first = new OrderOutputDTO();
+        first.setId(6L);
+        OrderOutputDTO second = new OrderOutputDTO();
+        second.setId(7L);
+        when(orderService.getOrdersAfterId(5L, 2)).thenReturn(List.of(first, second));
+
+        orderServlet.doGet(request, response);
+
+        verify(orderService, times(1)).getOrdersAfterId(5L, 2);
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        String jsonResponse = responseOutputStream.toString();
+        assertTrue(jsonResponse.contains("\"nextCursor\":\"" + PaginationUtils.encodeCursor(7L) + "\""));
+    }
+
+    @Test
+    public void testDoGet_orderSummaries() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("view")).thenReturn("summary");
+        when(request.getParameter("after")).thenReturn(PaginationUtils.encodeCursor(5L));
+        when(request.getParameter("pageSize")).thenReturn("1");
+
+        OrderSummaryOutputDTO summary = new OrderSummaryOutputDTO();
+        summary.setId(6L);
+        summary.setLineCount(3);
+        summary.setTotalPrice(42.5);
+        summary.setProductIds(List.of(1L, 2L, 3L));
+        when(orderService.getOrderSummariesAfterId(5L, 1)).thenReturn(List.of(summary));
+
+        orderServlet.doGet(request, response);
+
+        verify(orderService, never()).getOrdersAfterId(anyLong(), anyInt());
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        String jsonResponse = responseOutputStream.toString();
+        assertTrue(jsonResponse.contains("\"lineCount\":3"));
+        assertTrue(jsonResponse.contains("\"productIds\":[1,2,3]"));
+        assertTrue(jsonResponse.contains("\"nextCursor\":\"" + PaginationUtils.encodeCursor(6L) + "\""));
+    }
+
+    @Test
+    public void testDoGet_ordersInvalidCursor() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("after")).thenReturn("not-a-cursor");
+
+        orderServlet.doGet(request, response);
+
+        verify(orderService, never()).getOrdersAfterId(anyLong(), anyInt());
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testDoGet_streamOrders() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("stream")).thenReturn("true");
+
+        OrderOutputDTO first = new OrderOutputDTO();
+        first.setId(1L);
+        OrderOutputDTO second = new OrderOutputDTO();
+        second.setId(2L);
+        doAnswer(invocation -> {
+            Consumer<OrderOutputDTO> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(orderService).streamAllOrders(any());
+
+        orderServlet.doGet(request, response);
+
+        verify(orderService, times(1)).streamAllOrders(any());
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        String jsonResponse = responseOutputStream.toString();
+        assertTrue(jsonResponse.startsWith("[{\"id\":1"));
+        assertTrue(jsonResponse.endsWith("}]"));
+    }
+
     @Test
     public void testDoGet_orderById() throws Exception {
         
@@ -85,10 +175,41 @@ public class OrderServletTest {
         verify(orderService, times(1)).getOrderById(1L);
         verify(response).setStatus(HttpServletResponse.SC_OK);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("{")); 
     }
 
+    @Test
+    public void testDoGet_orderByIdNotModified() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getHeader("If-None-Match")).thenReturn("\"order-1-3\"");
+        when(orderService.getOrderVersion(1L)).thenReturn(3L);
+
+        orderServlet.doGet(request, response);
+
+        verify(orderService, never()).getOrderById(anyLong());
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response).setHeader("ETag", "\"order-1-3\"");
+        assertTrue(responseOutputStream.toString().isEmpty());
+    }
+
+    @Test
+    public void testDoGet_orderByIdStaleETag() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getHeader("If-None-Match")).thenReturn("\"order-1-2\"");
+        when(orderService.getOrderVersion(1L)).thenReturn(3L);
+
+        OrderOutputDTO order = new OrderOutputDTO();
+        order.setVersion(3L);
+        when(orderService.getOrderById(1L)).thenReturn(order);
+
+        orderServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response).setHeader("ETag", "\"order-1-3\"");
+        assertTrue(responseOutputStream.toString().contains("{"));
+    }
+
     @Test
     public void testDoGet_orderById_notFound() throws Exception {
         
@@ -102,7 +223,7 @@ public class OrderServletTest {
         verify(orderService, times(1)).getOrderById(999L);
         verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Order not found")); 
     }
 
@@ -110,7 +231,7 @@ public class OrderServletTest {
     public void testDoPost() throws Exception {
         
         String jsonRequest = gson.toJson(new OrderInputDTO());
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         OrderOutputDTO createdOrder = new OrderOutputDTO();
         when(orderService.createOrder(any(OrderInputDTO.class))).thenReturn(createdOrder);
@@ -121,19 +242,19 @@ public class OrderServletTest {
         verify(orderService, times(1)).createOrder(any(OrderInputDTO.class));
         verify(response).setStatus(HttpServletResponse.SC_CREATED);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("{")); 
     }
 
     @Test
     public void testDoPost_emptyBody() throws Exception {
         
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(""));
 
         orderServlet.doPost(request, response);
 
         
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         System.out.println("JSON Response: " + jsonResponse); 
 
         
@@ -144,13 +265,13 @@ public class OrderServletTest {
     @Test
     public void testDoPost_invalidJsonFormat() throws Exception {
         
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{invalidJson}")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream("{invalidJson}"));
 
         orderServlet.doPost(request, response);
 
         
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid JSON format")); 
     }
 
@@ -159,7 +280,7 @@ public class OrderServletTest {
         
         when(request.getPathInfo()).thenReturn("/1");
         String jsonRequest = gson.toJson(new OrderInputDTO());
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         doNothing().when(orderService).updateOrder(any(OrderInputDTO.class));
 
@@ -175,7 +296,7 @@ public class OrderServletTest {
         
         when(request.getPathInfo()).thenReturn("/1");
         String jsonRequest = gson.toJson(new OrderInputDTO());
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         
         doThrow(new OrderNotFoundException("Order not found")).when(orderService).updateOrder(any(OrderInputDTO.class));
@@ -186,7 +307,7 @@ public class OrderServletTest {
         verify(orderService, times(1)).updateOrder(any(OrderInputDTO.class));
         verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Order not found")); 
     }
 
@@ -207,7 +328,7 @@ public class OrderServletTest {
         verify(orderService, times(1)).getOrderById(1L);
         verify(response).setStatus(HttpServletResponse.SC_OK);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("{")); 
     }
 
@@ -226,7 +347,7 @@ public class OrderServletTest {
         verify(orderService, times(1)).getProductsByOrderId(1L);
         verify(response).setStatus(HttpServletResponse.SC_OK);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("[")); 
     }
 
@@ -239,7 +360,7 @@ public class OrderServletTest {
 
         
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid request path")); 
     }
 
@@ -252,7 +373,7 @@ public class OrderServletTest {
 
         
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid order ID format.")); 
     }
 
@@ -260,12 +381,12 @@ public class OrderServletTest {
     public void testDoPut_emptyBody() throws Exception {
         
         when(request.getPathInfo()).thenReturn("/1");
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(""));
 
         orderServlet.doPut(request, response);
 
         
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Request body is empty")); 
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
     }
@@ -277,15 +398,11 @@ public class OrderServletTest {
 
         // Преобразуем пустой OrderInputDTO в JSON
         String jsonRequest = gson.toJson(new OrderInputDTO());
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         // Симулируем выброс RuntimeException при вызове метода updateOrder
         doThrow(new RuntimeException("Unexpected error")).when(orderService).updateOrder(any(OrderInputDTO.class));
 
-        // Подготавливаем writer для захвата ответа
-        PrintWriter printWriter = new PrintWriter(responseWriter);
-        when(response.getWriter()).thenReturn(printWriter);
-
         // Вызываем метод doPut сервлета
         orderServlet.doPut(request, response);
 
@@ -293,7 +410,7 @@ public class OrderServletTest {
         verify(response).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 
         // Проверяем, что текст ответа содержит сообщение "Unexpected error"
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Unexpected error"));
 
         // Убедимся, что метод updateOrder был вызван с корректным объектом
@@ -303,15 +420,94 @@ public class OrderServletTest {
     @Test
     public void testDoPut_emptyBody_addProductsToOrder() throws Exception {
         when(request.getPathInfo()).thenReturn("/1/products");
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(""));
 
         orderServlet.doPut(request, response);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Product IDs are required.")); 
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
     }
 
+    @Test
+    public void testDoPut_addProductsRejectsDeclaredOversizedBody() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1/products");
+        when(request.getContentLengthLong()).thenReturn(64L * 1024 * 1024);
+
+        orderServlet.doPut(request, response);
+
+        verify(request, never()).getInputStream();
+        verify(response).setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        verify(orderService, never()).addProductsToOrder(anyLong(), any());
+    }
+
+    @Test
+    public void testDoPut_addProductsRejectsOversizedStreamedBody() throws Exception {
+        StringBuilder body = new StringBuilder("{\"productIds\":[1");
+        while (body.length() <= 1024 * 1024) {
+            body.append(",1234567");
+        }
+        body.append("]}");
+        when(request.getPathInfo()).thenReturn("/1/products");
+        when(request.getContentLengthLong()).thenReturn(-1L);
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(body.toString()));
+
+        orderServlet.doPut(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        verify(orderService, never()).addProductsToOrder(anyLong(), any());
+    }
+
+    @Test
+    public void testDoPost_countsBodyLimitInBytesNotChars() throws Exception {
+        String padding = "\u20ac".repeat(400 * 1024);
+        when(request.getContentLengthLong()).thenReturn(-1L);
+        when(request.getInputStream()).thenReturn(new StubServletInputStream("{\"userId\":1,\"note\":\"" + padding + "\"}"));
+
+        orderServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        verify(orderService, never()).createOrder(any());
+    }
+
+    @Test
+    public void testDoPut_addProductsRejectsDeeplyNestedBody() throws Exception {
+        String nested = "[".repeat(100) + "]".repeat(100);
+        when(request.getPathInfo()).thenReturn("/1/products");
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(
+                "{\"productIds\":[1],\"extra\":" + nested + "}"));
+
+        orderServlet.doPut(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        assertTrue(responseOutputStream.toString().contains("nesting depth"));
+        verify(orderService, never()).addProductsToOrder(anyLong(), any());
+    }
+
+    @Test
+    public void testDoPost_rejectsTrailingContent() throws Exception {
+        when(request.getInputStream()).thenReturn(new StubServletInputStream("{\"userId\":1} {}"));
+
+        orderServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verify(orderService, never()).createOrder(any());
+    }
+
+    @Test
+    public void testDoPut_addProductsToOrderReturnsAddedCount() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1/products");
+        when(request.getInputStream()).thenReturn(new StubServletInputStream("{\"productIds\":[1,2]}"));
+        when(orderService.addProductsToOrder(1L, List.of(1L, 2L))).thenReturn(1);
+
+        orderServlet.doPut(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        String jsonResponse = responseOutputStream.toString();
+        assertTrue(jsonResponse.contains("\"orderId\":1"));
+        assertTrue(jsonResponse.contains("\"addedCount\":1"));
+    }
+
     @Test
     public void testDoDelete_order() throws Exception {
         when(request.getPathInfo()).thenReturn("/1");
@@ -335,7 +531,7 @@ public class OrderServletTest {
         verify(orderService, times(1)).deleteOrder(1L);
         verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Order not found")); 
     }
 
@@ -7,20 +7,31 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import productstore.cache.ResponseBodyCache;
+import productstore.cache.StaleReads;
 import productstore.service.ProductService;
 import productstore.service.apierror.ProductNotFoundException;
 import productstore.servlet.dto.input.ProductInputDTO;
 import productstore.servlet.dto.output.ProductOutputDTO;
+import productstore.servlet.util.Compression;
+import productstore.servlet.util.PaginationUtils;
+import productstore.servlet.utils.CapturingServletOutputStream;
+import productstore.servlet.utils.StubServletInputStream;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.PrintWriter;
-import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 public class ProductServletTest {
@@ -35,6 +46,7 @@ public class ProductServletTest {
     private HttpServletResponse response;
 
     private StringWriter responseWriter;
+    private CapturingServletOutputStream responseOutputStream;
     private ProductServlet productServlet;
     private Gson gson = new Gson();
 
@@ -43,6 +55,8 @@ public class ProductServletTest {
         MockitoAnnotations.openMocks(this);
         responseWriter = new StringWriter();
         when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        responseOutputStream = new CapturingServletOutputStream();
+        when(response.getOutputStream()).thenReturn(responseOutputStream);
 
         
         productServlet = new ProductServlet(productService);
@@ -62,10 +76,96 @@ public class ProductServletTest {
         verify(productService, times(1)).getProductsWithPagination(anyInt(), anyInt());
         verify(response).setStatus(HttpServletResponse.SC_OK);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("[")); 
     }
 
+    @Test
+    public void testDoGet_smallPageSetsContentLength() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        List<ProductOutputDTO> products = List.of(new ProductOutputDTO(1L, "Чайник", 10.0, List.of(3L)));
+        when(productService.getProductsWithPagination(anyInt(), anyInt())).thenReturn(products);
+
+        productServlet.doGet(request, response);
+
+        String expected = new Gson().toJson(products);
+        assertEquals(expected, responseOutputStream.toString());
+        verify(response).setContentLength(expected.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void testDoGet_largePageStreamsWithoutContentLength() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        List<ProductOutputDTO> products = new ArrayList<>();
+        for (long id = 1; id <= 5000; id++) {
+            products.add(new ProductOutputDTO(id, "Product " + id, id, List.of(id)));
+        }
+        when(productService.getProductsWithPagination(anyInt(), anyInt())).thenReturn(products);
+
+        productServlet.doGet(request, response);
+
+        assertEquals(new Gson().toJson(products), responseOutputStream.toString());
+        verify(response, never()).setContentLength(anyInt());
+    }
+
+    @Test
+    public void testDoGet_productsAfterCursor() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("after")).thenReturn(PaginationUtils.encodeCursor(5L));
+        when(request.getParameter("pageSize")).thenReturn("2");
+
+        ProductOutputDTO first = new ProductOutputDTO();
+        first.setId(6L);
+        ProductOutputDTO second = new ProductOutputDTO();
+        second.setId(7L);
+        when(productService.getProductsAfterId(5L, 2)).thenReturn(List.of(first, second));
+
+        productServlet.doGet(request, response);
+
+        verify(productService, times(1)).getProductsAfterId(5L, 2);
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        String jsonResponse = responseOutputStream.toString();
+        assertTrue(jsonResponse.contains("\"nextCursor\":\"" + PaginationUtils.encodeCursor(7L) + "\""));
+    }
+
+    @Test
+    public void testDoGet_productsInvalidCursor() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("after")).thenReturn("not-a-cursor");
+
+        productServlet.doGet(request, response);
+
+        verify(productService, never()).getProductsAfterId(anyLong(), anyInt());
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testDoGet_streamProducts() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("stream")).thenReturn("true");
+
+        ProductOutputDTO first = new ProductOutputDTO();
+        first.setId(1L);
+        ProductOutputDTO second = new ProductOutputDTO();
+        second.setId(2L);
+        doAnswer(invocation -> {
+            Consumer<ProductOutputDTO> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(productService).streamAllProducts(any());
+
+        productServlet.doGet(request, response);
+
+        verify(productService, times(1)).streamAllProducts(any());
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        String jsonResponse = responseOutputStream.toString();
+        assertTrue(jsonResponse.startsWith("[{\"id\":1"));
+        assertTrue(jsonResponse.endsWith("}]"));
+    }
+
     
     @Test
     public void testDoGet_productById() throws Exception {
@@ -79,11 +179,132 @@ public class ProductServletTest {
         verify(productService, times(1)).getProductById(1L);
         verify(response).setStatus(HttpServletResponse.SC_OK);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("{")); 
     }
 
     
+    @Test
+    public void testDoGet_productByIdNotModified() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getHeader("If-None-Match")).thenReturn("\"product-1-3\"");
+        when(productService.getProductVersion(1L)).thenReturn(3L);
+
+        productServlet.doGet(request, response);
+
+        verify(productService, never()).getProductById(anyLong());
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response).setHeader("ETag", "\"product-1-3\"");
+        assertTrue(responseOutputStream.toString().isEmpty());
+    }
+
+    @Test
+    public void testDoGet_productByIdNotModifiedForCompressedVariant() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getHeader("If-None-Match")).thenReturn("\"product-1-3-gzip\"");
+        when(productService.getProductVersion(1L)).thenReturn(3L);
+
+        productServlet.doGet(request, response);
+
+        verify(productService, never()).getProductById(anyLong());
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response).setHeader("ETag", "\"product-1-3-gzip\"");
+        verify(response).addHeader("Vary", "Accept-Encoding");
+    }
+
+    @Test
+    public void testDoGet_productByIdStaleETag() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getHeader("If-None-Match")).thenReturn("\"product-1-2\"");
+        when(productService.getProductVersion(1L)).thenReturn(3L);
+
+        ProductOutputDTO product = new ProductOutputDTO();
+        product.setVersion(3L);
+        when(productService.getProductById(1L)).thenReturn(product);
+
+        productServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response).setHeader("ETag", "\"product-1-3\"");
+        assertTrue(responseOutputStream.toString().contains("{"));
+    }
+
+    @Test
+    public void testDoGet_productByIdMarksStaleResponse() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+
+        ProductOutputDTO product = new ProductOutputDTO(1L, "Product", 10.0, new ArrayList<>());
+        when(productService.getProductById(1L)).thenAnswer(invocation -> {
+            StaleReads.record(Duration.ofSeconds(42), true);
+            return product;
+        });
+
+        productServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response).setHeader("Age", "42");
+        verify(response).setHeader("Warning", "111 - \"Revalidation Failed\"");
+        assertEquals(null, StaleReads.peek());
+    }
+
+    @Test
+    public void testDoGet_productByIdFreshResponseHasNoWarning() throws Exception {
+        StaleReads.record(Duration.ofSeconds(5), false);
+        when(request.getPathInfo()).thenReturn("/1");
+        when(productService.getProductById(1L)).thenReturn(new ProductOutputDTO());
+
+        productServlet.doGet(request, response);
+
+        verify(response, never()).setHeader(eq("Warning"), anyString());
+        verify(response, never()).setHeader(eq("Age"), anyString());
+    }
+
+    @Test
+    public void testDoGet_productByIdServesCachedBody() throws Exception {
+        ProductServlet cachingServlet = new ProductServlet(productService, new ResponseBodyCache(1024));
+        when(request.getPathInfo()).thenReturn("/1");
+
+        ProductOutputDTO product = new ProductOutputDTO(1L, "Product", 10.0, new ArrayList<>());
+        product.setVersion(2L);
+        when(productService.getProductById(1L)).thenReturn(product);
+
+        cachingServlet.doGet(request, response);
+        byte[] firstBody = responseOutputStream.toByteArray();
+        product.setName("Changed without a version bump");
+        cachingServlet.doGet(request, response);
+
+        String expected = "{\"id\":1,\"name\":\"Product\",\"price\":10.0,\"orderIds\":[]}";
+        assertEquals(expected + expected, responseOutputStream.toString());
+        verify(response, times(2)).setContentLength(firstBody.length);
+    }
+
+    @Test
+    public void testDoGet_productByIdServesCachedCompressedVariant() throws Exception {
+        ProductServlet cachingServlet = new ProductServlet(productService, new ResponseBodyCache(64 * 1024));
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getAttribute(Compression.ENCODING_ATTRIBUTE)).thenReturn(Compression.Encoding.GZIP);
+
+        ProductOutputDTO product = new ProductOutputDTO(1L, "Product ".repeat(500), 10.0, new ArrayList<>());
+        product.setVersion(2L);
+        when(productService.getProductById(1L)).thenReturn(product);
+
+        cachingServlet.doGet(request, response);
+        byte[] firstBody = responseOutputStream.toByteArray();
+        product.setName("Changed without a version bump");
+        cachingServlet.doGet(request, response);
+
+        verify(response, times(2)).setHeader("Content-Encoding", "gzip");
+        verify(response, times(2)).setContentLength(firstBody.length);
+        verify(response, times(2)).setHeader("ETag", "\"product-1-2-gzip\"");
+        verify(response, never()).setHeader("ETag", "\"product-1-2\"");
+        verify(response, times(2)).addHeader("Vary", "Accept-Encoding");
+        assertTrue(firstBody.length < 1000);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(firstBody))) {
+            String json = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(json.startsWith("{\"id\":1,\"name\":\"Product Product"));
+        }
+    }
+
     @Test
     public void testDoGet_productNotFound() throws Exception {
         when(request.getPathInfo()).thenReturn("/999");
@@ -95,7 +316,7 @@ public class ProductServletTest {
         verify(productService, times(1)).getProductById(999L);
         verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Product not found")); 
     }
 
@@ -109,7 +330,7 @@ public class ProductServletTest {
 
         
         String jsonRequest = gson.toJson(productInputDTO);
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         ProductOutputDTO createdProduct = new ProductOutputDTO();
         when(productService.createProduct(any(ProductInputDTO.class))).thenReturn(createdProduct);
@@ -119,17 +340,17 @@ public class ProductServletTest {
         verify(productService, times(1)).createProduct(any(ProductInputDTO.class));
         verify(response).setStatus(HttpServletResponse.SC_CREATED);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("{")); 
     }
     
     @Test
     public void testDoPost_emptyBody() throws Exception {
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(""));
 
         productServlet.doPost(request, response);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Request body is empty"));
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
     }
@@ -137,12 +358,12 @@ public class ProductServletTest {
     
     @Test
     public void testDoPost_invalidJsonFormat() throws Exception {
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{invalidJson}")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream("{invalidJson}"));
 
         productServlet.doPost(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid JSON format"));
     }
 
@@ -151,7 +372,7 @@ public class ProductServletTest {
     public void testDoPut_updateProduct() throws Exception {
         when(request.getPathInfo()).thenReturn("/1");
         String jsonRequest = gson.toJson(new ProductInputDTO());
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         doNothing().when(productService).updateProduct(any(ProductInputDTO.class));
 
@@ -166,7 +387,7 @@ public class ProductServletTest {
     public void testDoPut_productNotFound() throws Exception {
         when(request.getPathInfo()).thenReturn("/1");
         String jsonRequest = gson.toJson(new ProductInputDTO());
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         doThrow(new ProductNotFoundException("Product not found")).when(productService).updateProduct(any(ProductInputDTO.class));
 
@@ -175,7 +396,7 @@ public class ProductServletTest {
         verify(productService, times(1)).updateProduct(any(ProductInputDTO.class));
         verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Product not found"));
     }
 
@@ -183,11 +404,11 @@ public class ProductServletTest {
     @Test
     public void testDoPut_emptyBody() throws Exception {
         when(request.getPathInfo()).thenReturn("/1");
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(""));
 
         productServlet.doPut(request, response);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Request body is empty"));
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
     }
@@ -217,7 +438,7 @@ public class ProductServletTest {
         verify(productService, times(1)).deleteProduct(999L);
         verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Product not found"));
     }
 
@@ -230,18 +451,18 @@ public class ProductServletTest {
 
         
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid URL path"));
     }
 
     @Test
     public void testDoPost_missingFields() throws Exception {
         String jsonRequest = "{\"description\": \"A sample product without name and price\"}";
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         productServlet.doPost(request, response);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Missing required fields"));
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
     }
@@ -253,7 +474,7 @@ public class ProductServletTest {
         productServlet.doPut(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid product ID format"));
     }
 }
@@ -0,0 +1,62 @@
+package productstore.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import productstore.config.Readiness;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class ReadinessServletTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    private StringWriter responseWriter;
+    private ReadinessServlet readinessServlet;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        responseWriter = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        readinessServlet = new ReadinessServlet();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Readiness.markNotReady("starting");
+    }
+
+    @Test
+    public void testDoGet_notReadyDuringWarmUp() throws Exception {
+        Readiness.markNotReady("warm-up");
+
+        readinessServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertTrue(responseWriter.toString().contains("\"status\":\"NOT_READY\""));
+        assertTrue(responseWriter.toString().contains("\"phase\":\"warm-up\""));
+    }
+
+    @Test
+    public void testDoGet_readyAfterWarmUp() throws Exception {
+        Readiness.markReady("warmed up");
+
+        readinessServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        assertTrue(responseWriter.toString().contains("\"status\":\"READY\""));
+    }
+}
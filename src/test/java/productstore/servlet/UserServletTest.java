@@ -11,16 +11,19 @@ import productstore.service.UserService;
 import productstore.service.apierror.UserNotFoundException;
 import productstore.servlet.dto.input.UserInputDTO;
 import productstore.servlet.dto.output.UserOutputDTO;
+import productstore.servlet.util.PaginationUtils;
+import productstore.servlet.utils.CapturingServletOutputStream;
+import productstore.servlet.utils.StubServletInputStream;
 
-import java.io.BufferedReader;
 import java.io.PrintWriter;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 public class UserServletTest {
@@ -35,6 +38,7 @@ public class UserServletTest {
     private HttpServletResponse response;
 
     private StringWriter responseWriter;
+    private CapturingServletOutputStream responseOutputStream;
     private UserServlet userServlet;
     private Gson gson = new Gson();
 
@@ -43,6 +47,8 @@ public class UserServletTest {
         MockitoAnnotations.openMocks(this);
         responseWriter = new StringWriter();
         when(response.getWriter()).thenReturn(new PrintWriter(responseWriter));
+        responseOutputStream = new CapturingServletOutputStream();
+        when(response.getOutputStream()).thenReturn(responseOutputStream);
         userServlet = new UserServlet(userService);
     }
 
@@ -59,10 +65,68 @@ public class UserServletTest {
         verify(userService, times(1)).getUsersWithPagination(anyInt(), anyInt());
         verify(response).setStatus(HttpServletResponse.SC_OK);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("["));
     }
 
+    @Test
+    public void testDoGet_usersAfterCursor() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("after")).thenReturn(PaginationUtils.encodeCursor(5L));
+        when(request.getParameter("pageSize")).thenReturn("2");
+
+        UserOutputDTO first = new UserOutputDTO();
+        first.setId(6L);
+        UserOutputDTO second = new UserOutputDTO();
+        second.setId(7L);
+        when(userService.getUsersAfterId(5L, 2)).thenReturn(List.of(first, second));
+
+        userServlet.doGet(request, response);
+
+        verify(userService, times(1)).getUsersAfterId(5L, 2);
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        String jsonResponse = responseOutputStream.toString();
+        assertTrue(jsonResponse.contains("\"nextCursor\":\"" + PaginationUtils.encodeCursor(7L) + "\""));
+    }
+
+    @Test
+    public void testDoGet_usersInvalidCursor() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("after")).thenReturn("not-a-cursor");
+
+        userServlet.doGet(request, response);
+
+        verify(userService, never()).getUsersAfterId(anyLong(), anyInt());
+        verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testDoGet_streamUsers() throws Exception {
+        when(request.getPathInfo()).thenReturn("/");
+        when(request.getParameter("stream")).thenReturn("true");
+
+        UserOutputDTO first = new UserOutputDTO();
+        first.setId(1L);
+        UserOutputDTO second = new UserOutputDTO();
+        second.setId(2L);
+        doAnswer(invocation -> {
+            Consumer<UserOutputDTO> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(userService).streamAllUsers(any());
+
+        userServlet.doGet(request, response);
+
+        verify(userService, times(1)).streamAllUsers(any());
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        String jsonResponse = responseOutputStream.toString();
+        assertTrue(jsonResponse.startsWith("[{\"id\":1"));
+        assertTrue(jsonResponse.endsWith("}]"));
+    }
+
     @Test
     public void testDoGet_userById() throws Exception {
         when(request.getPathInfo()).thenReturn("/1");
@@ -75,10 +139,41 @@ public class UserServletTest {
         verify(userService, times(1)).getUserById(1L);
         verify(response).setStatus(HttpServletResponse.SC_OK);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("{"));
     }
 
+    @Test
+    public void testDoGet_userByIdNotModified() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getHeader("If-None-Match")).thenReturn("\"user-1-3\"");
+        when(userService.getUserVersion(1L)).thenReturn(3L);
+
+        userServlet.doGet(request, response);
+
+        verify(userService, never()).getUserById(anyLong());
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response).setHeader("ETag", "\"user-1-3\"");
+        assertTrue(responseOutputStream.toString().isEmpty());
+    }
+
+    @Test
+    public void testDoGet_userByIdStaleETag() throws Exception {
+        when(request.getPathInfo()).thenReturn("/1");
+        when(request.getHeader("If-None-Match")).thenReturn("\"user-1-2\"");
+        when(userService.getUserVersion(1L)).thenReturn(3L);
+
+        UserOutputDTO user = new UserOutputDTO();
+        user.setVersion(3L);
+        when(userService.getUserById(1L)).thenReturn(user);
+
+        userServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response).setHeader("ETag", "\"user-1-3\"");
+        assertTrue(responseOutputStream.toString().contains("{"));
+    }
+
     @Test
     public void testDoGet_userNotFound() throws Exception {
         when(request.getPathInfo()).thenReturn("/999");
@@ -90,7 +185,7 @@ public class UserServletTest {
         verify(userService, times(1)).getUserById(999L);
         verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("User not found"));
     }
 
@@ -101,7 +196,7 @@ public class UserServletTest {
 
         
         String jsonRequest = gson.toJson(userInputDTO);
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         UserOutputDTO createdUser = new UserOutputDTO();
         when(userService.createUser(any(UserInputDTO.class))).thenReturn(createdUser);
@@ -111,29 +206,29 @@ public class UserServletTest {
         verify(userService, times(1)).createUser(any(UserInputDTO.class));
         verify(response).setStatus(HttpServletResponse.SC_CREATED);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("{"));
     }
 
     @Test
     public void testDoPost_emptyBody() throws Exception {
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(""));
 
         userServlet.doPost(request, response);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Request body is required"));
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
     }
 
     @Test
     public void testDoPost_invalidJsonFormat() throws Exception {
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{invalidJson}")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream("{invalidJson}"));
 
         userServlet.doPost(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid JSON format"));
     }
 
@@ -141,7 +236,7 @@ public class UserServletTest {
     public void testDoPut_updateUser() throws Exception {
         when(request.getPathInfo()).thenReturn("/1");
         String jsonRequest = gson.toJson(new UserInputDTO());
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         doNothing().when(userService).updateUser(any(UserInputDTO.class));
 
@@ -155,7 +250,7 @@ public class UserServletTest {
     public void testDoPut_userNotFound() throws Exception {
         when(request.getPathInfo()).thenReturn("/1");
         String jsonRequest = gson.toJson(new UserInputDTO());
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(jsonRequest)));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream(jsonRequest));
 
         doThrow(new UserNotFoundException("User not found")).when(userService).updateUser(any(UserInputDTO.class));
 
@@ -164,19 +259,19 @@ public class UserServletTest {
         verify(userService, times(1)).updateUser(any(UserInputDTO.class));
         verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("User not found"));
     }
 
     @Test
     public void testDoPut_invalidJsonFormat() throws Exception {
         when(request.getPathInfo()).thenReturn("/1");
-        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{invalidJson}")));
+        when(request.getInputStream()).thenReturn(new StubServletInputStream("{invalidJson}"));
 
         userServlet.doPut(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid JSON format"));
     }
 
@@ -203,7 +298,7 @@ public class UserServletTest {
         verify(userService, times(1)).deleteUser(999L);
         verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
 
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("User not found"));
     }
 
@@ -214,7 +309,7 @@ public class UserServletTest {
         userServlet.doGet(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid user ID format"));
     }
 
@@ -225,7 +320,7 @@ public class UserServletTest {
         userServlet.doPut(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        String jsonResponse = responseWriter.toString();
+        String jsonResponse = responseOutputStream.toString();
         assertTrue(jsonResponse.contains("Invalid user ID format"));
     }
 }
@@ -0,0 +1,149 @@
+package productstore.servlet.filter;
+
+import com.google.gson.Gson;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import productstore.servlet.util.Compression;
+import productstore.servlet.util.JsonResponseWriter;
+import productstore.servlet.utils.CapturingServletOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CompressionFilterTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    private CapturingServletOutputStream responseOutputStream;
+    private final CompressionFilter filter = new CompressionFilter();
+    private final Gson gson = new Gson();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        responseOutputStream = new CapturingServletOutputStream();
+        when(response.getOutputStream()).thenReturn(responseOutputStream);
+        when(response.getContentType()).thenReturn("application/json;charset=UTF-8");
+        when(response.getStatus()).thenReturn(HttpServletResponse.SC_OK);
+        when(request.getMethod()).thenReturn("GET");
+    }
+
+    @Test
+    public void testCompressesLargeResponses() throws Exception {
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+        List<String> body = Collections.nCopies(500, "product");
+
+        filter.doFilter(request, response, chainWriting(body));
+
+        verify(request).setAttribute(Compression.ENCODING_ATTRIBUTE, Compression.Encoding.GZIP);
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).addHeader("Vary", "Accept-Encoding");
+        verify(response, never()).setContentLengthLong(anyLong());
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(responseOutputStream.toByteArray()))) {
+            assertEquals(gson.toJson(body), new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testLeavesSmallResponsesUncompressed() throws Exception {
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        List<String> body = List.of("product");
+
+        filter.doFilter(request, response, chainWriting(body));
+
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        verify(response).setContentLengthLong(gson.toJson(body).length());
+        assertEquals(gson.toJson(body), responseOutputStream.toString());
+    }
+
+    @Test
+    public void testPassesThroughWithoutAcceptEncoding() throws Exception {
+        List<String> body = Collections.nCopies(500, "product");
+
+        filter.doFilter(request, response, chainWriting(body));
+
+        verify(request, never()).setAttribute(anyString(), any());
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        assertEquals(gson.toJson(body), responseOutputStream.toString());
+    }
+
+    @Test
+    public void testKeepsPrecompressedBodies() throws Exception {
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        when(response.containsHeader("Content-Encoding")).thenReturn(true);
+        byte[] precompressed = Compression.compress(gson.toJson(Collections.nCopies(500, "product")).getBytes(StandardCharsets.UTF_8),
+                Compression.Encoding.GZIP);
+
+        filter.doFilter(request, response, (req, resp) -> {
+            HttpServletResponse httpResponse = (HttpServletResponse) resp;
+            httpResponse.setContentLength(precompressed.length);
+            httpResponse.getOutputStream().write(precompressed);
+        });
+
+        verify(response).setContentLengthLong(precompressed.length);
+        assertEquals(precompressed.length, responseOutputStream.toByteArray().length);
+    }
+
+    @Test
+    public void testResetBufferRestartsTheCompressedBody() throws Exception {
+        CapturingServletOutputStream afterReset = new CapturingServletOutputStream();
+        doAnswer(invocation -> {
+            when(response.getOutputStream()).thenReturn(afterReset);
+            return null;
+        }).when(response).resetBuffer();
+        CompressingResponse compressing = new CompressingResponse(response, Compression.Encoding.GZIP);
+        List<String> error = List.of("Stream failed");
+
+        compressing.getOutputStream().write(gson.toJson(Collections.nCopies(500, "product")).getBytes(StandardCharsets.UTF_8));
+        compressing.flushBuffer();
+        compressing.resetBuffer();
+        JsonResponseWriter.write(compressing, gson, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, error);
+        compressing.finish();
+
+        verify(response, times(1)).setHeader("Content-Encoding", "gzip");
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(afterReset.toByteArray()))) {
+            assertEquals(gson.toJson(error), new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testResetDropsTheCompressedBody() throws Exception {
+        CapturingServletOutputStream afterReset = new CapturingServletOutputStream();
+        doAnswer(invocation -> {
+            when(response.getOutputStream()).thenReturn(afterReset);
+            return null;
+        }).when(response).reset();
+        CompressingResponse compressing = new CompressingResponse(response, Compression.Encoding.GZIP);
+        List<String> error = List.of("Request timed out");
+
+        compressing.getOutputStream().write(gson.toJson(Collections.nCopies(500, "product")).getBytes(StandardCharsets.UTF_8));
+        compressing.reset();
+        JsonResponseWriter.write(compressing, gson, HttpServletResponse.SC_SERVICE_UNAVAILABLE, error);
+        compressing.finish();
+
+        verify(response).setContentLengthLong(gson.toJson(error).length());
+        assertEquals(gson.toJson(error), afterReset.toString());
+    }
+
+    private FilterChain chainWriting(Object body) {
+        return (req, resp) -> JsonResponseWriter.write((HttpServletResponse) resp, gson, HttpServletResponse.SC_OK, body);
+    }
+}
@@ -0,0 +1,382 @@
+package productstore.servlet.util;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.postgresql.PGConnection;
+import productstore.db.ConnectionPermits;
+import productstore.servlet.utils.CapturingServletOutputStream;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class AsyncDispatcherTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Mock
+    private AsyncContext asyncContext;
+
+    private CapturingServletOutputStream responseOutputStream;
+    private CountDownLatch completed;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        responseOutputStream = new CapturingServletOutputStream();
+        completed = new CountDownLatch(1);
+        when(response.getOutputStream()).thenReturn(responseOutputStream);
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync(any(ServletRequest.class), any(ServletResponse.class))).thenReturn(asyncContext);
+        doAnswer(invocation -> {
+            completed.countDown();
+            return null;
+        }).when(asyncContext).complete();
+        AsyncDispatcher.initialize(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        AsyncDispatcher.shutdown();
+    }
+
+    @Test
+    public void testRunsSynchronouslyWhenAsyncIsNotSupported() throws Exception {
+        when(request.isAsyncSupported()).thenReturn(false);
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> handlerThread = new AtomicReference<>();
+
+        AsyncDispatcher.forEndpoint("sync").dispatch(request, response, (req, resp) -> handlerThread.set(Thread.currentThread()));
+
+        assertSame(caller, handlerThread.get());
+        verify(request, never()).startAsync(any(ServletRequest.class), any(ServletResponse.class));
+    }
+
+    @Test
+    public void testRunsHandlerOnVirtualThreadAndCompletes() throws Exception {
+        AtomicBoolean virtual = new AtomicBoolean();
+
+        AsyncDispatcher.forEndpoint("virtual").dispatch(request, response, (req, resp) -> {
+            virtual.set(Thread.currentThread().isVirtual());
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.getOutputStream().write("done".getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertTrue(virtual.get());
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(asyncContext).setTimeout(anyLong());
+        assertEquals("done", responseOutputStream.toString());
+    }
+
+    @Test
+    public void testRejectsRequestsBeyondConcurrencyLimit() throws Exception {
+        System.setProperty("productstore.async.limited.maxConcurrent", "1");
+        System.setProperty("productstore.async.limited.timeoutMillis", "200");
+        AsyncDispatcher dispatcher;
+        try {
+            dispatcher = AsyncDispatcher.forEndpoint("limited");
+        } finally {
+            System.clearProperty("productstore.async.limited.maxConcurrent");
+            System.clearProperty("productstore.async.limited.timeoutMillis");
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        dispatcher.dispatch(request, response, (req, resp) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        HttpServletResponse rejectedResponse = mock(HttpServletResponse.class);
+        CapturingServletOutputStream rejectedBody = new CapturingServletOutputStream();
+        when(rejectedResponse.getOutputStream()).thenReturn(rejectedBody);
+        AsyncContext rejectedContext = mock(AsyncContext.class);
+        CountDownLatch rejected = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            rejected.countDown();
+            return null;
+        }).when(rejectedContext).complete();
+        HttpServletRequest second = mock(HttpServletRequest.class);
+        when(second.isAsyncSupported()).thenReturn(true);
+        when(second.startAsync(any(ServletRequest.class), any(ServletResponse.class))).thenReturn(rejectedContext);
+
+        AtomicBoolean handled = new AtomicBoolean();
+        dispatcher.dispatch(second, rejectedResponse, (req, resp) -> handled.set(true));
+
+        assertTrue(rejected.await(5, TimeUnit.SECONDS));
+        assertFalse(handled.get());
+        verify(rejectedResponse).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        verify(rejectedResponse).setHeader("Retry-After", "1");
+        assertTrue(rejectedBody.toString().contains("Too many concurrent requests"));
+
+        release.countDown();
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCacheHitsDoNotWaitForDatabasePermits() throws Exception {
+        AsyncDispatcher.shutdown();
+        AsyncDispatcher.initialize(1);
+        AsyncDispatcher dispatcher = AsyncDispatcher.forEndpoint("permits");
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.dispatch(request, response, (req, resp) -> {
+            ConnectionPermits.Gate gate = null;
+            try {
+                gate = ConnectionPermits.acquire();
+                holding.countDown();
+                release.await();
+            } catch (SQLException e) {
+                throw new ServletException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (gate != null) {
+                    gate.release();
+                }
+            }
+        });
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        HttpServletResponse hitResponse = mock(HttpServletResponse.class);
+        when(hitResponse.getOutputStream()).thenReturn(new CapturingServletOutputStream());
+        AsyncContext hitContext = mock(AsyncContext.class);
+        CountDownLatch hitCompleted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            hitCompleted.countDown();
+            return null;
+        }).when(hitContext).complete();
+        HttpServletRequest hit = mock(HttpServletRequest.class);
+        when(hit.isAsyncSupported()).thenReturn(true);
+        when(hit.startAsync(any(ServletRequest.class), any(ServletResponse.class))).thenReturn(hitContext);
+
+        dispatcher.dispatch(hit, hitResponse, (req, resp) -> resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED));
+
+        assertTrue(hitCompleted.await(5, TimeUnit.SECONDS));
+        verify(hitResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        release.countDown();
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRejectsDatabaseWorkWhenPermitsRunOut() throws Exception {
+        AsyncDispatcher.shutdown();
+        AsyncDispatcher.initialize(1);
+        System.setProperty("productstore.async.exhausted.timeoutMillis", "200");
+        AsyncDispatcher dispatcher;
+        try {
+            dispatcher = AsyncDispatcher.forEndpoint("exhausted");
+        } finally {
+            System.clearProperty("productstore.async.exhausted.timeoutMillis");
+        }
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.dispatch(request, response, (req, resp) -> {
+            try {
+                ConnectionPermits.acquire();
+                holding.countDown();
+                release.await();
+            } catch (SQLException e) {
+                throw new ServletException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        HttpServletResponse rejectedResponse = mock(HttpServletResponse.class);
+        CapturingServletOutputStream rejectedBody = new CapturingServletOutputStream();
+        when(rejectedResponse.getOutputStream()).thenReturn(rejectedBody);
+        AsyncContext rejectedContext = mock(AsyncContext.class);
+        CountDownLatch rejected = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            rejected.countDown();
+            return null;
+        }).when(rejectedContext).complete();
+        HttpServletRequest second = mock(HttpServletRequest.class);
+        when(second.isAsyncSupported()).thenReturn(true);
+        when(second.startAsync(any(ServletRequest.class), any(ServletResponse.class))).thenReturn(rejectedContext);
+
+        AtomicBoolean transientFailure = new AtomicBoolean();
+        dispatcher.dispatch(second, rejectedResponse, (req, resp) -> {
+            try {
+                ConnectionPermits.acquire();
+            } catch (SQLTransientConnectionException e) {
+                transientFailure.set(true);
+                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } catch (SQLException e) {
+                throw new ServletException(e);
+            }
+        });
+
+        assertTrue(rejected.await(5, TimeUnit.SECONDS));
+        assertTrue(transientFailure.get());
+        verify(rejectedResponse).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        verify(rejectedResponse, never()).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        verify(rejectedResponse).setHeader("Retry-After", "1");
+        assertTrue(rejectedBody.toString().contains("Too many concurrent requests"));
+
+        release.countDown();
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, AsyncDispatcher.snapshot().get("databasePermitsAvailable"));
+    }
+
+    @Test
+    public void testStreamRequestsUseTheStreamTimeout() throws Exception {
+        when(request.getParameter("stream")).thenReturn("true");
+        System.setProperty("productstore.async.streaming.streamTimeoutMillis", "60000");
+        AsyncDispatcher dispatcher;
+        try {
+            dispatcher = AsyncDispatcher.forEndpoint("streaming");
+        } finally {
+            System.clearProperty("productstore.async.streaming.streamTimeoutMillis");
+        }
+
+        dispatcher.dispatch(request, response, (req, resp) -> resp.setStatus(HttpServletResponse.SC_OK));
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        verify(asyncContext).setTimeout(60000L);
+    }
+
+    @Test
+    public void testTimeoutAfterCommitLetsTheHandlerFinish() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        AsyncDispatcher.forEndpoint("committed").dispatch(request, response, (req, resp) -> {
+            resp.getOutputStream().write("[1,".getBytes(StandardCharsets.UTF_8));
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            resp.getOutputStream().write("2]".getBytes(StandardCharsets.UTF_8));
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        when(response.isCommitted()).thenReturn(true);
+
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        listener.getValue().onTimeout(null);
+        release.countDown();
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+        verify(response, never()).reset();
+        verify(response, never()).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        verify(asyncContext, times(1)).complete();
+        assertEquals("[1,2]", responseOutputStream.toString());
+    }
+
+    @Test
+    public void testTimeoutCancelsTheQueryInsteadOfInterrupting() throws Exception {
+        Connection connection = mock(Connection.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            cancelled.countDown();
+            return null;
+        }).when(pgConnection).cancelQuery();
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        AsyncDispatcher.forEndpoint("cancel").dispatch(request, response, (req, resp) -> {
+            ConnectionPermits.Gate gate = null;
+            try {
+                gate = ConnectionPermits.acquire();
+                gate.opened(connection);
+                started.countDown();
+                cancelled.await();
+            } catch (SQLException e) {
+                throw new ServletException(e);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            } finally {
+                if (gate != null) {
+                    gate.closing(connection);
+                    gate.release();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        listener.getValue().onTimeout(null);
+
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+        verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertTrue(responseOutputStream.toString().contains("Request timed out"));
+    }
+
+    @Test
+    public void testTimeoutInterruptsHandlerAndDiscardsLateWrites() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicBoolean lateWriteFailed = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        AsyncDispatcher.forEndpoint("timeout").dispatch(request, response, (req, resp) -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            try {
+                resp.getOutputStream().write("late".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                lateWriteFailed.set(true);
+            }
+            finished.countDown();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        listener.getValue().onTimeout(null);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertTrue(lateWriteFailed.get());
+        verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        verify(asyncContext, times(1)).complete();
+        assertTrue(responseOutputStream.toString().contains("Request timed out"));
+        assertFalse(responseOutputStream.toString().contains("late"));
+    }
+}
@@ -0,0 +1,83 @@
+package productstore.servlet.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionTest {
+
+    private static final String BODY = "{\"id\":1,\"name\":\"Product\",\"price\":10.0}".repeat(200);
+
+    @Test
+    public void testNegotiatesPreferredEncoding() {
+        assertNull(Compression.negotiate(null));
+        assertNull(Compression.negotiate("identity"));
+        assertNull(Compression.negotiate("gzip;q=0, deflate;q=0"));
+        assertEquals(Compression.Encoding.GZIP, Compression.negotiate("gzip, deflate, br"));
+        assertEquals(Compression.Encoding.DEFLATE, Compression.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(Compression.Encoding.DEFLATE, Compression.negotiate("gzip;q=0, *"));
+        assertEquals(Compression.Encoding.GZIP, Compression.negotiate("*"));
+    }
+
+    @Test
+    public void testThresholdSkipsSmallBodies() {
+        assertFalse(Compression.isWorthCompressing(100));
+        assertTrue(Compression.isWorthCompressing(4096));
+        assertTrue(Compression.isWorthCompressing(-1));
+    }
+
+    @Test
+    public void testGzipRoundTrip() throws IOException {
+        byte[] compressed = Compression.compress(BODY.getBytes(StandardCharsets.UTF_8), Compression.Encoding.GZIP);
+
+        assertTrue(compressed.length < BODY.length() / 10);
+        assertEquals(BODY, read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testDeflateRoundTrip() throws IOException {
+        byte[] compressed = Compression.compress(BODY.getBytes(StandardCharsets.UTF_8), Compression.Encoding.DEFLATE);
+
+        assertEquals(BODY, read(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testFlushedStreamStaysDecodable() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        try (OutputStream out = Compression.compressing(target, Compression.Encoding.GZIP)) {
+            out.write("[".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+            out.write("]".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals("[" + BODY + "]", read(new GZIPInputStream(new ByteArrayInputStream(target.toByteArray()))));
+    }
+
+    @Test
+    public void testDeflatersAreReused() {
+        Compression.compress(BODY.getBytes(StandardCharsets.UTF_8), Compression.Encoding.GZIP);
+        long allocated = (Long) Compression.snapshot().get("allocated");
+
+        for (int i = 0; i < 10; i++) {
+            Compression.compress(BODY.getBytes(StandardCharsets.UTF_8), Compression.Encoding.GZIP);
+        }
+
+        assertEquals(allocated, Compression.snapshot().get("allocated"));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package productstore.servlet.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PathRouterTest {
+
+    private enum Route { ROOT, ORDER, ORDER_PRODUCTS, ORDER_USERS, SUMMARY }
+
+    private final PathRouter<Route> router = PathRouter.<Route>builder()
+            .route("/", Route.ROOT)
+            .route("/summary", Route.SUMMARY)
+            .route("/{id}", Route.ORDER)
+            .route("/{id}/products", Route.ORDER_PRODUCTS)
+            .route("/{id}/users", Route.ORDER_USERS)
+            .build();
+
+    @Test
+    public void testMatchesRootForNullAndSlash() {
+        assertEquals(Route.ROOT, router.match(null).route());
+        assertEquals(Route.ROOT, router.match("/").route());
+    }
+
+    @Test
+    public void testParsesIdWithoutSubstrings() {
+        PathRouter.Match<Route> order = router.match("/42");
+        assertEquals(Route.ORDER, order.route());
+        assertEquals(42L, order.id());
+
+        PathRouter.Match<Route> products = router.match("/7/products");
+        assertEquals(Route.ORDER_PRODUCTS, products.route());
+        assertEquals(7L, products.id());
+
+        PathRouter.Match<Route> max = router.match("/" + Long.MAX_VALUE + "/users");
+        assertEquals(Route.ORDER_USERS, max.route());
+        assertEquals(Long.MAX_VALUE, max.id());
+    }
+
+    @Test
+    public void testPrefersLiteralSegments() {
+        assertEquals(Route.SUMMARY, router.match("/summary").route());
+    }
+
+    @Test
+    public void testRejectsUnknownAndMalformedPaths() {
+        assertNull(router.match("/abc"));
+        assertNull(router.match("/-1"));
+        assertNull(router.match("/12a"));
+        assertNull(router.match("/1/"));
+        assertNull(router.match("//1"));
+        assertNull(router.match("/1/orders"));
+        assertNull(router.match("/1/products/2"));
+        assertNull(router.match("/products"));
+        assertNull(router.match("1"));
+        assertNull(router.match("/9223372036854775808"));
+    }
+
+    @Test
+    public void testRejectsInvalidRouteDefinitions() {
+        assertThrows(IllegalArgumentException.class, () -> PathRouter.<Route>builder().route("orders", Route.ORDER));
+        assertThrows(IllegalArgumentException.class, () -> PathRouter.<Route>builder().route("/{id}/{id}", Route.ORDER));
+        assertThrows(IllegalArgumentException.class, () -> PathRouter.<Route>builder()
+                .route("/{id}", Route.ORDER)
+                .route("/{id}", Route.ORDER_USERS));
+    }
+}
@@ -0,0 +1,39 @@
+package productstore.servlet.utils;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class CapturingServletOutputStream extends ServletOutputStream {
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+    }
+
+    @Override
+    public void write(int b) {
+        buffer.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        buffer.write(b, off, len);
+    }
+
+    public byte[] toByteArray() {
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,39 @@
+package productstore.servlet.utils;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class StubServletInputStream extends ServletInputStream {
+    private final ByteArrayInputStream body;
+
+    public StubServletInputStream(String body) {
+        this.body = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean isFinished() {
+        return body.available() == 0;
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void setReadListener(ReadListener readListener) {
+    }
+
+    @Override
+    public int read() {
+        return body.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        return body.read(b, off, len);
+    }
+}